@@ -0,0 +1,15 @@
+package alien4cloud.dao.model;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** Annotation to define the refresh policy applied when saving or deleting instances of a type that do not specify a policy. Default is IMMEDIATE. */
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.TYPE })
+public @interface EsRefreshPolicy {
+    RefreshPolicy value();
+}
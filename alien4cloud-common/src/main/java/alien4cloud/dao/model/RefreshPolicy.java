@@ -0,0 +1,26 @@
+package alien4cloud.dao.model;
+
+/**
+ * Defines when data written to elasticsearch becomes visible to search requests. Values are ordered from the strictest to the most relaxed policy.
+ */
+public enum RefreshPolicy {
+    /** The index is refreshed by the write request itself, data is searchable as soon as the write returns. */
+    IMMEDIATE,
+    /**
+     * The write does not force a refresh but waits for the index to be refreshed before returning. Elasticsearch 1.x does not support refresh=wait_for so
+     * concurrent writers on the same index share a single refresh instead.
+     */
+    WAIT_FOR,
+    /** The write returns as soon as the data is indexed, data will be searchable after the next periodic refresh of the index. */
+    NONE;
+
+    /**
+     * Get the strictest of two policies.
+     *
+     * @param other The policy to compare to this one.
+     * @return The strictest policy.
+     */
+    public RefreshPolicy strictest(RefreshPolicy other) {
+        return other == null || ordinal() <= other.ordinal() ? this : other;
+    }
+}
@@ -1,15 +1,20 @@
 package alien4cloud.utils;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.nio.file.FileSystem;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
@@ -20,7 +25,9 @@ import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 
@@ -29,6 +36,9 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 public final class FileUtil {
+    /** Size of the chunks read from the files when computing their hash. */
+    private static final int HASH_BUFFER_SIZE = 256 * 1024;
+
     /**
      * Utility class should have private constructor.
      */
@@ -389,18 +399,47 @@ public final class FileUtil {
         throw new FileNotFoundException("Unable to compute hash for file " + rootPath);
     }
 
+    /**
+     * Computes the hash of a directory from the hashes of its files. Files are hashed in parallel and their hashes combined with their relative paths in
+     * sorted path order so the result does not depend on the file system iteration order.
+     */
     @SneakyThrows({ IOException.class, NoSuchAlgorithmException.class })
     private static String computeDirectoryHash(Path rootPath) {
+        List<Path> files;
+        try (Stream<Path> paths = Files.walk(rootPath)) {
+            files = paths.filter(FileUtil::isNotHidden).filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        Map<String, Path> filesByRelativePath = Maps.newTreeMap();
+        for (Path file : files) {
+            filesByRelativePath.put(Joiner.on('/').join(rootPath.relativize(file)), file);
+        }
+        // ordered parallel streams keep the encounter order when collecting
+        List<byte[]> fileDigests = filesByRelativePath.values().parallelStream().map(FileUtil::fileDigest).collect(Collectors.toList());
+
         MessageDigest digest = MessageDigest.getInstance("SHA1");
-        Files.walk(rootPath).filter(FileUtil::isNotHidden).filter(Files::isRegularFile).forEach(path -> addFileToDigest(digest, path));
+        Iterator<byte[]> fileDigestIterator = fileDigests.iterator();
+        for (String relativePath : filesByRelativePath.keySet()) {
+            digest.update(relativePath.getBytes(Charsets.UTF_8));
+            digest.update(fileDigestIterator.next());
+        }
         return DatatypeConverter.printHexBinary(digest.digest());
+    }
 
+    @SneakyThrows({ NoSuchAlgorithmException.class })
+    private static byte[] fileDigest(Path path) {
+        MessageDigest digest = MessageDigest.getInstance("SHA1");
+        addFileToDigest(digest, path);
+        return digest.digest();
     }
 
     @SneakyThrows({ IOException.class })
     private static void addFileToDigest(MessageDigest digest, Path path) {
-        try (InputStream digestInputStream = new DigestInputStream(new BufferedInputStream(Files.newInputStream(path)), digest)) {
-            while (digestInputStream.read() != -1) {
+        ByteBuffer buffer = ByteBuffer.allocate(HASH_BUFFER_SIZE);
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
             }
         }
     }
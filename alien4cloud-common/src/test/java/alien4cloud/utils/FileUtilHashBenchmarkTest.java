@@ -0,0 +1,93 @@
+package alien4cloud.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compare the archive hashing with a serial, byte per byte hashing of the same files, the hash itself is checked by {@link FileUtilHashTest}. The size of the generated archive can be set through the
+ * <code>hash.benchmark.size_mb</code> system property (for example 500 to hash large archives with embedded artifacts).
+ *
+ * Executed only with the benchmark profile: <code>mvn test -DdoTest -DdoBenchmark -Dtest=FileUtilHashBenchmarkTest</code>.
+ */
+@Slf4j
+public class FileUtilHashBenchmarkTest {
+    private static final int SIZE_MB = Integer.getInteger("hash.benchmark.size_mb", 64);
+    private static final int FILES_PER_DIRECTORY = 50;
+
+    private Path archivePath;
+
+    @Before
+    public void init() throws IOException {
+        archivePath = Files.createTempDirectory("hash-benchmark");
+        Random random = new Random(0);
+        byte[] content = new byte[64 * 1024];
+        long remaining = SIZE_MB * 1024L * 1024L;
+        int fileIndex = 0;
+        while (remaining > 0) {
+            // mix small definition files and large artifacts
+            long fileSize = Math.min(remaining, fileIndex % 10 == 0 ? 8 * 1024 * 1024 : 16 * 1024);
+            Path file = archivePath.resolve("dir-" + fileIndex / FILES_PER_DIRECTORY).resolve("file-" + fileIndex + ".bin");
+            Files.createDirectories(file.getParent());
+            try (OutputStream outputStream = Files.newOutputStream(file)) {
+                for (long written = 0; written < fileSize; written += content.length) {
+                    random.nextBytes(content);
+                    outputStream.write(content, 0, (int) Math.min(content.length, fileSize - written));
+                }
+            }
+            remaining -= fileSize;
+            fileIndex++;
+        }
+        log.info("Generated archive of {} MB with {} files", SIZE_MB, fileIndex);
+    }
+
+    @After
+    public void destroy() throws IOException {
+        FileUtil.delete(archivePath);
+    }
+
+    private String serialHash(Path rootPath) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA1");
+        try (Stream<Path> paths = Files.walk(rootPath)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                try (InputStream digestInputStream = new DigestInputStream(Files.newInputStream(path), digest)) {
+                    while (digestInputStream.read() != -1) {
+                    }
+                }
+            }
+        }
+        return DatatypeConverter.printHexBinary(digest.digest());
+    }
+
+    @Test
+    public void compareArchiveHashing() throws Exception {
+        // warm-up
+        FileUtil.deepSHA1(archivePath);
+
+        long start = System.nanoTime();
+        serialHash(archivePath);
+        long serialDuration = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        FileUtil.deepSHA1(archivePath);
+        long duration = System.nanoTime() - start;
+
+        log.info("Serial byte per byte hash of {} MB in {} ms, deepSHA1 in {} ms", SIZE_MB, TimeUnit.NANOSECONDS.toMillis(serialDuration),
+                TimeUnit.NANOSECONDS.toMillis(duration));
+    }
+}
@@ -0,0 +1,66 @@
+package alien4cloud.utils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Check the hash of archives on a small archive, see {@link FileUtilHashBenchmarkTest} for large archives.
+ */
+public class FileUtilHashTest {
+    private Path archivePath;
+
+    @Before
+    public void init() throws IOException {
+        archivePath = Files.createTempDirectory("hash-test");
+        Random random = new Random(0);
+        // files smaller and larger than the hash buffer
+        int[] fileSizes = { 0, 100, 600 * 1024 };
+        for (int i = 0; i < fileSizes.length; i++) {
+            byte[] content = new byte[fileSizes[i]];
+            random.nextBytes(content);
+            Path file = archivePath.resolve("dir-" + i % 2).resolve("file-" + i + ".bin");
+            Files.createDirectories(file.getParent());
+            Files.write(file, content);
+        }
+    }
+
+    @After
+    public void destroy() throws IOException {
+        FileUtil.delete(archivePath);
+    }
+
+    @Test
+    public void hashShouldNotDependOnTheArchiveFormat() throws Exception {
+        String hash = FileUtil.deepSHA1(archivePath);
+        Assert.assertEquals(hash, FileUtil.deepSHA1(archivePath));
+        Path zipPath = Files.createTempFile("hash-test", ".zip");
+        try {
+            FileUtil.zip(archivePath, zipPath);
+            Assert.assertEquals(hash, FileUtil.deepSHA1(zipPath));
+        } finally {
+            Files.delete(zipPath);
+        }
+
+        // renaming a file changes the hash
+        Path file = archivePath.resolve("dir-0").resolve("file-0.bin");
+        Files.move(file, file.resolveSibling("renamed.bin"));
+        Assert.assertNotEquals(hash, FileUtil.deepSHA1(archivePath));
+    }
+
+    @Test
+    public void hashShouldDependOnTheFilesContent() throws Exception {
+        String hash = FileUtil.deepSHA1(archivePath);
+        Path file = archivePath.resolve("dir-1").resolve("file-1.bin");
+        byte[] content = Files.readAllBytes(file);
+        content[0]++;
+        Files.write(file, content);
+        Assert.assertNotEquals(hash, FileUtil.deepSHA1(archivePath));
+    }
+}
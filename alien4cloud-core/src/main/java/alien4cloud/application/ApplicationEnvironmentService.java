@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Stream;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -26,7 +27,6 @@ import com.google.common.collect.Sets;
 
 import alien4cloud.common.ResourceUpdateInterceptor;
 import alien4cloud.dao.IGenericSearchDAO;
-import alien4cloud.dao.model.GetMultipleDataResult;
 import alien4cloud.deployment.DeploymentLockService;
 import alien4cloud.deployment.DeploymentRuntimeStateService;
 import alien4cloud.deployment.DeploymentService;
@@ -123,8 +123,7 @@ public class ApplicationEnvironmentService {
      * @return An array of the environments for the requested application id.
      */
     public ApplicationEnvironment[] getByApplicationId(String applicationId) {
-        Map<String, String[]> filters = MapUtil.newHashMap(new String[] { "applicationId" }, new String[][] { new String[] { applicationId } });
-        return alienDAO.search(ApplicationEnvironment.class, null, filters, null, null, 0, Integer.MAX_VALUE, "name.lower_case", false).getData();
+        return searchSortedByName(singleKeyFilter("applicationId", applicationId), null);
     }
 
     /**
@@ -134,8 +133,14 @@ public class ApplicationEnvironmentService {
      * @return An array of the environments for the requested application id.
      */
     public ApplicationEnvironment[] getAuthorizedByApplicationId(String applicationId) {
-        return alienDAO.search(ApplicationEnvironment.class, null, singleKeyFilter("applicationId", applicationId),
-                getEnvironmentAuthorizationFilters(applicationId), null, 0, Integer.MAX_VALUE, "name.lower_case", false).getData();
+        return searchSortedByName(singleKeyFilter("applicationId", applicationId), getEnvironmentAuthorizationFilters(applicationId));
+    }
+
+    private ApplicationEnvironment[] searchSortedByName(Map<String, String[]> filters, FilterBuilder customFilter) {
+        try (Stream<ApplicationEnvironment> environments = alienDAO.buildQuery(ApplicationEnvironment.class).setFilters(filters, customFilter).prepareSearch()
+                .setFieldSort("name.lower_case", false).stream()) {
+            return environments.toArray(ApplicationEnvironment[]::new);
+        }
     }
 
     private FilterBuilder getEnvironmentAuthorizationFilters(String applicationId) {
@@ -153,9 +158,9 @@ public class ApplicationEnvironmentService {
      * @return An array of the environments for the requested application id.
      */
     public ApplicationEnvironment[] getByVersionId(String versionId) {
-        GetMultipleDataResult<ApplicationEnvironment> result = alienDAO.find(ApplicationEnvironment.class,
-                MapUtil.newHashMap(new String[] { "currentVersionId" }, new String[][] { new String[] { versionId } }), Integer.MAX_VALUE);
-        return result.getData();
+        try (Stream<ApplicationEnvironment> environments = alienDAO.stream(ApplicationEnvironment.class, singleKeyFilter("currentVersionId", versionId))) {
+            return environments.toArray(ApplicationEnvironment[]::new);
+        }
     }
 
     /**
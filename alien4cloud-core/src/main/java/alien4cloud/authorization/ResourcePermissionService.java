@@ -15,6 +15,7 @@ import alien4cloud.security.users.IAlienUserDao;
 import com.google.common.collect.Sets;
 import lombok.AllArgsConstructor;
 import lombok.NoArgsConstructor;
+import org.alien4cloud.alm.events.AfterPermissionGrantedEvent;
 import org.alien4cloud.alm.events.AfterPermissionRevokedEvent;
 import org.alien4cloud.alm.events.BeforePermissionRevokedEvent;
 import org.apache.commons.collections4.MapUtils;
@@ -75,6 +76,8 @@ public class ResourcePermissionService {
         Arrays.stream(subjects).forEach(subject -> resource.addPermissions(subjectType, subject, Sets.newHashSet(Permission.ADMIN)));
         if (saver != null) {
             saver.save(resource);
+            publisher.publishEvent(new AfterPermissionGrantedEvent(this, new BeforePermissionRevokedEvent.OnResource(resource.getClass(), resource.getId()),
+                    subjectType, subjects));
         }
     }
 
@@ -237,5 +240,15 @@ public class ResourcePermissionService {
             grantPermission(resource, noSave, Subject.ENVIRONMENT_TYPE, environmentTypesToAdd);
         }
         alienDAO.save(resource);
+        publishGranted(resource, Subject.APPLICATION, applicationsToAdd);
+        publishGranted(resource, Subject.ENVIRONMENT, environmentsToAdd);
+        publishGranted(resource, Subject.ENVIRONMENT_TYPE, environmentTypesToAdd);
+    }
+
+    private void publishGranted(ISecurityEnabledResource resource, Subject subjectType, String[] subjects) {
+        if (ArrayUtils.isNotEmpty(subjects)) {
+            publisher.publishEvent(new AfterPermissionGrantedEvent(this, new BeforePermissionRevokedEvent.OnResource(resource.getClass(), resource.getId()),
+                    subjectType, subjects));
+        }
     }
 }
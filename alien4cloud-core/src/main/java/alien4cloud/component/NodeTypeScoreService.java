@@ -1,38 +1,80 @@
 package alien4cloud.component;
 
-import alien4cloud.dao.IGenericSearchDAO;
-import alien4cloud.dao.model.GetMultipleDataResult;
-import alien4cloud.utils.AlienConstants;
-import alien4cloud.utils.MapUtil;
-import alien4cloud.utils.version.Version;
-import com.google.common.collect.Maps;
-import lombok.extern.slf4j.Slf4j;
+import static alien4cloud.utils.AlienUtils.safe;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+
+import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
+import org.alien4cloud.tosca.catalog.events.BeforeArchiveDeleted;
+import org.alien4cloud.tosca.catalog.index.ToscaTypeCache;
+import org.alien4cloud.tosca.model.CSARDependency;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
 import org.alien4cloud.tosca.model.templates.Topology;
 import org.alien4cloud.tosca.model.types.NodeType;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.mapping.MappingBuilder;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.nested.Nested;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.env.Environment;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
 
-import javax.annotation.PostConstruct;
-import javax.annotation.Resource;
-import java.util.Date;
-import java.util.Map;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
-import static alien4cloud.dao.FilterUtil.fromKeyValueCouples;
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.dao.ScrollIterator;
+import alien4cloud.events.BeforeTopologySavedEvent;
+import alien4cloud.utils.version.Version;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Updates the scoring of node types based on their usage, version and default capabilities.
+ *
+ * All the scores are recomputed on a regular basis. Scores of the node types impacted by a topology save or by an archive indexation or deletion are also
+ * recomputed shortly after the change.
  */
 @Slf4j
 @Component
 public class NodeTypeScoreService implements Runnable {
+    private static final String NODE_TYPE_FIELD = "nodeTemplates.value.type";
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+    private static final int PAGE_SIZE = 1000;
+
     @Resource(name = "alien-es-dao")
     private IGenericSearchDAO alienESDAO;
     @Resource(name = "node-type-score-scheduler")
     private TaskScheduler scheduler;
     @Resource
     private Environment environment;
+    @Resource
+    private ToscaTypeCache toscaTypeCache;
 
     @Value("${components.search.boost.frequency}")
     private long frequencyH = 1;
@@ -42,6 +84,28 @@ public class NodeTypeScoreService implements Runnable {
     private long versionBoost;
     @Value("${components.search.boost.default}")
     private long defaultBoost;
+    @Value("${components.search.boost.incremental_delay_ms:5000}")
+    private long incrementalDelayMs = 5000;
+
+    /** Element ids of the node types to process on the next incremental update. */
+    private final Set<String> pendingElementIds = Sets.newConcurrentHashSet();
+    private final AtomicBoolean incrementalUpdateScheduled = new AtomicBoolean();
+
+    @AllArgsConstructor
+    private static final class TopologyUsage {
+        private final Set<String> types;
+        private final Set<CSARDependency> dependencies;
+    }
+
+    @AllArgsConstructor
+    private static final class NodeTypeScore {
+        private final String id;
+        private final String elementId;
+        private final String archiveName;
+        private final String archiveVersion;
+        private final boolean hasDefaultCapabilities;
+        private final Long alienScore;
+    }
 
     /** Refresh boost for all indexed node types in the system. */
     @PostConstruct
@@ -58,48 +122,232 @@ public class NodeTypeScoreService implements Runnable {
     @Override
     public void run() {
         log.info("Updating node type scores.");
-        // Go over all indexed node types.
-        GetMultipleDataResult<NodeType> getMultipleDataResult = alienESDAO.find(NodeType.class, null, 0, AlienConstants.DEFAULT_ES_SEARCH_SIZE);
-        int from = getMultipleDataResult.getTo() + 1;
-        processNodeTypes(getMultipleDataResult.getData());
-        while (getMultipleDataResult.getData().length > 0 && from < getMultipleDataResult.getTotalResults()) {
-            getMultipleDataResult = alienESDAO.find(NodeType.class, null, from, from + AlienConstants.DEFAULT_ES_SEARCH_SIZE);
-            from = getMultipleDataResult.getTo() + 1;
-            processNodeTypes(getMultipleDataResult.getData());
+        update(null);
+    }
+
+    /**
+     * Recompute the scores of node types and save the ones that changed.
+     *
+     * @param elementIds The element ids of the node types to process (all the versions of the types are processed), null to process all the node types.
+     */
+    public synchronized void update(Collection<String> elementIds) {
+        if (elementIds != null && elementIds.isEmpty()) {
+            return;
+        }
+        Map<String, Long> usages = countUsages(elementIds);
+        Map<String, List<NodeTypeScore>> nodeTypesByElementId = findNodeTypes(elementIds);
+
+        Client client = alienESDAO.getClient();
+        String index = alienESDAO.getIndexForType(NodeType.class);
+        String type = MappingBuilder.indexTypeFromClass(NodeType.class);
+        BulkRequestBuilder bulkRequest = client.prepareBulk();
+        int processed = 0;
+        List<NodeTypeScore> updated = Lists.newArrayList();
+        for (List<NodeTypeScore> versions : nodeTypesByElementId.values()) {
+            // get the version factor (latest version of a node is better than previous version)
+            Version latestVersion = versions.stream().map(nodeType -> new Version(nodeType.archiveVersion)).max(Version::compareTo).get();
+            for (NodeTypeScore nodeType : versions) {
+                processed++;
+                // count the applications that uses the node-type
+                long usageFactor = usageBoost * usages.getOrDefault(usageKey(nodeType.elementId, nodeType.archiveName, nodeType.archiveVersion), 0L);
+                long versionFactor = latestVersion.compareTo(new Version(nodeType.archiveVersion)) == 0 ? versionBoost : 0;
+                // default boost (boost node types that have a default capability)
+                long defaultFactor = nodeType.hasDefaultCapabilities ? defaultBoost : 0;
+                long score = usageFactor + defaultFactor + versionFactor;
+                if (nodeType.alienScore != null && nodeType.alienScore == score) {
+                    continue;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Updating score of node type {} from {} to {}", nodeType.id, nodeType.alienScore, score);
+                }
+                bulkRequest.add(client.prepareUpdate(index, type, nodeType.id).setDoc(Collections.singletonMap("alienScore", score)));
+                updated.add(nodeType);
+                if (bulkRequest.numberOfActions() >= PAGE_SIZE) {
+                    executeBulk(bulkRequest);
+                    bulkRequest = client.prepareBulk();
+                }
+            }
+        }
+        if (bulkRequest.numberOfActions() > 0) {
+            executeBulk(bulkRequest);
         }
+        if (!updated.isEmpty()) {
+            client.admin().indices().prepareRefresh(index).execute().actionGet();
+        }
+        // cached types would keep their previous score
+        for (NodeTypeScore nodeType : updated) {
+            toscaTypeCache.invalidate(NodeType.class, nodeType.elementId, Csar.createId(nodeType.archiveName, nodeType.archiveVersion));
+        }
+        log.info("Updated scores of {} node types out of {} processed", updated.size(), processed);
     }
 
-    private void processNodeTypes(NodeType[] indexedNodeTypes) {
-        for (NodeType nodeType : indexedNodeTypes) {
-            if (log.isDebugEnabled()) {
-                log.debug("Processing node score for type {}", nodeType.getId());
+    private void executeBulk(BulkRequestBuilder bulkRequest) {
+        BulkResponse response = bulkRequest.execute().actionGet();
+        if (response.hasFailures()) {
+            log.warn("Failed to update some node type scores: {}", response.buildFailureMessage());
+        }
+    }
+
+    private static String usageKey(String elementId, String archiveName, String archiveVersion) {
+        return elementId + ":" + archiveName + ":" + archiveVersion;
+    }
+
+    /**
+     * Count in a single aggregation the number of topologies that use every node type (identified by element id, archive name and archive version).
+     */
+    private Map<String, Long> countUsages(Collection<String> elementIds) {
+        QueryBuilder query = elementIds == null ? QueryBuilders.matchAllQuery() : QueryBuilders.termsQuery(NODE_TYPE_FIELD, elementIds);
+        SearchResponse response = alienESDAO.getClient().prepareSearch(alienESDAO.getIndexForType(Topology.class))
+                .setTypes(MappingBuilder.indexTypeFromClass(Topology.class)).setQuery(query).setSize(0)
+                .addAggregation(AggregationBuilders.terms("types").field(NODE_TYPE_FIELD).size(0)
+                        .subAggregation(AggregationBuilders.nested("dependencies").path("dependencies")
+                                .subAggregation(AggregationBuilders.terms("names").field("dependencies.name").size(0)
+                                        .subAggregation(AggregationBuilders.terms("versions").field("dependencies.version").size(0)))))
+                .execute().actionGet();
+        Map<String, Long> usages = Maps.newHashMap();
+        Terms types = response.getAggregations().get("types");
+        for (Terms.Bucket typeBucket : types.getBuckets()) {
+            Nested dependencies = typeBucket.getAggregations().get("dependencies");
+            Terms names = dependencies.getAggregations().get("names");
+            for (Terms.Bucket nameBucket : names.getBuckets()) {
+                Terms versions = nameBucket.getAggregations().get("versions");
+                for (Terms.Bucket versionBucket : versions.getBuckets()) {
+                    // a topology depends on a single version of an archive so the number of dependencies is the number of topologies
+                    usages.put(usageKey(typeBucket.getKey(), nameBucket.getKey(), versionBucket.getKey()), versionBucket.getDocCount());
+                }
             }
-            Map<String, String[]> usedNodeFiler = Maps.newHashMap();
-            usedNodeFiler.put("nodeTemplates.value.type", new String[] { nodeType.getElementId() });
-            // count the applications that uses the node-type
-            long usageFactor = usageBoost * alienESDAO.buildQuery(Topology.class).setFilters(fromKeyValueCouples("nodeTemplates.value.type",
-                    nodeType.getElementId(), "dependencies.name", nodeType.getArchiveName(), "dependencies.version", nodeType.getArchiveVersion())).count();
-            // get the version factor (latest version of a node is better than previous version, snapshot versions do not get boost)
-            long versionFactor = isLatestVersion(nodeType) ? versionBoost : 0;
-            // default boost (boost node types that have a default capability)
-            long defaultFactor = nodeType.getDefaultCapabilities() == null || nodeType.getDefaultCapabilities().isEmpty() ? 0 : defaultBoost;
-            // update the score for the node type.
-            nodeType.setAlienScore(usageFactor + defaultFactor + versionFactor);
-            alienESDAO.save(nodeType);
-        }
-    }
-
-    private boolean isLatestVersion(NodeType nodeType) {
-        Map<String, String[]> filters = MapUtil.newHashMap(new String[] { "elementId" }, new String[][] { new String[] { nodeType.getElementId() } });
-        // TODO get a single element and order by version.
-        Version nodeVersion = new Version(((NodeType) nodeType).getArchiveVersion());
-
-        for (Object otherVersionNodeType : alienESDAO.find(NodeType.class, filters, AlienConstants.DEFAULT_ES_SEARCH_SIZE).getData()) {
-            Version otherVersion = new Version(((NodeType) otherVersionNodeType).getArchiveVersion());
-            if (nodeVersion.compareTo(otherVersion) < 0) {
-                return false;
+        }
+        return usages;
+    }
+
+    /**
+     * Fetch the scoring data of all the versions of the given node types, grouped by element id.
+     */
+    private Map<String, List<NodeTypeScore>> findNodeTypes(Collection<String> elementIds) {
+        QueryBuilder query = elementIds == null ? QueryBuilders.matchAllQuery() : QueryBuilders.termsQuery("rawElementId", elementIds);
+        SearchResponse response = alienESDAO.getClient().prepareSearch(alienESDAO.getIndexForType(NodeType.class))
+                .setTypes(MappingBuilder.indexTypeFromClass(NodeType.class)).setQuery(query)
+                .setFetchSource(new String[] { "elementId", "archiveName", "archiveVersion", "defaultCapabilities", "alienScore" }, null)
+                .setScroll(SCROLL_KEEP_ALIVE).setSize(PAGE_SIZE).execute().actionGet();
+        try (ScrollIterator<NodeTypeScore> nodeTypes = new ScrollIterator<>(alienESDAO.getClient(), response, SCROLL_KEEP_ALIVE, this::toNodeTypeScore)) {
+            return nodeTypes.stream().collect(Collectors.groupingBy(nodeType -> nodeType.elementId));
+        }
+    }
+
+    private NodeTypeScore toNodeTypeScore(SearchHit hit) {
+        Map<String, Object> source = hit.getSource();
+        Collection<?> defaultCapabilities = (Collection<?>) source.get("defaultCapabilities");
+        Number alienScore = (Number) source.get("alienScore");
+        return new NodeTypeScore(hit.getId(), (String) source.get("elementId"), (String) source.get("archiveName"), (String) source.get("archiveVersion"),
+                defaultCapabilities != null && !defaultCapabilities.isEmpty(), alienScore == null ? null : alienScore.longValue());
+    }
+
+    /**
+     * Register node types for the next incremental update, the update is delayed so that successive changes are processed at once.
+     */
+    private void scheduleUpdate(Collection<String> elementIds) {
+        if (elementIds.isEmpty()) {
+            return;
+        }
+        pendingElementIds.addAll(elementIds);
+        if (incrementalUpdateScheduled.compareAndSet(false, true)) {
+            scheduler.schedule(this::runIncrementalUpdate, new Date(System.currentTimeMillis() + incrementalDelayMs));
+        }
+    }
+
+    private void runIncrementalUpdate() {
+        incrementalUpdateScheduled.set(false);
+        Set<String> elementIds = Sets.newHashSet();
+        for (Iterator<String> iterator = pendingElementIds.iterator(); iterator.hasNext();) {
+            elementIds.add(iterator.next());
+            iterator.remove();
+        }
+        try {
+            update(elementIds);
+        } catch (RuntimeException e) {
+            log.error("Failed to update scores of node types " + elementIds, e);
+        }
+    }
+
+    private static Set<String> getNodeTypes(Topology topology) {
+        return safe(topology.getNodeTemplates()).values().stream().map(NodeTemplate::getType).filter(Objects::nonNull).collect(Collectors.toSet());
+    }
+
+    /**
+     * Read the node types and dependencies of a stored topology, only these fields are fetched.
+     *
+     * @param topologyId The id of the topology.
+     * @return The usage of the topology or null if it is not stored.
+     */
+    private TopologyUsage findUsage(String topologyId) {
+        GetResponse response = alienESDAO.getClient()
+                .prepareGet(alienESDAO.getIndexForType(Topology.class), MappingBuilder.indexTypeFromClass(Topology.class), topologyId)
+                .setFetchSource(new String[] { NODE_TYPE_FIELD, "dependencies.name", "dependencies.version" }, null).execute().actionGet();
+        if (!response.isExists() || response.getSource() == null) {
+            return null;
+        }
+        Set<String> types = Sets.newHashSet();
+        // node templates are stored as an array of entries
+        for (Map<String, Object> nodeTemplateEntry : getSourceList(response.getSource(), "nodeTemplates")) {
+            Object nodeTemplate = nodeTemplateEntry.get("value");
+            if (nodeTemplate instanceof Map && ((Map<?, ?>) nodeTemplate).get("type") != null) {
+                types.add((String) ((Map<?, ?>) nodeTemplate).get("type"));
+            }
+        }
+        Set<CSARDependency> dependencies = Sets.newHashSet();
+        for (Map<String, Object> dependency : getSourceList(response.getSource(), "dependencies")) {
+            dependencies.add(new CSARDependency((String) dependency.get("name"), (String) dependency.get("version")));
+        }
+        return new TopologyUsage(types, dependencies);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> getSourceList(Map<String, Object> source, String field) {
+        Object value = source.get(field);
+        return value instanceof List ? (List<Map<String, Object>>) value : Collections.emptyList();
+    }
+
+    @EventListener
+    public void handleTopologySaving(BeforeTopologySavedEvent event) {
+        Topology topology = event.getTopology();
+        TopologyUsage usage = new TopologyUsage(getNodeTypes(topology), Sets.newHashSet(safe(topology.getDependencies())));
+        // the previous version of the topology is still stored
+        TopologyUsage previousUsage = topology.getId() == null ? null : findUsage(topology.getId());
+        if (previousUsage == null || !previousUsage.dependencies.equals(usage.dependencies)) {
+            // the usage of all the types of the topology may have changed
+            scheduleUpdate(previousUsage == null ? usage.types : Sets.union(usage.types, previousUsage.types));
+        } else {
+            scheduleUpdate(Sets.symmetricDifference(usage.types, previousUsage.types));
+        }
+    }
+
+    @EventListener
+    public void handleArchiveIndexed(AfterArchiveIndexed event) {
+        // node types are saved with a default score and may change the latest version of their element id
+        scheduleUpdate(safe(event.getArchiveRoot().getNodeTypes()).keySet());
+    }
+
+    @EventListener
+    public void handleArchiveDeleted(BeforeArchiveDeleted event) {
+        Set<String> elementIds = Sets.newHashSet();
+        // the archive may be a topology, the usage of its types changes
+        TopologyUsage usage = findUsage(event.getArchiveId());
+        if (usage != null) {
+            elementIds.addAll(usage.types);
+        }
+        Csar csar = alienESDAO.findById(Csar.class, event.getArchiveId());
+        if (csar != null) {
+            // the deletion of the node types may change the latest version of their element id
+            SearchResponse response = alienESDAO.getClient().prepareSearch(alienESDAO.getIndexForType(NodeType.class))
+                    .setTypes(MappingBuilder.indexTypeFromClass(NodeType.class))
+                    .setQuery(QueryBuilders.boolQuery().must(QueryBuilders.termQuery("archiveName", csar.getName()))
+                            .must(QueryBuilders.termQuery("archiveVersion", csar.getVersion())))
+                    .setFetchSource(new String[] { "elementId" }, null).setScroll(SCROLL_KEEP_ALIVE).setSize(PAGE_SIZE).execute().actionGet();
+            try (ScrollIterator<String> nodeTypes = new ScrollIterator<>(alienESDAO.getClient(), response, SCROLL_KEEP_ALIVE,
+                    hit -> (String) hit.getSource().get("elementId"))) {
+                nodeTypes.forEachRemaining(elementIds::add);
             }
         }
-        return true;
+        scheduleUpdate(elementIds);
     }
 }
@@ -1,5 +1,10 @@
 package alien4cloud.component.repository.exception;
 
+import java.util.Collections;
+import java.util.List;
+
+import lombok.Getter;
+
 /**
  * Exception thrown when trying to override a node type that is defined in an other CSAR
  *
@@ -8,8 +13,23 @@ public class ToscaTypeAlreadyDefinedInOtherCSAR extends RepositoryFunctionalExce
 
     private static final long serialVersionUID = -7825281720911419035L;
 
+    /** Description of every type of the archive that is already defined in an other archive. */
+    @Getter
+    private final List<String> conflicts;
+
     public ToscaTypeAlreadyDefinedInOtherCSAR(String message) {
         super(message);
+        this.conflicts = Collections.singletonList(message);
+    }
+
+    /**
+     * New instance of the exception.
+     *
+     * @param conflicts Description of every type of the archive that is already defined in an other archive.
+     */
+    public ToscaTypeAlreadyDefinedInOtherCSAR(List<String> conflicts) {
+        super(String.join(", ", conflicts));
+        this.conflicts = conflicts;
     }
 
 }
@@ -3,6 +3,7 @@ package alien4cloud.configuration;
 import javax.annotation.Resource;
 import javax.inject.Inject;
 
+import org.alien4cloud.tosca.catalog.index.ToscaTypeCache;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.stereotype.Component;
@@ -32,6 +33,8 @@ public class ApplicationBootstrap implements ApplicationListener<ContextRefreshe
     private RepositoryService repositoryService;
     @Inject
     private InitialLoader initialLoader;
+    @Inject
+    private ToscaTypeCache toscaTypeCache;
 
     private boolean initialized = false;
 
@@ -100,6 +103,8 @@ public class ApplicationBootstrap implements ApplicationListener<ContextRefreshe
         orchestratorStateService.unloadAllOrchestrators();
         repositoryService.unloadAllResolvers();
         pluginManager.unloadAllPlugins();
+        // data may be swapped before the platform is initialized again
+        toscaTypeCache.invalidateAll();
     }
 
     @Override
@@ -17,6 +17,7 @@ import alien4cloud.tosca.parser.impl.ErrorCode;
 import alien4cloud.utils.AlienConstants;
 import alien4cloud.utils.FileUtil;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import lombok.extern.slf4j.Slf4j;
 import org.alien4cloud.tosca.catalog.ArchiveUploadService;
 import org.alien4cloud.tosca.catalog.exception.UploadExceptionUtil;
@@ -27,6 +28,9 @@ import org.alien4cloud.tosca.model.CsarDependenciesBean;
 import org.eclipse.jgit.api.Git;
 import org.springframework.beans.factory.annotation.Required;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.concurrent.DelegatingSecurityContextExecutorService;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
 
@@ -39,6 +43,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static alien4cloud.utils.AlienUtils.safe;
 
 @Slf4j
 @Service
@@ -53,6 +64,8 @@ public class CsarGitService {
     private IGenericSearchDAO alienDAO;
     @Resource
     private CsarService csarService;
+    @Value("${git_import.parallelism:4}")
+    private int importParallelism = 4;
     // TODO store archives that are not 'temp' in another location.
     private Path tempDirPath;
     private Path tempZipDirPath;
@@ -158,51 +171,82 @@ public class CsarGitService {
         List<ParsingResult<Csar>> parsingResults = Lists.newArrayList();
 
         Map<CSARDependency, CsarDependenciesBean> csarDependenciesBeans = uploadService.preParsing(archivePaths, parsingResults);
+        // keep the dependencies provided by the repository as sorting consumes them
+        Map<CSARDependency, Set<CSARDependency>> repositoryDependencies = Maps.newHashMap();
+        for (CsarDependenciesBean csarBean : csarDependenciesBeans.values()) {
+            repositoryDependencies.put(csarBean.getSelf(),
+                    safe(csarBean.getDependencies()).stream().filter(csarDependenciesBeans::containsKey).collect(Collectors.toSet()));
+        }
         List<CsarDependenciesBean> sorted = sort(csarDependenciesBeans);
-        for (CsarDependenciesBean csarBean : sorted) {
-            String archiveRepoPath = archiveZipRoot.relativize(csarBean.getPath().getParent()).toString();
-            if (csarGitCheckoutLocation.getLastImportedHash() != null && csarGitCheckoutLocation.getLastImportedHash().equals(gitHash)
-                    && csarService.get(csarBean.getSelf().getName(), csarBean.getSelf().getVersion()) != null) {
-                // no commit since last import and the archive still exist in the repo, so do not import
-                addAlreadyImportParsingResult(archiveRepoPath, parsingResults);
-                continue;
+
+        // an archive is imported as soon as all the archives it depends on in the repository are imported, independent archives are imported concurrently.
+        ExecutorService executorService = new DelegatingSecurityContextExecutorService(
+                Executors.newFixedThreadPool(importParallelism, new CustomizableThreadFactory("git-import-")), SecurityContextHolder.getContext());
+        try {
+            Map<CSARDependency, CompletableFuture<ParsingResult<Csar>>> imports = Maps.newLinkedHashMap();
+            for (CsarDependenciesBean csarBean : sorted) {
+                CompletableFuture<?>[] dependencyImports = repositoryDependencies.get(csarBean.getSelf()).stream().map(imports::get)
+                        .toArray(CompletableFuture[]::new);
+                imports.put(csarBean.getSelf(), CompletableFuture.allOf(dependencyImports)
+                        .thenApplyAsync(aVoid -> importArchive(csarBean, archiveZipRoot, csarGitCheckoutLocation, gitHash), executorService));
             }
-            try {
-                // FIXME Add possibility to choose an workspace
-                ParsingResult<Csar> result = uploadService.upload(csarBean.getPath(), CSARSource.GIT, AlienConstants.GLOBAL_WORKSPACE_ID);
-                result.getContext().setFileName(archiveRepoPath + "/" + result.getContext().getFileName());
-                parsingResults.add(result);
-            } catch (ParsingException e) {
-                ParsingResult<Csar> failedResult = new ParsingResult<>();
-                failedResult.setContext(new ParsingContext(archiveRepoPath));
-                failedResult.getContext().setParsingErrors(e.getParsingErrors());
-                parsingResults.add(failedResult);
-                log.debug("Failed to import archive from git as it cannot be parsed", e);
-            } catch (AlreadyExistException | ToscaTypeAlreadyDefinedInOtherCSAR | CSARUsedInActiveDeployment e) {
-                ParsingResult<Csar> failedResult = new ParsingResult<>();
-                failedResult.setContext(new ParsingContext(archiveRepoPath));
-                failedResult.getContext().setParsingErrors(Lists.newArrayList(UploadExceptionUtil.parsingErrorFromException(e)));
-                parsingResults.add(failedResult);
+            for (CompletableFuture<ParsingResult<Csar>> archiveImport : imports.values()) {
+                parsingResults.add(archiveImport.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
+            throw e;
+        } finally {
+            executorService.shutdown();
         }
         return parsingResults;
+    }
 
+    private ParsingResult<Csar> importArchive(CsarDependenciesBean csarBean, Path archiveZipRoot, CsarGitCheckoutLocation csarGitCheckoutLocation,
+            String gitHash) {
+        String archiveRepoPath = archiveZipRoot.relativize(csarBean.getPath().getParent()).toString();
+        if (csarGitCheckoutLocation.getLastImportedHash() != null && csarGitCheckoutLocation.getLastImportedHash().equals(gitHash)
+                && csarService.get(csarBean.getSelf().getName(), csarBean.getSelf().getVersion()) != null) {
+            // no commit since last import and the archive still exist in the repo, so do not import
+            return alreadyImportParsingResult(archiveRepoPath);
+        }
+        long start = System.currentTimeMillis();
+        ParsingResult<Csar> result;
+        try {
+            // FIXME Add possibility to choose an workspace
+            result = uploadService.upload(csarBean.getPath(), CSARSource.GIT, AlienConstants.GLOBAL_WORKSPACE_ID);
+            result.getContext().setFileName(archiveRepoPath + "/" + result.getContext().getFileName());
+        } catch (ParsingException e) {
+            result = new ParsingResult<>();
+            result.setContext(new ParsingContext(archiveRepoPath));
+            result.getContext().setParsingErrors(e.getParsingErrors());
+            log.debug("Failed to import archive from git as it cannot be parsed", e);
+        } catch (AlreadyExistException | ToscaTypeAlreadyDefinedInOtherCSAR | CSARUsedInActiveDeployment e) {
+            result = new ParsingResult<>();
+            result.setContext(new ParsingContext(archiveRepoPath));
+            result.getContext().setParsingErrors(UploadExceptionUtil.parsingErrorsFromException(e));
+        }
+        result.getContext().setImportDuration(System.currentTimeMillis() - start);
+        log.debug("Imported archive {} from git in {} ms", archiveRepoPath, result.getContext().getImportDuration());
+        return result;
     }
 
     /**
-     * Just add a parsing info to the list stating that the archive is already imported and
+     * Create a parsing info stating that the archive is already imported.
      *
      * @param archivePath The path of the archive in the repo.
-     * @param parsingResults The list of parsing results.
+     * @return The parsing result of the archive.
      */
-    private void addAlreadyImportParsingResult(String archivePath, List<ParsingResult<Csar>> parsingResults) {
+    private ParsingResult<Csar> alreadyImportParsingResult(String archivePath) {
         ParsingResult<Csar> result = new ParsingResult<>();
         result.setContext(new ParsingContext(archivePath));
         result.getContext().setParsingErrors(Lists.newArrayList(new ParsingError(ParsingErrorLevel.INFO, ErrorCode.CSAR_ALREADY_INDEXED,
                 "No new commit since last import and archive already indexed.", null, null, null, null
 
         )));
-        parsingResults.add(result);
+        return result;
     }
 
     private List<CsarDependenciesBean> sort(Map<CSARDependency, CsarDependenciesBean> elements) {
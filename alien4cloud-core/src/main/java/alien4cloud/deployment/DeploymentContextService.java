@@ -28,7 +28,7 @@ public class DeploymentContextService {
      * @return A PaaSTopologyDeploymentContext matching the input topology.
      */
     public PaaSTopologyDeploymentContext buildTopologyDeploymentContext(SecretProviderConfigurationAndCredentials secretProviderConfigurationAndCredentials, Deployment deployment, Map<String, Location> locations, DeploymentTopology topology) {
-        PaaSTopology paaSTopology = topologyTreeBuilderService.buildPaaSTopology(topology);
+        PaaSTopology paaSTopology = topologyTreeBuilderService.getPaaSTopology(deployment.getId(), topology);
         PaaSTopologyDeploymentContext topologyDeploymentContext = new PaaSTopologyDeploymentContext();
         topologyDeploymentContext.setLocations(locations);
         topologyDeploymentContext.setDeployment(deployment);
@@ -1,27 +1,46 @@
 package alien4cloud.deployment;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
+import com.codahale.metrics.MetricRegistry;
 
-import lombok.SneakyThrows;
+import alien4cloud.deployment.exceptions.DeploymentLockTimeoutException;
+import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Provides read and write locks on deployments (identified by their orchestrator deployment id).
+ *
+ * Locks are reference counted: a lock exists only while at least one thread holds it or waits for it, so the number of locks is bounded by the number of
+ * threads and a lock can never be released while it is still used.
+ *
+ * Waiting and holding times are published as timers under the DeploymentLockService name (read.wait, read.hold, write.wait, write.hold) and lock acquisition
+ * timeouts are counted.
+ */
+@Slf4j
 @Service
 public class DeploymentLockService {
+    /** Registry of the application if any, metrics are kept local otherwise. */
+    @Autowired(required = false)
+    private MetricRegistry metricRegistry = new MetricRegistry();
+    /** Default maximum time to wait for a lock when trying to lock a deployment. */
+    @Value("${deployment_lock.try_lock_timeout_ms:30000}")
+    private long tryLockTimeoutMs = 30000;
 
-    /**
-     * This means that if a plugin deploy and then hold the lock more than 1 day, access to the deployment will not be protected anymore
-     * as the new thread which arrive will take a new lock (old lock entry has expired). But a good plugin should not hold a thread for 1 day, the bad ones will
-     * consume all the thread pool of the system.
-     */
-    private LoadingCache<String, ReadWriteLock> lockMap = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.DAYS)
-            .build(CacheLoader.from(input -> new ReentrantReadWriteLock()));
+    private final ConcurrentMap<String, DeploymentLock> lockMap = new ConcurrentHashMap<>();
+
+    private static class DeploymentLock {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        /** Number of threads holding or waiting for the lock, only updated while computing the entry of the lock map. */
+        private int references;
+    }
 
     public interface ActionWithLock<T> {
         T doAction();
@@ -29,20 +48,14 @@ public class DeploymentLockService {
 
     /**
      * Obtain a write lock on the given deployment and then do action, release the write lock at the end
-     * 
+     *
      * @param deploymentId id of the deployment
      * @param runnable the action to be executed that requires exclusive write lock
      * @param <T> the return type of the action
      * @return the result of the action
      */
-    @SneakyThrows
     public <T> T doWithDeploymentWriteLock(String deploymentId, ActionWithLock<T> runnable) {
-        try {
-            lockMap.get(deploymentId).writeLock().lock();
-            return runnable.doAction();
-        } finally {
-            lockMap.get(deploymentId).writeLock().unlock();
-        }
+        return doWithLock(deploymentId, true, -1, TimeUnit.MILLISECONDS, runnable);
     }
 
     /**
@@ -53,13 +66,106 @@ public class DeploymentLockService {
      * @param <T> the return type of the action
      * @return the result of the action
      */
-    @SneakyThrows
     public <T> T doWithDeploymentReadLock(String deploymentId, ActionWithLock<T> runnable) {
+        return doWithLock(deploymentId, false, -1, TimeUnit.MILLISECONDS, runnable);
+    }
+
+    /**
+     * Try to obtain a write lock on the given deployment within the given time and then do action, release the write lock at the end
+     *
+     * @param deploymentId id of the deployment
+     * @param timeout the maximum time to wait for the lock
+     * @param unit the time unit of the timeout
+     * @param runnable the action to be executed that requires exclusive write lock
+     * @param <T> the return type of the action
+     * @return the result of the action
+     * @throws DeploymentLockTimeoutException In case the lock cannot be obtained within the given time.
+     */
+    public <T> T tryWithDeploymentWriteLock(String deploymentId, long timeout, TimeUnit unit, ActionWithLock<T> runnable) {
+        return doWithLock(deploymentId, true, timeout, unit, runnable);
+    }
+
+    /**
+     * Try to obtain a read lock on the given deployment within the given time and then do action, release the read lock at the end
+     *
+     * @param deploymentId id of the deployment
+     * @param timeout the maximum time to wait for the lock
+     * @param unit the time unit of the timeout
+     * @param runnable the action to be executed which requires a read lock
+     * @param <T> the return type of the action
+     * @return the result of the action
+     * @throws DeploymentLockTimeoutException In case the lock cannot be obtained within the given time.
+     */
+    public <T> T tryWithDeploymentReadLock(String deploymentId, long timeout, TimeUnit unit, ActionWithLock<T> runnable) {
+        return doWithLock(deploymentId, false, timeout, unit, runnable);
+    }
+
+    /**
+     * Try to obtain a read lock on the given deployment within the configured time (deployment_lock.try_lock_timeout_ms) and then do action, release the
+     * read lock at the end
+     *
+     * @param deploymentId id of the deployment
+     * @param runnable the action to be executed which requires a read lock
+     * @param <T> the return type of the action
+     * @return the result of the action
+     * @throws DeploymentLockTimeoutException In case the lock cannot be obtained within the configured time.
+     */
+    public <T> T tryWithDeploymentReadLock(String deploymentId, ActionWithLock<T> runnable) {
+        return doWithLock(deploymentId, false, tryLockTimeoutMs, TimeUnit.MILLISECONDS, runnable);
+    }
+
+    private <T> T doWithLock(String deploymentId, boolean write, long timeout, TimeUnit unit, ActionWithLock<T> runnable) {
+        String lockType = write ? "write" : "read";
+        DeploymentLock deploymentLock = lockMap.compute(deploymentId, (id, existingLock) -> {
+            DeploymentLock newLock = existingLock == null ? new DeploymentLock() : existingLock;
+            newLock.references++;
+            return newLock;
+        });
         try {
-            lockMap.get(deploymentId).readLock().lock();
-            return runnable.doAction();
+            Lock lock = write ? deploymentLock.lock.writeLock() : deploymentLock.lock.readLock();
+            long waitStart = System.nanoTime();
+            acquire(lock, deploymentId, lockType, timeout, unit);
+            long holdStart = System.nanoTime();
+            metricRegistry.timer(MetricRegistry.name(DeploymentLockService.class, lockType, "wait")).update(holdStart - waitStart, TimeUnit.NANOSECONDS);
+            try {
+                return runnable.doAction();
+            } finally {
+                lock.unlock();
+                long holdTime = System.nanoTime() - holdStart;
+                metricRegistry.timer(MetricRegistry.name(DeploymentLockService.class, lockType, "hold")).update(holdTime, TimeUnit.NANOSECONDS);
+                if (log.isDebugEnabled()) {
+                    log.debug("Deployment <{}> {} lock waited for {} ms and held for {} ms", deploymentId, lockType,
+                            TimeUnit.NANOSECONDS.toMillis(holdStart - waitStart), TimeUnit.NANOSECONDS.toMillis(holdTime));
+                }
+            }
         } finally {
-            lockMap.get(deploymentId).readLock().unlock();
+            lockMap.computeIfPresent(deploymentId, (id, existingLock) -> --existingLock.references == 0 ? null : existingLock);
+        }
+    }
+
+    private void acquire(Lock lock, String deploymentId, String lockType, long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            lock.lock();
+            return;
+        }
+        boolean acquired;
+        try {
+            acquired = lock.tryLock(timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DeploymentLockTimeoutException("Interrupted while waiting for the " + lockType + " lock of deployment <" + deploymentId + ">", e);
         }
+        if (!acquired) {
+            metricRegistry.counter(MetricRegistry.name(DeploymentLockService.class, lockType, "timeouts")).inc();
+            throw new DeploymentLockTimeoutException("Unable to obtain the " + lockType + " lock of deployment <" + deploymentId + "> within "
+                    + unit.toMillis(timeout) + " ms, an operation is in progress on the deployment.");
+        }
+    }
+
+    /**
+     * @return The number of deployment locks currently held or waited for.
+     */
+    int getLockCount() {
+        return lockMap.size();
     }
 }
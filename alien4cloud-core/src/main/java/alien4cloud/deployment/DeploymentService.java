@@ -28,6 +28,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static alien4cloud.dao.FilterUtil.fromKeyValueCouples;
 
@@ -54,7 +55,9 @@ public class DeploymentService {
      * @return Array of all active deployments.
      */
     public Deployment[] getActiveDeployments() {
-        return alienDao.buildQuery(Deployment.class).prepareSearch().setFilters(fromKeyValueCouples("endDate", null)).search(0, Integer.MAX_VALUE).getData();
+        try (Stream<Deployment> deployments = alienDao.stream(Deployment.class, fromKeyValueCouples("endDate", null))) {
+            return deployments.toArray(Deployment[]::new);
+        }
     }
 
     /**
@@ -176,16 +179,16 @@ public class DeploymentService {
      * @return active deployment if exist or the last, null if the application environment has not been deployed
      */
     public Deployment getDeployment(String applicationEnvironmentId) {
-        Map<String, String[]> activeDeploymentFilters = MapUtil.newHashMap(new String[] { "environmentId" },
+        Deployment activeDeployment = getActiveDeployment(applicationEnvironmentId);
+        if (activeDeployment != null) {
+            return activeDeployment;
+        }
+        // no active deployment, get the one that ended last
+        Map<String, String[]> deploymentFilters = MapUtil.newHashMap(new String[] { "environmentId" },
                 new String[][] { new String[] { applicationEnvironmentId } });
-        GetMultipleDataResult<Deployment> dataResult = alienDao.search(Deployment.class, null, activeDeploymentFilters, null, null, 0, Integer.MAX_VALUE,
-                "endDate", true);
+        GetMultipleDataResult<Deployment> dataResult = alienDao.search(Deployment.class, null, deploymentFilters, null, null, 0, 1, "endDate", true);
         if (dataResult.getData() != null && dataResult.getData().length > 0) {
-            if (dataResult.getData()[dataResult.getData().length - 1].getEndDate() == null) {
-                return dataResult.getData()[dataResult.getData().length - 1];
-            } else {
-                return dataResult.getData()[0];
-            }
+            return dataResult.getData()[0];
         }
         return null;
     }
@@ -266,8 +269,9 @@ public class DeploymentService {
     public Deployment[] getOrchestratorActiveDeployments(String orchestratorId) {
         Map<String, String[]> activeDeploymentFilters = MapUtil.newHashMap(new String[] { "orchestratorId", "endDate" },
                 new String[][] { new String[] { orchestratorId }, new String[] { null } });
-        GetMultipleDataResult<Deployment> dataResult = alienDao.search(Deployment.class, null, activeDeploymentFilters, Integer.MAX_VALUE);
-        return dataResult.getData();
+        try (Stream<Deployment> deployments = alienDao.stream(Deployment.class, activeDeploymentFilters)) {
+            return deployments.toArray(Deployment[]::new);
+        }
     }
 
     /**
@@ -278,15 +282,9 @@ public class DeploymentService {
      */
     public Map<String, Set<String>> getOrchestratorDeploymentIdsByOrchestratorId(String applicationEnvironmentId) {
         Map<String, Set<String>> result = new HashMap<>();
-        GetMultipleDataResult<Deployment> dataResult = alienDao.search(Deployment.class, null,
-                FilterUtil.fromKeyValueCouples("environmentId", applicationEnvironmentId), Integer.MAX_VALUE);
-        if (dataResult.getData() != null && dataResult.getData().length > 0) {
-            for (Deployment deployment : dataResult.getData()) {
-                if (!result.containsKey(deployment.getOrchestratorId())) {
-                    result.put(deployment.getOrchestratorId(), new HashSet<String>());
-                }
-                result.get(deployment.getOrchestratorId()).add(deployment.getOrchestratorDeploymentId());
-            }
+        try (Stream<Deployment> deployments = alienDao.stream(Deployment.class, FilterUtil.fromKeyValueCouples("environmentId", applicationEnvironmentId))) {
+            deployments.forEach(deployment -> result.computeIfAbsent(deployment.getOrchestratorId(), orchestratorId -> new HashSet<>())
+                    .add(deployment.getOrchestratorDeploymentId()));
         }
         return result;
     }
@@ -10,6 +10,7 @@ import org.elasticsearch.index.query.FilterBuilders;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.util.stream.Stream;
 
 /**
  * Manage {@link Task} operations.
@@ -34,6 +35,16 @@ public class TaskService {
         return alienDao.facetedSearch(Task.class, query, null, filterBuilder, null, from, size, "scheduleDate", true);
     }
 
+    /**
+     * Get all the {@link Task}s of an execution, most recently scheduled first.
+     *
+     * @param executionId Id of the execution for which to get tasks.
+     * @return A stream over the tasks that must be closed once consumed.
+     */
+    public Stream<Task> streamTasks(String executionId) {
+        return alienDao.buildQuery(Task.class).setFilters(buildFilters(executionId)).prepareSearch().setFieldSort("scheduleDate", true).stream();
+    }
+
     private FilterBuilder buildFilters(String executionId) {
         FilterBuilder filterBuilder = null;
         if (executionId != null) {
@@ -10,6 +10,7 @@ import org.elasticsearch.index.query.FilterBuilders;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
+import java.util.stream.Stream;
 
 /**
  * Manage task operations.
@@ -34,6 +35,16 @@ public class WorkflowStepInstanceService {
         return alienDao.facetedSearch(WorkflowStepInstance.class, query, null, filterBuilder, null, from, size);
     }
 
+    /**
+     * Get all the step instances of an execution.
+     *
+     * @param executionId Id of the execution for which to get step instances.
+     * @return A stream over the step instances that must be closed once consumed.
+     */
+    public Stream<WorkflowStepInstance> streamInstances(String executionId) {
+        return alienDao.stream(WorkflowStepInstance.class, null, buildFilters(executionId));
+    }
+
     private FilterBuilder buildFilters(String executionId) {
         FilterBuilder filterBuilder = null;
         if (executionId != null) {
@@ -0,0 +1,17 @@
+package alien4cloud.deployment.exceptions;
+
+import alien4cloud.exception.TechnicalException;
+
+/**
+ * Thrown when a lock on a deployment cannot be obtained in time because another operation is in progress on the deployment.
+ */
+public class DeploymentLockTimeoutException extends TechnicalException {
+
+    public DeploymentLockTimeoutException(String message) {
+        super(message);
+    }
+
+    public DeploymentLockTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
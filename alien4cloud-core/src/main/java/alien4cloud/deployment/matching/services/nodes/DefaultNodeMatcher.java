@@ -15,11 +15,17 @@ import org.alien4cloud.tosca.normative.constants.NormativeCapabilityTypes;
 import org.alien4cloud.tosca.utils.ToscaTypeUtils;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.rits.cloning.Cloner;
+
 import alien4cloud.deployment.matching.plugins.INodeMatcherPlugin;
+import alien4cloud.deployment.matching.services.nodes.LocationMatchingIndex.Candidate;
 import alien4cloud.model.deployment.matching.MatchingConfiguration;
 import alien4cloud.model.deployment.matching.MatchingFilterDefinition;
 import alien4cloud.model.orchestrators.locations.LocationResourceTemplate;
 import alien4cloud.model.orchestrators.locations.LocationResources;
+import alien4cloud.security.AbstractSecurityEnabledResource;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -28,6 +34,8 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @Component
 public class DefaultNodeMatcher extends AbstractTemplateMatcher<LocationResourceTemplate, NodeTemplate, NodeType> implements INodeMatcherPlugin {
+    private final Cloner cloner = new Cloner();
+
     /**
      * Match a node against a location.
      *
@@ -41,15 +49,102 @@ public class DefaultNodeMatcher extends AbstractTemplateMatcher<LocationResource
                 matchingConfigurations);
     }
 
+    /**
+     * Build a matching candidate, the filters of its properties and capabilities are built once for all the templates to match.
+     *
+     * @param resourceTemplate The location resource or the service to match.
+     * @param securedResource The resource on which authorizations are defined.
+     * @param managingEnvironmentId The id of the environment that manages the service if any.
+     * @param index The index of the location, its resources must contain the types of the candidate.
+     * @return The candidate or null if its type is unknown.
+     */
+    Candidate candidate(LocationResourceTemplate resourceTemplate, AbstractSecurityEnabledResource securedResource, String managingEnvironmentId,
+            LocationMatchingIndex index) {
+        NodeType candidateType = index.getLocationResources().getNodeTypes().get(resourceTemplate.getTemplate().getType());
+        if (candidateType == null) {
+            log.warn("Type <{}> of location resource <{}> is not defined, it cannot be matched.", resourceTemplate.getTemplate().getType(),
+                    resourceTemplate.getName());
+            return null;
+        }
+        MatchingConfiguration matchingConfiguration = getMatchingConfiguration(candidateType, safe(index.getMatchingConfigurations()));
+        PropertiesMatchFilter propertiesFilter = PropertiesMatchFilter.compile(resourceTemplate.getTemplate().getProperties(), candidateType.getProperties(),
+                matchingConfiguration == null ? null : matchingConfiguration.getProperties(), cloner);
+        Map<String, PropertiesMatchFilter> capabilitiesFilters = Maps.newHashMap();
+        for (Entry<String, Capability> candidateCapability : safe(resourceTemplate.getTemplate().getCapabilities()).entrySet()) {
+            CapabilityType capabilityType = index.getLocationResources().getCapabilityTypes().get(candidateCapability.getValue().getType());
+            if (propertiesFilter == null || capabilityType == null) {
+                // not compiled, the candidate is matched as any other one
+                propertiesFilter = null;
+                break;
+            }
+            if (!ToscaTypeUtils.isOfType(capabilityType, NormativeCapabilityTypes.SCALABLE)) {
+                PropertiesMatchFilter capabilityFilter = PropertiesMatchFilter.compile(candidateCapability.getValue().getProperties(),
+                        capabilityType.getProperties(), getConfiguredCapabilityFilters(matchingConfiguration, candidateCapability.getKey()), cloner);
+                if (capabilityFilter == null) {
+                    propertiesFilter = null;
+                    break;
+                }
+                capabilitiesFilters.put(candidateCapability.getKey(), capabilityFilter);
+            }
+        }
+        return new Candidate(resourceTemplate, candidateType, securedResource, managingEnvironmentId, matchingConfiguration, propertiesFilter,
+                capabilitiesFilters);
+    }
+
+    /**
+     * Match a node against candidates of a location.
+     *
+     * @param nodeTemplate The node template to match.
+     * @param nodeType The node type that defines the type of the node template to match.
+     * @param candidates The candidates of the location whose type is or derives from the node template type.
+     * @param locationResources The resources of the location that contains the types of the candidates.
+     * @return The location resource templates of the candidates that can substitute the node.
+     */
+    List<LocationResourceTemplate> matchNode(NodeTemplate nodeTemplate, NodeType nodeType, List<Candidate> candidates,
+            LocationResources locationResources) {
+        List<LocationResourceTemplate> matchingResults = Lists.newArrayList();
+        for (Candidate candidate : candidates) {
+            // Only abstract node type can be match against a service
+            if (!nodeType.isAbstract() && candidate.getResourceTemplate().isService()) {
+                continue;
+            }
+            boolean valid;
+            if (candidate.getPropertiesFilter() == null) {
+                valid = validateTemplateMatch(nodeTemplate, candidate.getResourceTemplate(), candidate.getType(), locationResources,
+                        candidate.getMatchingConfiguration());
+            } else {
+                valid = candidate.getPropertiesFilter().matches(nodeTemplate.getProperties()) && isValidCapabilitiesMatch(nodeTemplate, candidate);
+            }
+            if (valid) {
+                matchingResults.add(candidate.getResourceTemplate());
+            }
+        }
+        return matchingResults;
+    }
+
+    private boolean isValidCapabilitiesMatch(NodeTemplate nodeTemplate, Candidate candidate) {
+        for (Entry<String, PropertiesMatchFilter> capabilityFilter : candidate.getCapabilitiesFilters().entrySet()) {
+            Capability templateCapability = safe(nodeTemplate.getCapabilities()).get(capabilityFilter.getKey());
+            if (templateCapability != null && !capabilityFilter.getValue().matches(templateCapability.getProperties())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<String, List<IMatchPropertyConstraint>> getConfiguredCapabilityFilters(MatchingConfiguration matchingConfiguration, String capabilityName) {
+        MatchingFilterDefinition configuredFilterDefinition = matchingConfiguration == null ? null
+                : safe(matchingConfiguration.getCapabilities()).get(capabilityName);
+        return configuredFilterDefinition == null ? null : configuredFilterDefinition.getProperties();
+    }
+
     @Override
     protected boolean typeSpecificMatching(NodeTemplate abstractTemplate, LocationResourceTemplate candidate, NodeType candidateType,
             LocationResources locationResources, MatchingConfiguration matchingConfiguration) {
 
         for (Entry<String, Capability> candidateCapability : safe(candidate.getTemplate().getCapabilities()).entrySet()) {
-            MatchingFilterDefinition configuredFilterDefinition = matchingConfiguration == null ? null
-                    : safe(matchingConfiguration.getCapabilities()).get(candidateCapability.getKey());
-            Map<String, List<IMatchPropertyConstraint>> configuredFilters = configuredFilterDefinition == null ? null
-                    : configuredFilterDefinition.getProperties();
+            Map<String, List<IMatchPropertyConstraint>> configuredFilters = getConfiguredCapabilityFilters(matchingConfiguration,
+                    candidateCapability.getKey());
             CapabilityType capabilityType = locationResources.getCapabilityTypes().get(candidateCapability.getValue().getType());
 
             // Ignore scalable capabiltiy for matching.
@@ -0,0 +1,106 @@
+package alien4cloud.deployment.matching.services.nodes;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.types.NodeType;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import alien4cloud.model.deployment.matching.MatchingConfiguration;
+import alien4cloud.model.orchestrators.locations.LocationResourceTemplate;
+import alien4cloud.model.orchestrators.locations.LocationResources;
+import alien4cloud.security.AbstractSecurityEnabledResource;
+import lombok.Getter;
+
+/**
+ * Matching candidates of a location, including the services available on the location, indexed by their type and all the types they derive from.
+ *
+ * The index does not depend on the environment for which the matching is performed and does not contain the permissions of the candidates, the resources on
+ * which they are defined must be loaded to check authorizations on the candidates.
+ */
+class LocationMatchingIndex {
+    /** Resources of the location, the node and capability types of the services are added to the location ones. */
+    @Getter
+    private final LocationResources locationResources;
+    /** Types managed by the location resources, the types of a service are managed only when the service is available for the matching. */
+    @Getter
+    private final Set<String> locationTypes;
+    @Getter
+    private final Map<String, MatchingConfiguration> matchingConfigurations;
+    /** The services available on the location. */
+    @Getter
+    private final List<Candidate> services = Lists.newArrayList();
+    private final Map<String, List<Candidate>> candidatesByType = Maps.newHashMap();
+
+    LocationMatchingIndex(LocationResources locationResources, Set<String> locationTypes, Map<String, MatchingConfiguration> matchingConfigurations) {
+        this.locationResources = locationResources;
+        this.locationTypes = locationTypes;
+        this.matchingConfigurations = matchingConfigurations;
+    }
+
+    /**
+     * Add a candidate to the index, candidates of a type are kept in the order they are added.
+     *
+     * @param candidate The candidate to add.
+     */
+    void add(Candidate candidate) {
+        Set<String> types = Sets.newLinkedHashSet();
+        types.add(candidate.getType().getElementId());
+        types.addAll(safe(candidate.getType().getDerivedFrom()));
+        for (String type : types) {
+            candidatesByType.computeIfAbsent(type, key -> Lists.newArrayList()).add(candidate);
+        }
+        if (candidate.getResourceTemplate().isService()) {
+            services.add(candidate);
+        }
+    }
+
+    /**
+     * Get the candidates whose type is or derives from the given type.
+     *
+     * @param type The type of the template to match.
+     * @return The candidates in the order of the location resources.
+     */
+    List<Candidate> getCandidates(String type) {
+        return candidatesByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    /**
+     * A location resource or service with everything that does not depend on the template to match.
+     */
+    @Getter
+    static class Candidate {
+        private final LocationResourceTemplate resourceTemplate;
+        private final NodeType type;
+        /** Class of the resource on which authorizations are defined, the service resource for a service. */
+        private final Class<? extends AbstractSecurityEnabledResource> securedResourceClass;
+        /** Id of the resource on which authorizations are defined. */
+        private final String securedResourceId;
+        /** Id of the environment that manages the service, a managed service cannot substitute a node of its own environment. */
+        private final String managingEnvironmentId;
+        private final MatchingConfiguration matchingConfiguration;
+        /** Filter on the root properties, null if the candidate is not compiled and must be matched as any other candidate. */
+        private final PropertiesMatchFilter propertiesFilter;
+        /** Filters of the capabilities to match by capability name. */
+        private final Map<String, PropertiesMatchFilter> capabilitiesFilters;
+
+        Candidate(LocationResourceTemplate resourceTemplate, NodeType type, AbstractSecurityEnabledResource securedResource, String managingEnvironmentId,
+                MatchingConfiguration matchingConfiguration, PropertiesMatchFilter propertiesFilter, Map<String, PropertiesMatchFilter> capabilitiesFilters) {
+            this.resourceTemplate = resourceTemplate;
+            this.type = type;
+            this.securedResourceClass = securedResource.getClass();
+            this.securedResourceId = securedResource.getId();
+            this.managingEnvironmentId = managingEnvironmentId;
+            this.matchingConfiguration = matchingConfiguration;
+            this.propertiesFilter = propertiesFilter;
+            this.capabilitiesFilters = capabilitiesFilters;
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package alien4cloud.deployment.matching.services.nodes;
 
-import java.util.Collection;
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
+import javax.annotation.Resource;
 import javax.inject.Inject;
 
+import org.alien4cloud.alm.events.ServiceEvent;
 import org.alien4cloud.alm.service.ServiceResourceService;
+import org.alien4cloud.alm.service.events.ServiceChangedEvent;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveDeleted;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
 import org.alien4cloud.tosca.catalog.index.IToscaTypeSearchService;
 import org.alien4cloud.tosca.model.CSARDependency;
 import org.alien4cloud.tosca.model.Csar;
@@ -17,32 +26,52 @@ import org.alien4cloud.tosca.model.templates.NodeTemplate;
 import org.alien4cloud.tosca.model.templates.ServiceNodeTemplate;
 import org.alien4cloud.tosca.model.types.CapabilityType;
 import org.alien4cloud.tosca.model.types.NodeType;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.rits.cloning.Cloner;
 
+import alien4cloud.application.ApplicationEnvironmentService;
 import alien4cloud.component.ICSARRepositorySearchService;
-import alien4cloud.deployment.matching.plugins.INodeMatcherPlugin;
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.deployment.matching.services.nodes.LocationMatchingIndex.Candidate;
+import alien4cloud.events.LocationResourceEvent;
 import alien4cloud.exception.InvalidArgumentException;
+import alien4cloud.model.application.ApplicationEnvironment;
 import alien4cloud.model.deployment.matching.MatchingConfiguration;
 import alien4cloud.model.orchestrators.locations.Location;
 import alien4cloud.model.orchestrators.locations.LocationResourceTemplate;
 import alien4cloud.model.orchestrators.locations.LocationResources;
 import alien4cloud.model.service.ServiceResource;
+import alien4cloud.orchestrators.locations.events.AfterLocationDeleted;
+import alien4cloud.orchestrators.locations.events.OnLocationResourceChangeEvent;
 import alien4cloud.orchestrators.locations.services.ILocationResourceService;
 import alien4cloud.orchestrators.locations.services.LocationMatchingConfigurationService;
 import alien4cloud.orchestrators.locations.services.LocationSecurityService;
 import alien4cloud.security.AbstractSecurityEnabledResource;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Node matcher service will filter location resources for all substitutable nodes of the topology. It will return only location resources that can substitute a
  * node.
+ *
+ * The resources and services of the locations are indexed by type and kept in memory until they are updated, only the candidates of the type of a node are
+ * then checked for authorization and matched against it. Permissions may be granted or revoked at any time, they are loaded on every matching.
  */
+@Slf4j
 @Service
 public class NodeMatcherService {
+    /** Maximum number of locations for which the matching index is kept in memory. */
+    private static final int MAX_CACHED_LOCATIONS = 20;
+
     @Inject
     private DefaultNodeMatcher defaultNodeMatcher;
     @Inject
@@ -58,37 +87,59 @@ public class NodeMatcherService {
     private IToscaTypeSearchService toscaTypeSearchService;
     @Inject
     private ICSARRepositorySearchService csarRepoSearchService;
+    @Inject
+    private ApplicationEnvironmentService applicationEnvironmentService;
+    @Resource(name = "alien-es-dao")
+    private IGenericSearchDAO alienDAO;
 
-    private INodeMatcherPlugin getNodeMatcherPlugin() {
-        // TODO manage plugins
-        return defaultNodeMatcher;
-    }
+    @Value("${features.location_matching_index_cache:#{true}}")
+    private boolean indexCacheEnabled;
+
+    private final ObjectMapper fingerprintMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final Cloner cloner = new Cloner();
+    /** Matching index per location id. */
+    private final Map<String, CachedIndex> indexes = new LinkedHashMap<String, CachedIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedIndex> eldest) {
+            return size() > MAX_CACHED_LOCATIONS;
+        }
+    };
+    /** Incremented on every invalidation so that an index built from outdated resources is not cached. */
+    private long cacheGeneration;
 
+    /**
+     * Match the nodes of a topology against the resources and services of a location.
+     *
+     * @param nodesTypes The types of the nodes to match.
+     * @param nodesToMatch The nodes to match by id.
+     * @param location The location against which to match the nodes.
+     * @param environmentId The id of the environment for which the nodes are matched, only the resources authorized for the environment are matched.
+     * @return The location resource templates that can substitute a node by node id, only for the nodes whose types are managed by the location.
+     */
     public Map<String, List<LocationResourceTemplate>> match(Map<String, NodeType> nodesTypes, Map<String, NodeTemplate> nodesToMatch, Location location,
             String environmentId) {
         Map<String, List<LocationResourceTemplate>> matchingResult = Maps.newHashMap();
 
-        // fetch location resources
-        LocationResources locationResources = locationResourceService.getLocationResources(location);
-        // Authorization filtering of location resources
-        filterOnAuthorization(locationResources.getNodeTemplates(), environmentId);
-
-        // fetch service resources
-        List<ServiceResource> services = serviceResourceService.searchByLocation(location.getId());
-        // self filtering: remove managed service linked to this location
-        filterSelfManagedService(services, environmentId);
-        // Authorization filtering of location resources
-        filterOnAuthorization(services, environmentId);
-        // from serviceResource to locationResource
-        populateLocationResourcesWithServiceResource(locationResources, services, location.getId());
+        LocationMatchingIndex index = getIndex(location);
+        // Authorization filtering of location resources and services is checked once per candidate of the nodes types.
+        ApplicationEnvironment environment = environmentId == null ? null : applicationEnvironmentService.getOrFail(environmentId);
+        Set<Candidate> candidatesToCheck = Sets.newIdentityHashSet();
+        candidatesToCheck.addAll(index.getServices());
+        for (NodeTemplate nodeTemplate : nodesToMatch.values()) {
+            candidatesToCheck.addAll(index.getCandidates(nodeTemplate.getType()));
+        }
+        Map<Class<?>, Map<String, AbstractSecurityEnabledResource>> securedResources = loadSecuredResources(candidatesToCheck);
+        Map<Candidate, Boolean> authorizations = Maps.newIdentityHashMap();
+        Predicate<Candidate> available = candidate -> authorizations.computeIfAbsent(candidate, key -> isAvailable(key, securedResources, environment));
 
-        Map<String, MatchingConfiguration> matchingConfigurations = locationMatchingConfigurationService.getMatchingConfiguration(location);
-        Set<String> typesManagedByLocation = Sets.newHashSet();
-        for (NodeType nodeType : locationResources.getNodeTypes().values()) {
-            typesManagedByLocation.add(nodeType.getElementId());
-            typesManagedByLocation.addAll(nodeType.getDerivedFrom());
+        Set<String> typesManagedByLocation = Sets.newHashSet(index.getLocationTypes());
+        for (Candidate service : index.getServices()) {
+            if (available.test(service)) {
+                typesManagedByLocation.addAll(service.getResourceTemplate().getTypes());
+            }
         }
-        INodeMatcherPlugin nodeMatcherPlugin = getNodeMatcherPlugin();
+        // matched templates are copies of the indexed ones, a template matching several nodes is the same instance for all of them.
+        Map<LocationResourceTemplate, LocationResourceTemplate> copies = Maps.newIdentityHashMap();
         for (Map.Entry<String, NodeTemplate> nodeTemplateEntry : nodesToMatch.entrySet()) {
             String nodeTemplateId = nodeTemplateEntry.getKey();
             NodeTemplate nodeTemplate = nodeTemplateEntry.getValue();
@@ -97,18 +148,147 @@ public class NodeMatcherService {
                 if (nodeTemplateType == null) {
                     throw new InvalidArgumentException("The given node types map must contain the type of the node template");
                 }
-                matchingResult.put(nodeTemplateId, nodeMatcherPlugin.matchNode(nodeTemplate, nodeTemplateType, locationResources, matchingConfigurations));
+                List<Candidate> candidates = index.getCandidates(nodeTemplate.getType()).stream().filter(available).collect(Collectors.toList());
+                List<LocationResourceTemplate> matches = defaultNodeMatcher.matchNode(nodeTemplate, nodeTemplateType, candidates, index.getLocationResources());
+                matchingResult.put(nodeTemplateId,
+                        matches.stream().map(match -> copies.computeIfAbsent(match, cloner::deepClone)).collect(Collectors.toList()));
             }
         }
         return matchingResult;
     }
 
-    private void filterSelfManagedService(List<ServiceResource> services, String environmentId) {
-        services.removeIf(serviceResource -> environmentId != null && Objects.equals(serviceResource.getEnvironmentId(), environmentId));
+    private boolean isAvailable(Candidate candidate, Map<Class<?>, Map<String, AbstractSecurityEnabledResource>> securedResources,
+            ApplicationEnvironment environment) {
+        // self filtering: remove managed service linked to this location
+        if (environment != null && Objects.equals(candidate.getManagingEnvironmentId(), environment.getId())) {
+            return false;
+        }
+        AbstractSecurityEnabledResource securedResource = securedResources.get(candidate.getSecuredResourceClass()).get(candidate.getSecuredResourceId());
+        // a resource deleted since the index has been built is not available anymore
+        return securedResource != null && locationSecurityService.isAuthorised(securedResource, environment);
+    }
+
+    /**
+     * Load the resources on which the authorizations of candidates are defined, with one request per resource class.
+     *
+     * @param candidates The candidates for which to load the resources.
+     * @return The current resources by class and id.
+     */
+    private Map<Class<?>, Map<String, AbstractSecurityEnabledResource>> loadSecuredResources(Set<Candidate> candidates) {
+        Map<Class<? extends AbstractSecurityEnabledResource>, Set<String>> idsByClass = Maps.newHashMap();
+        for (Candidate candidate : candidates) {
+            idsByClass.computeIfAbsent(candidate.getSecuredResourceClass(), key -> Sets.newHashSet()).add(candidate.getSecuredResourceId());
+        }
+        Map<Class<?>, Map<String, AbstractSecurityEnabledResource>> securedResources = Maps.newHashMap();
+        for (Map.Entry<Class<? extends AbstractSecurityEnabledResource>, Set<String>> idsEntry : idsByClass.entrySet()) {
+            Map<String, AbstractSecurityEnabledResource> resources = Maps.newHashMap();
+            String[] ids = idsEntry.getValue().toArray(new String[idsEntry.getValue().size()]);
+            for (AbstractSecurityEnabledResource resource : alienDAO.findByIds(idsEntry.getKey(), ids)) {
+                resources.put(resource.getId(), resource);
+            }
+            securedResources.put(idsEntry.getKey(), resources);
+        }
+        return securedResources;
     }
 
-    private void filterOnAuthorization(Collection<? extends AbstractSecurityEnabledResource> securedResources, String environmentId) {
-        securedResources.removeIf(securedResource -> !locationSecurityService.isAuthorised(securedResource, environmentId));
+    private LocationMatchingIndex getIndex(Location location) {
+        Map<String, MatchingConfiguration> matchingConfigurations = locationMatchingConfigurationService.getMatchingConfiguration(location);
+        String matchingConfigurationsFingerprint = fingerprint(matchingConfigurations);
+        if (!indexCacheEnabled || matchingConfigurationsFingerprint == null) {
+            return buildIndex(location, matchingConfigurations);
+        }
+        CachedIndex cached;
+        long generation;
+        synchronized (indexes) {
+            cached = indexes.get(location.getId());
+            generation = cacheGeneration;
+        }
+        if (cached != null && Objects.equals(cached.locationLastUpdateDate, location.getLastUpdateDate())
+                && cached.matchingConfigurationsFingerprint.equals(matchingConfigurationsFingerprint)) {
+            return cached.index;
+        }
+        LocationMatchingIndex index = buildIndex(location, matchingConfigurations);
+        synchronized (indexes) {
+            if (generation == cacheGeneration) {
+                indexes.put(location.getId(), new CachedIndex(location.getLastUpdateDate(), matchingConfigurationsFingerprint, index));
+            }
+        }
+        return index;
+    }
+
+    private LocationMatchingIndex buildIndex(Location location, Map<String, MatchingConfiguration> matchingConfigurations) {
+        // fetch location resources
+        LocationResources locationResources = locationResourceService.getLocationResources(location);
+        Set<String> locationTypes = Sets.newHashSet();
+        for (NodeType nodeType : locationResources.getNodeTypes().values()) {
+            locationTypes.add(nodeType.getElementId());
+            locationTypes.addAll(nodeType.getDerivedFrom());
+        }
+        // fetch service resources
+        List<ServiceResource> services = serviceResourceService.searchByLocation(location.getId());
+        // from serviceResource to locationResource
+        Map<LocationResourceTemplate, ServiceResource> servicesByTemplate = populateLocationResourcesWithServiceResource(locationResources, services,
+                location.getId());
+
+        LocationMatchingIndex index = new LocationMatchingIndex(locationResources, locationTypes, matchingConfigurations);
+        for (LocationResourceTemplate resourceTemplate : locationResources.getNodeTemplates()) {
+            ServiceResource serviceResource = servicesByTemplate.get(resourceTemplate);
+            Candidate candidate = serviceResource == null ? defaultNodeMatcher.candidate(resourceTemplate, resourceTemplate, null, index)
+                    : defaultNodeMatcher.candidate(resourceTemplate, serviceResource, serviceResource.getEnvironmentId(), index);
+            if (candidate != null) {
+                index.add(candidate);
+            }
+        }
+        return index;
+    }
+
+    private String fingerprint(Map<String, MatchingConfiguration> matchingConfigurations) {
+        try {
+            return Hashing.sha1().hashBytes(fingerprintMapper.writeValueAsBytes(matchingConfigurations)).toString();
+        } catch (IOException e) {
+            log.debug("Unable to fingerprint matching configurations, location resources are not cached", e);
+            return null;
+        }
+    }
+
+    /**
+     * Forget about the location resources of a location when they are updated.
+     */
+    @EventListener
+    public void onLocationResourceChange(OnLocationResourceChangeEvent event) {
+        evict(event.getLocationId());
+    }
+
+    @EventListener
+    public void onLocationResourceEvent(LocationResourceEvent event) {
+        if (event.getLocation() == null) {
+            clearCache();
+        } else {
+            evict(event.getLocation().getId());
+        }
+    }
+
+    @EventListener
+    public void onLocationDeleted(AfterLocationDeleted event) {
+        evict(event.getLocationId());
+    }
+
+    /**
+     * Forget about all the location resources. Types of the catalog and services may be used by any location.
+     */
+    @EventListener(classes = { AfterArchiveIndexed.class, AfterArchiveDeleted.class, ServiceEvent.class, ServiceChangedEvent.class })
+    public void clearCache() {
+        synchronized (indexes) {
+            indexes.clear();
+            cacheGeneration++;
+        }
+    }
+
+    private void evict(String locationId) {
+        synchronized (indexes) {
+            indexes.remove(locationId);
+            cacheGeneration++;
+        }
     }
 
     /**
@@ -116,8 +296,16 @@ public class NodeMatcherService {
      * matching purpose.
      *
      * TODO: Improve this ugly code to put ServiceResource in LocationResourceTemplates.
+     *
+     * @return The services by location resource template.
      */
-    private void populateLocationResourcesWithServiceResource(LocationResources locationResources, List<ServiceResource> services, String locationId) {
+    private Map<LocationResourceTemplate, ServiceResource> populateLocationResourcesWithServiceResource(LocationResources locationResources,
+            List<ServiceResource> services, String locationId) {
+        Map<LocationResourceTemplate, ServiceResource> servicesByTemplate = Maps.newIdentityHashMap();
+        // services often share their types, they are fetched only once
+        Map<String, NodeType> serviceTypes = Maps.newHashMap();
+        Map<String, Csar> archives = Maps.newHashMap();
+        Map<String, CapabilityType> capabilityTypes = Maps.newHashMap();
         for (ServiceResource serviceResource : services) {
             LocationResourceTemplate lrt = new LocationResourceTemplate();
             lrt.setService(true);
@@ -133,12 +321,15 @@ public class NodeMatcherService {
             String serviceTypeName = serviceResource.getNodeInstance().getNodeTemplate().getType();
             List<String> types = Lists.newArrayList(serviceTypeName);
             lrt.setTypes(types);
-            NodeType serviceType = toscaTypeSearchService.findOrFail(NodeType.class, serviceTypeName, serviceResource.getNodeInstance().getTypeVersion());
+            String serviceTypeVersion = serviceResource.getNodeInstance().getTypeVersion();
+            NodeType serviceType = serviceTypes.computeIfAbsent(serviceTypeName + ":" + serviceTypeVersion,
+                    key -> toscaTypeSearchService.findOrFail(NodeType.class, serviceTypeName, serviceTypeVersion));
             types.addAll(serviceType.getDerivedFrom());
 
             locationResources.getNodeTypes().put(serviceTypeName, serviceType);
 
-            Csar csar = toscaTypeSearchService.getArchive(serviceType.getArchiveName(), serviceType.getArchiveVersion());
+            Csar csar = archives.computeIfAbsent(serviceType.getArchiveName() + ":" + serviceType.getArchiveVersion(),
+                    key -> toscaTypeSearchService.getArchive(serviceType.getArchiveName(), serviceType.getArchiveVersion()));
             Set<CSARDependency> dependencies = Sets.newHashSet();
             if (csar.getDependencies() != null) {
                 dependencies.addAll(csar.getDependencies());
@@ -147,12 +338,26 @@ public class NodeMatcherService {
             if (serviceType.getCapabilities() != null && !serviceType.getCapabilities().isEmpty()) {
                 for (CapabilityDefinition capabilityDefinition : serviceType.getCapabilities()) {
                     locationResources.getCapabilityTypes().put(capabilityDefinition.getType(),
-                            csarRepoSearchService.getRequiredElementInDependencies(CapabilityType.class, capabilityDefinition.getType(), dependencies));
+                            capabilityTypes.computeIfAbsent(csar.getId() + "/" + capabilityDefinition.getType(), key -> csarRepoSearchService
+                                    .getRequiredElementInDependencies(CapabilityType.class, capabilityDefinition.getType(), dependencies)));
                 }
             }
 
             locationResources.getNodeTemplates().add(lrt);
+            servicesByTemplate.put(lrt, serviceResource);
         }
+        return servicesByTemplate;
+    }
 
+    private static class CachedIndex {
+        private final Date locationLastUpdateDate;
+        private final String matchingConfigurationsFingerprint;
+        private final LocationMatchingIndex index;
+
+        private CachedIndex(Date locationLastUpdateDate, String matchingConfigurationsFingerprint, LocationMatchingIndex index) {
+            this.locationLastUpdateDate = locationLastUpdateDate;
+            this.matchingConfigurationsFingerprint = matchingConfigurationsFingerprint;
+            this.index = index;
+        }
     }
 }
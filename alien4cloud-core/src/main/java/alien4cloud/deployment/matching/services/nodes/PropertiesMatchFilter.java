@@ -0,0 +1,119 @@
+package alien4cloud.deployment.matching.services.nodes;
+
+import static alien4cloud.utils.AlienUtils.safe;
+
+import java.util.List;
+import java.util.Map;
+
+import org.alien4cloud.tosca.exceptions.ConstraintValueDoNotMatchPropertyTypeException;
+import org.alien4cloud.tosca.exceptions.ConstraintViolationException;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.definitions.constraints.EqualConstraint;
+import org.alien4cloud.tosca.model.definitions.constraints.IMatchPropertyConstraint;
+import org.alien4cloud.tosca.normative.types.IPropertyType;
+import org.alien4cloud.tosca.normative.types.ToscaTypes;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.rits.cloning.Cloner;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Constraints built once from the property values of a candidate so that the candidate can be matched against many templates without parsing its values
+ * again. Matching a template gives the same result as {@link AbstractTemplateMatcher#isValidTemplatePropertiesMatch}.
+ */
+@Slf4j
+class PropertiesMatchFilter {
+    /** Constraints to validate per property, only scalar properties of the candidate are matched. */
+    private final Map<String, PropertyFilter> filters;
+
+    private PropertiesMatchFilter(Map<String, PropertyFilter> filters) {
+        this.filters = filters;
+    }
+
+    /**
+     * Build the constraints of a candidate.
+     *
+     * @param candidatePropertyValues The values defined on the Location Template.
+     * @param propertyDefinitions The properties definitions associated with the candidate.
+     * @param configuredFilters The filtering map (based on constraints) from matching configuration, other properties fall backs to an equal constraint/filter.
+     * @param cloner The cloner used to copy the configured constraints, they are shared by all the candidates.
+     * @return The filter or null if a scalar property of the candidate has no definition.
+     */
+    static PropertiesMatchFilter compile(Map<String, AbstractPropertyValue> candidatePropertyValues, Map<String, PropertyDefinition> propertyDefinitions,
+            Map<String, List<IMatchPropertyConstraint>> configuredFilters, Cloner cloner) {
+        Map<String, PropertyFilter> filters = Maps.newHashMap();
+        for (Map.Entry<String, AbstractPropertyValue> candidateValueEntry : safe(candidatePropertyValues).entrySet()) {
+            if (!(candidateValueEntry.getValue() instanceof ScalarPropertyValue)) {
+                continue;
+            }
+            PropertyDefinition propertyDefinition = safe(propertyDefinitions).get(candidateValueEntry.getKey());
+            if (propertyDefinition == null) {
+                return null;
+            }
+            IPropertyType<?> toscaType = ToscaTypes.fromYamlTypeName(propertyDefinition.getType());
+            List<IMatchPropertyConstraint> filter = safe(configuredFilters).get(candidateValueEntry.getKey());
+            if (filter == null) { // If no filter is defined then process matching using an equal constraint.
+                filter = Lists.newArrayList(new EqualConstraint());
+            } else {
+                // configured constraints are shared by all the candidates
+                filter = cloner.deepClone(filter);
+            }
+            List<IMatchPropertyConstraint> constraints = Lists.newArrayList();
+            for (IMatchPropertyConstraint constraint : filter) {
+                try {
+                    constraint.setConstraintValue(toscaType, ((ScalarPropertyValue) candidateValueEntry.getValue()).getValue());
+                } catch (ConstraintValueDoNotMatchPropertyTypeException e) {
+                    // constraints that follow are never validated for this property
+                    log.debug("The value of property for a constraint is not valid.", e);
+                    break;
+                }
+                constraints.add(constraint);
+            }
+            filters.put(candidateValueEntry.getKey(), new PropertyFilter(toscaType, constraints));
+        }
+        return new PropertiesMatchFilter(filters);
+    }
+
+    /**
+     * Check that the property values of a template match the candidate ones.
+     *
+     * @param templatePropertyValues The properties values from the template to match.
+     * @return True if all the constraints of the candidate are satisfied.
+     */
+    boolean matches(Map<String, AbstractPropertyValue> templatePropertyValues) {
+        for (Map.Entry<String, PropertyFilter> filterEntry : filters.entrySet()) {
+            AbstractPropertyValue templatePropertyValue = safe(templatePropertyValues).get(filterEntry.getKey());
+            // For now we support matching only on scalar properties.
+            if (templatePropertyValue instanceof ScalarPropertyValue
+                    && !filterEntry.getValue().matches(((ScalarPropertyValue) templatePropertyValue).getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static class PropertyFilter {
+        private final IPropertyType<?> toscaType;
+        private final List<IMatchPropertyConstraint> constraints;
+
+        private PropertyFilter(IPropertyType<?> toscaType, List<IMatchPropertyConstraint> constraints) {
+            this.toscaType = toscaType;
+            this.constraints = constraints;
+        }
+
+        private boolean matches(String value) {
+            for (IMatchPropertyConstraint constraint : constraints) {
+                try {
+                    constraint.validate(toscaType, value);
+                } catch (ConstraintViolationException e) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package alien4cloud.events;
+
+import org.alien4cloud.tosca.model.templates.Topology;
+
+import lombok.Getter;
+
+/**
+ * An event published before a {@link Topology} is saved in the repository, the previous version of the topology is still stored when it is published.
+ */
+@Getter
+public class BeforeTopologySavedEvent extends AlienEvent {
+
+    private static final long serialVersionUID = -3211794651226462402L;
+
+    private final Topology topology;
+
+    public BeforeTopologySavedEvent(Object source, Topology topology) {
+        super(source);
+        this.topology = topology;
+    }
+
+}
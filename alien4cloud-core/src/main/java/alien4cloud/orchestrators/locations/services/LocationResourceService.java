@@ -10,6 +10,8 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -47,7 +49,6 @@ import com.google.common.collect.Sets;
 import alien4cloud.component.ICSARRepositorySearchService;
 import alien4cloud.dao.FilterUtil;
 import alien4cloud.dao.IGenericSearchDAO;
-import alien4cloud.dao.model.GetMultipleDataResult;
 import alien4cloud.events.LocationTemplateCreated;
 import alien4cloud.exception.NotFoundException;
 import alien4cloud.model.components.IndexedModelUtils;
@@ -58,6 +59,7 @@ import alien4cloud.model.orchestrators.locations.LocationResourceTemplate;
 import alien4cloud.model.orchestrators.locations.LocationResourceTemplateWithDependencies;
 import alien4cloud.model.orchestrators.locations.LocationResources;
 import alien4cloud.model.orchestrators.locations.PolicyLocationResourceTemplate;
+import alien4cloud.orchestrators.locations.events.OnLocationResourceChangeEvent;
 import alien4cloud.orchestrators.plugin.ILocationConfiguratorPlugin;
 import alien4cloud.orchestrators.plugin.ILocationResourceAccessor;
 import alien4cloud.orchestrators.plugin.IOrchestratorPlugin;
@@ -293,11 +295,9 @@ public class LocationResourceService implements ILocationResourceService {
     }
 
     private <T extends AbstractLocationResourceTemplate> List<T> getResourcesTemplates(Class<T> clazz, Map<String, String[]> filter) {
-        GetMultipleDataResult<T> result = alienDAO.find(clazz, filter, Integer.MAX_VALUE);
-        if (result.getData() == null) {
-            return Lists.newArrayList();
+        try (Stream<T> resourceTemplates = alienDAO.stream(clazz, filter)) {
+            return resourceTemplates.collect(Collectors.toList());
         }
-        return Lists.newArrayList(result.getData());
     }
 
     /*
@@ -414,6 +414,7 @@ public class LocationResourceService implements ILocationResourceService {
         alienDAO.delete(resourceTemplate.getClass(), resourceId);
         refreshDependencies(location);
         alienDAO.save(location);
+        applicationContext.publishEvent(new OnLocationResourceChangeEvent(this, location.getId()));
     }
 
     /*
@@ -539,6 +540,7 @@ public class LocationResourceService implements ILocationResourceService {
         Location location = locationService.getOrFail(locationId);
         alienDAO.delete(LocationResourceTemplate.class, builder);
         alienDAO.save(location);
+        applicationContext.publishEvent(new OnLocationResourceChangeEvent(this, locationId));
     }
 
     /*
@@ -551,6 +553,7 @@ public class LocationResourceService implements ILocationResourceService {
     public void saveResource(Location location, AbstractLocationResourceTemplate resourceTemplate) {
         alienDAO.save(location);
         alienDAO.save(resourceTemplate);
+        applicationContext.publishEvent(new OnLocationResourceChangeEvent(this, location.getId()));
     }
 
     /*
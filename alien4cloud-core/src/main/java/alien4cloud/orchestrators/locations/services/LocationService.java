@@ -250,6 +250,7 @@ public class LocationService {
             }
             alienDAO.save(templates.toArray(new LocationResourceTemplate[templates.size()]));
             alienDAO.save(location);
+            publisher.publishEvent(new OnLocationResourceChangeEvent(this, location.getId()));
         }
         return templates;
     }
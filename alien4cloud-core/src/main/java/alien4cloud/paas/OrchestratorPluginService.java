@@ -12,10 +12,12 @@ import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import javax.inject.Inject;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Component;
 
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Maps;
 
 import alien4cloud.dao.IGenericSearchDAO;
@@ -40,6 +42,21 @@ public class OrchestratorPluginService implements IPaasEventService {
     /** Interval in milliseconds on which to retrieve monitoring events from a PaaS provider. */
     @Value("${paas_monitor.monitor_interval_ms}")
     private long monitorIntervalMs = 1000 * 30;
+    /** Maximum number of polled events waiting to be dispatched or persisted for an orchestrator. */
+    @Value("${paas_monitor.events_queue_capacity:5000}")
+    private int eventsQueueCapacity = 5000;
+    /** Maximum number of events persisted in a single bulk request. */
+    @Value("${paas_monitor.events_bulk_size:500}")
+    private int eventsBulkSize = 500;
+    /** Maximum delay in milliseconds before polled events are persisted. */
+    @Value("${paas_monitor.events_flush_interval_ms:1000}")
+    private long eventsFlushIntervalMs = 1000;
+    /** Number of threads on which the events of an orchestrator are dispatched to the listeners, events of a deployment always use the same thread. */
+    @Value("${paas_monitor.events_dispatch_lanes:4}")
+    private int eventsDispatchLanes = 4;
+    /** Registry of the application if any, monitoring metrics are kept local otherwise. */
+    @Autowired(required = false)
+    private MetricRegistry metricRegistry = new MetricRegistry();
     @Inject
     private DeploymentStatusEventHandler deploymentStatusEventHandler;
 
@@ -79,10 +96,12 @@ public class OrchestratorPluginService implements IPaasEventService {
         if (monitorRegistrations.containsKey(orchestratorId)) {
             throw new AlreadyExistException("Cloud [" + orchestratorId + "] has already been registered");
         }
-        // create the polling monitor responsible to monitor this instance.
-        PaaSProviderPollingMonitor monitor = new PaaSProviderPollingMonitor(alienDao, alienMonitorDao, instance, listeners, orchestratorId);
+        // create the pipeline responsible to dispatch and persist events and the polling monitor responsible to monitor this instance.
+        PaaSEventsIngestionPipeline eventsPipeline = new PaaSEventsIngestionPipeline(orchestratorId, alienMonitorDao, listeners, eventsQueueCapacity,
+                eventsBulkSize, eventsFlushIntervalMs, eventsDispatchLanes, metricRegistry);
+        PaaSProviderPollingMonitor monitor = new PaaSProviderPollingMonitor(alienDao, alienMonitorDao, instance, eventsPipeline, orchestratorId);
         ScheduledFuture<?> monitorFuture = scheduler.scheduleAtFixedRate(monitor, monitorIntervalMs);
-        Registration registration = new Registration(instance, monitorFuture);
+        Registration registration = new Registration(instance, monitorFuture, eventsPipeline);
         monitorRegistrations.put(orchestratorId, registration);
     }
 
@@ -96,6 +115,7 @@ public class OrchestratorPluginService implements IPaasEventService {
         Registration registration = monitorRegistrations.remove(orchestratorId);
         if (registration != null) {
             registration.registration.cancel(false);
+            registration.eventsPipeline.stop();
             return registration.instance;
         } else {
             return null;
@@ -149,5 +169,6 @@ public class OrchestratorPluginService implements IPaasEventService {
     private class Registration {
         private IOrchestratorPlugin instance;
         private ScheduledFuture<?> registration;
+        private PaaSEventsIngestionPipeline eventsPipeline;
     }
 }
@@ -0,0 +1,371 @@
+package alien4cloud.paas;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.dao.model.RefreshPolicy;
+import alien4cloud.paas.model.AbstractMonitorEvent;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ingestion stage that sits between a {@link PaaSProviderPollingMonitor} and the monitor index.
+ *
+ * Polled events are dispatched to the listeners on dedicated threads (so the polling thread never waits for listeners) and pushed into a bounded queue that
+ * is flushed to elasticsearch in bulk requests, either when the bulk size is reached or when the flush interval expires. Bulk writes do not force an index
+ * refresh. The polling monitor must not poll more than {@link #getRemainingCapacity()} events so the orchestrator is not polled faster than events can be
+ * processed.
+ *
+ * Dispatch is sharded by deployment id on a fixed number of single threaded lanes: events of a deployment are dispatched in polling order while events of
+ * different deployments are dispatched in parallel. When a listener fails, the deployment is parked: the retry is scheduled after a short delay and the
+ * later events of the deployment are queued until the failed event has been handled or dropped, so listeners always receive the events of a deployment in
+ * polling order. Other deployments, including the ones sharing the lane, are dispatched in the meantime.
+ *
+ * Listeners are called concurrently for different deployments and must not keep per-deployment state that is not safe for concurrent access.
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+@Slf4j
+public class PaaSEventsIngestionPipeline {
+    private static final int MAX_LISTENER_RETRY = 3;
+    private static final long LISTENER_FAIL_RETRY_DELAY_MS = 10;
+
+    private final String orchestratorId;
+    private final IGenericSearchDAO monitorDAO;
+    private final List<IPaasEventListener> listeners;
+    private final int capacity;
+    private final int bulkSize;
+    private final long flushIntervalMs;
+
+    /** Events waiting to be persisted. */
+    private final BlockingQueue<AbstractMonitorEvent> persistQueue;
+    /** Number of events submitted to the dispatch executor but not yet processed by all listeners. */
+    private final AtomicInteger pendingDispatch = new AtomicInteger();
+    /** Single thread executors so events of a deployment keep their polling order when dispatched to listeners. */
+    private final ExecutorService[] dispatchLanes;
+    /** Events of the parked deployments of every lane, by deployment id, starting with the event to retry. Only accessed from the thread of the lane. */
+    private final Map<String, Deque<PendingDispatch>>[] parkedDeployments;
+    /** Delays the retries of the failed dispatches so the lanes are not blocked while waiting. */
+    private final ScheduledExecutorService retryScheduler;
+    private final Thread flushThread;
+    private volatile boolean running = true;
+
+    private final MetricRegistry metricRegistry;
+    private final String metricsPrefix;
+    private final Timer flushTimer;
+    private final Meter persistedEvents;
+    private final Meter failedEvents;
+    private final Meter dispatchRetries;
+
+    /**
+     * Create and start a new ingestion pipeline for an orchestrator.
+     *
+     * @param orchestratorId The id of the orchestrator for which events are ingested.
+     * @param monitorDAO The dao used to persist the events.
+     * @param listeners The listeners to which events are dispatched.
+     * @param capacity Maximum number of events waiting to be dispatched or persisted.
+     * @param bulkSize Maximum number of events persisted in a single bulk request.
+     * @param flushIntervalMs Maximum delay before pending events are persisted.
+     * @param dispatchLanes Number of threads on which events are dispatched to the listeners.
+     * @param metricRegistry The registry in which to register the pipeline metrics.
+     */
+    public PaaSEventsIngestionPipeline(String orchestratorId, IGenericSearchDAO monitorDAO, List<IPaasEventListener> listeners, int capacity, int bulkSize,
+            long flushIntervalMs, int dispatchLanes, MetricRegistry metricRegistry) {
+        this.orchestratorId = orchestratorId;
+        this.monitorDAO = monitorDAO;
+        this.listeners = listeners;
+        this.capacity = capacity;
+        this.bulkSize = bulkSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.persistQueue = new ArrayBlockingQueue<>(capacity);
+
+        this.metricRegistry = metricRegistry;
+        this.metricsPrefix = MetricRegistry.name(PaaSEventsIngestionPipeline.class, orchestratorId);
+        this.flushTimer = metricRegistry.timer(MetricRegistry.name(metricsPrefix, "flush"));
+        this.persistedEvents = metricRegistry.meter(MetricRegistry.name(metricsPrefix, "persisted"));
+        this.failedEvents = metricRegistry.meter(MetricRegistry.name(metricsPrefix, "failed"));
+        this.dispatchRetries = metricRegistry.meter(MetricRegistry.name(metricsPrefix, "dispatch-retries"));
+        metricRegistry.register(MetricRegistry.name(metricsPrefix, "persist-queue", "depth"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return persistQueue.size();
+            }
+        });
+        metricRegistry.register(MetricRegistry.name(metricsPrefix, "dispatch-queue", "depth"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pendingDispatch.get();
+            }
+        });
+
+        this.dispatchLanes = new ExecutorService[Math.max(1, dispatchLanes)];
+        this.parkedDeployments = new Map[this.dispatchLanes.length];
+        for (int i = 0; i < this.dispatchLanes.length; i++) {
+            this.dispatchLanes[i] = Executors.newSingleThreadExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("paas-events-dispatch-" + orchestratorId + "-" + i + "-%d").setDaemon(true).build());
+            this.parkedDeployments[i] = Maps.newHashMap();
+        }
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("paas-events-retry-" + orchestratorId + "-%d").setDaemon(true).build());
+        this.flushThread = new ThreadFactoryBuilder().setNameFormat("paas-events-flush-" + orchestratorId + "-%d").setDaemon(true).build()
+                .newThread(this::flushLoop);
+        this.flushThread.start();
+    }
+
+    /**
+     * Check if the pipeline can accept the given number of events without blocking.
+     *
+     * @param count The number of events that may be submitted.
+     * @return true if both the dispatch and persistence stages have room for the given number of events.
+     */
+    public boolean hasCapacityFor(int count) {
+        return getRemainingCapacity() >= count;
+    }
+
+    /**
+     * Get the number of events the pipeline can accept without blocking.
+     *
+     * @return The room left in the fullest of the dispatch and persistence stages.
+     */
+    public int getRemainingCapacity() {
+        return Math.max(0, Math.min(persistQueue.remainingCapacity(), capacity - pendingDispatch.get()));
+    }
+
+    /**
+     * Submit events for dispatch to the listeners and persistence. Events are persisted in the given order and events of a same deployment are dispatched in
+     * the given order.
+     *
+     * Note that this method blocks if the persistence queue is full, callers should check {@link #getRemainingCapacity()} before polling new events.
+     *
+     * @param events The events to ingest.
+     */
+    @SneakyThrows(InterruptedException.class)
+    public void submit(AbstractMonitorEvent[] events) {
+        if (events == null || events.length == 0) {
+            return;
+        }
+        pendingDispatch.addAndGet(events.length);
+        // a single task per lane and submission, events keep their relative order inside each lane
+        List<AbstractMonitorEvent>[] eventsPerLane = new List[dispatchLanes.length];
+        for (AbstractMonitorEvent event : events) {
+            int lane = laneIndex(event);
+            if (eventsPerLane[lane] == null) {
+                eventsPerLane[lane] = Lists.newArrayList();
+            }
+            eventsPerLane[lane].add(event);
+        }
+        for (int lane = 0; lane < dispatchLanes.length; lane++) {
+            List<AbstractMonitorEvent> laneEvents = eventsPerLane[lane];
+            if (laneEvents != null) {
+                int laneIndex = lane;
+                dispatchLanes[lane].execute(() -> laneEvents.forEach(event -> dispatch(laneIndex, event)));
+            }
+        }
+        for (AbstractMonitorEvent event : events) {
+            persistQueue.put(event);
+        }
+    }
+
+    /**
+     * Stop the pipeline. Events already submitted are dispatched and persisted before the pipeline threads terminate, failed dispatches that are waiting for
+     * a retry get a last try.
+     */
+    @SneakyThrows(InterruptedException.class)
+    public void stop() {
+        running = false;
+        // scheduled retries are still sent to the lanes, the ones requested from now on are dropped
+        retryScheduler.shutdown();
+        retryScheduler.awaitTermination(flushIntervalMs, TimeUnit.MILLISECONDS);
+        for (ExecutorService lane : dispatchLanes) {
+            lane.shutdown();
+        }
+        for (ExecutorService lane : dispatchLanes) {
+            lane.awaitTermination(flushIntervalMs, TimeUnit.MILLISECONDS);
+        }
+        // the flush thread notices the stop at the end of the current flush interval
+        flushThread.join(2 * flushIntervalMs);
+        metricRegistry.removeMatching(new MetricFilter() {
+            @Override
+            public boolean matches(String name, Metric metric) {
+                return name.startsWith(metricsPrefix);
+            }
+        });
+    }
+
+    private void flushLoop() {
+        List<AbstractMonitorEvent> batch = Lists.newArrayListWithCapacity(bulkSize);
+        while (running) {
+            try {
+                long deadline = System.currentTimeMillis() + flushIntervalMs;
+                while (batch.size() < bulkSize) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    AbstractMonitorEvent event = remaining > 0 ? persistQueue.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                    if (event == null) {
+                        break;
+                    }
+                    batch.add(event);
+                    persistQueue.drainTo(batch, bulkSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                log.warn("Events flush thread for orchestrator {} interrupted.", orchestratorId);
+                running = false;
+            }
+            flush(batch);
+        }
+        // persist events remaining in the queue before leaving
+        persistQueue.drainTo(batch);
+        for (List<AbstractMonitorEvent> partition : Lists.partition(Lists.newArrayList(batch), bulkSize)) {
+            flush(partition);
+        }
+    }
+
+    private void flush(List<AbstractMonitorEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Timer.Context context = flushTimer.time();
+        try {
+            monitorDAO.save(batch.toArray(new AbstractMonitorEvent[batch.size()]), RefreshPolicy.NONE);
+            persistedEvents.mark(batch.size());
+            if (log.isDebugEnabled()) {
+                log.debug("Persisted {} events for orchestrator {}", batch.size(), orchestratorId);
+            }
+        } catch (Exception e) {
+            failedEvents.mark(batch.size());
+            log.error("Failed to persist {} events for orchestrator {}", batch.size(), orchestratorId, e);
+        } finally {
+            context.stop();
+            batch.clear();
+        }
+    }
+
+    private int laneIndex(AbstractMonitorEvent event) {
+        return event.getDeploymentId() == null ? 0 : Math.floorMod(event.getDeploymentId().hashCode(), dispatchLanes.length);
+    }
+
+    /**
+     * Dispatch an event to the listeners, or queue it if its deployment is parked. Must be called from the thread of the lane.
+     *
+     * @param lane The lane of the event.
+     * @param event The event to dispatch.
+     */
+    private void dispatch(int lane, AbstractMonitorEvent event) {
+        Deque<PendingDispatch> parkedEvents = parkedDeployments[lane].get(event.getDeploymentId());
+        if (parkedEvents != null) {
+            parkedEvents.add(new PendingDispatch(event));
+            return;
+        }
+        Deque<PendingDispatch> events = new ArrayDeque<>();
+        events.add(new PendingDispatch(event));
+        drain(lane, event.getDeploymentId(), events);
+    }
+
+    /**
+     * Dispatch the queued events of a deployment in order. When a listener fails the deployment is parked until the retry. Must be called from the thread of
+     * the lane.
+     *
+     * @param lane The lane of the deployment.
+     * @param deploymentId The id of the deployment.
+     * @param events The events of the deployment that have not been dispatched yet.
+     */
+    private void drain(int lane, String deploymentId, Deque<PendingDispatch> events) {
+        while (!events.isEmpty()) {
+            PendingDispatch pending = events.peek();
+            if (!dispatchToListeners(pending)) {
+                if (scheduleRetry(lane, deploymentId, events)) {
+                    parkedDeployments[lane].put(deploymentId, events);
+                    return;
+                }
+                // the pipeline is stopping, give up the retries of the failed listener
+                pending.listenerIndex++;
+                pending.retry = 0;
+                continue;
+            }
+            events.poll();
+            pendingDispatch.decrementAndGet();
+        }
+        parkedDeployments[lane].remove(deploymentId);
+    }
+
+    /**
+     * Send an event to the listeners, starting with the listener that failed on the previous try.
+     *
+     * @param pending The event to dispatch.
+     * @return false if a listener failed and should be retried, true once all the listeners handled the event or exhausted their retries.
+     */
+    private boolean dispatchToListeners(PendingDispatch pending) {
+        while (pending.listenerIndex < listeners.size()) {
+            IPaasEventListener listener = listeners.get(pending.listenerIndex);
+            try {
+                if (listener.canHandle(pending.event)) {
+                    listener.eventHappened(pending.event);
+                }
+            } catch (Exception e) {
+                log.error("Failed to dispatch event {} to listener {} retry {} on {}.", pending.event.toString(), listener.toString(), pending.retry,
+                        MAX_LISTENER_RETRY, e);
+                if (pending.retry < MAX_LISTENER_RETRY) {
+                    pending.retry++;
+                    return false;
+                }
+            }
+            pending.listenerIndex++;
+            pending.retry = 0;
+        }
+        return true;
+    }
+
+    /**
+     * Resume the dispatch of the events of a parked deployment on its lane after a delay.
+     *
+     * @return false if the retry cannot be scheduled as the pipeline is stopping.
+     */
+    private boolean scheduleRetry(int lane, String deploymentId, Deque<PendingDispatch> events) {
+        try {
+            retryScheduler.schedule(() -> resume(lane, deploymentId, events), LISTENER_FAIL_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        dispatchRetries.mark();
+        return true;
+    }
+
+    private void resume(int lane, String deploymentId, Deque<PendingDispatch> events) {
+        try {
+            dispatchLanes[lane].execute(() -> drain(lane, deploymentId, events));
+        } catch (RejectedExecutionException e) {
+            log.warn("Events dispatch for orchestrator {} stopped, dropping {} events of deployment {}", orchestratorId, events.size(), deploymentId);
+            pendingDispatch.addAndGet(-events.size());
+        }
+    }
+
+    /** An event being dispatched, with the listener to call next and the number of times this listener already failed. */
+    private static final class PendingDispatch {
+        private final AbstractMonitorEvent event;
+        private int listenerIndex;
+        private int retry;
+
+        private PendingDispatch(AbstractMonitorEvent event) {
+            this.event = event;
+        }
+    }
+}
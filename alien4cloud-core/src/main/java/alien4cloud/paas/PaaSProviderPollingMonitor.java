@@ -1,7 +1,6 @@
 package alien4cloud.paas;
 
 import java.util.Date;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -17,7 +16,6 @@ import alien4cloud.paas.model.AbstractMonitorEvent;
 import alien4cloud.paas.model.PaaSDeploymentStatusMonitorEvent;
 import alien4cloud.utils.MapUtil;
 import alien4cloud.utils.TypeScanner;
-import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -27,15 +25,12 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public class PaaSProviderPollingMonitor implements Runnable {
     private static final int MAX_POLLED_EVENTS = 500;
-    private static final int MAX_LISTENER_RETRY = 3;
-    private static final long LISTENER_FAIL_RETRY_SLEEP_MS = 10;
 
     private final IGenericSearchDAO dao;
     private final IGenericSearchDAO monitorDAO;
     private final IPaaSProvider paaSProvider;
     private Date lastPollingDate;
-    @SuppressWarnings("rawtypes")
-    private List<IPaasEventListener> listeners;
+    private PaaSEventsIngestionPipeline eventsPipeline;
     private PaaSEventsCallback paaSEventsCallback;
     private String orchestratorId;
     private boolean hasDeployments = false;
@@ -45,15 +40,15 @@ public class PaaSProviderPollingMonitor implements Runnable {
      * Create a new instance of the {@link PaaSProviderPollingMonitor} to monitor the given paas provider.
      *
      * @param paaSProvider The paas provider to monitor.
+     * @param eventsPipeline The pipeline in charge of dispatching and persisting the polled events.
      */
-    @SuppressWarnings("rawtypes")
-    public PaaSProviderPollingMonitor(IGenericSearchDAO dao, IGenericSearchDAO monitorDAO, IPaaSProvider paaSProvider, List<IPaasEventListener> listeners,
+    public PaaSProviderPollingMonitor(IGenericSearchDAO dao, IGenericSearchDAO monitorDAO, IPaaSProvider paaSProvider, PaaSEventsIngestionPipeline eventsPipeline,
             String orchestratorId) {
         this.orchestratorId = orchestratorId;
         this.dao = dao;
         this.monitorDAO = monitorDAO;
         this.paaSProvider = paaSProvider;
-        this.listeners = listeners;
+        this.eventsPipeline = eventsPipeline;
         Set<Class<?>> eventClasses = Sets.newHashSet();
         try {
             eventClasses = TypeScanner.scanTypes("alien4cloud.paas.model", AbstractMonitorEvent.class);
@@ -113,11 +108,9 @@ public class PaaSProviderPollingMonitor implements Runnable {
                         } else {
                             event.setDate(System.currentTimeMillis());
                         }
-
-                        // dispatch the event to all listeners
-                        listeners.forEach( listener -> dispatchEvent(listener,event));
                     }
-                    monitorDAO.save(auditEvents);
+                    // dispatch to listeners and persistence are done asynchronously by the pipeline
+                    eventsPipeline.submit(auditEvents);
                     if (lastEventDate != null) {
                         lastPollingDate = lastEventDate;
                     }
@@ -138,39 +131,6 @@ public class PaaSProviderPollingMonitor implements Runnable {
         }
     }
 
-    /**
-     * Dispatch an event to the registered listener.
-     *
-     * @param listener The listener to which to send the event.
-     * @param event The event to dispatch.
-     */
-    private void dispatchEvent(IPaasEventListener listener, AbstractMonitorEvent event) {
-        dispatchEvent(listener, event, 0);
-    }
-
-    /**
-     * Dispatch an event to the registered listener.
-     * 
-     * @param listener The listener to which to send the event.
-     * @param event The event to dispatch.
-     * @param retry The current retry index (0 for first dispatch)
-     */
-    @SneakyThrows
-    private void dispatchEvent(IPaasEventListener listener, AbstractMonitorEvent event, int retry) {
-        try {
-            if (listener.canHandle(event)) {
-                listener.eventHappened(event);
-            }
-        } catch (Exception e) {
-            log.error("Failed to dispatch event {} to listener {} retry {} on {}.", event.toString(), listener.toString(), retry, MAX_LISTENER_RETRY, e);
-            // Even if that fails
-            if (retry < MAX_LISTENER_RETRY) {
-                Thread.sleep(LISTENER_FAIL_RETRY_SLEEP_MS);
-                dispatchEvent(listener, event, retry + 1);
-            }
-        }
-    }
-
     @Override
     public synchronized void run() {
         if (log.isTraceEnabled()) {
@@ -180,12 +140,18 @@ public class PaaSProviderPollingMonitor implements Runnable {
             // Get events since is running
             return;
         }
+        // Back-pressure: do not poll more events than the pipeline can accept, its capacity may be lower than the maximum number of polled events
+        int maxEvents = hasDeployments ? Math.min(MAX_POLLED_EVENTS, eventsPipeline.getRemainingCapacity()) : MAX_POLLED_EVENTS;
+        if (maxEvents == 0) {
+            log.debug("Events pipeline for orchestrator {} is full, skipping poll", orchestratorId);
+            return;
+        }
         getEventsInProgress = true;
         if (hasDeployments) {
             if (log.isDebugEnabled()) {
-                log.debug("Polling from date {}", lastPollingDate);
+                log.debug("Polling {} events from date {}", maxEvents, lastPollingDate);
             }
-            paaSProvider.getEventsSince(lastPollingDate, MAX_POLLED_EVENTS, paaSEventsCallback);
+            paaSProvider.getEventsSince(lastPollingDate, maxEvents, paaSEventsCallback);
         } else {
             getEventsInProgress = false;
             hasDeployments = getActiveDeployment() != null;
@@ -0,0 +1,447 @@
+package alien4cloud.paas.function;
+
+import java.util.List;
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.AttributeDefinition;
+import org.alien4cloud.tosca.model.definitions.ConcatPropertyValue;
+import org.alien4cloud.tosca.model.definitions.FunctionPropertyValue;
+import org.alien4cloud.tosca.model.definitions.IValue;
+import org.alien4cloud.tosca.model.definitions.Interface;
+import org.alien4cloud.tosca.model.definitions.Operation;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.types.AbstractInheritableToscaType;
+import org.alien4cloud.tosca.model.types.AbstractInstantiableToscaType;
+import org.alien4cloud.tosca.model.types.AbstractToscaType;
+import org.alien4cloud.tosca.normative.constants.ToscaFunctionConstants;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import alien4cloud.paas.IPaaSTemplate;
+import alien4cloud.paas.model.InstanceInformation;
+import alien4cloud.paas.model.PaaSNodeTemplate;
+import alien4cloud.paas.model.PaaSRelationshipTemplate;
+import alien4cloud.utils.AlienUtils;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Functions of the attributes and operations inputs of a PaaS topology compiled once the topology is built.
+ *
+ * Keywords are resolved to the templates they reference and get_property functions are evaluated at compilation, evaluating a value then only looks up the
+ * runtime information of the resolved templates. Evaluations give the same results as {@link FunctionEvaluator}, including the exceptions thrown for
+ * functions that cannot be resolved.
+ *
+ * A plan references the templates it has been compiled from, use {@link #rebind(Map)} to evaluate the functions of a copy of these templates.
+ */
+@Slf4j
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class FunctionEvaluationPlan {
+    /** Compiled attributes per template key and attribute name. */
+    private final Map<String, Map<String, CompiledValue>> attributes = Maps.newHashMap();
+    /** Compiled functions of the operations inputs per template key and input key. */
+    private final Map<String, Map<String, CompiledValue>> operationInputs = Maps.newHashMap();
+    /** The node and relationship templates referenced by the plan per template key. */
+    private final Map<String, IPaaSTemplate> templates = Maps.newHashMap();
+
+    /**
+     * Compile the functions of the attributes and operations inputs of the templates of a PaaS topology.
+     *
+     * @param paaSNodeTemplates The built node templates of the topology, referencing their related parents and relationships.
+     * @return The plan to evaluate the functions of the topology.
+     */
+    public static FunctionEvaluationPlan compile(Map<String, PaaSNodeTemplate> paaSNodeTemplates) {
+        FunctionEvaluationPlan plan = new FunctionEvaluationPlan();
+        plan.indexTemplates(paaSNodeTemplates);
+        Map<String, NodeTemplate> nodeTemplates = Maps.newHashMap();
+        for (PaaSNodeTemplate paaSNodeTemplate : paaSNodeTemplates.values()) {
+            nodeTemplates.put(paaSNodeTemplate.getId(), paaSNodeTemplate.getTemplate());
+        }
+        for (IPaaSTemplate paaSTemplate : plan.templates.values()) {
+            plan.compileTemplate(paaSTemplate, paaSNodeTemplates, nodeTemplates);
+        }
+        return plan;
+    }
+
+    /**
+     * Get a plan that evaluates the same functions on a copy of the templates this plan has been compiled from, nothing is compiled again.
+     *
+     * @param paaSNodeTemplates The copied node templates of the topology, with the same ids as the ones of this plan.
+     * @return The plan to evaluate the functions of the copied templates.
+     */
+    public FunctionEvaluationPlan rebind(Map<String, PaaSNodeTemplate> paaSNodeTemplates) {
+        FunctionEvaluationPlan plan = new FunctionEvaluationPlan();
+        plan.indexTemplates(paaSNodeTemplates);
+        rebind(attributes, plan.attributes, plan.templates);
+        rebind(operationInputs, plan.operationInputs, plan.templates);
+        return plan;
+    }
+
+    private static void rebind(Map<String, Map<String, CompiledValue>> compiledValues, Map<String, Map<String, CompiledValue>> reboundValues,
+            Map<String, IPaaSTemplate> templates) {
+        for (Map.Entry<String, Map<String, CompiledValue>> templateValues : compiledValues.entrySet()) {
+            Map<String, CompiledValue> reboundTemplateValues = Maps.newHashMap();
+            for (Map.Entry<String, CompiledValue> compiledValue : templateValues.getValue().entrySet()) {
+                reboundTemplateValues.put(compiledValue.getKey(), compiledValue.getValue().rebind(templates));
+            }
+            reboundValues.put(templateValues.getKey(), reboundTemplateValues);
+        }
+    }
+
+    private void indexTemplates(Map<String, PaaSNodeTemplate> paaSNodeTemplates) {
+        for (PaaSNodeTemplate paaSNodeTemplate : paaSNodeTemplates.values()) {
+            templates.put(templateKey(paaSNodeTemplate), paaSNodeTemplate);
+            for (PaaSRelationshipTemplate paaSRelationshipTemplate : paaSNodeTemplate.getRelationshipTemplates()) {
+                // relationships are also referenced by their target
+                if (paaSNodeTemplate.getId().equals(paaSRelationshipTemplate.getSource())) {
+                    templates.put(templateKey(paaSRelationshipTemplate), paaSRelationshipTemplate);
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluate an attribute of a template, see {@link FunctionEvaluator#parseAttribute}.
+     *
+     * @param paaSTemplate The node or relationship template that defines the attribute.
+     * @param attributeId The name of the attribute.
+     * @param runtimeInformations The runtime information of the instances per node template id.
+     * @param currentInstance The id of the instance for which to evaluate the attribute.
+     * @return The value of the attribute or null if it cannot be evaluated.
+     */
+    public String evaluateAttribute(IPaaSTemplate<? extends AbstractToscaType> paaSTemplate, String attributeId,
+            Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+        return evaluate(attributes, paaSTemplate, attributeId, runtimeInformations, currentInstance);
+    }
+
+    /**
+     * Evaluate the function of an operation input of a template.
+     *
+     * @param paaSTemplate The node or relationship template that defines the operation.
+     * @param interfaceName The name of the interface of the operation.
+     * @param operationName The name of the operation.
+     * @param inputName The name of the input.
+     * @param runtimeInformations The runtime information of the instances per node template id.
+     * @param currentInstance The id of the instance for which to evaluate the input.
+     * @return The value of the input, null if the input is not a get_property, get_attribute, get_operation_output or concat function.
+     */
+    public String evaluateOperationInput(IPaaSTemplate<? extends AbstractToscaType> paaSTemplate, String interfaceName, String operationName, String inputName,
+            Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+        return evaluate(operationInputs, paaSTemplate, inputKey(interfaceName, operationName, inputName), runtimeInformations, currentInstance);
+    }
+
+    /**
+     * Evaluate the attributes of the node instances reported by an orchestrator and set them in their runtime information. Attributes that cannot be
+     * evaluated keep the value reported by the orchestrator.
+     *
+     * @param runtimeInformations The runtime information of the instances per node template id, updated with the evaluated attributes.
+     */
+    public void resolveAttributes(Map<String, Map<String, InstanceInformation>> runtimeInformations) {
+        Map<InstanceInformation, Map<String, String>> resolvedAttributes = Maps.newHashMap();
+        for (Map.Entry<String, Map<String, InstanceInformation>> nodeInstances : runtimeInformations.entrySet()) {
+            Map<String, CompiledValue> nodeAttributes = attributes.get(nodeInstances.getKey());
+            if (nodeAttributes == null) {
+                continue;
+            }
+            for (Map.Entry<String, InstanceInformation> instance : AlienUtils.safe(nodeInstances.getValue()).entrySet()) {
+                Map<String, String> instanceAttributes = Maps.newHashMap();
+                for (Map.Entry<String, CompiledValue> attribute : nodeAttributes.entrySet()) {
+                    try {
+                        String value = attribute.getValue().evaluate(runtimeInformations, instance.getKey());
+                        if (value != null) {
+                            instanceAttributes.put(attribute.getKey(), value);
+                        }
+                    } catch (RuntimeException e) {
+                        log.debug("Attribute <{}> of node <{}> cannot be evaluated", attribute.getKey(), nodeInstances.getKey(), e);
+                    }
+                }
+                resolvedAttributes.put(instance.getValue(), instanceAttributes);
+            }
+        }
+        // attributes may reference the ones of other instances, they are all evaluated from the reported values before being set
+        for (Map.Entry<InstanceInformation, Map<String, String>> instanceAttributes : resolvedAttributes.entrySet()) {
+            if (instanceAttributes.getKey().getAttributes() == null) {
+                instanceAttributes.getKey().setAttributes(Maps.newHashMap());
+            }
+            instanceAttributes.getKey().getAttributes().putAll(instanceAttributes.getValue());
+        }
+    }
+
+    private String evaluate(Map<String, Map<String, CompiledValue>> compiledValues, IPaaSTemplate<? extends AbstractToscaType> paaSTemplate, String key,
+            Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+        Map<String, CompiledValue> templateValues = compiledValues.get(templateKey(paaSTemplate));
+        CompiledValue compiledValue = templateValues == null ? null : templateValues.get(key);
+        return compiledValue == null ? null : compiledValue.evaluate(runtimeInformations, currentInstance);
+    }
+
+    private static String templateKey(IPaaSTemplate<? extends AbstractToscaType> paaSTemplate) {
+        if (paaSTemplate instanceof PaaSRelationshipTemplate) {
+            // relationships names are unique per source node only
+            return AlienUtils.prefixWith(AlienUtils.COLON_SEPARATOR, paaSTemplate.getId(), ((PaaSRelationshipTemplate) paaSTemplate).getSource());
+        }
+        return paaSTemplate.getId();
+    }
+
+    private static String inputKey(String interfaceName, String operationName, String inputName) {
+        return AlienUtils.prefixWith(AlienUtils.COLON_SEPARATOR, inputName, interfaceName, operationName);
+    }
+
+    private void compileTemplate(IPaaSTemplate<? extends AbstractToscaType> paaSTemplate, Map<String, PaaSNodeTemplate> paaSNodeTemplates,
+            Map<String, NodeTemplate> nodeTemplates) {
+        Map<String, CompiledValue> templateAttributes = Maps.newHashMap();
+        if (paaSTemplate.getIndexedToscaElement() instanceof AbstractInstantiableToscaType
+                && ((AbstractInstantiableToscaType) paaSTemplate.getIndexedToscaElement()).getAttributes() != null) {
+            for (Map.Entry<String, IValue> attribute : ((AbstractInstantiableToscaType) paaSTemplate.getIndexedToscaElement()).getAttributes().entrySet()) {
+                CompiledValue compiledValue;
+                try {
+                    compiledValue = compileAttribute(attribute.getKey(), attribute.getValue(), paaSTemplate, paaSNodeTemplates, nodeTemplates);
+                } catch (RuntimeException e) {
+                    compiledValue = new FailedValue(e);
+                }
+                if (compiledValue != null) {
+                    templateAttributes.put(attribute.getKey(), compiledValue);
+                }
+            }
+        }
+        Map<String, CompiledValue> templateInputs = Maps.newHashMap();
+        if (paaSTemplate.getInterfaces() != null) {
+            for (Map.Entry<String, Interface> interfaceEntry : paaSTemplate.getInterfaces().entrySet()) {
+                for (Map.Entry<String, Operation> operationEntry : AlienUtils.safe(interfaceEntry.getValue().getOperations()).entrySet()) {
+                    for (Map.Entry<String, IValue> input : AlienUtils.safe(operationEntry.getValue().getInputParameters()).entrySet()) {
+                        CompiledValue compiledValue;
+                        try {
+                            compiledValue = compileInput(input.getValue(), paaSTemplate, paaSNodeTemplates, nodeTemplates);
+                        } catch (RuntimeException e) {
+                            compiledValue = new FailedValue(e);
+                        }
+                        if (compiledValue != null) {
+                            templateInputs.put(inputKey(interfaceEntry.getKey(), operationEntry.getKey(), input.getKey()), compiledValue);
+                        }
+                    }
+                }
+            }
+        }
+        if (!templateAttributes.isEmpty()) {
+            attributes.put(templateKey(paaSTemplate), templateAttributes);
+        }
+        if (!templateInputs.isEmpty()) {
+            operationInputs.put(templateKey(paaSTemplate), templateInputs);
+        }
+    }
+
+    private CompiledValue compileAttribute(String attributeId, IValue attributeValue, IPaaSTemplate<? extends AbstractToscaType> basePaaSTemplate,
+            Map<String, PaaSNodeTemplate> paaSNodeTemplates, Map<String, NodeTemplate> nodeTemplates) {
+        if (attributeValue instanceof AttributeDefinition) {
+            return new DefinedAttributeValue(Lists.newArrayList(basePaaSTemplate), attributeId, ((AttributeDefinition) attributeValue).getDefault());
+        }
+        if (attributeValue instanceof ConcatPropertyValue) {
+            return compileConcat((ConcatPropertyValue) attributeValue, basePaaSTemplate, paaSNodeTemplates, nodeTemplates);
+        }
+        if (attributeValue instanceof FunctionPropertyValue && FunctionEvaluator.isGetOperationOutput((FunctionPropertyValue) attributeValue)) {
+            FunctionPropertyValue function = (FunctionPropertyValue) attributeValue;
+            return new OperationOutputValue(FunctionEvaluator.getPaaSTemplatesFromKeyword(basePaaSTemplate, function.getTemplateName(), paaSNodeTemplates),
+                    function, null);
+        }
+        return null;
+    }
+
+    private CompiledValue compileInput(IValue inputValue, IPaaSTemplate<? extends AbstractToscaType> basePaaSTemplate,
+            Map<String, PaaSNodeTemplate> paaSNodeTemplates, Map<String, NodeTemplate> nodeTemplates) {
+        if (inputValue instanceof ConcatPropertyValue) {
+            return compileConcat((ConcatPropertyValue) inputValue, basePaaSTemplate, paaSNodeTemplates, nodeTemplates);
+        }
+        if (!(inputValue instanceof FunctionPropertyValue)) {
+            return null;
+        }
+        FunctionPropertyValue function = (FunctionPropertyValue) inputValue;
+        switch (function.getFunction()) {
+        case ToscaFunctionConstants.GET_PROPERTY:
+            return new ConstantValue(FunctionEvaluator.evaluateGetPropertyFunction(function,
+                    (IPaaSTemplate<? extends AbstractInheritableToscaType>) basePaaSTemplate, paaSNodeTemplates));
+        case ToscaFunctionConstants.GET_ATTRIBUTE:
+            return new AttributeValue(FunctionEvaluator.getPaaSTemplatesFromKeyword(basePaaSTemplate, function.getTemplateName(), paaSNodeTemplates),
+                    function.getElementNameToFetch());
+        case ToscaFunctionConstants.GET_OPERATION_OUTPUT:
+            return new OperationOutputValue(FunctionEvaluator.getPaaSTemplatesFromKeyword(basePaaSTemplate, function.getTemplateName(), paaSNodeTemplates),
+                    function, null);
+        default:
+            return null;
+        }
+    }
+
+    private CompiledValue compileConcat(ConcatPropertyValue concatPropertyValue, IPaaSTemplate<? extends AbstractToscaType> basePaaSTemplate,
+            Map<String, PaaSNodeTemplate> paaSNodeTemplates, Map<String, NodeTemplate> nodeTemplates) {
+        List<CompiledValue> parts = Lists.newArrayList();
+        for (IValue concatParam : concatPropertyValue.getParameters()) {
+            if (concatParam instanceof ScalarPropertyValue) {
+                parts.add(new ConstantValue(((ScalarPropertyValue) concatParam).getValue()));
+            } else if (concatParam instanceof PropertyDefinition) {
+                parts.add(new ConstantValue(((PropertyDefinition) concatParam).getDefault()));
+            } else if (concatParam instanceof FunctionPropertyValue) {
+                FunctionPropertyValue function = (FunctionPropertyValue) concatParam;
+                List<? extends IPaaSTemplate> paaSTemplates = FunctionEvaluator.getPaaSTemplatesFromKeyword(basePaaSTemplate, function.getTemplateName(),
+                        paaSNodeTemplates);
+                switch (function.getFunction()) {
+                case ToscaFunctionConstants.GET_ATTRIBUTE:
+                    parts.add(new AttributeValue(paaSTemplates, function.getElementNameToFetch()));
+                    break;
+                case ToscaFunctionConstants.GET_PROPERTY:
+                    // properties of the templates do not change once deployed
+                    parts.add(new ConstantValue(
+                            FunctionEvaluator.extractRuntimeInformationProperty(nodeTemplates, function.getElementNameToFetch(), paaSTemplates)));
+                    break;
+                case ToscaFunctionConstants.GET_OPERATION_OUTPUT:
+                    parts.add(new OperationOutputValue(paaSTemplates, function, "<" + function.getElementNameToFetch() + ">"));
+                    break;
+                default:
+                    log.warn("Function [{}] is not yet handled in concat operation.", function.getFunction());
+                    break;
+                }
+            }
+        }
+        return new ConcatValue(parts);
+    }
+
+    private static List<? extends IPaaSTemplate> rebind(List<? extends IPaaSTemplate> paaSTemplates, Map<String, IPaaSTemplate> templates) {
+        List<IPaaSTemplate> reboundTemplates = Lists.newArrayListWithCapacity(paaSTemplates.size());
+        for (IPaaSTemplate paaSTemplate : paaSTemplates) {
+            IPaaSTemplate reboundTemplate = templates.get(templateKey(paaSTemplate));
+            reboundTemplates.add(reboundTemplate == null ? paaSTemplate : reboundTemplate);
+        }
+        return reboundTemplates;
+    }
+
+    private static abstract class CompiledValue {
+        abstract String evaluate(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance);
+
+        /** Get the value that evaluates the same function from the given templates, values that reference no template are shared. */
+        CompiledValue rebind(Map<String, IPaaSTemplate> templates) {
+            return this;
+        }
+    }
+
+    private static class ConstantValue extends CompiledValue {
+        private final String value;
+
+        private ConstantValue(String value) {
+            this.value = value;
+        }
+
+        @Override
+        String evaluate(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+            return value;
+        }
+    }
+
+    /**
+     * A function that cannot be resolved, the evaluation fails as the one of {@link FunctionEvaluator}.
+     */
+    private static class FailedValue extends CompiledValue {
+        private final RuntimeException exception;
+
+        private FailedValue(RuntimeException exception) {
+            this.exception = exception;
+        }
+
+        @Override
+        String evaluate(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+            throw exception;
+        }
+    }
+
+    private static class AttributeValue extends CompiledValue {
+        private final List<? extends IPaaSTemplate> paaSTemplates;
+        private final String attributeName;
+
+        private AttributeValue(List<? extends IPaaSTemplate> paaSTemplates, String attributeName) {
+            this.paaSTemplates = paaSTemplates;
+            this.attributeName = attributeName;
+        }
+
+        @Override
+        String evaluate(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+            return FunctionEvaluator.extractRuntimeInformationAttribute(runtimeInformations, currentInstance, paaSTemplates, attributeName);
+        }
+
+        @Override
+        CompiledValue rebind(Map<String, IPaaSTemplate> templates) {
+            return new AttributeValue(FunctionEvaluationPlan.rebind(paaSTemplates, templates), attributeName);
+        }
+    }
+
+    /**
+     * An attribute defined by the type of the template, its default value is used until the runtime value is known.
+     */
+    private static class DefinedAttributeValue extends AttributeValue {
+        private final String defaultValue;
+
+        private DefinedAttributeValue(List<? extends IPaaSTemplate> paaSTemplates, String attributeName, String defaultValue) {
+            super(paaSTemplates, attributeName);
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        String evaluate(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+            String runtimeAttributeValue = super.evaluate(runtimeInformations, currentInstance);
+            if (runtimeAttributeValue != null && !runtimeAttributeValue.contains("=Error!]") && !runtimeAttributeValue.equals("")) {
+                return runtimeAttributeValue;
+            }
+            return defaultValue;
+        }
+
+        @Override
+        CompiledValue rebind(Map<String, IPaaSTemplate> templates) {
+            return new DefinedAttributeValue(FunctionEvaluationPlan.rebind(super.paaSTemplates, templates), super.attributeName, defaultValue);
+        }
+    }
+
+    private static class OperationOutputValue extends CompiledValue {
+        private final List<? extends IPaaSTemplate> paaSTemplates;
+        private final FunctionPropertyValue function;
+        private final String defaultValue;
+
+        private OperationOutputValue(List<? extends IPaaSTemplate> paaSTemplates, FunctionPropertyValue function, String defaultValue) {
+            this.paaSTemplates = paaSTemplates;
+            this.function = function;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        String evaluate(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+            return FunctionEvaluator.extractRuntimeInformationOperationOutput(runtimeInformations, currentInstance, paaSTemplates, function, defaultValue);
+        }
+
+        @Override
+        CompiledValue rebind(Map<String, IPaaSTemplate> templates) {
+            return new OperationOutputValue(FunctionEvaluationPlan.rebind(paaSTemplates, templates), function, defaultValue);
+        }
+    }
+
+    private static class ConcatValue extends CompiledValue {
+        private final List<CompiledValue> parts;
+
+        private ConcatValue(List<CompiledValue> parts) {
+            this.parts = parts;
+        }
+
+        @Override
+        String evaluate(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance) {
+            StringBuilder evaluated = new StringBuilder();
+            for (CompiledValue part : parts) {
+                evaluated.append(part.evaluate(runtimeInformations, currentInstance));
+            }
+            return evaluated.toString();
+        }
+
+        @Override
+        CompiledValue rebind(Map<String, IPaaSTemplate> templates) {
+            List<CompiledValue> reboundParts = Lists.newArrayListWithCapacity(parts.size());
+            for (CompiledValue part : parts) {
+                reboundParts.add(part.rebind(templates));
+            }
+            return new ConcatValue(reboundParts);
+        }
+    }
+}
@@ -42,6 +42,8 @@ import java.util.Map;
  * attributes:
  *   url: "http://get_property: [the_node_template_1, the_property_name_1]:get_property: [the_node_template_2, the_property_name_2 ]/super"
  * </pre>
+ *
+ * Functions are interpreted on every call, {@link FunctionEvaluationPlan} resolves them once per PaaS topology.
  */
 @Slf4j
 @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -104,7 +106,8 @@ public final class FunctionEvaluator {
                                 functionPropertyValue.getElementNameToFetch()));
                         break;
                     case ToscaFunctionConstants.GET_PROPERTY:
-                        evaluatedAttribute.append(extractRuntimeInformationProperty(topology, functionPropertyValue.getElementNameToFetch(), paasTemplates));
+                        evaluatedAttribute.append(
+                                extractRuntimeInformationProperty(topology.getNodeTemplates(), functionPropertyValue.getElementNameToFetch(), paasTemplates));
                         break;
                     case ToscaFunctionConstants.GET_OPERATION_OUTPUT:
                         String defaultValue = "<" + functionPropertyValue.getElementNameToFetch() + ">";
@@ -136,7 +139,7 @@ public final class FunctionEvaluator {
         return null;
     }
 
-    private static String extractRuntimeInformationOperationOutput(Map<String, Map<String, InstanceInformation>> runtimeInformations, String instanceId,
+    static String extractRuntimeInformationOperationOutput(Map<String, Map<String, InstanceInformation>> runtimeInformations, String instanceId,
             List<? extends IPaaSTemplate> nodes, FunctionPropertyValue function, String defaultValue) {
         String outputRQN = AlienUtils.prefixWith(AlienConstants.OPERATION_NAME_SEPARATOR, function.getElementNameToFetch(), function.getInterfaceName(),
                 function.getOperationName());
@@ -165,17 +168,18 @@ public final class FunctionEvaluator {
     /**
      * Extract property value from runtime informations
      *
-     * @param topology
+     * @param nodeTemplates The node templates of the topology.
      * @param propertyOrAttributeName
      * @param nodes
      * @return
      */
-    private static String extractRuntimeInformationProperty(Topology topology, String propertyOrAttributeName, List<? extends IPaaSTemplate> nodes) {
+    static String extractRuntimeInformationProperty(Map<String, NodeTemplate> nodeTemplates, String propertyOrAttributeName,
+            List<? extends IPaaSTemplate> nodes) {
         AbstractPropertyValue propertyOrAttributeValue;
         NodeTemplate template = null;
         for (IPaaSTemplate node : nodes) {
             String nodeName = node.getId();
-            template = topology.getNodeTemplates().get(nodeName);
+            template = nodeTemplates.get(nodeName);
             if (template != null && template.getProperties() != null) {
                 propertyOrAttributeValue = template.getProperties().get(propertyOrAttributeName);
                 if (propertyOrAttributeValue != null) {
@@ -196,7 +200,7 @@ public final class FunctionEvaluator {
      * @param propertyOrAttributeName
      * @return runtime value
      */
-    private static String extractRuntimeInformationAttribute(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance,
+    static String extractRuntimeInformationAttribute(Map<String, Map<String, InstanceInformation>> runtimeInformations, String currentInstance,
             List<? extends IPaaSTemplate> nodes, String propertyOrAttributeName) {
         Map<String, String> attributes = null;
         // return the first found
@@ -15,12 +15,16 @@ import org.elasticsearch.annotation.TimeStamp;
 import org.elasticsearch.annotation.query.TermFilter;
 import org.elasticsearch.mapping.IndexType;
 
+import alien4cloud.dao.model.EsRefreshPolicy;
+import alien4cloud.dao.model.RefreshPolicy;
+
 @Getter
 @Setter
 @ESObject
 @ToString
 @JsonIgnoreProperties(ignoreUnknown = true)
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "eventType")
+@EsRefreshPolicy(RefreshPolicy.NONE)
 public abstract class AbstractMonitorEvent {
     @TermFilter
     @StringField(indexType = IndexType.not_analyzed)
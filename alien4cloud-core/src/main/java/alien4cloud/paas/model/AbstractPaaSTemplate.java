@@ -2,6 +2,7 @@ package alien4cloud.paas.model;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
@@ -9,6 +10,9 @@ import lombok.Setter;
 import org.alien4cloud.tosca.model.types.AbstractToscaType;
 import org.alien4cloud.tosca.model.definitions.Interface;
 import org.alien4cloud.tosca.model.templates.AbstractInstantiableTemplate;
+import org.alien4cloud.tosca.model.types.AbstractInheritableToscaType;
+import org.alien4cloud.tosca.utils.ToscaTypeUtils;
+
 import alien4cloud.paas.IPaaSTemplate;
 
 @Getter
@@ -33,6 +37,9 @@ public abstract class AbstractPaaSTemplate<V extends AbstractToscaType, T extend
     /** Derived from types **/
     private List<V> derivedFroms;
 
+    /** Ids of the type and of all its parent types, shared by the templates of the same type when built from a topology. */
+    private Set<String> typeHierarchy;
+
     public AbstractPaaSTemplate(String id, T template) {
         this.id = id;
         this.template = template;
@@ -42,4 +49,20 @@ public abstract class AbstractPaaSTemplate<V extends AbstractToscaType, T extend
     public T getTemplate() {
         return template;
     }
+
+    /**
+     * Check if the template is an instance of the given type.
+     *
+     * @param type The type we want to check.
+     * @return True if the current template is of the required type.
+     */
+    public boolean instanceOf(String type) {
+        if (typeHierarchy != null) {
+            return typeHierarchy.contains(type);
+        }
+        if (indexedToscaElement instanceof AbstractInheritableToscaType) {
+            return ToscaTypeUtils.isOfType((AbstractInheritableToscaType) indexedToscaElement, type);
+        }
+        return indexedToscaElement != null && type.equals(indexedToscaElement.getElementId());
+    }
 }
@@ -15,6 +15,8 @@ import org.elasticsearch.mapping.IndexType;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import alien4cloud.dao.EsGeneratedId;
+import alien4cloud.dao.model.EsRefreshPolicy;
+import alien4cloud.dao.model.RefreshPolicy;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -31,6 +33,7 @@ import static org.apache.commons.lang.StringUtils.defaultString;
 @AllArgsConstructor
 @ESObject
 @JsonInclude(JsonInclude.Include.NON_NULL)
+@EsRefreshPolicy(RefreshPolicy.NONE)
 public class PaaSDeploymentLog {
     /**
      * Unique id of the log. Note that this field value is generated by elasticsearch. Should always be null before you write it to elastic search.
@@ -18,19 +18,6 @@ public class PaaSRelationshipTemplate extends AbstractPaaSTemplate<RelationshipT
         this.source = source;
     }
 
-    /**
-     * Check if the relationship is an instance of the given type.
-     *
-     * @param type The type we want to check.
-     * @return True if the current relationship template is of the required type.
-     */
-    public boolean instanceOf(String type) {
-        if (getIndexedToscaElement().getDerivedFrom() == null) {
-            return type.equals(getIndexedToscaElement().getElementId());
-        }
-        return type.equals(getIndexedToscaElement().getElementId()) || getIndexedToscaElement().getDerivedFrom().contains(type);
-    }
-
     /**
      * @deprecated use {@link #getTemplate()} instead.
      */
@@ -8,6 +8,7 @@ import org.alien4cloud.tosca.model.types.DataType;
 import org.alien4cloud.tosca.model.types.NodeType;
 import org.alien4cloud.tosca.model.types.RelationshipType;
 
+import alien4cloud.paas.function.FunctionEvaluationPlan;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
@@ -35,6 +36,9 @@ public class PaaSTopology {
     private Map<String, CapabilityType> capabilityTypes;
     private Map<String, DataType> dataTypes;
 
+    /** Functions of the attributes and operations inputs of the templates, resolved on first use or rebound from the cached topology it is copied from. */
+    private FunctionEvaluationPlan functionEvaluationPlan;
+
     public PaaSTopology(List<PaaSNodeTemplate> computes, List<PaaSNodeTemplate> networks, List<PaaSNodeTemplate> volumes, List<PaaSNodeTemplate> nonNatives,
             Map<String, PaaSNodeTemplate> allNodes, Map<String, List<PaaSNodeTemplate>> groups) {
         this.computes = computes;
@@ -44,4 +48,25 @@ public class PaaSTopology {
         this.allNodes = allNodes;
         this.groups = groups;
     }
+
+    /**
+     * Get the plan to evaluate the functions of the topology, it is compiled on the first call from the templates the topology references at that time.
+     *
+     * @return The plan to evaluate the functions of the topology.
+     */
+    public synchronized FunctionEvaluationPlan getFunctionEvaluationPlan() {
+        if (functionEvaluationPlan == null) {
+            functionEvaluationPlan = FunctionEvaluationPlan.compile(allNodes);
+        }
+        return functionEvaluationPlan;
+    }
+
+    /**
+     * Set the plan to evaluate the functions of the topology, it must reference the templates of this topology.
+     *
+     * @param functionEvaluationPlan The plan to evaluate the functions of the topology.
+     */
+    public synchronized void setFunctionEvaluationPlan(FunctionEvaluationPlan functionEvaluationPlan) {
+        this.functionEvaluationPlan = functionEvaluationPlan;
+    }
 }
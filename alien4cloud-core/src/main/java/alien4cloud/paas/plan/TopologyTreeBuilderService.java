@@ -2,14 +2,20 @@ package alien4cloud.paas.plan;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import javax.annotation.PostConstruct;
 import javax.inject.Inject;
 
+import org.alien4cloud.tosca.catalog.events.AfterArchiveDeleted;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
 import org.alien4cloud.tosca.catalog.index.IToscaTypeSearchService;
 import org.alien4cloud.tosca.catalog.repository.CsarFileRepository;
 import org.alien4cloud.tosca.model.definitions.ConcatPropertyValue;
@@ -38,16 +44,22 @@ import org.alien4cloud.tosca.topology.TopologyDTOBuilder;
 import org.alien4cloud.tosca.utils.ToscaTypeUtils;
 import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.rits.cloning.Cloner;
 
 import alien4cloud.exception.AlreadyExistException;
 import alien4cloud.model.components.IndexedModelUtils;
+import alien4cloud.model.deployment.DeploymentTopology;
 import alien4cloud.paas.IPaaSTemplate;
 import alien4cloud.paas.exception.InvalidTopologyException;
+import alien4cloud.paas.function.FunctionEvaluationPlan;
 import alien4cloud.paas.function.FunctionEvaluator;
 import alien4cloud.paas.model.AbstractPaaSTemplate;
 import alien4cloud.paas.model.PaaSNodeTemplate;
@@ -71,6 +83,9 @@ import lombok.extern.slf4j.Slf4j;
 @Component
 @Slf4j
 public class TopologyTreeBuilderService {
+    /** Maximum number of deployment topologies for which the built PaaSTopology is kept in memory. */
+    private static final int MAX_CACHED_TOPOLOGIES = 20;
+
     @Inject
     private CsarFileRepository repository;
     @Inject
@@ -78,6 +93,28 @@ public class TopologyTreeBuilderService {
     @Inject
     private TopologyDTOBuilder topologyDTOBuilder;
 
+    @Value("${features.paas_topology_cache:#{true}}")
+    private boolean cacheEnabled;
+
+    private final Cloner cloner = new Cloner();
+    /** Last built PaaSTopology per deployment id. */
+    private final Map<String, CachedPaaSTopology> paaSTopologies = new LinkedHashMap<String, CachedPaaSTopology>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPaaSTopology> eldest) {
+            return size() > MAX_CACHED_TOPOLOGIES;
+        }
+    };
+    /** Incremented when the catalog changes so that a PaaSTopology built from outdated types is not cached. */
+    private long cacheGeneration;
+
+    @PostConstruct
+    public void init() {
+        // paths are immutable and templates are bound to the ones of the deployment topology when a cached PaaSTopology is returned.
+        cloner.dontCloneInstanceOf(Path.class, AbstractInstantiableTemplate.class);
+        // the plan of the cached topology is rebound to the templates of the copies.
+        cloner.nullInsteadOfClone(FunctionEvaluationPlan.class);
+    }
+
     /**
      * Fetch information from the repository to complete the topology node template informations with additional data such as artifacts paths etc.
      *
@@ -88,21 +125,23 @@ public class TopologyTreeBuilderService {
         Map<String, PaaSNodeTemplate> nodeTemplates = Maps.newHashMap();
         // Fill in PaaSNodeTemplate by fetching node types and CSAR path from the repositories.
         if (topology.getNodeTemplates() != null) {
+            TypeIndex typeIndex = new TypeIndex();
+            Map<String, Set<String>> groupsByMember = getGroupsByMember(topology);
             for (Entry<String, NodeTemplate> templateEntry : topology.getNodeTemplates().entrySet()) {
                 NodeTemplate template = templateEntry.getValue();
 
                 PaaSNodeTemplate paaSNodeTemplate = new PaaSNodeTemplate(templateEntry.getKey(), template);
 
-                fillType(topology, template, paaSNodeTemplate, NodeType.class);
-                mergeInterfaces(paaSNodeTemplate, template);
+                fillType(typeIndex, template, paaSNodeTemplate, NodeType.class);
+                mergeInterfaces(typeIndex, paaSNodeTemplate, template);
 
                 if (template.getRelationships() != null) {
                     for (Map.Entry<String, RelationshipTemplate> relationshipEntry : template.getRelationships().entrySet()) {
                         RelationshipTemplate relationshipTemplate = relationshipEntry.getValue();
                         PaaSRelationshipTemplate paaSRelationshipTemplate = new PaaSRelationshipTemplate(relationshipEntry.getKey(), relationshipTemplate,
                                 paaSNodeTemplate.getId());
-                        fillType(topology, relationshipTemplate, paaSRelationshipTemplate, RelationshipType.class);
-                        mergeInterfaces(paaSRelationshipTemplate, relationshipTemplate);
+                        fillType(typeIndex, relationshipTemplate, paaSRelationshipTemplate, RelationshipType.class);
+                        mergeInterfaces(typeIndex, paaSRelationshipTemplate, relationshipTemplate);
                         paaSNodeTemplate.getRelationshipTemplates().add(paaSRelationshipTemplate);
                     }
                 }
@@ -114,14 +153,9 @@ public class TopologyTreeBuilderService {
                         paaSNodeTemplate.setScalingPolicy(scalingPolicy);
                     }
                 }
-                if (topology.getGroups() != null) {
-                    Set<String> nodeGroups = Sets.newHashSet();
-                    for (Map.Entry<String, NodeGroup> groupEntry : topology.getGroups().entrySet()) {
-                        if (groupEntry.getValue().getMembers() != null && groupEntry.getValue().getMembers().contains(templateEntry.getKey())) {
-                            nodeGroups.add(groupEntry.getKey());
-                        }
-                    }
-                    paaSNodeTemplate.setGroups(nodeGroups);
+                if (groupsByMember != null) {
+                    Set<String> nodeGroups = groupsByMember.get(templateEntry.getKey());
+                    paaSNodeTemplate.setGroups(nodeGroups == null ? Sets.newHashSet() : nodeGroups);
                 }
                 nodeTemplates.put(templateEntry.getKey(), paaSNodeTemplate);
             }
@@ -129,6 +163,27 @@ public class TopologyTreeBuilderService {
         return nodeTemplates;
     }
 
+    /**
+     * Get the groups of the nodes of a topology.
+     *
+     * @param topology The topology.
+     * @return The names of the groups per member node, null if the topology has no groups.
+     */
+    private Map<String, Set<String>> getGroupsByMember(Topology topology) {
+        if (topology.getGroups() == null) {
+            return null;
+        }
+        Map<String, Set<String>> groupsByMember = Maps.newHashMap();
+        for (Map.Entry<String, NodeGroup> groupEntry : topology.getGroups().entrySet()) {
+            if (groupEntry.getValue().getMembers() != null) {
+                for (String member : groupEntry.getValue().getMembers()) {
+                    groupsByMember.computeIfAbsent(member, key -> Sets.newHashSet()).add(groupEntry.getKey());
+                }
+            }
+        }
+        return groupsByMember;
+    }
+
     /**
      * Get the non-natives node of a topology.
      * 
@@ -156,16 +211,17 @@ public class TopologyTreeBuilderService {
     }
 
     @SneakyThrows
-    private void mergeInterfaces(AbstractPaaSTemplate pasSTemplate, AbstractInstantiableTemplate abstractTemplate) {
+    private void mergeInterfaces(TypeIndex typeIndex, AbstractPaaSTemplate pasSTemplate, AbstractInstantiableTemplate abstractTemplate) {
         AbstractToscaType type = pasSTemplate.getIndexedToscaElement();
-        Map<String, Interface> typeInterfaces = null;
-        if (type instanceof AbstractInstantiableToscaType) {
-            typeInterfaces = ((AbstractInstantiableToscaType) type).getInterfaces();
+        // the serialized interfaces of a type are shared by its templates, each template gets its own copy as operations outputs are registered in it.
+        String typeInterfaces = typeIndex.interfaces.get(type);
+        if (typeInterfaces == null) {
+            typeInterfaces = JsonUtil.toString(type instanceof AbstractInstantiableToscaType ? ((AbstractInstantiableToscaType) type).getInterfaces() : null);
+            typeIndex.interfaces.put(type, typeInterfaces);
         }
         Map<String, Interface> templateInterfaces = abstractTemplate.getInterfaces();
         // Here merge interfaces: the interface defined in the template should override those from type.
-        pasSTemplate.setInterfaces(
-                IndexedModelUtils.mergeInterfaces(JsonUtil.toMap(JsonUtil.toString(typeInterfaces), String.class, Interface.class), templateInterfaces));
+        pasSTemplate.setInterfaces(IndexedModelUtils.mergeInterfaces(JsonUtil.toMap(typeInterfaces, String.class, Interface.class), templateInterfaces));
     }
 
     /**
@@ -188,6 +244,81 @@ public class TopologyTreeBuilderService {
         return paaSTopology;
     }
 
+    /**
+     * Get the topology for deployment on the PaaS of the runtime topology of a deployment. The PaaSTopology is built once per version of the runtime topology
+     * (saving the topology updates its last update date), the returned instance is a copy that the caller is free to modify.
+     *
+     * @param deploymentId The id of the deployment.
+     * @param deploymentTopology The runtime topology of the deployment, as it has been saved.
+     * @return The parsed topology for the PaaS.
+     */
+    @ToscaContextual
+    public PaaSTopology getPaaSTopology(String deploymentId, DeploymentTopology deploymentTopology) {
+        List<Object> version = cacheEnabled && deploymentId != null ? version(deploymentTopology) : null;
+        if (version == null) {
+            return buildPaaSTopology(deploymentTopology);
+        }
+        CachedPaaSTopology cached;
+        long generation;
+        synchronized (paaSTopologies) {
+            cached = paaSTopologies.get(deploymentId);
+            generation = cacheGeneration;
+        }
+        if (cached != null && cached.version.equals(version)) {
+            log.debug("Reuse PaaSTopology built for deployment <{}>", deploymentId);
+            PaaSTopology paaSTopology = bindTemplates(cloner.deepClone(cached.paaSTopology), deploymentTopology);
+            // functions are compiled once for all the copies of the cached topology
+            paaSTopology.setFunctionEvaluationPlan(cached.paaSTopology.getFunctionEvaluationPlan().rebind(paaSTopology.getAllNodes()));
+            return paaSTopology;
+        }
+        PaaSTopology paaSTopology = buildPaaSTopology(deploymentTopology);
+        CachedPaaSTopology built = new CachedPaaSTopology(version, cloner.deepClone(paaSTopology));
+        synchronized (paaSTopologies) {
+            if (generation == cacheGeneration) {
+                paaSTopologies.put(deploymentId, built);
+            }
+        }
+        return paaSTopology;
+    }
+
+    /**
+     * Forget about all the built PaaSTopology. Types of the catalog are implicit inputs of the build.
+     */
+    @EventListener(classes = { AfterArchiveIndexed.class, AfterArchiveDeleted.class })
+    public void clearCache() {
+        synchronized (paaSTopologies) {
+            paaSTopologies.clear();
+            cacheGeneration++;
+        }
+    }
+
+    /**
+     * Get the version of a deployment topology, null if the topology has never been saved.
+     */
+    private List<Object> version(DeploymentTopology deploymentTopology) {
+        if (deploymentTopology.getLastUpdateDate() == null) {
+            return null;
+        }
+        Date lastDeploymentTopologyUpdateDate = deploymentTopology.getLastDeploymentTopologyUpdateDate();
+        return Arrays.asList(deploymentTopology.getVersionId(), deploymentTopology.getLastUpdateDate().getTime(),
+                lastDeploymentTopologyUpdateDate == null ? null : lastDeploymentTopologyUpdateDate.getTime());
+    }
+
+    /**
+     * Make the templates of a copied PaaSTopology reference the node and relationship templates of the topology it is returned for.
+     */
+    private PaaSTopology bindTemplates(PaaSTopology paaSTopology, Topology topology) {
+        for (PaaSNodeTemplate paaSNodeTemplate : paaSTopology.getAllNodes().values()) {
+            NodeTemplate nodeTemplate = topology.getNodeTemplates().get(paaSNodeTemplate.getId());
+            paaSNodeTemplate.setTemplate(nodeTemplate);
+            for (PaaSRelationshipTemplate paaSRelationshipTemplate : paaSNodeTemplate.getRelationshipTemplates()) {
+                NodeTemplate source = topology.getNodeTemplates().get(paaSRelationshipTemplate.getSource());
+                paaSRelationshipTemplate.setTemplate(source.getRelationships().get(paaSRelationshipTemplate.getId()));
+            }
+        }
+        return paaSTopology;
+    }
+
     /**
      * Build the topology for deployment on the PaaS.
      *
@@ -203,9 +334,9 @@ public class TopologyTreeBuilderService {
         Map<String, List<PaaSNodeTemplate>> groups = Maps.newHashMap();
         for (Entry<String, PaaSNodeTemplate> entry : nodeTemplates.entrySet()) {
             PaaSNodeTemplate paaSNodeTemplate = entry.getValue();
-            boolean isCompute = ToscaTypeUtils.isOfType(paaSNodeTemplate.getIndexedToscaElement(), NormativeComputeConstants.COMPUTE_TYPE);
-            boolean isNetwork = ToscaTypeUtils.isOfType(paaSNodeTemplate.getIndexedToscaElement(), NormativeNetworkConstants.NETWORK_TYPE);
-            boolean isVolume = ToscaTypeUtils.isOfType(paaSNodeTemplate.getIndexedToscaElement(), NormativeBlockStorageConstants.BLOCKSTORAGE_TYPE);
+            boolean isCompute = paaSNodeTemplate.instanceOf(NormativeComputeConstants.COMPUTE_TYPE);
+            boolean isNetwork = paaSNodeTemplate.instanceOf(NormativeNetworkConstants.NETWORK_TYPE);
+            boolean isVolume = paaSNodeTemplate.instanceOf(NormativeBlockStorageConstants.BLOCKSTORAGE_TYPE);
             if (isVolume) {
                 // manage block storage
                 processBlockStorage(paaSNodeTemplate, nodeTemplates);
@@ -320,24 +451,49 @@ public class TopologyTreeBuilderService {
     }
 
     @SuppressWarnings("unchecked")
-    private <V extends AbstractInheritableToscaType> void fillType(Topology topology, AbstractInstantiableTemplate template, IPaaSTemplate<V> paaSTemplate,
-            Class<V> clazz) {
-        V indexedToscaElement = ToscaContext.getOrFail(clazz, template.getType());
+    private <V extends AbstractInheritableToscaType> void fillType(TypeIndex typeIndex, AbstractInstantiableTemplate template,
+            AbstractPaaSTemplate<V, ?> paaSTemplate, Class<V> clazz) {
+        IndexedType<V> indexedType = (IndexedType<V>) typeIndex.types.get(clazz.getSimpleName() + ":" + template.getType());
+        if (indexedType == null) {
+            indexedType = indexType(typeIndex, template.getType(), clazz);
+            typeIndex.types.put(clazz.getSimpleName() + ":" + template.getType(), indexedType);
+        }
+        V indexedToscaElement = indexedType.type;
         paaSTemplate.setIndexedToscaElement(indexedToscaElement);
-        List<String> derivedFroms = indexedToscaElement.getDerivedFrom();
-        List<V> derivedFromTypes = Lists.newArrayList();
+        paaSTemplate.setDerivedFroms(Lists.newArrayList(indexedType.derivedFroms));
+        paaSTemplate.setTypeHierarchy(indexedType.typeHierarchy);
+        if (indexedType.csarPath != null) {
+            paaSTemplate.setCsarPath(indexedType.csarPath);
+        } else {
+            log.debug("No csarPath for " + indexedToscaElement + "; not setting in " + paaSTemplate);
+        }
+    }
+
+    private <V extends AbstractInheritableToscaType> IndexedType<V> indexType(TypeIndex typeIndex, String typeName, Class<V> clazz) {
+        IndexedType<V> indexedType = new IndexedType<>();
+        indexedType.type = ToscaContext.getOrFail(clazz, typeName);
+        List<String> derivedFroms = indexedType.type.getDerivedFrom();
+        indexedType.derivedFroms = Lists.newArrayList();
         if (derivedFroms != null) {
             for (String derivedFrom : derivedFroms) {
-                derivedFromTypes.add(ToscaContext.get(clazz, derivedFrom));
+                indexedType.derivedFroms.add(ToscaContext.get(clazz, derivedFrom));
             }
         }
-        paaSTemplate.setDerivedFroms(derivedFromTypes);
-        try {
-            Path csarPath = repository.getCSAR(indexedToscaElement.getArchiveName(), indexedToscaElement.getArchiveVersion());
-            paaSTemplate.setCsarPath(csarPath);
-        } catch (AlreadyExistException e) {
-            log.debug("No csarPath for " + indexedToscaElement + "; not setting in " + paaSTemplate);
+        ImmutableSet.Builder<String> typeHierarchy = ImmutableSet.<String> builder().add(indexedType.type.getElementId());
+        indexedType.typeHierarchy = (derivedFroms == null ? typeHierarchy : typeHierarchy.addAll(derivedFroms)).build();
+        // getting the path may zip the archive, do it once per archive.
+        String archiveId = indexedType.type.getArchiveName() + ":" + indexedType.type.getArchiveVersion();
+        if (typeIndex.csarPaths.containsKey(archiveId)) {
+            indexedType.csarPath = typeIndex.csarPaths.get(archiveId);
+        } else {
+            try {
+                indexedType.csarPath = repository.getCSAR(indexedType.type.getArchiveName(), indexedType.type.getArchiveVersion());
+            } catch (AlreadyExistException e) {
+                // no path for the archive
+            }
+            typeIndex.csarPaths.put(archiveId, indexedType.csarPath);
         }
+        return indexedType;
     }
 
     /**
@@ -445,4 +601,32 @@ public class TopologyTreeBuilderService {
         }
     }
 
+    /**
+     * Types resolved while building the PaaS templates of a topology, the templates of a same type share them.
+     */
+    private static class TypeIndex {
+        /** Indexed types per type class and id. */
+        private final Map<String, IndexedType<?>> types = Maps.newHashMap();
+        /** Path of the archives per archive id, null if the archive has no path. */
+        private final Map<String, Path> csarPaths = Maps.newHashMap();
+        /** Serialized interfaces per type. */
+        private final Map<AbstractToscaType, String> interfaces = Maps.newIdentityHashMap();
+    }
+
+    private static class IndexedType<V extends AbstractInheritableToscaType> {
+        private V type;
+        private List<V> derivedFroms;
+        private Set<String> typeHierarchy;
+        private Path csarPath;
+    }
+
+    private static class CachedPaaSTopology {
+        private final List<Object> version;
+        private final PaaSTopology paaSTopology;
+
+        private CachedPaaSTopology(List<Object> version, PaaSTopology paaSTopology) {
+            this.version = version;
+            this.paaSTopology = paaSTopology;
+        }
+    }
 }
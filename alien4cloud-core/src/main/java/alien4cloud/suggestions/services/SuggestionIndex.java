@@ -0,0 +1,144 @@
+package alien4cloud.suggestions.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index of the values of a suggestion entry, used to prune the values that cannot match an input before computing their Jaro-Winkler distance.
+ * <p>
+ * Values are indexed by the characters of their normalized form. Jaro-Winkler only matches characters that both strings have in common so the number of
+ * characters that a value shares with the input gives an upper bound of their distance.
+ * </p>
+ */
+class SuggestionIndex {
+    /** Maximum length of the common prefix taken into account by the Winkler boost. */
+    private static final int MAX_PREFIX_LENGTH = 4;
+    private static final double SCALING_FACTOR = 0.1;
+    /** Jaro-Winkler distance is rounded to 2 decimals. */
+    private static final double ROUNDING_ERROR = 0.005;
+
+    private final Set<String> valueSet = new HashSet<>();
+    private final List<String> values = new ArrayList<>();
+    private final List<String> normalizedValues = new ArrayList<>();
+    /** For every character, the values that contains it and the number of occurrences. */
+    private final Map<Character, Postings> postings = new HashMap<>();
+
+    SuggestionIndex(Collection<String> initialValues) {
+        for (String value : initialValues) {
+            add(value);
+        }
+    }
+
+    /**
+     * Normalize a text so that matching ignores white spaces and case.
+     *
+     * @param value The value to normalize.
+     * @return The normalized value.
+     */
+    static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        String noWhiteSpace = value.replace(" ", "");
+        return noWhiteSpace.toLowerCase();
+    }
+
+    /**
+     * Add a value to the index.
+     *
+     * @param value The value to add.
+     */
+    synchronized void add(String value) {
+        if (!valueSet.add(value)) {
+            return;
+        }
+        String normalizedValue = normalize(value);
+        int entry = values.size();
+        values.add(value);
+        normalizedValues.add(normalizedValue);
+        for (Map.Entry<Character, Integer> characterCount : countCharacters(normalizedValue).entrySet()) {
+            postings.computeIfAbsent(characterCount.getKey(), character -> new Postings()).add(entry, characterCount.getValue());
+        }
+    }
+
+    /**
+     * Get the first indexed values.
+     *
+     * @param limit The maximum number of values to return.
+     * @return The first values of the index, in their insertion order.
+     */
+    synchronized List<String> getValues(int limit) {
+        return new ArrayList<>(values.subList(0, Math.min(limit, values.size())));
+    }
+
+    /**
+     * Get the values which Jaro-Winkler distance with the input may be greater than the given minimum.
+     *
+     * @param normalizedInput The normalized input to match.
+     * @param minJaroWinkler The minimum distance, exclusive.
+     * @return A map of the candidate values to their normalized form.
+     */
+    synchronized Map<String, String> getCandidates(String normalizedInput, double minJaroWinkler) {
+        Map<String, String> candidates = new LinkedHashMap<>();
+        int[] commonCharacters = new int[values.size()];
+        for (Map.Entry<Character, Integer> characterCount : countCharacters(normalizedInput).entrySet()) {
+            Postings characterPostings = postings.get(characterCount.getKey());
+            if (characterPostings != null) {
+                for (int i = 0; i < characterPostings.size; i++) {
+                    commonCharacters[characterPostings.entries[i]] += Math.min(characterCount.getValue(), characterPostings.counts[i]);
+                }
+            }
+        }
+        for (int entry = 0; entry < commonCharacters.length; entry++) {
+            if (commonCharacters[entry] > 0) {
+                String normalizedValue = normalizedValues.get(entry);
+                if (getMaxJaroWinkler(normalizedInput, normalizedValue, commonCharacters[entry]) > minJaroWinkler) {
+                    candidates.put(values.get(entry), normalizedValue);
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private static double getMaxJaroWinkler(String first, String second, int commonCharacters) {
+        // at best all common characters match without transposition
+        double jaro = ((double) commonCharacters / first.length() + (double) commonCharacters / second.length() + 1) / 3;
+        int prefixLength = 0;
+        int maxPrefixLength = Math.min(MAX_PREFIX_LENGTH, Math.min(first.length(), second.length()));
+        while (prefixLength < maxPrefixLength && first.charAt(prefixLength) == second.charAt(prefixLength)) {
+            prefixLength++;
+        }
+        return jaro + SCALING_FACTOR * prefixLength * (1 - jaro) + ROUNDING_ERROR;
+    }
+
+    private static Map<Character, Integer> countCharacters(String value) {
+        Map<Character, Integer> counts = new HashMap<>();
+        for (int i = 0; i < value.length(); i++) {
+            counts.merge(value.charAt(i), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static class Postings {
+        private int[] entries = new int[4];
+        private int[] counts = new int[4];
+        private int size;
+
+        private void add(int entry, int count) {
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            entries[size] = entry;
+            counts[size] = count;
+            size++;
+        }
+    }
+}
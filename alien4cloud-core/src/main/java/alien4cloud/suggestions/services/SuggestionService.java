@@ -3,15 +3,15 @@ package alien4cloud.suggestions.services;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Array;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
@@ -46,7 +46,6 @@ import com.google.common.collect.Sets;
 import alien4cloud.dao.ElasticSearchDAO;
 import alien4cloud.dao.IGenericSearchDAO;
 import alien4cloud.dao.model.FetchContext;
-import alien4cloud.dao.model.GetMultipleDataResult;
 import alien4cloud.exception.InvalidArgumentException;
 import alien4cloud.exception.NotFoundException;
 import alien4cloud.model.common.AbstractSuggestionEntry;
@@ -73,6 +72,9 @@ public class SuggestionService {
     /* The Levenshtein distance is a string metric for measuring the difference between two sequences. */
     private static final double MIN_JAROWINKLER = 0.0;
 
+    /** Candidate indexes of the suggestion values by suggestion id, loaded on first match and updated when a value is added. */
+    private final Map<String, SuggestionIndex> suggestionIndexes = new ConcurrentHashMap<>();
+
     /**
      * This method load the defaults suggestions to ES.
      * 
@@ -84,7 +86,7 @@ public class SuggestionService {
             SuggestionEntry[] suggestions = YamlParserUtil.parse(input, SuggestionEntry[].class);
             for (SuggestionEntry suggestionEntry : suggestions) {
                 if (!isSuggestionExist(suggestionEntry)) {
-                    alienDAO.save(suggestionEntry);
+                    saveSuggestionEntry(suggestionEntry);
                     try {
                         setSuggestionIdOnPropertyDefinition(suggestionEntry);
                     } catch (Exception e) {
@@ -109,13 +111,12 @@ public class SuggestionService {
         }
     }
 
-    private AbstractSuggestionEntry checkProperty(String nodePrefix, String propertyName, String propertyTextValue,
-            Class<? extends AbstractInheritableToscaType> type, String elementId, ParsingContext context) {
-        AbstractSuggestionEntry suggestionEntry = getSuggestionEntry(ElasticSearchDAO.TOSCA_ELEMENT_INDEX, type.getSimpleName().toLowerCase(), elementId,
-                propertyName);
-        if (suggestionEntry != null) {
-            PriorityQueue<SuggestionService.MatchedSuggestion> similarValues = getJaroWinklerMatchedSuggestions(suggestionEntry.getSuggestions(),
-                    propertyTextValue, 0.8);
+    private boolean checkProperty(String nodePrefix, String propertyName, String propertyTextValue, Class<? extends AbstractInheritableToscaType> type,
+            String elementId, ParsingContext context) {
+        String suggestionId = SuggestionEntry.generateId(ElasticSearchDAO.TOSCA_ELEMENT_INDEX, type.getSimpleName().toLowerCase(), elementId, propertyName);
+        SuggestionIndex suggestionIndex = getSuggestionIndex(suggestionId);
+        if (suggestionIndex != null) {
+            PriorityQueue<SuggestionService.MatchedSuggestion> similarValues = getJaroWinklerMatchedSuggestions(suggestionIndex, propertyTextValue, 0.8);
             if (!similarValues.isEmpty()) {
                 // Has some similar values in the system already
                 SuggestionService.MatchedSuggestion mostMatched = similarValues.poll();
@@ -129,7 +130,7 @@ public class SuggestionService {
                         // It's pretty similar
                         level = ParsingErrorLevel.INFO;
                         // Add suggestion anyway
-                        addSuggestionValueToSuggestionEntry(suggestionEntry.getId(), propertyTextValue);
+                        addSuggestionValueToSuggestionEntry(suggestionId, propertyTextValue);
                     }
                     context.getParsingErrors()
                             .add(new ParsingError(level, ErrorCode.POTENTIAL_BAD_PROPERTY_VALUE, null, null, null, null, "At path [" + nodePrefix + "."
@@ -137,10 +138,10 @@ public class SuggestionService {
                 }
             } else {
                 // Not similar add suggestion
-                addSuggestionValueToSuggestionEntry(suggestionEntry.getId(), propertyTextValue);
+                addSuggestionValueToSuggestionEntry(suggestionId, propertyTextValue);
             }
         }
-        return suggestionEntry;
+        return suggestionIndex != null;
     }
 
     private void checkProperties(String nodePrefix, Map<String, AbstractPropertyValue> propertyValueMap, Class<? extends AbstractInheritableToscaType> type,
@@ -252,7 +253,7 @@ public class SuggestionService {
         suggestionEntry.setSuggestions(initialValues);
         suggestionEntry.setTargetElementId(elementId);
         suggestionEntry.setTargetProperty(propertyName);
-        alienDAO.save(suggestionEntry);
+        saveSuggestionEntry(suggestionEntry);
         setSuggestionIdOnPropertyDefinition(suggestionEntry);
     }
 
@@ -260,7 +261,13 @@ public class SuggestionService {
      * Create a new simple suggestion entry.
      */
     public void createSimpleSuggestionEntry(SimpleSuggestionEntry suggestionEntry) {
+        saveSuggestionEntry(suggestionEntry);
+    }
+
+    private void saveSuggestionEntry(AbstractSuggestionEntry suggestionEntry) {
         alienDAO.save(suggestionEntry);
+        // the entry may replace an existing one, its index will be loaded again on next match
+        suggestionIndexes.remove(suggestionEntry.getId());
     }
 
     private void checkPropertyConstraints(String prefix, Class<? extends AbstractInheritableToscaType> type, String elementId, String propertyName,
@@ -270,22 +277,22 @@ public class SuggestionService {
                 if (propertyConstraint instanceof EqualConstraint) {
                     EqualConstraint equalConstraint = (EqualConstraint) propertyConstraint;
                     String valueToCheck = equalConstraint.getEqual();
-                    if (checkProperty(prefix, propertyName, valueToCheck, type, elementId, context) == null) {
+                    if (!checkProperty(prefix, propertyName, valueToCheck, type, elementId, context)) {
                         createSuggestionEntry(ElasticSearchDAO.TOSCA_ELEMENT_INDEX, CapabilityType.class, Sets.newHashSet(valueToCheck), elementId,
                                 propertyName);
                     }
                 } else if (propertyConstraint instanceof ValidValuesConstraint) {
                     ValidValuesConstraint validValuesConstraint = (ValidValuesConstraint) propertyConstraint;
                     if (validValuesConstraint.getValidValues() != null && !validValuesConstraint.getValidValues().isEmpty()) {
-                        AbstractSuggestionEntry foundSuggestion = null;
+                        boolean foundSuggestion = false;
                         for (String valueToCheck : validValuesConstraint.getValidValues()) {
                             foundSuggestion = checkProperty(prefix, propertyName, valueToCheck, type, elementId, context);
-                            if (foundSuggestion == null) {
+                            if (!foundSuggestion) {
                                 // No suggestion exists don't need to check any more for other values
                                 break;
                             }
                         }
-                        if (foundSuggestion == null) {
+                        if (!foundSuggestion) {
                             createSuggestionEntry(ElasticSearchDAO.TOSCA_ELEMENT_INDEX, CapabilityType.class,
                                     Sets.newHashSet(validValuesConstraint.getValidValues()), elementId, propertyName);
                         }
@@ -351,14 +358,24 @@ public class SuggestionService {
         }
         suggestion.getSuggestions().add(newValue);
         alienDAO.save(suggestion);
+        // the value is saved first so that an index loaded concurrently contains it
+        suggestionIndexes.computeIfPresent(suggestionId, (id, suggestionIndex) -> {
+            suggestionIndex.add(newValue);
+            return suggestionIndex;
+        });
     }
 
-    private String normalizeTextForMatching(String value) {
-        if (value == null) {
-            return "";
-        }
-        String noWhiteSpace = value.replace(" ", "");
-        return noWhiteSpace.toLowerCase();
+    /**
+     * Get the candidate index of the values of a suggestion entry, loading it on first access.
+     *
+     * @param suggestionId id of the suggestion
+     * @return the index of the suggestion values or null if the suggestion entry does not exist.
+     */
+    private SuggestionIndex getSuggestionIndex(String suggestionId) {
+        return suggestionIndexes.computeIfAbsent(suggestionId, id -> {
+            AbstractSuggestionEntry suggestionEntry = alienDAO.findById(AbstractSuggestionEntry.class, id);
+            return suggestionEntry == null ? null : new SuggestionIndex(suggestionEntry.getSuggestions());
+        });
     }
 
     public static class MatchedSuggestion {
@@ -379,9 +396,8 @@ public class SuggestionService {
         }
     }
 
-    private MatchedSuggestion getMatch(String suggestion, String normalizedValue, double minJarowinkler) {
+    private MatchedSuggestion getMatch(String suggestion, String normalizedSuggestion, String normalizedValue, double minJarowinkler) {
         // Compute the match score between the suggestion and the normalized value
-        String normalizedSuggestion = normalizeTextForMatching(suggestion);
         double distance = StringUtils.getJaroWinklerDistance(normalizedValue, normalizedSuggestion);
         if (distance == 1 && !normalizedValue.equals(normalizedSuggestion)) {
             distance = 0.999;
@@ -393,18 +409,35 @@ public class SuggestionService {
         }
     }
 
-    public PriorityQueue<MatchedSuggestion> getJaroWinklerMatchedSuggestions(Set<String> allSuggestions, String input, double minJaroWinkler) {
-        String normalizedInput = normalizeTextForMatching(input);
+    private PriorityQueue<MatchedSuggestion> newMatchedSuggestionQueue() {
         // The priority queue is here is to see what is the value that matches the suggestion the most
-        PriorityQueue<MatchedSuggestion> matchedSuggestions = new PriorityQueue<>(10, Collections.reverseOrder(new Comparator<MatchedSuggestion>() {
+        return new PriorityQueue<>(10, Collections.reverseOrder(new Comparator<MatchedSuggestion>() {
             @Override
             public int compare(MatchedSuggestion o1, MatchedSuggestion o2) {
                 return o1.priority.compareTo(o2.priority);
             }
         }));
+    }
+
+    public PriorityQueue<MatchedSuggestion> getJaroWinklerMatchedSuggestions(Set<String> allSuggestions, String input, double minJaroWinkler) {
+        String normalizedInput = SuggestionIndex.normalize(input);
+        PriorityQueue<MatchedSuggestion> matchedSuggestions = newMatchedSuggestionQueue();
         // Process matched text with its score
         for (String suggestion : allSuggestions) {
-            MatchedSuggestion matchedSuggestion = getMatch(suggestion, normalizedInput, minJaroWinkler);
+            MatchedSuggestion matchedSuggestion = getMatch(suggestion, SuggestionIndex.normalize(suggestion), normalizedInput, minJaroWinkler);
+            if (matchedSuggestion != null) {
+                matchedSuggestions.add(matchedSuggestion);
+            }
+        }
+        return matchedSuggestions;
+    }
+
+    private PriorityQueue<MatchedSuggestion> getJaroWinklerMatchedSuggestions(SuggestionIndex suggestionIndex, String input, double minJaroWinkler) {
+        String normalizedInput = SuggestionIndex.normalize(input);
+        PriorityQueue<MatchedSuggestion> matchedSuggestions = newMatchedSuggestionQueue();
+        // Only score the values that the index could not rule out
+        for (Map.Entry<String, String> candidate : suggestionIndex.getCandidates(normalizedInput, minJaroWinkler).entrySet()) {
+            MatchedSuggestion matchedSuggestion = getMatch(candidate.getKey(), candidate.getValue(), normalizedInput, minJaroWinkler);
             if (matchedSuggestion != null) {
                 matchedSuggestions.add(matchedSuggestion);
             }
@@ -421,20 +454,16 @@ public class SuggestionService {
      * @return the suggestions ordered by the most match.
      */
     public String[] getJaroWinklerMatchedSuggestions(String suggestionId, String input, int limit) {
-        Set<String> allSuggestions = getSuggestions(suggestionId);
-        if (limit > allSuggestions.size()) {
-            limit = allSuggestions.size();
+        SuggestionIndex suggestionIndex = getSuggestionIndex(suggestionId);
+        if (suggestionIndex == null) {
+            throw new NotFoundException("Suggestion entry [" + suggestionId + "] cannot be found");
         }
         if (StringUtils.isBlank(input)) {
             // Finish prematurely the algorithm as the searched value is empty
-            String[] matches = new String[limit];
-            Iterator<String> allSuggestionsIterator = allSuggestions.iterator();
-            for (int i = 0; i < limit; i++) {
-                matches[i] = allSuggestionsIterator.next();
-            }
-            return matches;
+            List<String> matches = suggestionIndex.getValues(limit);
+            return matches.toArray(new String[matches.size()]);
         }
-        PriorityQueue<MatchedSuggestion> matchedSuggestions = getJaroWinklerMatchedSuggestions(allSuggestions, input, MIN_JAROWINKLER);
+        PriorityQueue<MatchedSuggestion> matchedSuggestions = getJaroWinklerMatchedSuggestions(suggestionIndex, input, MIN_JAROWINKLER);
         if (limit > matchedSuggestions.size()) {
             limit = matchedSuggestions.size();
         }
@@ -480,12 +509,9 @@ public class SuggestionService {
      * @return all suggestion entries without their values
      */
     private List<AbstractSuggestionEntry> getAllSuggestionEntries() {
-        GetMultipleDataResult<AbstractSuggestionEntry> result = alienDAO.search(AbstractSuggestionEntry.class, null, null, FetchContext.SUMMARY, 0,
-                Integer.MAX_VALUE);
-        if (result.getData() != null && result.getData().length > 0) {
-            return Arrays.asList(result.getData());
-        } else {
-            return new ArrayList<>();
+        try (Stream<AbstractSuggestionEntry> entries = alienDAO.buildQuery(AbstractSuggestionEntry.class).prepareSearch().setFetchContext(FetchContext.SUMMARY)
+                .stream()) {
+            return entries.collect(Collectors.toList());
         }
     }
 
@@ -0,0 +1,43 @@
+package alien4cloud.topology;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.workflow.Workflow;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Topology DTO that contains only the changes since a version of the topology known by the editor client.
+ * <p>
+ * When the known version is not set or cannot be found the DTO contains the full topology and baseVersion is null. Otherwise:
+ * <ul>
+ * <li>the topology is set, without node templates and workflows, only if one of its other fields has changed,</li>
+ * <li>the type maps only contain the types that were not referenced in the known version,</li>
+ * <li>the archive content tree is set only if it has changed,</li>
+ * <li>the operations only contain the operations after operationsOffset.</li>
+ * </ul>
+ * </p>
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+public class TopologyDeltaDTO extends TopologyDTO {
+    /** Version of the topology in this DTO, to send as the known version on next editor request. */
+    private String version;
+    /** Version on which the changes apply or null if the DTO contains the full topology. */
+    private String baseVersion;
+    /** Number of operations of the base version that are unchanged. */
+    private int operationsOffset;
+    /** Node templates added or updated since the base version. */
+    private Map<String, NodeTemplate> updatedNodeTemplates;
+    /** Names of the node templates removed since the base version. */
+    private Set<String> removedNodeTemplates;
+    /** Workflows added or updated since the base version. */
+    private Map<String, Workflow> updatedWorkflows;
+    /** Names of the workflows removed since the base version. */
+    private Set<String> removedWorkflows;
+}
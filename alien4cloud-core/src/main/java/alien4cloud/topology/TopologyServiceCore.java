@@ -22,12 +22,14 @@ import org.alien4cloud.tosca.model.types.NodeType;
 import org.alien4cloud.tosca.model.types.PolicyType;
 import org.alien4cloud.tosca.model.types.RelationshipType;
 import org.elasticsearch.common.collect.Lists;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Maps;
 
 import alien4cloud.component.ICSARRepositorySearchService;
 import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.events.BeforeTopologySavedEvent;
 import alien4cloud.exception.NotFoundException;
 import alien4cloud.tosca.context.ToscaContext;
 import lombok.extern.slf4j.Slf4j;
@@ -40,6 +42,8 @@ public class TopologyServiceCore {
 
     @Resource
     private ICSARRepositorySearchService csarRepoSearchService;
+    @Resource
+    private ApplicationEventPublisher publisher;
 
     public Topology getTopology(String topologyId) {
         return alienDAO.findById(Topology.class, topologyId);
@@ -212,6 +216,7 @@ public class TopologyServiceCore {
     }
 
     public void save(Topology topology) {
+        publisher.publishEvent(new BeforeTopologySavedEvent(this, topology));
         this.alienDAO.save(topology);
     }
 
@@ -6,12 +6,19 @@ import org.alien4cloud.tosca.model.templates.NodeTemplate;
 import org.alien4cloud.tosca.model.templates.Topology;
 import org.springframework.stereotype.Component;
 
+import java.util.EnumSet;
 import java.util.Map;
+import java.util.Set;
 
 @Slf4j
 @Component
 public class BackupNodesModifier implements ITopologyModifier {
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.noneOf(FlowInput.class);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
       // Backup the nodes before processing them
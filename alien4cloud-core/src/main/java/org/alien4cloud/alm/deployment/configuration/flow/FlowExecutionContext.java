@@ -53,6 +53,8 @@ public class FlowExecutionContext {
     private FlowExecutionLog log = new FlowExecutionLog();
     /** Date of the last updated topology or configuration in the current processed flow. */
     private Date lastFlowParamUpdate;
+    /** Profile of the current flow execution if any. */
+    private FlowExecutionProfile profile;
 
     public FlowExecutionContext(DeploymentConfigurationDao deploymentConfigurationDao, Topology topology, EnvironmentContext environmentContext) {
         this.deploymentConfigurationDao = deploymentConfigurationDao;
@@ -85,6 +87,22 @@ public class FlowExecutionContext {
      * @return An instance of the requested configuration object.
      */
     public <T extends AbstractDeploymentConfig> Optional<T> getConfiguration(Class<T> cfgClass, String modifierName) {
+        Optional<T> config = peekConfiguration(cfgClass, modifierName);
+        if (config.isPresent() && lastFlowParamUpdate.before(config.get().getLastUpdateDate())) {
+            lastFlowParamUpdate = config.get().getLastUpdateDate();
+        }
+        return config;
+    }
+
+    /**
+     * Get a configuration object related to the deployment flow without updating the lastFlowParamUpdate.
+     *
+     * @param cfgClass The class of the configuration object.
+     * @param modifierName Name of the element that tries to access a deployment configuration object (related to the environment).
+     * @param <T> The type of the configuration object.
+     * @return An instance of the requested configuration object.
+     */
+    public <T extends AbstractDeploymentConfig> Optional<T> peekConfiguration(Class<T> cfgClass, String modifierName) {
         environmentContext.orElseThrow(() -> new EnvironmentContextRequiredException(modifierName));
         ApplicationEnvironment env = environmentContext.get().getEnvironment();
         String cfgId = AbstractDeploymentConfig.generateId(env.getTopologyVersion(), env.getId());
@@ -95,13 +113,7 @@ public class FlowExecutionContext {
             config = deploymentConfigurationDao.findById(cfgClass, cfgId);
             executionCache.put(configCacheId, config);
         }
-        if (config == null) {
-            return Optional.empty();
-        }
-        if (lastFlowParamUpdate.before(config.getLastUpdateDate())) {
-            lastFlowParamUpdate = config.getLastUpdateDate();
-        }
-        return Optional.of(config);
+        return Optional.ofNullable(config);
     }
 
     /**
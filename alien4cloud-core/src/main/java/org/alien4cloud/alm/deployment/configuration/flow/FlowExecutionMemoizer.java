@@ -0,0 +1,598 @@
+package org.alien4cloud.alm.deployment.configuration.flow;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.inject.Inject;
+
+import org.alien4cloud.alm.deployment.configuration.model.AbstractDeploymentConfig;
+import org.alien4cloud.alm.deployment.configuration.services.DeploymentConfigurationDao;
+import org.alien4cloud.alm.events.AfterPermissionGrantedEvent;
+import org.alien4cloud.alm.events.AfterPermissionRevokedEvent;
+import org.alien4cloud.alm.events.ServiceEvent;
+import org.alien4cloud.alm.service.events.ServiceChangedEvent;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveDeleted;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.variable.service.QuickFileStorageService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.rits.cloning.Cloner;
+
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.events.LocationResourceEvent;
+import alien4cloud.model.application.ApplicationEnvironment;
+import alien4cloud.model.common.IDatableResource;
+import alien4cloud.model.orchestrators.Orchestrator;
+import alien4cloud.model.orchestrators.locations.Location;
+import alien4cloud.model.service.ServiceResource;
+import alien4cloud.orchestrators.locations.events.AfterLocationCreated;
+import alien4cloud.orchestrators.locations.events.AfterLocationDeleted;
+import alien4cloud.orchestrators.locations.events.OnLocationResourceChangeEvent;
+import alien4cloud.plugin.Plugin;
+import alien4cloud.security.AuthorizationUtil;
+import alien4cloud.security.model.User;
+import alien4cloud.tosca.context.ToscaContext;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Keeps track of the last deployment flow execution of the environments so that a new execution can resume from the first modifier whose inputs have changed.
+ *
+ * An execution is recorded as the fingerprints of the inputs declared by every processed modifier (see {@link ITopologyModifier#getInputs}) and as snapshots
+ * of the execution context taken before the modifiers that introduce new inputs in the flow. The topology, application, environment and current user are
+ * implicit inputs of the whole flow, when one of them changes the flow is processed from the beginning.
+ *
+ * Dated resources (topology, locations and services) are fingerprinted from their update date rather than from their content. Changes to locations,
+ * location resources, services and permissions made on this instance also clear the recorded executions.
+ *
+ * Modifiers that are processed again only because a previous modifier is may also reuse their own result (see {@link #reuse}). The time spent copying the
+ * execution context and the processing time reused are reported in the profile of the execution.
+ */
+@Slf4j
+@Component
+public class FlowExecutionMemoizer {
+    /** Maximum number of environments for which the last flow execution is kept in memory. */
+    private static final int MAX_RECORDS = 20;
+    /** Fields of the deployment configurations that are updated on every save and must not change the fingerprint. */
+    private static final String[] CONFIGURATION_DATE_FIELDS = { "creationDate", "lastUpdateDate" };
+    /** Dated elements that may impact location and resources matching, location resources changes update the date of their location. */
+    private static final Class<?>[] DATED_LOCATION_CLASSES = { Location.class, ServiceResource.class };
+
+    @Value("${features.deployment_flow_memoization:#{true}}")
+    @Getter
+    private boolean enabled;
+    @Resource(name = "alien-es-dao")
+    private IGenericSearchDAO alienDAO;
+    @Inject
+    private DeploymentConfigurationDao deploymentConfigurationDao;
+    @Inject
+    private QuickFileStorageService quickFileStorageService;
+
+    private final ObjectMapper fingerprintMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final Cloner cloner = new Cloner();
+    /** Last execution record per environment id. */
+    private final Map<String, FlowRecord> records = new LinkedHashMap<String, FlowRecord>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, FlowRecord> eldest) {
+            return size() > MAX_RECORDS;
+        }
+    };
+    /** Last results of the modifiers by modifier class name per environment id, they are kept across executions of the flow. */
+    private final Map<String, Map<String, ModifierResult>> results = new LinkedHashMap<String, Map<String, ModifierResult>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, ModifierResult>> eldest) {
+            return size() > MAX_RECORDS;
+        }
+    };
+    /** Incremented on every clear so that a result computed from outdated elements is not kept. */
+    private long generation;
+
+    @PostConstruct
+    public void init() {
+        // modifiers injected in the execution cache are plugin beans
+        cloner.dontCloneInstanceOf(ITopologyModifier.class);
+    }
+
+    /**
+     * Prepare the execution of the deployment flow of an environment.
+     *
+     * @param modifiers The modifiers of the deployment flow.
+     * @param context The context of the new execution.
+     * @return The execution to process, its context is restored from the last execution of the environment when possible.
+     */
+    public FlowExecution start(List<ITopologyModifier> modifiers, FlowExecutionContext context) {
+        ApplicationEnvironment environment = context.getEnvironmentContext().get().getEnvironment();
+        Fingerprints fingerprints = new Fingerprints(context);
+        String baseFingerprint = fingerprints.base(context);
+        FlowRecord record = getRecord(environment.getId());
+        if (baseFingerprint == null || record == null || !baseFingerprint.equals(record.baseFingerprint) || record.modifierCount != modifiers.size()) {
+            return new FlowExecution(environment.getId(), baseFingerprint, modifiers.size(), fingerprints, context, null, 0, 0);
+        }
+
+        int changedIndex = record.steps.size();
+        for (int i = 0; i < record.steps.size(); i++) {
+            StepRecord step = record.steps.get(i);
+            if (step.inputs == null || !step.fingerprints.equals(fingerprints.of(step.inputs, null))) {
+                changedIndex = i;
+                break;
+            }
+        }
+        Snapshot snapshot = record.getLatestSnapshot(changedIndex);
+        if (snapshot == null) {
+            return new FlowExecution(environment.getId(), baseFingerprint, modifiers.size(), fingerprints, context, null, 0, 0);
+        }
+        log.debug("Resuming deployment flow of environment <{}> at modifier {}/{}", environment.getId(), snapshot.index, modifiers.size());
+        long restoreStart = System.nanoTime();
+        FlowExecutionContext restored = snapshot.restore(context);
+        long restoreNanos = System.nanoTime() - restoreStart;
+        ToscaContext.get().resetDependencies(restored.getTopology().getDependencies());
+        return new FlowExecution(environment.getId(), baseFingerprint, modifiers.size(), fingerprints, restored, record, snapshot.index, restoreNanos);
+    }
+
+    /**
+     * Get the result a modifier has computed in a previous execution of the deployment flow of the environment if it has been computed from the same elements,
+     * compute it otherwise.
+     *
+     * This lets a modifier that is processed again only because a modifier before it has been processed skip its expensive part when what it reads is
+     * unchanged. The result must not depend on the current user.
+     *
+     * @param modifier The modifier that computes the result.
+     * @param context The flow execution context.
+     * @param inputs The inputs the result is computed from. Parts of deployment configurations may rather be returned by the dependencies.
+     * @param dependencies Gets the elements of the context the result is computed from, they are fingerprinted. It is given the previous result to check
+     *            whether it can be reused and the new result once computed, so that the elements may depend on what the result contains.
+     * @param computation Computes the result.
+     * @param <T> The type of the result.
+     * @return The result, a copy of the previous result when reused.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T reuse(ITopologyModifier modifier, FlowExecutionContext context, Set<FlowInput> inputs, Function<T, Object> dependencies,
+            Supplier<T> computation) {
+        if (!enabled || !context.getEnvironmentContext().isPresent()) {
+            return computation.get();
+        }
+        String environmentId = context.getEnvironmentContext().get().getEnvironment().getId();
+        String name = ClassUtils.getUserClass(modifier).getName();
+        Fingerprints fingerprints = new Fingerprints(context);
+        ModifierResult previous;
+        long resultGeneration;
+        synchronized (this) {
+            previous = results.getOrDefault(environmentId, Collections.emptyMap()).get(name);
+            resultGeneration = generation;
+        }
+        if (previous != null && previous.fingerprint.equals(fingerprints.result(inputs, context, dependencies.apply((T) previous.result)))) {
+            log.debug("Reusing result of <{}> for environment <{}>", name, environmentId);
+            long copyStart = System.nanoTime();
+            T result = cloner.deepClone((T) previous.result);
+            if (context.getProfile() != null) {
+                context.getProfile().addSnapshotTime(System.nanoTime() - copyStart);
+                context.getProfile().addReusedTime(previous.durationNanos);
+            }
+            return result;
+        }
+
+        long start = System.nanoTime();
+        T result = computation.get();
+        long durationNanos = System.nanoTime() - start;
+        String fingerprint = fingerprints.result(inputs, context, dependencies.apply(result));
+        if (fingerprint == null) {
+            return result;
+        }
+        long copyStart = System.nanoTime();
+        ModifierResult modifierResult = new ModifierResult(fingerprint, cloner.deepClone(result), durationNanos);
+        if (context.getProfile() != null) {
+            context.getProfile().addSnapshotTime(System.nanoTime() - copyStart);
+        }
+        synchronized (this) {
+            if (resultGeneration == generation) {
+                results.computeIfAbsent(environmentId, id -> new LinkedHashMap<>()).put(name, modifierResult);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Forget about all the recorded executions. Types of the catalog are implicit inputs of all the modifiers.
+     */
+    @EventListener(classes = { AfterArchiveIndexed.class, AfterArchiveDeleted.class })
+    public synchronized void clear() {
+        records.clear();
+        results.clear();
+        generation++;
+    }
+
+    /**
+     * Forget about all the recorded executions when locations, their resources, services or permissions change. They are inputs of the matching modifiers of
+     * every environment.
+     */
+    @EventListener(classes = { OnLocationResourceChangeEvent.class, LocationResourceEvent.class, AfterLocationCreated.class, AfterLocationDeleted.class,
+            ServiceEvent.class, ServiceChangedEvent.class, AfterPermissionGrantedEvent.class, AfterPermissionRevokedEvent.class })
+    public void onLocationsChanged() {
+        clear();
+    }
+
+    private synchronized FlowRecord getRecord(String environmentId) {
+        return records.get(environmentId);
+    }
+
+    private synchronized void putRecord(String environmentId, FlowRecord record) {
+        records.put(environmentId, record);
+    }
+
+    /**
+     * An execution of the deployment flow that is recorded while processed.
+     */
+    public class FlowExecution {
+        private final String environmentId;
+        private final String baseFingerprint;
+        private final int modifierCount;
+        private final Fingerprints fingerprints;
+        /** The context to process. */
+        @Getter
+        private final FlowExecutionContext context;
+        /** Index of the first modifier to process. */
+        @Getter
+        private final int fromIndex;
+        private final List<StepRecord> steps;
+        private final List<Snapshot> snapshots;
+        /** Inputs of the modifier before which the last snapshot has been taken. */
+        private Set<FlowInput> snapshotInputs = Collections.emptySet();
+        /** Once a modifier with unknown inputs is processed, the modifiers that follow are always processed so snapshots are useless. */
+        private boolean unknownInputs;
+        private boolean recording;
+        /** Time spent taking and restoring snapshots. */
+        private long snapshotNanos;
+        /** Processing time of the modifiers that are not processed again, as recorded by the previous executions. */
+        private long reusedNanos;
+        /** Start of the processing of the last recorded step, 0 once its duration has been recorded. */
+        private long stepStartNanos;
+
+        private FlowExecution(String environmentId, String baseFingerprint, int modifierCount, Fingerprints fingerprints, FlowExecutionContext context,
+                FlowRecord resumed, int fromIndex, long restoreNanos) {
+            this.environmentId = environmentId;
+            this.baseFingerprint = baseFingerprint;
+            this.modifierCount = modifierCount;
+            this.fingerprints = fingerprints;
+            this.context = context;
+            this.recording = baseFingerprint != null;
+            this.snapshotNanos = restoreNanos;
+            if (resumed == null) {
+                this.fromIndex = 0;
+                this.steps = Lists.newArrayList();
+                this.snapshots = Lists.newArrayList();
+                return;
+            }
+            this.steps = Lists.newArrayList(resumed.steps.subList(0, Math.min(fromIndex, resumed.steps.size())));
+            for (StepRecord step : steps) {
+                reusedNanos += step.durationNanos;
+            }
+            this.snapshots = Lists.newArrayList();
+            for (Snapshot snapshot : resumed.snapshots) {
+                if (snapshot.index <= fromIndex && snapshot.index < resumed.steps.size()) {
+                    snapshots.add(snapshot);
+                    snapshotInputs = snapshot.inputs;
+                }
+            }
+            if (fromIndex == resumed.steps.size()) {
+                // nothing has changed since the last execution that is fully reused, including an eventual interruption of the flow.
+                this.fromIndex = modifierCount;
+                this.recording = false;
+            } else {
+                this.fromIndex = fromIndex;
+            }
+        }
+
+        /**
+         * Record the inputs of a modifier before it is processed.
+         *
+         * @param index The index of the modifier in the flow.
+         * @param modifier The modifier.
+         */
+        public void beforeProcess(int index, ITopologyModifier modifier) {
+            endStep();
+            if (!recording) {
+                return;
+            }
+            Set<FlowInput> inputs = modifier.getInputs(context);
+            boolean snapshotTaken = !snapshots.isEmpty() && snapshots.get(snapshots.size() - 1).index == index;
+            if (!unknownInputs && !snapshotTaken && (inputs == null || (!inputs.isEmpty() && !snapshotInputs.containsAll(inputs)))) {
+                // the modifier may be processed again even if no previous modifier is, keep the state of the context before it.
+                takeSnapshot(index, inputs);
+                snapshotInputs = inputs == null ? Collections.emptySet() : inputs;
+            }
+            unknownInputs = unknownInputs || inputs == null;
+            Map<FlowInput, String> inputFingerprints = inputs == null ? null : fingerprints.of(inputs, context);
+            if (inputs != null && inputFingerprints == null) {
+                // inputs cannot be fingerprinted, next execution will have to process the flow again.
+                recording = false;
+                return;
+            }
+            steps.add(new StepRecord(inputs, inputFingerprints));
+            stepStartNanos = System.nanoTime();
+        }
+
+        /**
+         * Store the execution record once the flow is completed or interrupted and report the memoization cost in the profile of the execution.
+         */
+        public void complete() {
+            endStep();
+            if (recording) {
+                if (!unknownInputs) {
+                    takeSnapshot(steps.size(), Collections.emptySet());
+                }
+                putRecord(environmentId, new FlowRecord(baseFingerprint, modifierCount, steps, snapshots));
+            }
+            if (context.getProfile() != null) {
+                context.getProfile().addSnapshotTime(snapshotNanos);
+                context.getProfile().addReusedTime(reusedNanos);
+            }
+            log.debug("Deployment flow of environment <{}> spent {} ms in snapshots and reused {} ms of processing", environmentId,
+                    TimeUnit.NANOSECONDS.toMillis(snapshotNanos), TimeUnit.NANOSECONDS.toMillis(reusedNanos));
+        }
+
+        private void takeSnapshot(int index, Set<FlowInput> inputs) {
+            long start = System.nanoTime();
+            snapshots.add(new Snapshot(index, inputs, context));
+            snapshotNanos += System.nanoTime() - start;
+        }
+
+        /** Record the processing time of the last recorded step, it is reused with the step by the next executions. */
+        private void endStep() {
+            if (stepStartNanos != 0) {
+                steps.get(steps.size() - 1).durationNanos = System.nanoTime() - stepStartNanos;
+                stepStartNanos = 0;
+            }
+        }
+    }
+
+    /**
+     * Computes the fingerprints of the inputs of a flow execution.
+     */
+    private class Fingerprints {
+        private final ApplicationEnvironment environment;
+        private final String applicationId;
+        private final String topologyId;
+        /** Fingerprints of the inputs that are not produced by the flow itself are computed only once per execution. */
+        private final Map<FlowInput, String> external = new EnumMap<>(FlowInput.class);
+
+        private Fingerprints(FlowExecutionContext context) {
+            this.environment = context.getEnvironmentContext().get().getEnvironment();
+            this.applicationId = context.getEnvironmentContext().get().getApplication().getId();
+            this.topologyId = context.getTopology().getId();
+        }
+
+        private String base(FlowExecutionContext context) {
+            User user = AuthorizationUtil.getCurrentUser();
+            Object[] userInfo = user == null ? null : new Object[] { user.getUsername(), user.getRoles(), user.getGroups() };
+            // the topology is updated on every save
+            Topology topology = context.getTopology();
+            Object[] topologyInfo = new Object[] { topology.getId(), topology.getArchiveVersion(), topology.getLastUpdateDate() };
+            return hash(topologyInfo, context.getEnvironmentContext().get().getApplication(), environment, userInfo);
+        }
+
+        /**
+         * Get the fingerprints of some inputs.
+         *
+         * @param inputs The inputs.
+         * @param context The context of the flow execution to read deployment configurations from or null to read them from elasticsearch.
+         * @return The fingerprints or null if one of the inputs cannot be fingerprinted.
+         */
+        /**
+         * Get the fingerprint of the elements a modifier result is computed from.
+         *
+         * @param inputs The inputs the result is computed from.
+         * @param context The context of the flow execution.
+         * @param dependencies The other elements the result is computed from.
+         * @return The fingerprint or null if the elements cannot be fingerprinted.
+         */
+        private String result(Set<FlowInput> inputs, FlowExecutionContext context, Object dependencies) {
+            Map<FlowInput, String> inputFingerprints = of(inputs, context);
+            return inputFingerprints == null ? null : hash(inputFingerprints, dependencies);
+        }
+
+        private Map<FlowInput, String> of(Set<FlowInput> inputs, FlowExecutionContext context) {
+            Map<FlowInput, String> fingerprints = new EnumMap<>(FlowInput.class);
+            for (FlowInput input : inputs) {
+                String fingerprint = input.getConfigurationClass() == null ? external.computeIfAbsent(input, this::external)
+                        : configuration(input.getConfigurationClass(), context);
+                if (fingerprint == null) {
+                    return null;
+                }
+                fingerprints.put(input, fingerprint);
+            }
+            return fingerprints;
+        }
+
+        private String configuration(Class<? extends AbstractDeploymentConfig> configurationClass, FlowExecutionContext context) {
+            Optional<? extends AbstractDeploymentConfig> configuration;
+            if (context == null) {
+                configuration = Optional.ofNullable(deploymentConfigurationDao.findById(configurationClass,
+                        AbstractDeploymentConfig.generateId(environment.getTopologyVersion(), environment.getId())));
+            } else {
+                configuration = context.peekConfiguration(configurationClass, FlowExecutionMemoizer.class.getSimpleName());
+            }
+            if (!configuration.isPresent()) {
+                return hash((Object) null);
+            }
+            JsonNode node = fingerprintMapper.valueToTree(configuration.get());
+            ((ObjectNode) node).remove(Lists.newArrayList(CONFIGURATION_DATE_FIELDS));
+            return hash(node);
+        }
+
+        private String external(FlowInput input) {
+            switch (input) {
+            case INPUTS_FILES:
+                return hash(sorted(quickFileStorageService.loadApplicationVariables(applicationId)),
+                        sorted(quickFileStorageService.loadEnvironmentTypeVariables(topologyId, environment.getEnvironmentType())),
+                        sorted(quickFileStorageService.loadEnvironmentVariables(topologyId, environment.getId())),
+                        quickFileStorageService.loadInputsMappingFile(topologyId));
+            case LOCATIONS:
+                return locations();
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * Locations and services are fingerprinted from their count and most recent update date so changes made by other instances are noticed without
+         * loading them. Orchestrators and plugins are not dated, their state is fingerprinted.
+         */
+        private String locations() {
+            List<Object> values = Lists.newArrayList();
+            for (Class<?> locationClass : DATED_LOCATION_CLASSES) {
+                long count = alienDAO.count(locationClass, null);
+                values.add(count);
+                if (count > 0) {
+                    IDatableResource lastUpdated = (IDatableResource) alienDAO.buildQuery(locationClass).prepareSearch().setFieldSort("lastUpdateDate", true)
+                            .find();
+                    values.add(lastUpdated == null ? null : lastUpdated.getLastUpdateDate());
+                }
+            }
+            // orchestrators and plugins are configuration elements, there are just a few of them
+            Map<String, Object> states = new TreeMap<>();
+            try (Stream<Orchestrator> orchestrators = alienDAO.stream(Orchestrator.class, null, null)) {
+                orchestrators.forEach(orchestrator -> states.put("orchestrator:" + orchestrator.getId(), orchestrator.getState()));
+            }
+            try (Stream<Plugin> plugins = alienDAO.stream(Plugin.class, null, null)) {
+                plugins.forEach(plugin -> states.put("plugin:" + plugin.getId(), plugin.isEnabled()));
+            }
+            values.add(states);
+            return hash(values.toArray());
+        }
+
+        private Map<Object, Object> sorted(Properties properties) {
+            return properties == null ? null : new TreeMap<>(properties);
+        }
+
+        private String hash(Object... values) {
+            Hasher hasher = Hashing.sha1().newHasher();
+            try {
+                for (Object value : values) {
+                    hasher.putBytes(fingerprintMapper.writeValueAsBytes(value));
+                    hasher.putByte((byte) 0);
+                }
+            } catch (IOException e) {
+                log.debug("Unable to fingerprint deployment flow input, memoization is skipped", e);
+                return null;
+            }
+            return hasher.hash().toString();
+        }
+    }
+
+    private static class FlowRecord {
+        private final String baseFingerprint;
+        private final int modifierCount;
+        /** Steps processed in the execution, the last one is the one that interrupted the flow if it has been interrupted. */
+        private final List<StepRecord> steps;
+        /** Snapshots ordered by index, the last one is the state of the context at the end of the execution. */
+        private final List<Snapshot> snapshots;
+
+        private FlowRecord(String baseFingerprint, int modifierCount, List<StepRecord> steps, List<Snapshot> snapshots) {
+            this.baseFingerprint = baseFingerprint;
+            this.modifierCount = modifierCount;
+            this.steps = steps;
+            this.snapshots = snapshots;
+        }
+
+        private Snapshot getLatestSnapshot(int index) {
+            Snapshot latest = null;
+            for (Snapshot snapshot : snapshots) {
+                if (snapshot.index <= index) {
+                    latest = snapshot;
+                }
+            }
+            return latest;
+        }
+    }
+
+    private static class StepRecord {
+        /** Inputs declared by the modifier, null if unknown. */
+        private final Set<FlowInput> inputs;
+        private final Map<FlowInput, String> fingerprints;
+        /** Processing time of the modifier. */
+        private long durationNanos;
+
+        private StepRecord(Set<FlowInput> inputs, Map<FlowInput, String> fingerprints) {
+            this.inputs = inputs;
+            this.fingerprints = fingerprints;
+        }
+    }
+
+    private static class ModifierResult {
+        private final String fingerprint;
+        private final Object result;
+        /** Time spent computing the result. */
+        private final long durationNanos;
+
+        private ModifierResult(String fingerprint, Object result, long durationNanos) {
+            this.fingerprint = fingerprint;
+            this.result = result;
+            this.durationNanos = durationNanos;
+        }
+    }
+
+    /**
+     * State of the execution context before the processing of a modifier.
+     */
+    private class Snapshot {
+        private final int index;
+        private final Set<FlowInput> inputs;
+        private final Topology topology;
+        private final Map<String, Object> executionCache;
+        private final FlowExecutionLog log;
+        private final Date lastFlowParamUpdate;
+
+        private Snapshot(int index, Set<FlowInput> inputs, FlowExecutionContext context) {
+            this.index = index;
+            this.inputs = inputs == null ? Collections.emptySet() : inputs;
+            this.topology = cloner.deepClone(context.getTopology());
+            this.executionCache = cloner.deepClone(context.getExecutionCache());
+            this.log = cloner.deepClone(context.getLog());
+            this.lastFlowParamUpdate = context.getLastFlowParamUpdate();
+        }
+
+        private FlowExecutionContext restore(FlowExecutionContext context) {
+            FlowExecutionContext restored = new FlowExecutionContext(context.getDeploymentConfigurationDao(), cloner.deepClone(topology),
+                    context.getEnvironmentContext().get());
+            Map<String, Object> restoredCache = cloner.deepClone(executionCache);
+            // deployment configurations are reloaded as they may have been updated since the snapshot
+            ApplicationEnvironment environment = context.getEnvironmentContext().get().getEnvironment();
+            String configurationId = AbstractDeploymentConfig.generateId(environment.getTopologyVersion(), environment.getId());
+            for (FlowInput input : FlowInput.values()) {
+                if (input.getConfigurationClass() != null) {
+                    restoredCache.remove(input.getConfigurationClass().getSimpleName() + "/" + configurationId);
+                }
+            }
+            restored.setExecutionCache(restoredCache);
+            restored.setLog(cloner.deepClone(log));
+            restored.setLastFlowParamUpdate(lastFlowParamUpdate);
+            return restored;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package org.alien4cloud.alm.deployment.configuration.flow;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.alien4cloud.alm.deployment.configuration.flow.modifiers.FlowPhaseModifiersExecutor;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.springframework.util.ClassUtils;
+
+import com.google.common.collect.Lists;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Breakdown of the time spent in the topology modifiers of a flow execution.
+ */
+@Slf4j
+@Getter
+public class FlowExecutionProfile {
+    /** Prefix of the name of the profile of a {@link FlowPhaseModifiersExecutor}. */
+    public static final String PHASE_PREFIX = "phase:";
+
+    /** Id of the environment for which the flow has been executed, null if the flow is not executed in the context of an environment. */
+    private final String environmentId;
+    private final Date startDate = new Date();
+    /** Index in the flow of the first processed modifier, greater than 0 when the execution has been resumed from a previous execution. */
+    private final int resumedFrom;
+    private long durationMs;
+    /** Name of the modifier that has interrupted the flow because of errors, null if the flow has not been interrupted. */
+    private String abortedBy;
+    /** Name of the modifier that has failed with an exception, null if no modifier has failed. */
+    private String failedBy;
+    /** Profiles of the processed modifiers in their processing order. */
+    private final List<ModifierProfile> modifiers = Lists.newArrayList();
+    /** Time spent copying the execution context to record the execution or to resume a previous one. */
+    @Getter(AccessLevel.NONE)
+    private long snapshotNanos;
+    /** Processing time, in the executions they come from, of the modifiers and results reused instead of being processed again. */
+    @Getter(AccessLevel.NONE)
+    private long reusedNanos;
+
+    @Getter(AccessLevel.NONE)
+    private final long startNanos = System.nanoTime();
+    /** Modifiers being processed. */
+    @Getter(AccessLevel.NONE)
+    private final Deque<ModifierProfile> processing = new ArrayDeque<>();
+
+    public FlowExecutionProfile(String environmentId, int resumedFrom) {
+        this.environmentId = environmentId;
+        this.resumedFrom = resumedFrom;
+    }
+
+    /**
+     * Process a modifier and record its processing time in the profile of the given context if any.
+     *
+     * @param modifier The modifier to process.
+     * @param topology The topology to process.
+     * @param context The flow execution context.
+     */
+    public static void process(ITopologyModifier modifier, Topology topology, FlowExecutionContext context) {
+        FlowExecutionProfile profile = context.getProfile();
+        if (profile == null) {
+            modifier.process(topology, context);
+            return;
+        }
+        ModifierProfile modifierProfile = profile.start(getName(modifier));
+        try {
+            modifier.process(topology, context);
+        } catch (RuntimeException e) {
+            if (profile.failedBy == null) {
+                profile.failedBy = modifierProfile.name;
+            }
+            throw e;
+        } finally {
+            profile.end(modifierProfile);
+        }
+        if (profile.abortedBy == null && !context.log().isValid()) {
+            profile.abortedBy = modifierProfile.name;
+        }
+    }
+
+    /**
+     * Get the name under which the processing of a modifier is profiled.
+     *
+     * @param modifier The modifier.
+     * @return The name of the modifier.
+     */
+    public static String getName(ITopologyModifier modifier) {
+        if (modifier instanceof FlowPhaseModifiersExecutor) {
+            return PHASE_PREFIX + ((FlowPhaseModifiersExecutor) modifier).getPhase();
+        }
+        // plugin modifiers may be proxies
+        return ClassUtils.getUserClass(modifier).getSimpleName();
+    }
+
+    private ModifierProfile start(String name) {
+        ModifierProfile modifierProfile = new ModifierProfile(name);
+        if (processing.isEmpty()) {
+            modifiers.add(modifierProfile);
+        } else {
+            processing.peek().subModifiers.add(modifierProfile);
+        }
+        processing.push(modifierProfile);
+        return modifierProfile;
+    }
+
+    private void end(ModifierProfile modifierProfile) {
+        processing.pop();
+        modifierProfile.durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - modifierProfile.startNanos);
+        log.debug("Processed <{}> in {} ms", modifierProfile.name, modifierProfile.durationMs);
+    }
+
+    /**
+     * Record time spent copying the execution context for memoization.
+     *
+     * @param nanos The copy time in nanoseconds.
+     */
+    public void addSnapshotTime(long nanos) {
+        snapshotNanos += nanos;
+    }
+
+    /**
+     * Record processing time saved by reusing the result of a previous execution.
+     *
+     * @param nanos The processing time of the reused modifiers or results in nanoseconds.
+     */
+    public void addReusedTime(long nanos) {
+        reusedNanos += nanos;
+    }
+
+    /**
+     * @return True if the execution has been recorded or has reused the result of a previous execution.
+     */
+    public boolean isMemoized() {
+        return snapshotNanos > 0 || reusedNanos > 0;
+    }
+
+    public long getSnapshotMs() {
+        return TimeUnit.NANOSECONDS.toMillis(snapshotNanos);
+    }
+
+    public long getReusedMs() {
+        return TimeUnit.NANOSECONDS.toMillis(reusedNanos);
+    }
+
+    /**
+     * Mark the flow execution as completed.
+     */
+    public void complete() {
+        durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Processing time of a modifier.
+     */
+    @Getter
+    public static class ModifierProfile {
+        private final String name;
+        private long durationMs;
+        /** Profiles of the modifiers processed by this modifier (composed modifiers and phases). */
+        private final List<ModifierProfile> subModifiers = Lists.newArrayList();
+
+        @Getter(AccessLevel.NONE)
+        private final long startNanos = System.nanoTime();
+
+        private ModifierProfile(String name) {
+            this.name = name;
+        }
+    }
+}
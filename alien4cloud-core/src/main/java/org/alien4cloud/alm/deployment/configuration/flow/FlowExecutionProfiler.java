@@ -0,0 +1,130 @@
+package org.alien4cloud.alm.deployment.configuration.flow;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+
+/**
+ * Publishes the profiles of the flow executions as metrics and keeps the last profiles of every environment in memory.
+ *
+ * Metrics are published under the {@link FlowExecutor} name: an histogram of the execution duration in milliseconds, an histogram per modifier and per phase
+ * and counters of the interrupted and failed executions (globally and per modifier). Memoized executions also update an histogram of the time spent copying
+ * the execution context and one of the processing time reused from previous executions.
+ */
+@Component
+public class FlowExecutionProfiler {
+    /** Maximum number of environments for which profiles are kept in memory. */
+    private static final int MAX_ENVIRONMENTS = 100;
+
+    /** Number of profiles kept in memory for every environment. */
+    @Value("${deployment_flow.profiles_per_environment:10}")
+    private int profilesPerEnvironment = 10;
+    /** Registry of the application if any, metrics are kept local otherwise. */
+    @Autowired(required = false)
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final Map<String, Deque<FlowExecutionProfile>> profiles = new LinkedHashMap<String, Deque<FlowExecutionProfile>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Deque<FlowExecutionProfile>> eldest) {
+            return size() > MAX_ENVIRONMENTS;
+        }
+    };
+
+    /**
+     * Start the profiling of a flow execution.
+     *
+     * @param context The context of the flow execution.
+     * @param fromIndex Index of the first modifier to process.
+     * @return The profile of the execution, it is also set on the context.
+     */
+    public FlowExecutionProfile start(FlowExecutionContext context, int fromIndex) {
+        String environmentId = context.getEnvironmentContext().map(environmentContext -> environmentContext.getEnvironment().getId()).orElse(null);
+        FlowExecutionProfile profile = new FlowExecutionProfile(environmentId, fromIndex);
+        context.setProfile(profile);
+        return profile;
+    }
+
+    /**
+     * Complete the profiling of a flow execution, update the metrics and keep the profile.
+     *
+     * @param context The context of the flow execution.
+     */
+    public void complete(FlowExecutionContext context) {
+        FlowExecutionProfile profile = context.getProfile();
+        if (profile == null) {
+            return;
+        }
+        context.setProfile(null);
+        profile.complete();
+
+        metricRegistry.histogram(MetricRegistry.name(FlowExecutor.class, "executions")).update(profile.getDurationMs());
+        if (profile.getResumedFrom() > 0) {
+            metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "resumed")).inc();
+        }
+        if (profile.isMemoized()) {
+            // the cost of memoization against the processing it saves
+            metricRegistry.histogram(MetricRegistry.name(FlowExecutor.class, "snapshots")).update(profile.getSnapshotMs());
+            metricRegistry.histogram(MetricRegistry.name(FlowExecutor.class, "reused")).update(profile.getReusedMs());
+        }
+        updateMetrics(profile.getModifiers());
+        if (profile.getAbortedBy() != null) {
+            metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "aborts")).inc();
+            metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "aborts", profile.getAbortedBy())).inc();
+        }
+        if (profile.getFailedBy() != null) {
+            metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "failures")).inc();
+            metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "failures", profile.getFailedBy())).inc();
+        }
+
+        if (profile.getEnvironmentId() == null || profilesPerEnvironment <= 0) {
+            return;
+        }
+        synchronized (profiles) {
+            Deque<FlowExecutionProfile> environmentProfiles = profiles.computeIfAbsent(profile.getEnvironmentId(), id -> new ArrayDeque<>());
+            environmentProfiles.addFirst(profile);
+            while (environmentProfiles.size() > profilesPerEnvironment) {
+                environmentProfiles.removeLast();
+            }
+        }
+    }
+
+    private void updateMetrics(List<FlowExecutionProfile.ModifierProfile> modifierProfiles) {
+        for (FlowExecutionProfile.ModifierProfile modifierProfile : modifierProfiles) {
+            String name;
+            if (modifierProfile.getName().startsWith(FlowExecutionProfile.PHASE_PREFIX)) {
+                name = MetricRegistry.name(FlowExecutor.class, "phases", modifierProfile.getName().substring(FlowExecutionProfile.PHASE_PREFIX.length()));
+            } else {
+                name = MetricRegistry.name(FlowExecutor.class, "modifiers", modifierProfile.getName());
+            }
+            metricRegistry.histogram(name).update(modifierProfile.getDurationMs());
+            updateMetrics(modifierProfile.getSubModifiers());
+        }
+    }
+
+    /**
+     * Get the profiles of the last flow executions of an environment.
+     *
+     * @param environmentId The id of the environment.
+     * @param count The maximum number of profiles to return.
+     * @return The profiles of the last flow executions, most recent first.
+     */
+    public List<FlowExecutionProfile> getProfiles(String environmentId, int count) {
+        synchronized (profiles) {
+            Deque<FlowExecutionProfile> environmentProfiles = profiles.get(environmentId);
+            if (environmentProfiles == null) {
+                return Lists.newArrayList();
+            }
+            List<FlowExecutionProfile> result = Lists.newArrayList(environmentProfiles);
+            return Lists.newArrayList(result.subList(0, Math.max(0, Math.min(count, result.size()))));
+        }
+    }
+}
@@ -38,7 +38,6 @@ import com.google.common.collect.Lists;
 import alien4cloud.model.application.Application;
 import alien4cloud.model.application.ApplicationEnvironment;
 import alien4cloud.tosca.context.ToscaContextual;
-import lombok.extern.slf4j.Slf4j;
 
 /**
  * Execute a flow in order to convert a topology into a ready to deploy topology. Flow consist of the processing of multiple Topology Modifiers that takes a
@@ -61,7 +60,6 @@ import lombok.extern.slf4j.Slf4j;
  *
  * Note that any flow element may interrupt the flow if some errors are triggered. Any flow element may also add some warnings.
  */
-@Slf4j
 @Component
 public class FlowExecutor {
 
@@ -119,6 +117,11 @@ public class FlowExecutor {
     @Inject
     private PreDeploymentTopologyValidator preDeploymentTopologyValidator;
 
+    @Inject
+    private FlowExecutionMemoizer flowExecutionMemoizer;
+    @Inject
+    private FlowExecutionProfiler flowExecutionProfiler;
+
     private List<ITopologyModifier> topologyModifiers;
 
     @PostConstruct
@@ -212,8 +215,14 @@ public class FlowExecutor {
     public FlowExecutionContext executeDeploymentFlow(Topology topology, Application application, ApplicationEnvironment environment) {
         FlowExecutionContext executionContext = new FlowExecutionContext(deploymentConfigurationDao, topology,
                 new EnvironmentContext(application, environment));
-        execute(topologyModifiers, executionContext);
-        return executionContext;
+        if (!flowExecutionMemoizer.isEnabled()) {
+            execute(topologyModifiers, executionContext);
+            return executionContext;
+        }
+        // Resume from the first modifier whose inputs have changed since the last execution for this environment.
+        FlowExecutionMemoizer.FlowExecution execution = flowExecutionMemoizer.start(topologyModifiers, executionContext);
+        execute(topologyModifiers, execution.getContext(), execution.getFromIndex(), execution);
+        return execution.getContext();
     }
 
     @ToscaContextual
@@ -222,10 +231,28 @@ public class FlowExecutor {
     }
 
     private void execute(List<ITopologyModifier> modifiers, FlowExecutionContext context) {
-        for (int i = 0; i < modifiers.size(); i++) {
-            long start = System.currentTimeMillis();
-            modifiers.get(i).process(context.getTopology(), context);
-            log.debug("Processed <" + modifiers.get(i).getClass().getSimpleName() + "> in " + (System.currentTimeMillis() - start) + " ms");
+        execute(modifiers, context, 0, null);
+    }
+
+    private void execute(List<ITopologyModifier> modifiers, FlowExecutionContext context, int fromIndex, FlowExecutionMemoizer.FlowExecution execution) {
+        flowExecutionProfiler.start(context, fromIndex);
+        try {
+            process(modifiers, context, fromIndex, execution);
+            if (execution != null) {
+                // recorded before the profile is completed so that it includes the memoization cost
+                execution.complete();
+            }
+        } finally {
+            flowExecutionProfiler.complete(context);
+        }
+    }
+
+    private void process(List<ITopologyModifier> modifiers, FlowExecutionContext context, int fromIndex, FlowExecutionMemoizer.FlowExecution execution) {
+        for (int i = fromIndex; i < modifiers.size(); i++) {
+            if (execution != null) {
+                execution.beforeProcess(i, modifiers.get(i));
+            }
+            FlowExecutionProfile.process(modifiers.get(i), context.getTopology(), context);
             if (!context.log().isValid()) {
                 // In case of errors we don't process the flow further.
                 return;
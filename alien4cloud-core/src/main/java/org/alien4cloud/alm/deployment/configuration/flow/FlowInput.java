@@ -0,0 +1,55 @@
+package org.alien4cloud.alm.deployment.configuration.flow;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.alien4cloud.alm.deployment.configuration.model.AbstractDeploymentConfig;
+import org.alien4cloud.alm.deployment.configuration.model.DeploymentInputs;
+import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
+import org.alien4cloud.alm.deployment.configuration.model.OrchestratorDeploymentProperties;
+
+import lombok.Getter;
+
+/**
+ * Inputs of a topology modifier that are not produced by the flow itself. The topology processed by the flow, its application and environment are implicit
+ * inputs of every modifier.
+ */
+@Getter
+public enum FlowInput {
+    /** Locations and node/policy matching choices of the deployer. */
+    DEPLOYMENT_MATCHING_CONFIGURATION(DeploymentMatchingConfiguration.class),
+    /** Input values and input artifacts defined by the deployer. */
+    DEPLOYMENT_INPUTS(DeploymentInputs.class),
+    /** Orchestrator specific deployment properties. */
+    ORCHESTRATOR_DEPLOYMENT_PROPERTIES(OrchestratorDeploymentProperties.class),
+    /** Application, environment type and environment variables files and the inputs mapping file of the topology. */
+    INPUTS_FILES(null),
+    /** Locations (including their resources update date and permissions) and the state of their orchestrators. */
+    LOCATIONS(null);
+
+    /** The class of the deployment configuration for inputs that are stored as a deployment configuration. */
+    private final Class<? extends AbstractDeploymentConfig> configurationClass;
+
+    FlowInput(Class<? extends AbstractDeploymentConfig> configurationClass) {
+        this.configurationClass = configurationClass;
+    }
+
+    /**
+     * Get the inputs of a sequence of modifiers.
+     *
+     * @param modifiers The modifiers.
+     * @param context The flow execution context.
+     * @return The union of the inputs of the modifiers or null if the inputs of at least one of the modifiers are unknown.
+     */
+    public static Set<FlowInput> inputsOf(Iterable<? extends ITopologyModifier> modifiers, FlowExecutionContext context) {
+        Set<FlowInput> inputs = EnumSet.noneOf(FlowInput.class);
+        for (ITopologyModifier modifier : modifiers) {
+            Set<FlowInput> modifierInputs = modifier.getInputs(context);
+            if (modifierInputs == null) {
+                return null;
+            }
+            inputs.addAll(modifierInputs);
+        }
+        return inputs;
+    }
+}
@@ -1,5 +1,7 @@
 package org.alien4cloud.alm.deployment.configuration.flow;
 
+import java.util.Set;
+
 import org.alien4cloud.tosca.model.templates.Topology;
 
 /**
@@ -23,4 +25,16 @@ public interface ITopologyModifier {
      *            is generated by a topology modifier.
      */
     void process(Topology topology, FlowExecutionContext context);
+
+    /**
+     * Get the inputs of the modifier that are not produced by the flow itself. When none of its inputs has changed since the previous execution of the
+     * deployment flow of an environment, the result of the modifier is reused instead of processing it again.
+     *
+     * @param context The flow execution context in the state the modifier is going to process it.
+     * @return The inputs of the modifier, an empty set if the modifier only depends on the topology and on the result of the previous modifiers or null
+     *         (default) if the inputs are unknown, in which case the modifier and all the modifiers that follow it in the flow are always processed.
+     */
+    default Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return null;
+    }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -10,6 +11,7 @@ import java.util.Set;
 import java.util.function.Consumer;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration.NodePropsOverride;
@@ -35,6 +37,11 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 public abstract class AbstractPostMatchingSetupModifier<T extends AbstractInheritableToscaType, U extends AbstractTemplate> implements ITopologyModifier {
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         Optional<DeploymentMatchingConfiguration> configurationOptional = context.getConfiguration(DeploymentMatchingConfiguration.class,
@@ -2,6 +2,7 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
+import java.util.EnumSet;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
@@ -10,6 +11,7 @@ import javax.inject.Inject;
 
 import alien4cloud.topology.task.TaskCode;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.tosca.model.templates.NodeTemplate;
@@ -33,6 +35,11 @@ public class CfyMultirelationshipErrorModifier implements ITopologyModifier {
     @Inject
     private OrchestratorService orchestratorService;
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION, FlowInput.LOCATIONS);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         // Check if orchestrator is cloudify
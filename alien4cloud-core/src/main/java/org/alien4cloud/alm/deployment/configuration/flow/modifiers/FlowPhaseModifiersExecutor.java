@@ -1,11 +1,16 @@
 package org.alien4cloud.alm.deployment.configuration.flow.modifiers;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionProfile;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.tosca.model.templates.Topology;
 
+import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -13,12 +18,19 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public class FlowPhaseModifiersExecutor implements ITopologyModifier {
+    @Getter
     private final String phase;
 
     public FlowPhaseModifiersExecutor(String phase) {
         this.phase = phase;
     }
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        List<ITopologyModifier> phaseModifiers = (List<ITopologyModifier>) context.getExecutionCache().get(phase);
+        return FlowInput.inputsOf(phaseModifiers == null ? Collections.<ITopologyModifier> emptyList() : phaseModifiers, context);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         List<ITopologyModifier> phaseModifiers = (List<ITopologyModifier>) context.getExecutionCache().get(phase);
@@ -30,7 +42,7 @@ public class FlowPhaseModifiersExecutor implements ITopologyModifier {
         long start = System.currentTimeMillis();
         log.debug("Starting phase {} with {} modifiers to execute.", phase, phaseModifiers.size());
         for (ITopologyModifier modifier : phaseModifiers) {
-            modifier.process(context.getTopology(), context);
+            FlowExecutionProfile.process(modifier, context.getTopology(), context);
             if (!context.log().isValid()) {
                 // In case of errors we don't process the flow further.
                 return;
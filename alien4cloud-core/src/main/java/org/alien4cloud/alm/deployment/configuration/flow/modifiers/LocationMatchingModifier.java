@@ -2,15 +2,18 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
+import java.util.EnumSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.alm.deployment.configuration.model.SecretCredentialInfo;
@@ -57,6 +60,11 @@ public class LocationMatchingModifier implements ITopologyModifier {
     @Inject
     private PluginManager pluginManager;
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION, FlowInput.LOCATIONS);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         // first process
@@ -2,9 +2,13 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import javax.inject.Inject;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.tosca.model.templates.Topology;
@@ -22,6 +26,11 @@ public class PostMatchingAbstractValidator implements ITopologyModifier {
     @Inject
     private TopologyAbstractNodeValidationService topologyAbstractNodeValidationService;
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         DeploymentMatchingConfiguration matchingConfiguration = context
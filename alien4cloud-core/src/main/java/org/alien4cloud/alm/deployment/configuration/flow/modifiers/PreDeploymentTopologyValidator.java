@@ -2,9 +2,13 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import javax.inject.Inject;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.alm.deployment.configuration.model.OrchestratorDeploymentProperties;
@@ -25,6 +29,11 @@ public class PreDeploymentTopologyValidator implements ITopologyModifier {
     @Inject
     private DeploymentTopologyValidationService deploymentTopologyValidationService;
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION, FlowInput.ORCHESTRATOR_DEPLOYMENT_PROPERTIES, FlowInput.LOCATIONS);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         DeploymentMatchingConfiguration matchingConfiguration = context
@@ -1,8 +1,12 @@
 package org.alien4cloud.alm.deployment.configuration.flow.modifiers;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import javax.annotation.Resource;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.tosca.model.templates.Topology;
 
@@ -17,6 +21,11 @@ public class SubstitutionCompositionModifier implements ITopologyModifier {
     @Resource
     private TopologyCompositionService topologyCompositionService;
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.noneOf(FlowInput.class);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         topologyCompositionService.processTopologyComposition(topology);
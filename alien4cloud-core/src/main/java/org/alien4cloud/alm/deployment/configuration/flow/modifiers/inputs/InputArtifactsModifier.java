@@ -2,13 +2,16 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers.inputs;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentInputs;
 import org.alien4cloud.tosca.model.definitions.DeploymentArtifact;
@@ -30,6 +33,11 @@ import alien4cloud.utils.InputArtifactUtil;
 @Component
 public class InputArtifactsModifier implements ITopologyModifier {
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_INPUTS);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         ApplicationEnvironment environment = context.getEnvironmentContext()
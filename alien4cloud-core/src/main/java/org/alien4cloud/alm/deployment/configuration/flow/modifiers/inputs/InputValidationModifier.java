@@ -7,6 +7,7 @@ import alien4cloud.topology.task.TaskLevel;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentInputs;
 import org.alien4cloud.alm.deployment.configuration.model.PreconfiguredInputsConfiguration;
@@ -18,9 +19,11 @@ import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
@@ -38,6 +41,11 @@ public class InputValidationModifier implements ITopologyModifier {
      * @param topology The topology to process.
      * @param context The object that stores warnings and errors (tasks) associated with the execution flow. Note that the flow will end-up if an error
      */
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_INPUTS);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         Optional<DeploymentInputs> inputsOptional = context.getConfiguration(DeploymentInputs.class, InputValidationModifier.class.getSimpleName());
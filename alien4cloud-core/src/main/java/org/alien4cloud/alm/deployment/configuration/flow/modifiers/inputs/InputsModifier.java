@@ -6,6 +6,7 @@ import alien4cloud.model.orchestrators.locations.Location;
 import com.google.common.collect.Maps;
 import org.alien4cloud.alm.deployment.configuration.flow.EnvironmentContext;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentInputs;
 import org.alien4cloud.alm.deployment.configuration.model.PreconfiguredInputsConfiguration;
@@ -23,8 +24,10 @@ import org.alien4cloud.tosca.utils.FunctionEvaluatorContext;
 import org.springframework.stereotype.Component;
 
 import javax.inject.Inject;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
@@ -41,6 +44,11 @@ public class InputsModifier implements ITopologyModifier {
     @Inject
     private DeploymentInputService deploymentInputService;
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_INPUTS, FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION, FlowInput.LOCATIONS);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         EnvironmentContext environmentContext = context.getEnvironmentContext().orElseThrow(
@@ -3,13 +3,16 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers.inputs;
 import static alien4cloud.utils.AlienUtils.safe;
 
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import javax.inject.Inject;
 
 import org.alien4cloud.alm.deployment.configuration.flow.EnvironmentContext;
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.PreconfiguredInputsConfiguration;
 import org.alien4cloud.tosca.exceptions.ConstraintValueDoNotMatchPropertyTypeException;
@@ -45,6 +48,11 @@ public class PreconfiguredInputsModifier implements ITopologyModifier {
     @Inject
     private QuickFileStorageService quickFileStorageService;
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.INPUTS_FILES, FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION, FlowInput.LOCATIONS);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
 
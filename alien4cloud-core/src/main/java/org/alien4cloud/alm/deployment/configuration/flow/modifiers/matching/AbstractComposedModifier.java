@@ -1,8 +1,11 @@
 package org.alien4cloud.alm.deployment.configuration.flow.modifiers.matching;
 
 import java.util.List;
+import java.util.Set;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionProfile;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.tosca.model.templates.Topology;
 
@@ -23,9 +26,14 @@ public abstract class AbstractComposedModifier implements ITopologyModifier {
         this.subModifiers = Lists.newArrayList(subModifiers);
     }
 
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return FlowInput.inputsOf(subModifiers, context);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
-        subModifiers.forEach(modifier -> modifier.process(topology, context));
+        subModifiers.forEach(modifier -> FlowExecutionProfile.process(modifier, topology, context));
     }
 
     public void addModifierAfter(ITopologyModifier toAddModifier, ITopologyModifier existingModifier) {
@@ -1,12 +1,15 @@
 package org.alien4cloud.alm.deployment.configuration.flow.modifiers.matching;
 
+import java.util.EnumSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.Set;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.tosca.model.templates.Topology;
@@ -18,6 +21,11 @@ import alien4cloud.topology.task.LocationPolicyTask;
  * Base class for the Node and Policy MatchingConfigCleanupModifier.
  */
 public abstract class AbstractMatchingConfigCleanupModifier<T extends AbstractLocationResourceTemplate> implements ITopologyModifier {
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION);
+    }
+
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
         Optional<DeploymentMatchingConfiguration> configurationOptional = context.getConfiguration(DeploymentMatchingConfiguration.class,
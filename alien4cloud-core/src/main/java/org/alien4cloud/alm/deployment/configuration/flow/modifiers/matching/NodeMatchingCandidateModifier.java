@@ -1,12 +1,17 @@
 package org.alien4cloud.alm.deployment.configuration.flow.modifiers.matching;
 
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 import javax.inject.Inject;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionMemoizer;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.tosca.model.templates.NodeGroup;
@@ -30,12 +35,21 @@ import static alien4cloud.utils.AlienUtils.safe;
 /**
  * This modifier load and put in context cache the matching candidates nodes.
  *
- * It does not update topology or matching configurations, these operations are done in sub-sequent modifiers.
+ * It does not update topology or matching configurations, these operations are done in sub-sequent modifiers. Candidates are reused from the previous
+ * execution of the flow when the locations, the location groups and the nodes are unchanged. Only the properties of the nodes whose types are managed by the
+ * locations are matched, so a new input value does not trigger a new matching unless it is set on such a node.
  */
 @Component
 public class NodeMatchingCandidateModifier implements ITopologyModifier {
     @Inject
     private NodeMatcherService nodeMatcherService;
+    @Inject
+    private FlowExecutionMemoizer flowExecutionMemoizer;
+
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION, FlowInput.LOCATIONS);
+    }
 
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
@@ -55,15 +69,48 @@ public class NodeMatchingCandidateModifier implements ITopologyModifier {
             matchingConfiguration.setMatchedLocationResources(Maps.newHashMap());
         }
 
+        Map<String, NodeGroup> locationGroups = matchingConfiguration.getLocationGroups();
+        NodeGroup allNodesGroup = locationGroups.get(AlienConstants.GROUP_ALL);
+        if (allNodesGroup != null && MapUtils.isNotEmpty(topology.getNodeTemplates())) {
+            allNodesGroup.setMembers(topology.getNodeTemplates().keySet());
+        }
+
         Map<String, Location> locationMap = (Map<String, Location>) context.getExecutionCache().get(FlowExecutionContext.DEPLOYMENT_LOCATIONS_MAP_CACHE_KEY);
-        // TODO can we avoid update if the matching configuration is strickly younger than the context last conf update ?
+        String environmentId = context.getEnvironmentContext().get().getEnvironment().getId();
         // Fetch available substitutions on the selected locations.
-        Map<String, List<LocationResourceTemplate>> availableSubstitutions = getAvailableSubstitutions(topology, matchingConfiguration.getLocationGroups(),
-                locationMap, context.getEnvironmentContext().get().getEnvironment().getId());
+        Map<String, List<LocationResourceTemplate>> availableSubstitutions = flowExecutionMemoizer.reuse(this, context, EnumSet.of(FlowInput.LOCATIONS),
+                candidates -> getDependencies(topology, locationGroups, candidates),
+                () -> getAvailableSubstitutions(topology, locationGroups, locationMap, environmentId));
 
         context.getExecutionCache().put(FlowExecutionContext.MATCHED_NODE_LOCATION_TEMPLATES_BY_NODE_ID_MAP, availableSubstitutions);
     }
 
+    /**
+     * Get the elements the candidates are computed from, apart from the locations.
+     *
+     * @param topology The topology.
+     * @param locationGroups The location groups of the matching configuration.
+     * @param candidates The candidates of the nodes, only the nodes whose types are managed by a location have candidates (possibly none).
+     * @return The elements the candidates are computed from.
+     */
+    private Object getDependencies(Topology topology, Map<String, NodeGroup> locationGroups, Map<String, List<LocationResourceTemplate>> candidates) {
+        Map<String, Object> groups = Maps.newHashMap();
+        locationGroups.forEach((name, group) -> groups.put(name, new Object[] { new TreeSet<>(safe(group.getMembers())), group.getPolicies() }));
+        // with the same types and locations the same nodes are managed by the locations, the properties of the other nodes are not matched
+        Map<String, Object> nodes = Maps.newHashMap();
+        for (Map.Entry<String, NodeTemplate> nodeTemplateEntry : safe(topology.getNodeTemplates()).entrySet()) {
+            NodeTemplate nodeTemplate = nodeTemplateEntry.getValue();
+            if (candidates.containsKey(nodeTemplateEntry.getKey())) {
+                Map<String, Object> capabilitiesProperties = Maps.newHashMap();
+                safe(nodeTemplate.getCapabilities()).forEach((name, capability) -> capabilitiesProperties.put(name, capability.getProperties()));
+                nodes.put(nodeTemplateEntry.getKey(), new Object[] { nodeTemplate.getType(), nodeTemplate.getProperties(), capabilitiesProperties });
+            } else {
+                nodes.put(nodeTemplateEntry.getKey(), nodeTemplate.getType());
+            }
+        }
+        return new Object[] { topology.getDependencies(), groups, nodes };
+    }
+
     private Map<String, List<LocationResourceTemplate>> getAvailableSubstitutions(Topology topology, Map<String, NodeGroup> locationGroups,
             Map<String, Location> locationByIds, String environmentId) {
         // Fetch all node types for templates in the topology
@@ -76,7 +123,6 @@ public class NodeMatchingCandidateModifier implements ITopologyModifier {
             Map<String, NodeTemplate> nodesToMatch = Maps.newHashMap();
             if (MapUtils.isNotEmpty(topology.getNodeTemplates())) {
                 if (AlienConstants.GROUP_ALL.equals(groupName)) {
-                    locationNodeGroup.setMembers(topology.getNodeTemplates().keySet());
                     nodesToMatch = topology.getNodeTemplates();
                 } else {
                     nodesToMatch = Maps.filterEntries(topology.getNodeTemplates(), input -> locationNodeGroup.getMembers().contains(input.getKey()));
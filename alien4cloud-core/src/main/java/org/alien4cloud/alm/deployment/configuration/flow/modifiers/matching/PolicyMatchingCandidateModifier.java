@@ -2,13 +2,17 @@ package org.alien4cloud.alm.deployment.configuration.flow.modifiers.matching;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import javax.inject.Inject;
 
 import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionContext;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionMemoizer;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowInput;
 import org.alien4cloud.alm.deployment.configuration.flow.ITopologyModifier;
 import org.alien4cloud.alm.deployment.configuration.model.DeploymentMatchingConfiguration;
 import org.alien4cloud.tosca.model.templates.NodeGroup;
@@ -29,12 +33,20 @@ import alien4cloud.utils.AlienConstants;
 /**
  * This modifier load and put in context cache the matching candidates nodes.
  *
- * It does not update topology or matching configurations, these operations are done in sub-sequent modifiers.
+ * It does not update topology or matching configurations, these operations are done in sub-sequent modifiers. Candidates are reused from the previous
+ * execution of the flow when the locations, the location groups and the policies are unchanged.
  */
 @Component
 public class PolicyMatchingCandidateModifier implements ITopologyModifier {
     @Inject
     private PolicyMatcherService policyMatcherService;
+    @Inject
+    private FlowExecutionMemoizer flowExecutionMemoizer;
+
+    @Override
+    public Set<FlowInput> getInputs(FlowExecutionContext context) {
+        return EnumSet.of(FlowInput.DEPLOYMENT_MATCHING_CONFIGURATION, FlowInput.LOCATIONS);
+    }
 
     @Override
     public void process(Topology topology, FlowExecutionContext context) {
@@ -51,32 +63,34 @@ public class PolicyMatchingCandidateModifier implements ITopologyModifier {
             matchingConfiguration.setMatchedPolicies(Maps.newHashMap());
         }
 
-        Map<String, Location> locationMap = (Map<String, Location>) context.getExecutionCache().get(FlowExecutionContext.DEPLOYMENT_LOCATIONS_MAP_CACHE_KEY);
-
-        // TODO avoid update if the matching configuration is strickly younger than the context last conf update ?
-        // Fetch available substitutions on the selected locations.
-        Map<String, List<PolicyLocationResourceTemplate>> availableSubstitutions = getAvailableMatches(topology, context,
-                matchingConfiguration.getLocationGroups(), locationMap, context.getEnvironmentContext().get().getEnvironment().getId());
-
-        context.getExecutionCache().put(FlowExecutionContext.MATCHED_POLICY_LOCATION_TEMPLATES_BY_NODE_ID_MAP, availableSubstitutions);
-    }
-
-    private Map<String, List<PolicyLocationResourceTemplate>> getAvailableMatches(Topology topology, FlowExecutionContext context,
-            Map<String, NodeGroup> locationGroups, Map<String, Location> locationByIds, String environmentId) {
-        Map<String, List<PolicyLocationResourceTemplate>> availableSubstitutions = Maps.newHashMap();
+        Map<String, NodeGroup> locationGroups = matchingConfiguration.getLocationGroups();
         if (locationGroups.size() > 1) {
             // Fail as not yet supported in alien4cloud.
             // Supporting policy management on multiple locations could have limitations based on the policy (need to be defined on both locations with
             // identical requirements / access to services etc.)
             // Unless defined on nodes that are all in the same location.
             context.log().warn("Policy are not supported when deployment is performed on multiple locations.");
-            return availableSubstitutions;
+            context.getExecutionCache().put(FlowExecutionContext.MATCHED_POLICY_LOCATION_TEMPLATES_BY_NODE_ID_MAP, Maps.newHashMap());
+            return;
         }
 
+        Map<String, Location> locationMap = (Map<String, Location>) context.getExecutionCache().get(FlowExecutionContext.DEPLOYMENT_LOCATIONS_MAP_CACHE_KEY);
+        Location location = locationMap.get(AlienConstants.GROUP_ALL);
+        String locationId = location == null ? null : location.getId();
+        String environmentId = context.getEnvironmentContext().get().getEnvironment().getId();
+        // Fetch available substitutions on the selected locations.
+        Map<String, List<PolicyLocationResourceTemplate>> availableSubstitutions = flowExecutionMemoizer.reuse(this, context,
+                EnumSet.of(FlowInput.LOCATIONS), candidates -> new Object[] { topology.getDependencies(), locationId, topology.getPolicies() },
+                () -> getAvailableMatches(topology, location, environmentId));
+
+        context.getExecutionCache().put(FlowExecutionContext.MATCHED_POLICY_LOCATION_TEMPLATES_BY_NODE_ID_MAP, availableSubstitutions);
+    }
+
+    private Map<String, List<PolicyLocationResourceTemplate>> getAvailableMatches(Topology topology, Location location, String environmentId) {
+        Map<String, List<PolicyLocationResourceTemplate>> availableSubstitutions = Maps.newHashMap();
         // Fetch all policy types for templates in the topology
         Map<String, PolicyType> policyTypes = getPolicyTypes(topology);
-        availableSubstitutions
-                .putAll(policyMatcherService.match(topology.getPolicies(), policyTypes, locationByIds.get(AlienConstants.GROUP_ALL), environmentId));
+        availableSubstitutions.putAll(policyMatcherService.match(topology.getPolicies(), policyTypes, location, environmentId));
 
         return availableSubstitutions;
     }
@@ -0,0 +1,23 @@
+package org.alien4cloud.alm.events;
+
+import alien4cloud.events.AlienEvent;
+import alien4cloud.security.Subject;
+import lombok.Getter;
+
+/**
+ * This event is dispatched <b>after</b> a permission is granted to one or more subjects on a resource and the resource has been saved.
+ */
+@Getter
+public class AfterPermissionGrantedEvent extends AlienEvent {
+    private Subject subjectType;
+    private String[] subjects;
+    /* The summary of the resource on which the permission is granted */
+    private BeforePermissionRevokedEvent.OnResource on;
+
+    public AfterPermissionGrantedEvent(Object source, BeforePermissionRevokedEvent.OnResource on, Subject subjectType, String... subjects) {
+        super(source);
+        this.subjectType = subjectType;
+        this.subjects = subjects;
+        this.on = on;
+    }
+}
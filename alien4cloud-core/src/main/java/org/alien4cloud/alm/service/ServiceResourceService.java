@@ -9,6 +9,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -40,7 +42,6 @@ import org.springframework.context.event.EventListener;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 
-import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import alien4cloud.dao.IGenericSearchDAO;
@@ -445,18 +446,20 @@ public class ServiceResourceService {
     @EventListener
     public synchronized void handleLocationDeleted(AfterLocationDeleted event) {
         // Remove the location in every service that referenced it
-        GetMultipleDataResult<ServiceResource> serviceResourceResult = alienDAO.buildQuery(ServiceResource.class)
-                .setFilters(singleKeyFilter("locationIds", event.getLocationId())).prepareSearch().search(0, Integer.MAX_VALUE);
-        if (serviceResourceResult.getData() == null) {
+        List<ServiceResource> serviceResources;
+        try (Stream<ServiceResource> stream = alienDAO.stream(ServiceResource.class, singleKeyFilter("locationIds", event.getLocationId()))) {
+            serviceResources = stream.collect(Collectors.toList());
+        }
+        if (serviceResources.isEmpty()) {
             return;
         }
-        for (ServiceResource serviceResource : serviceResourceResult.getData()) {
+        for (ServiceResource serviceResource : serviceResources) {
             Set<String> locations = CollectionUtils.safeNewHashSet(serviceResource.getLocationIds());
             locations.remove(event.getLocationId());
             serviceResource.setLocationIds(locations.toArray(new String[locations.size()]));
         }
         // bulk update
-        alienDAO.save(serviceResourceResult.getData());
+        alienDAO.save(serviceResources.toArray(new ServiceResource[serviceResources.size()]));
     }
 
     /**
@@ -466,8 +469,10 @@ public class ServiceResourceService {
      * @return
      */
     public List<ServiceResource> searchByLocation(String locationId) {
-        GetMultipleDataResult<ServiceResource> result = this.search("", singleKeyFilter("locationIds", locationId), null, false, 0, Integer.MAX_VALUE);
-        return Lists.newArrayList(result.getData());
+        try (Stream<ServiceResource> stream = alienDAO.buildQuery(ServiceResource.class).setFilters(singleKeyFilter("locationIds", locationId)).prepareSearch()
+                .setFieldSort("name", false).stream()) {
+            return stream.collect(Collectors.toList());
+        }
     }
 
     /**
@@ -478,9 +483,10 @@ public class ServiceResourceService {
      * @return An array that contains all services for the given node type.
      */
     public ServiceResource[] getByNodeTypes(String nodeType, String nodeTypeVersion) {
-        return alienDAO.buildQuery(ServiceResource.class)
-                .setFilters(fromKeyValueCouples("nodeInstance.nodeTemplate.type", nodeType, "nodeInstance.typeVersion", nodeTypeVersion)).prepareSearch()
-                .search(0, Integer.MAX_VALUE).getData();
+        try (Stream<ServiceResource> stream = alienDAO.stream(ServiceResource.class,
+                fromKeyValueCouples("nodeInstance.nodeTemplate.type", nodeType, "nodeInstance.typeVersion", nodeTypeVersion))) {
+            return stream.toArray(ServiceResource[]::new);
+        }
     }
 
     /**
@@ -503,12 +509,10 @@ public class ServiceResourceService {
 
     @EventListener
     public void reportArchiveUsage(ArchiveUsageRequestEvent event) {
-        ServiceResource[] serviceResources = alienDAO.buildQuery(ServiceResource.class)
-                .setFilters(fromKeyValueCouples("dependency.name", event.getArchiveName(), "dependency.version", event.getArchiveVersion())).prepareSearch()
-                .search(0, Integer.MAX_VALUE).getData();
-        for (ServiceResource serviceResource : serviceResources) {
-            Usage usage = new Usage(serviceResource.getName(), ServiceResource.class.getSimpleName().toLowerCase(), serviceResource.getId(), "");
-            event.addUsage(usage);
+        try (Stream<ServiceResource> serviceResources = alienDAO.stream(ServiceResource.class,
+                fromKeyValueCouples("dependency.name", event.getArchiveName(), "dependency.version", event.getArchiveVersion()))) {
+            serviceResources.forEach(serviceResource -> event
+                    .addUsage(new Usage(serviceResource.getName(), ServiceResource.class.getSimpleName().toLowerCase(), serviceResource.getId(), "")));
         }
     }
 }
@@ -1,5 +1,10 @@
 package org.alien4cloud.tosca.catalog.exception;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+
 import alien4cloud.component.repository.exception.CSARUsedInActiveDeployment;
 import alien4cloud.component.repository.exception.ToscaTypeAlreadyDefinedInOtherCSAR;
 import alien4cloud.exception.AlreadyExistException;
@@ -27,4 +32,20 @@ public final class UploadExceptionUtil {
         log.error("Unexpected error while parsing archive.", e);
         return new ParsingError(ErrorCode.ERRONEOUS_ARCHIVE_FILE, "Failed to process archive for unexpected reason", null, e.getMessage(), null, null);
     }
+
+    /**
+     * Generates the parsing errors of an exception, a type conflict error is generated for every type of the archive already defined in another archive.
+     *
+     * @param e The exception that caused the import failure.
+     * @return The parsing errors to report.
+     */
+    public static List<ParsingError> parsingErrorsFromException(Exception e) {
+        if (e instanceof ToscaTypeAlreadyDefinedInOtherCSAR) {
+            log.debug("Archive import failed", e);
+            return ((ToscaTypeAlreadyDefinedInOtherCSAR) e).getConflicts().stream()
+                    .map(conflict -> new ParsingError(ErrorCode.TOSCA_TYPE_ALREADY_EXISTS_IN_OTHER_CSAR, "Tosca type conflict", null, conflict, null, null))
+                    .collect(Collectors.toList());
+        }
+        return Lists.newArrayList(parsingErrorFromException(e));
+    }
 }
@@ -3,7 +3,6 @@ package org.alien4cloud.tosca.catalog.index;
 import alien4cloud.common.MetaPropertiesService;
 import alien4cloud.component.repository.exception.CSARUsedInActiveDeployment;
 import alien4cloud.component.repository.exception.ToscaTypeAlreadyDefinedInOtherCSAR;
-import alien4cloud.dao.FilterUtil;
 import alien4cloud.dao.IGenericSearchDAO;
 import alien4cloud.dao.model.GetMultipleDataResult;
 import alien4cloud.deployment.DeploymentService;
@@ -24,9 +23,11 @@ import alien4cloud.tosca.parser.impl.ErrorCode;
 import alien4cloud.utils.MapUtil;
 import alien4cloud.utils.VersionUtil;
 import alien4cloud.utils.services.ConstraintPropertyService;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Striped;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
@@ -43,6 +44,8 @@ import org.alien4cloud.tosca.model.types.AbstractInheritableToscaType;
 import org.alien4cloud.tosca.model.types.AbstractToscaType;
 import org.alien4cloud.tosca.model.types.NodeType;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
@@ -53,6 +56,8 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
 
 import static alien4cloud.utils.AlienUtils.safe;
 
@@ -107,6 +112,14 @@ public class ArchiveIndexer {
     @Value("${features.archive_indexer_lock_used_archive:#{true}}")
     private boolean lockUsedArchive;
 
+    /** Maximum number of element ids checked by a single type uniqueness query. */
+    private static final int TYPE_CHECK_CHUNK_SIZE = 500;
+
+    /** Archives with different names are imported concurrently, imports of the same archive name are serialized. */
+    private final Striped<Lock> archiveLocks = Striped.lazyWeakLock(256);
+    /** Locks on the TOSCA type ids defined by the archives being imported. */
+    private final Striped<Lock> typeLocks = Striped.lazyWeakLock(1024);
+
     /**
      * Check that a CSAR name/version does not already exists in the repository and eventually throw an AlreadyExistException.
      *
@@ -133,8 +146,18 @@ public class ArchiveIndexer {
      * @param topology The topology to be part of the topology.
      * @param topologyPath if the new topology must be created inside this directory to have all its artifacts
      */
+    public void importNewArchive(Csar csar, Topology topology, Path topologyPath) {
+        Lock archiveLock = archiveLocks.get(csar.getName());
+        archiveLock.lock();
+        try {
+            doImportNewArchive(csar, topology, topologyPath);
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
     @SneakyThrows
-    public synchronized void importNewArchive(Csar csar, Topology topology, Path topologyPath) {
+    private void doImportNewArchive(Csar csar, Topology topology, Path topologyPath) {
         ArchiveRoot archiveRoot = new ArchiveRoot();
         archiveRoot.setArchive(csar);
         archiveRoot.setTopology(topology);
@@ -180,7 +203,50 @@ public class ArchiveIndexer {
      * @param parsingErrors The non-null list of parsing errors in which to add errors.
      * @throws CSARUsedInActiveDeployment
      */
-    public synchronized void importArchive(final ArchiveRoot archiveRoot, CSARSource source, Path archivePath, List<ParsingError> parsingErrors)
+    public void importArchive(final ArchiveRoot archiveRoot, CSARSource source, Path archivePath, List<ParsingError> parsingErrors)
+            throws CSARUsedInActiveDeployment, ToscaTypeAlreadyDefinedInOtherCSAR {
+        Lock archiveLock = archiveLocks.get(archiveRoot.getArchive().getName());
+        archiveLock.lock();
+        try {
+            // types are locked so that concurrent imports of archives with different names cannot define the same type
+            Iterable<Lock> locks = typeLocks.bulkGet(getToscaTypeIds(archiveRoot));
+            locks.forEach(Lock::lock);
+            try {
+                doImportArchive(archiveRoot, source, archivePath, parsingErrors);
+            } finally {
+                locks.forEach(Lock::unlock);
+            }
+        } finally {
+            archiveLock.unlock();
+        }
+    }
+
+    private Set<String> getToscaTypeIds(ArchiveRoot archiveRoot) {
+        Set<String> toscaTypeIds = Sets.newHashSet();
+        addToscaTypeIds(toscaTypeIds, archiveRoot);
+        return toscaTypeIds;
+    }
+
+    private void addToscaTypeIds(Set<String> toscaTypeIds, ArchiveRoot archiveRoot) {
+        addToscaTypeIds(toscaTypeIds, archiveRoot.getNodeTypes());
+        addToscaTypeIds(toscaTypeIds, archiveRoot.getRelationshipTypes());
+        addToscaTypeIds(toscaTypeIds, archiveRoot.getCapabilityTypes());
+        addToscaTypeIds(toscaTypeIds, archiveRoot.getArtifactTypes());
+        addToscaTypeIds(toscaTypeIds, archiveRoot.getDataTypes());
+        addToscaTypeIds(toscaTypeIds, archiveRoot.getPolicyTypes());
+        // types of the local imports are indexed with the archive
+        for (ArchiveRoot localImport : safe(archiveRoot.getLocalImports())) {
+            addToscaTypeIds(toscaTypeIds, localImport);
+        }
+    }
+
+    private void addToscaTypeIds(Set<String> toscaTypeIds, Map<String, ? extends AbstractToscaType> toscaTypes) {
+        for (AbstractToscaType toscaType : safe(toscaTypes).values()) {
+            toscaTypeIds.add(toscaType.getElementId());
+        }
+    }
+
+    private void doImportArchive(final ArchiveRoot archiveRoot, CSARSource source, Path archivePath, List<ParsingError> parsingErrors)
             throws CSARUsedInActiveDeployment, ToscaTypeAlreadyDefinedInOtherCSAR {
         archiveIndexerAuthorizationFilter.checkAuthorization(archiveRoot);
         String archiveName = archiveRoot.getArchive().getName();
@@ -224,26 +290,45 @@ public class ArchiveIndexer {
 
         checkIfToscaTypesAreDefinedInOtherArchive(archiveRoot);
 
-        // save the archive (before we index and save other data so we can cleanup if anything goes wrong).
         if (source == null) {
             source = CSARSource.OTHER;
         }
         archiveRoot.getArchive().setImportSource(source.name());
         archiveRoot.getArchive().setHasTopology(archiveRoot.hasToscaTopologyTemplate() && !archiveRoot.getTopology().isEmpty());
         archiveRoot.getArchive().setNodeTypesCount(archiveRoot.getNodeTypes().size());
-        // TODO load transitives dependencies here before saving, as it is not done when parsing
-        csarService.save(archiveRoot.getArchive());
-        log.debug("Imported archive {}", archiveRoot.getArchive().getId());
 
-        // save the archive in the repository
-        archiveRepositry.storeCSAR(archiveRoot.getArchive(), archivePath);
-        // manage images before archive storage in the repository
+        // manage images before indexing as the icon tags of the types are updated with the ids of the imported images
         imageLoader.importImages(archivePath, archiveRoot, parsingErrors);
 
         Map<String, MetaPropConfiguration> metapropsNames = metaPropertiesService.getMetaPropConfigurationsByName(MetaPropertyTarget.COMPONENT);
 
-        // index the archive content in elastic-search
-        indexArchiveTypes(archiveName, archiveVersion, archiveRoot.getArchive().getWorkspace(), archiveRoot, currentIndexedArchive, metapropsNames);
+        // index the archive types in elastic-search before the archive is saved so that an archive is never visible without its types. The types of the
+        // previous version of the archive are replaced only once all the new types are indexed.
+        Map<String, AbstractToscaType> previousElements = Maps.newHashMap();
+        if (currentIndexedArchive != null) {
+            // get element from the archive so we get the creation date.
+            previousElements = indexerService.getArchiveElements(archiveName, archiveVersion);
+            prepareForUpdate(archiveRoot, previousElements, metapropsNames);
+        }
+        List<AbstractToscaType> archiveElements = Lists.newArrayList();
+        collectArchiveElements(archiveRoot, metapropsNames, archiveElements);
+        indexerService.indexArchiveElements(archiveElements, previousElements.values());
+
+        try {
+            // save the archive in the repository
+            archiveRepositry.storeCSAR(archiveRoot.getArchive(), archivePath);
+            // TODO load transitives dependencies here before saving, as it is not done when parsing
+            csarService.save(archiveRoot.getArchive());
+        } catch (RuntimeException e) {
+            rollbackArchive(archiveRoot.getArchive(), currentIndexedArchive, archiveElements, previousElements.values());
+            throw e;
+        }
+        log.debug("Imported archive {}", archiveRoot.getArchive().getId());
+
+        if (currentIndexedArchive != null && !archiveRoot.getArchive().isHasTopology()) {
+            // the topology of the previous version is not defined anymore, otherwise it is overwritten when the topology is indexed
+            alienDAO.delete(Topology.class, currentIndexedArchive.getId());
+        }
         indexTopology(archiveRoot, parsingErrors, archiveName, archiveVersion);
 
         publisher.publishEvent(new AfterArchiveIndexed(this, archiveRoot));
@@ -253,35 +338,36 @@ public class ArchiveIndexer {
      * Fail if at least one tosca type defined in the archive is already define in an other archive.
      *
      * @param archiveRoot
-     * @throws ToscaTypeAlreadyDefinedInOtherCSAR
+     * @throws ToscaTypeAlreadyDefinedInOtherCSAR with all the types of the archive that are defined in other archives.
      */
     private void checkIfToscaTypesAreDefinedInOtherArchive(final ArchiveRoot archiveRoot) throws ToscaTypeAlreadyDefinedInOtherCSAR {
-        failIfOneToscaTypesIsDefinedInOtherArchive(archiveRoot.getNodeTypes());
-        failIfOneToscaTypesIsDefinedInOtherArchive(archiveRoot.getRelationshipTypes());
-        failIfOneToscaTypesIsDefinedInOtherArchive(archiveRoot.getCapabilityTypes());
-        failIfOneToscaTypesIsDefinedInOtherArchive(archiveRoot.getArtifactTypes());
-        failIfOneToscaTypesIsDefinedInOtherArchive(archiveRoot.getDataTypes());
-    }
-
-    private void failIfOneToscaTypesIsDefinedInOtherArchive(Map<String, ? extends AbstractToscaType> toscaTypes) throws ToscaTypeAlreadyDefinedInOtherCSAR {
-        if (toscaTypes == null) {
-            return;
-        }
-        for (AbstractToscaType toscaType : toscaTypes.values()) {
-            failIfToscaTypeIsDefinedInOtherArchive(toscaType);
+        List<String> conflicts = findToscaTypesDefinedInOtherArchive(archiveRoot.getArchive().getName(), archiveRoot.getArchive().getVersion(),
+                getToscaTypeIds(archiveRoot));
+        if (!conflicts.isEmpty()) {
+            throw new ToscaTypeAlreadyDefinedInOtherCSAR(conflicts);
         }
     }
 
-    private void failIfToscaTypeIsDefinedInOtherArchive(AbstractToscaType toscaType) throws ToscaTypeAlreadyDefinedInOtherCSAR {
-        if (toscaType == null) {
-            return;
-        }
-        AbstractToscaType indexedNodeType = alienDAO.buildQuery(AbstractToscaType.class)
-                .setFilters(FilterUtil.singleKeyFilter("elementId", toscaType.getElementId())).prepareSearch().find();
-        if (indexedNodeType != null && !toscaType.getArchiveName().equals(indexedNodeType.getArchiveName())) {
-            throw new ToscaTypeAlreadyDefinedInOtherCSAR("Tosca type: " + toscaType.getElementId() + ", version: " + toscaType.getArchiveVersion()
-                    + " is already defined in archive " + indexedNodeType.getArchiveName() + ":" + indexedNodeType.getArchiveVersion());
+    /**
+     * Find the types that are already defined in an archive with another name, using a single query for every chunk of element ids.
+     *
+     * @param archiveName The name of the archive that defines the types.
+     * @param archiveVersion The version of the archive that defines the types.
+     * @param toscaTypeIds The element ids of the types.
+     * @return A description of every conflicting type, sorted by element id.
+     */
+    List<String> findToscaTypesDefinedInOtherArchive(String archiveName, String archiveVersion, Set<String> toscaTypeIds) {
+        Map<String, String> conflicts = Maps.newTreeMap();
+        for (List<String> chunk : Iterables.partition(toscaTypeIds, TYPE_CHECK_CHUNK_SIZE)) {
+            QueryBuilder query = QueryBuilders.boolQuery().must(QueryBuilders.termsQuery("rawElementId", chunk))
+                    .mustNot(QueryBuilders.termQuery("archiveName", archiveName));
+            try (Stream<AbstractToscaType> indexedTypes = alienDAO.stream(AbstractToscaType.class, query, null)) {
+                indexedTypes.forEach(indexedType -> conflicts.putIfAbsent(indexedType.getElementId(), "Tosca type: " + indexedType.getElementId()
+                        + ", version: " + archiveVersion + " is already defined in archive " + indexedType.getArchiveName() + ":"
+                        + indexedType.getArchiveVersion()));
+            }
         }
+        return Lists.newArrayList(conflicts.values());
     }
 
     private void manageTopologyMetaproperties(Topology topology) {
@@ -353,24 +439,25 @@ public class ArchiveIndexer {
     }
 
     /**
-     * Index an archive in Alien indexed repository.
+     * Restore the previous version of an archive when the archive could not be saved after its types have been indexed.
      *
-     * @param archiveName The name of the archive.
-     * @param archiveVersion The version of the archive.
-     * @param root The archive root.
-     * @param archive The previous archive that must be replaced if any.
+     * @param archive The archive that could not be saved.
+     * @param previousArchive The previous version of the archive, null if the archive was not indexed yet.
+     * @param archiveElements The types of the archive that have been indexed.
+     * @param previousElements The types of the previous version of the archive that have been replaced.
      */
-    private void indexArchiveTypes(String archiveName, String archiveVersion, String workspace, ArchiveRoot root, Csar archive, Map<String, MetaPropConfiguration> metapropsNames) {
-        if (archive != null) {
-            // get element from the archive so we get the creation date.
-            Map<String, AbstractToscaType> previousElements = indexerService.getArchiveElements(archiveName, archiveVersion);
-            prepareForUpdate(root, previousElements, metapropsNames);
-
-            // delete the all objects related to the previous archive .
-            csarService.deleteCsarContent(archive);
+    private void rollbackArchive(Csar archive, Csar previousArchive, List<AbstractToscaType> archiveElements, Collection<AbstractToscaType> previousElements) {
+        try {
+            indexerService.indexArchiveElements(previousElements, archiveElements);
+            if (previousArchive == null) {
+                alienDAO.delete(Csar.class, archive.getId());
+                archiveRepositry.removeCSAR(archive.getName(), archive.getVersion());
+            } else {
+                csarService.save(previousArchive);
+            }
+        } catch (Exception e) {
+            log.error("Failed to rollback the import of archive " + archive.getId(), e);
         }
-
-        performIndexing(root, metapropsNames);
     }
 
     private void prepareForUpdate(ArchiveRoot root, Map<String, AbstractToscaType> previousElements,Map<String, MetaPropConfiguration> metapropsNames) {
@@ -462,20 +549,20 @@ public class ArchiveIndexer {
         }
     }
 
-    private void performIndexing(ArchiveRoot root, Map<String, MetaPropConfiguration> metapropsNames) {
-        indexerService.indexInheritableElements(root.getArtifactTypes(), root.getArchive().getDependencies());
-        indexerService.indexInheritableElements(root.getCapabilityTypes(), root.getArchive().getDependencies());
+    private void collectArchiveElements(ArchiveRoot root, Map<String, MetaPropConfiguration> metapropsNames, List<AbstractToscaType> archiveElements) {
+        archiveElements.addAll(safe(root.getArtifactTypes()).values());
+        archiveElements.addAll(safe(root.getCapabilityTypes()).values());
         root.getNodeTypes().forEach((id, nodeType) -> {
             feedA4CMetaproperties(nodeType, nodeType.getTags(), metapropsNames); }
         );
-        indexerService.indexInheritableElements(root.getNodeTypes(), root.getArchive().getDependencies());
-        indexerService.indexInheritableElements(root.getRelationshipTypes(), root.getArchive().getDependencies());
-        indexerService.indexInheritableElements(root.getDataTypes(), root.getArchive().getDependencies());
-        indexerService.indexInheritableElements(root.getPolicyTypes(), root.getArchive().getDependencies());
+        archiveElements.addAll(safe(root.getNodeTypes()).values());
+        archiveElements.addAll(safe(root.getRelationshipTypes()).values());
+        archiveElements.addAll(safe(root.getDataTypes()).values());
+        archiveElements.addAll(safe(root.getPolicyTypes()).values());
 
         if (root.getLocalImports() != null) {
             for (ArchiveRoot child : root.getLocalImports()) {
-                performIndexing(child, metapropsNames);
+                collectArchiveElements(child, metapropsNames, archiveElements);
             }
         }
     }
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
@@ -30,7 +31,6 @@ import com.google.common.collect.Sets;
 
 import alien4cloud.application.ApplicationService;
 import alien4cloud.dao.IGenericSearchDAO;
-import alien4cloud.dao.model.GetMultipleDataResult;
 import alien4cloud.exception.AlreadyExistException;
 import alien4cloud.exception.DeleteReferencedObjectException;
 import alien4cloud.exception.NotFoundException;
@@ -108,9 +108,10 @@ public class CsarService {
     public Csar[] getDependantCsars(String name, String version) {
         FilterBuilder notSelf = FilterBuilders
                 .notFilter(FilterBuilders.andFilter(FilterBuilders.termFilter("name", name), FilterBuilders.termFilter("version", version)));
-        GetMultipleDataResult<Csar> result = csarDAO.buildQuery(Csar.class).prepareSearch()
-                .setFilters(fromKeyValueCouples("dependencies.name", name, "dependencies.version", version), notSelf).search(0, Integer.MAX_VALUE);
-        return result.getData();
+        try (Stream<Csar> result = csarDAO.buildQuery(Csar.class).prepareSearch()
+                .setFilters(fromKeyValueCouples("dependencies.name", name, "dependencies.version", version), notSelf).stream()) {
+            return result.toArray(Csar[]::new);
+        }
     }
 
     /**
@@ -123,9 +124,10 @@ public class CsarService {
         FilterBuilder notSelf = FilterBuilders
                 .notFilter(FilterBuilders.andFilter(FilterBuilders.termFilter("archiveName", name), FilterBuilders.termFilter("archiveVersion", version)));
 
-        GetMultipleDataResult<Topology> result = csarDAO.buildQuery(Topology.class).prepareSearch()
-                .setFilters(fromKeyValueCouples("dependencies.name", name, "dependencies.version", version), notSelf).search(0, Integer.MAX_VALUE);
-        return result.getData();
+        try (Stream<Topology> result = csarDAO.buildQuery(Topology.class).prepareSearch()
+                .setFilters(fromKeyValueCouples("dependencies.name", name, "dependencies.version", version), notSelf).stream()) {
+            return result.toArray(Topology[]::new);
+        }
     }
 
     public List<Csar> getTopologiesCsar(Topology... topologies) {
@@ -140,9 +142,9 @@ public class CsarService {
      * @return an array of CSARs that depend on this name:version.
      */
     public Location[] getDependantLocations(String name, String version) {
-        GetMultipleDataResult<Location> result = csarDAO.buildQuery(Location.class)
-                .setFilters(fromKeyValueCouples("dependencies.name", name, "dependencies.version", version)).prepareSearch().search(0, Integer.MAX_VALUE);
-        return result.getData();
+        try (Stream<Location> result = csarDAO.stream(Location.class, fromKeyValueCouples("dependencies.name", name, "dependencies.version", version))) {
+            return result.toArray(Location[]::new);
+        }
     }
 
     /**
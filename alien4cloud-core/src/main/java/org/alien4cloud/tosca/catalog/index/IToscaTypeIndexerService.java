@@ -40,13 +40,14 @@ public interface IToscaTypeIndexerService {
     void deleteElements(String archiveName, String archiveVersion);
 
     /**
-     * Index multiple elements into the repository.
-     * 
-     * @param archiveElements The elements to index.
-     * @param dependencies The archive dependencies (in order to add infos from the parent element to the child...)
+     * Index all the elements of an archive into the repository using chunked bulk requests and a single refresh. The elements of a previous version of the
+     * archive are replaced: they are overwritten or deleted once the new elements are indexed. If a chunk fails to be indexed the elements already indexed
+     * are deleted and the previous elements are restored so that the archive is never partially indexed.
+     *
+     * @param archiveElements The elements to index, inheritance must already be resolved.
+     * @param previousElements The elements of the previous version of the archive, empty if the archive was not indexed yet.
      */
-    void indexInheritableElements(Map<String, ? extends AbstractInheritableToscaType> archiveElements,
-            Collection<CSARDependency> dependencies);
+    void indexArchiveElements(Collection<? extends AbstractToscaType> archiveElements, Collection<? extends AbstractToscaType> previousElements);
 
     /**
      * Index a single element into the repository.
@@ -0,0 +1,170 @@
+package org.alien4cloud.tosca.catalog.index;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.alien4cloud.tosca.catalog.events.AfterArchiveDeleted;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
+import org.alien4cloud.tosca.catalog.events.BeforeArchivePromoted;
+import org.alien4cloud.tosca.model.CSARDependency;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.types.AbstractToscaType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import alien4cloud.tosca.context.IToscaTypeCache;
+import alien4cloud.tosca.context.ToscaContext;
+import alien4cloud.utils.CloneUtil;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Process-wide LRU cache of the TOSCA types loaded by the {@link ToscaContext}s, keyed by type, element id and archive id (name:version).
+ *
+ * A TOSCA type id can be defined in a single archive (see {@link ArchiveIndexer}) so the element found in any of the dependencies of a context is the one the
+ * repository would return. Cached instances are never exposed, callers get copies they are free to modify as they would with elements loaded from the
+ * repository. Copies are used rather than read-only views because the TOSCA model classes are mutable beans without read-only variants, and the code
+ * that gets types from the contexts is written against repository elements: the parser for example merges the tags and definitions of a parent type into
+ * the types that derive from it, sharing the instances.
+ *
+ * The types of an archive are evicted when the archive is indexed, deleted or promoted or when the types are updated through the
+ * {@link ToscaTypeIndexerService}. Node types are also evicted when the {@link alien4cloud.component.NodeTypeScoreService} updates their score.
+ */
+@Slf4j
+@Component
+public class ToscaTypeCache implements IToscaTypeCache {
+    @Value("${tosca_type_cache.enabled:#{true}}")
+    private boolean enabled = true;
+    @Value("${tosca_type_cache.max_size:5000}")
+    private int maxSize = 5000;
+    /** Registry of the application if any, metrics are kept local otherwise. */
+    @Autowired(required = false)
+    private MetricRegistry metricRegistry = new MetricRegistry();
+
+    private Cache<ToscaTypeKey, AbstractToscaType> cache;
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+    /** Incremented on every invalidation so that elements loaded before an invalidation are not cached after it. */
+    private long generation;
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class ToscaTypeKey {
+        private final String elementType;
+        private final String elementId;
+        private final String archiveId;
+    }
+
+    @PostConstruct
+    public void init() {
+        hits = metricRegistry.counter(MetricRegistry.name(ToscaTypeCache.class, "hits"));
+        misses = metricRegistry.counter(MetricRegistry.name(ToscaTypeCache.class, "misses"));
+        evictions = metricRegistry.counter(MetricRegistry.name(ToscaTypeCache.class, "evictions"));
+        cache = CacheBuilder.newBuilder().maximumSize(maxSize).<ToscaTypeKey, AbstractToscaType> removalListener(notification -> {
+            if (notification.wasEvicted()) {
+                evictions.inc();
+            }
+        }).build();
+        if (enabled) {
+            String sizeName = MetricRegistry.name(ToscaTypeCache.class, "size");
+            metricRegistry.remove(sizeName);
+            metricRegistry.register(sizeName, (Gauge<Long>) () -> cache.size());
+            ToscaContext.setToscaTypeCache(this);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (ToscaContext.getToscaTypeCache() == this) {
+            ToscaContext.setToscaTypeCache(null);
+        }
+    }
+
+    @Override
+    public <T extends AbstractToscaType> T get(Class<T> elementClass, String elementId, Set<CSARDependency> dependencies, Supplier<T> loader) {
+        if (dependencies == null || dependencies.isEmpty()) {
+            return loader.get();
+        }
+        String elementType = elementClass.getSimpleName();
+        for (CSARDependency dependency : dependencies) {
+            AbstractToscaType element = cache.getIfPresent(new ToscaTypeKey(elementType, elementId, Csar.createId(dependency.getName(), dependency.getVersion())));
+            if (element != null) {
+                hits.inc();
+                return (T) CloneUtil.clone(element);
+            }
+        }
+        misses.inc();
+        long loadGeneration;
+        synchronized (this) {
+            loadGeneration = generation;
+        }
+        T element = loader.get();
+        if (element != null) {
+            AbstractToscaType cachedElement = CloneUtil.clone(element);
+            ToscaTypeKey key = new ToscaTypeKey(elementType, elementId, Csar.createId(element.getArchiveName(), element.getArchiveVersion()));
+            synchronized (this) {
+                if (loadGeneration == generation) {
+                    cache.put(key, cachedElement);
+                }
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Evict all the types of an archive from the cache.
+     *
+     * @param archiveId The id of the archive (name:version).
+     */
+    public synchronized void invalidate(String archiveId) {
+        generation++;
+        cache.asMap().keySet().removeIf(key -> key.archiveId.equals(archiveId));
+        log.debug("Evicted types of archive <{}> from the TOSCA type cache", archiveId);
+    }
+
+    /**
+     * Evict a single type from the cache.
+     *
+     * @param elementClass The class of the type.
+     * @param elementId The TOSCA element id of the type.
+     * @param archiveId The id of the archive that defines the type (name:version).
+     */
+    public synchronized void invalidate(Class<? extends AbstractToscaType> elementClass, String elementId, String archiveId) {
+        generation++;
+        cache.invalidate(new ToscaTypeKey(elementClass.getSimpleName(), elementId, archiveId));
+    }
+
+    @Override
+    public synchronized void invalidateAll() {
+        generation++;
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void handleArchiveIndexed(AfterArchiveIndexed event) {
+        invalidate(event.getArchiveRoot().getArchive().getId());
+    }
+
+    @EventListener
+    public void handleArchiveDeleted(AfterArchiveDeleted event) {
+        invalidate(event.getArchiveId());
+    }
+
+    @EventListener
+    public void handleArchivePromoted(BeforeArchivePromoted event) {
+        invalidate(event.getArchiveId());
+    }
+}
@@ -1,45 +1,61 @@
 package org.alien4cloud.tosca.catalog.index;
 
 import static alien4cloud.dao.FilterUtil.fromKeyValueCouples;
-import static alien4cloud.utils.AlienUtils.safe;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
 
 import org.alien4cloud.tosca.model.CSARDependency;
+import org.alien4cloud.tosca.model.Csar;
 import org.alien4cloud.tosca.model.types.AbstractInheritableToscaType;
 import org.alien4cloud.tosca.model.types.AbstractToscaType;
 import org.apache.commons.collections4.CollectionUtils;
+import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.mapping.ElasticSearchClient;
 import org.springframework.stereotype.Service;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import alien4cloud.dao.ElasticSearchDAO;
 import alien4cloud.dao.IGenericSearchDAO;
 import alien4cloud.dao.model.FetchContext;
-import alien4cloud.dao.model.GetMultipleDataResult;
+import alien4cloud.dao.model.RefreshPolicy;
 import alien4cloud.images.IImageDAO;
 import alien4cloud.model.common.Tag;
 import alien4cloud.model.components.IndexedModelUtils;
 import alien4cloud.tosca.context.ToscaContext;
 import alien4cloud.tosca.context.ToscaContextual;
+import lombok.extern.slf4j.Slf4j;
 import org.alien4cloud.tosca.normative.types.ToscaTypes;
 
 /**
  * This service is responsible for indexing and searching tosca types.
  */
+@Slf4j
 @Service
 public class ToscaTypeIndexerService implements IToscaTypeIndexerService {
+    /** Maximum number of elements indexed by a single bulk request. */
+    private static final int BULK_SIZE = 200;
+
     @Resource(name = "alien-es-dao")
     private IGenericSearchDAO alienDAO;
     @Inject
     private ElasticSearchClient elasticSearchClient;
     @Inject
     private IImageDAO imageDAO;
+    @Inject
+    private ToscaTypeCache toscaTypeCache;
 
     private void refreshIndexForSearching() {
         elasticSearchClient.getClient().admin().indices().prepareRefresh(ElasticSearchDAO.TOSCA_ELEMENT_INDEX).execute().actionGet();
@@ -52,40 +68,64 @@ public class ToscaTypeIndexerService implements IToscaTypeIndexerService {
 
     @Override
     public <T extends AbstractToscaType> Map<String, T> getArchiveElements(String archiveName, String archiveVersion, Class<T> type) {
-        GetMultipleDataResult<T> elements = alienDAO.buildQuery(type)
-                .setFilters(fromKeyValueCouples("archiveName", archiveName, "archiveVersion", archiveVersion)).prepareSearch().search(0, Integer.MAX_VALUE);
-
-        Map<String, T> elementsByIds = Maps.newHashMap();
-        if (elements == null) {
-            return elementsByIds;
-        }
-
-        for (T element : elements.getData()) {
-            elementsByIds.put(element.getId(), element);
+        try (Stream<T> elements = alienDAO.buildQuery(type).setFilters(fromKeyValueCouples("archiveName", archiveName, "archiveVersion", archiveVersion))
+                .prepareSearch().stream()) {
+            return elements.collect(Collectors.toMap(AbstractToscaType::getId, Function.identity(), (first, second) -> second, Maps::newHashMap));
         }
-        return elementsByIds;
     }
 
     @Override
     public void deleteElements(String name, String version) {
-        GetMultipleDataResult<AbstractToscaType> result = alienDAO.buildQuery(AbstractToscaType.class)
-                .setFilters(fromKeyValueCouples("archiveName", name, "archiveVersion", version)).prepareSearch().setFetchContext(FetchContext.SUMMARY)
-                .search(0, Integer.MAX_VALUE);
-
-        AbstractToscaType[] elements = result.getData();
-
         // we need to delete each element
-        for (AbstractToscaType element : elements) {
-            deleteElement(element);
+        try (Stream<AbstractToscaType> elements = alienDAO.buildQuery(AbstractToscaType.class)
+                .setFilters(fromKeyValueCouples("archiveName", name, "archiveVersion", version)).prepareSearch().setFetchContext(FetchContext.SUMMARY).stream()) {
+            elements.forEach(this::deleteElement);
         }
+        toscaTypeCache.invalidate(Csar.createId(name, version));
     }
 
     @Override
-    public void indexInheritableElements(Map<String, ? extends AbstractInheritableToscaType> archiveElements, Collection<CSARDependency> dependencies) {
-        for (AbstractInheritableToscaType element : safe(archiveElements).values()) {
-            alienDAO.save(element);
+    public void indexArchiveElements(Collection<? extends AbstractToscaType> archiveElements, Collection<? extends AbstractToscaType> previousElements) {
+        Map<Class<?>, Set<String>> indexedIds = Maps.newHashMap();
+        try {
+            for (List<? extends AbstractToscaType> chunk : Iterables.partition(archiveElements, BULK_SIZE)) {
+                for (AbstractToscaType element : chunk) {
+                    indexedIds.computeIfAbsent(element.getClass(), elementClass -> Sets.newHashSet()).add(element.getId());
+                }
+                alienDAO.save(chunk.toArray(), RefreshPolicy.NONE);
+            }
+            // elements of the previous version that are not defined anymore, the other ones have been overwritten
+            for (AbstractToscaType previousElement : previousElements) {
+                if (!indexedIds.getOrDefault(previousElement.getClass(), Collections.emptySet()).contains(previousElement.getId())) {
+                    alienDAO.delete(previousElement.getClass(), previousElement.getId());
+                }
+            }
+        } catch (Exception e) {
+            // a failed chunk may have been partially indexed so its elements are deleted too.
+            log.error("Failed to index archive elements, rolling back to the previous elements", e);
+            try {
+                indexedIds.forEach((elementClass, ids) -> alienDAO.delete(elementClass, QueryBuilders.idsQuery().ids(ids.toArray(new String[ids.size()]))));
+                for (List<? extends AbstractToscaType> chunk : Iterables.partition(previousElements, BULK_SIZE)) {
+                    alienDAO.save(chunk.toArray(), RefreshPolicy.NONE);
+                }
+            } catch (Exception rollbackException) {
+                log.error("Failed to rollback the indexed archive elements", rollbackException);
+            }
+            throw e;
+        } finally {
+            refreshIndexForSearching();
+            Stream.<AbstractToscaType> concat(archiveElements.stream(), previousElements.stream())
+                    .map(element -> Csar.createId(element.getArchiveName(), element.getArchiveVersion())).distinct().forEach(toscaTypeCache::invalidate);
+        }
+        // delete the icons that were used only by the previous elements
+        Set<String> checkedIcons = Sets.newHashSet();
+        for (AbstractToscaType previousElement : previousElements) {
+            Tag iconTag = ArchiveImageLoader.getIconTag(previousElement.getTags());
+            if (iconTag != null && checkedIcons.add(iconTag.getValue())
+                    && !hasElementWithTag(previousElement.getClass(), iconTag.getName(), iconTag.getValue())) {
+                imageDAO.deleteAll(iconTag.getValue());
+            }
         }
-        refreshIndexForSearching();
     }
 
     @Override
@@ -105,6 +145,7 @@ public class ToscaTypeIndexerService implements IToscaTypeIndexerService {
         }
 
         alienDAO.save(element);
+        toscaTypeCache.invalidate(Csar.createId(element.getArchiveName(), element.getArchiveVersion()));
         refreshIndexForSearching();
     }
 
@@ -126,6 +167,7 @@ public class ToscaTypeIndexerService implements IToscaTypeIndexerService {
     public void deleteElements(Collection<AbstractToscaType> elements) {
         for (AbstractToscaType element : elements) {
             alienDAO.delete(element.getClass(), element.getId());
+            toscaTypeCache.invalidate(Csar.createId(element.getArchiveName(), element.getArchiveVersion()));
         }
     }
 }
\ No newline at end of file
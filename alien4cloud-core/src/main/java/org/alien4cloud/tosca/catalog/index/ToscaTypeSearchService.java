@@ -20,12 +20,14 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
+import java.lang.reflect.Array;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static alien4cloud.dao.FilterUtil.fromKeyValueCouples;
 import static alien4cloud.dao.FilterUtil.singleKeyFilter;
@@ -55,8 +57,10 @@ public class ToscaTypeSearchService extends AbstractToscaIndexSearchService<Abst
 
     @Override
     public AbstractToscaType[] getArchiveTypes(String archiveName, String archiveVersion) {
-        return searchDAO.buildQuery(AbstractToscaType.class).setFilters(fromKeyValueCouples("archiveName", archiveName, "archiveVersion", archiveVersion))
-                .prepareSearch().search(0, Integer.MAX_VALUE).getData();
+        try (Stream<AbstractToscaType> types = searchDAO.stream(AbstractToscaType.class,
+                fromKeyValueCouples("archiveName", archiveName, "archiveVersion", archiveVersion))) {
+            return types.toArray(AbstractToscaType[]::new);
+        }
     }
 
     @Override
@@ -93,8 +97,11 @@ public class ToscaTypeSearchService extends AbstractToscaIndexSearchService<Abst
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <T extends AbstractToscaType> T[] findAll(Class<T> elementType, String elementId) {
-        return searchDAO.buildQuery(elementType).setFilters(singleKeyFilter("rawElementId", elementId)).prepareSearch().search(0, Integer.MAX_VALUE).getData();
+        try (Stream<T> types = searchDAO.stream(elementType, singleKeyFilter("rawElementId", elementId))) {
+            return types.toArray(size -> (T[]) Array.newInstance(elementType, size));
+        }
     }
 
     /**
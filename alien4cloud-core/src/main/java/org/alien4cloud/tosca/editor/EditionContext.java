@@ -1,20 +1,34 @@
 package org.alien4cloud.tosca.editor;
 
+import org.alien4cloud.tosca.model.CSARDependency;
 import org.alien4cloud.tosca.model.Csar;
 import org.alien4cloud.tosca.model.templates.Topology;
 import alien4cloud.tosca.context.ToscaContext;
+import alien4cloud.utils.AlienUtils;
+import alien4cloud.utils.CloneUtil;
 import alien4cloud.utils.DirectoryJSonWalker;
 import alien4cloud.utils.TreeNode;
 import com.google.common.collect.Lists;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.alien4cloud.tosca.editor.operations.AbstractEditorOperation;
 import org.alien4cloud.tosca.editor.operations.RecoverTopologyOperation;
+import org.alien4cloud.tosca.topology.TopologyDTOSnapshot;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
 
 /**
  * Topology edition context is related to a specific topology that is currently under edition.
@@ -25,6 +39,9 @@ import java.util.List;
 @Setter
 @NoArgsConstructor
 public class EditionContext {
+    /** Maximum number of topology DTO fingerprints kept for a topology under edition. */
+    private static final int MAX_DTO_SNAPSHOTS = 16;
+
     /** The archive under edition. Note that we don't allow updates to this object in the editor. */
     private Csar csar;
 
@@ -49,6 +66,31 @@ public class EditionContext {
     private TreeNode archiveContentTree;
     /** List of the operations generated to recover the topology */
     private RecoverTopologyOperation recoveryOperation;
+    /** Copies of the topology by index of the last operation applied to it, used to undo or redo without replaying all operations. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private TreeMap<Integer, Checkpoint> checkpoints = new TreeMap<>();
+    /** Identifies the topology states reached by the operations, renewed when the topology is saved or replaced. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private String generation = UUID.randomUUID().toString();
+    /** Fingerprints of the last topology DTOs sent to the editor clients by version. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, TopologyDTOSnapshot> dtoSnapshots = Collections.synchronizedMap(new LinkedHashMap<String, TopologyDTOSnapshot>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TopologyDTOSnapshot> eldest) {
+            return size() > MAX_DTO_SNAPSHOTS;
+        }
+    });
+    /** Hash of the dependencies found up to date in the catalog by the last recovery check by archive id, null if they must be checked again. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Map<String, String> upToDateDependencies;
+    /** Incremented on every archive change so that a recovery check that ran concurrently to the change is not kept. */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private long catalogGeneration;
 
     /**
      * Create a new instance of a topology edition context from an existing topology.
@@ -81,4 +123,164 @@ public class EditionContext {
     public void refreshContentTree() throws IOException {
         this.archiveContentTree = DirectoryJSonWalker.getDirectoryTree(this.localGitPath);
     }
+
+    /**
+     * Keep a copy of the current topology and file hierarchy.
+     *
+     * @param operationIndex The index of the last operation applied to the topology.
+     * @param maxCheckpoints The maximum number of copies to keep, the copies of the oldest operations are dropped first.
+     */
+    public void addCheckpoint(int operationIndex, int maxCheckpoints) {
+        if (maxCheckpoints <= 0 || checkpoints.containsKey(operationIndex)) {
+            return;
+        }
+        checkpoints.put(operationIndex, new Checkpoint(CloneUtil.clone(topology), CloneUtil.clone(archiveContentTree)));
+        while (checkpoints.size() > maxCheckpoints) {
+            checkpoints.pollFirstEntry();
+        }
+    }
+
+    /**
+     * Get the index of the closest copy taken at or before the given operation index.
+     *
+     * @param operationIndex The index of the operation to restore.
+     * @return The index of the last operation applied to the copy or -1 if there is none.
+     */
+    public int getCheckpointIndex(int operationIndex) {
+        Integer checkpointIndex = checkpoints.floorKey(operationIndex);
+        return checkpointIndex == null ? -1 : checkpointIndex;
+    }
+
+    /**
+     * Restore the topology and file hierarchy from the closest copy taken at or before the given operation index.
+     *
+     * @param operationIndex The index of the operation to restore.
+     * @return The index of the last operation applied to the restored topology or -1 if no copy could be used.
+     */
+    public int restoreCheckpoint(int operationIndex) {
+        Map.Entry<Integer, Checkpoint> checkpoint = checkpoints.floorEntry(operationIndex);
+        if (checkpoint == null) {
+            return -1;
+        }
+        // the copy is cloned as the restored topology will be updated by the next operations
+        this.topology = CloneUtil.clone(checkpoint.getValue().topology);
+        this.toscaContext = new ToscaContext.Context(topology.getDependencies());
+        this.archiveContentTree = CloneUtil.clone(checkpoint.getValue().archiveContentTree);
+        return checkpoint.getKey();
+    }
+
+    /**
+     * Drop the copies taken after the given operation index, when the operations to redo are replaced.
+     *
+     * @param operationIndex The index of the last operation which copy is still valid.
+     */
+    public void clearCheckpointsAfter(int operationIndex) {
+        checkpoints.tailMap(operationIndex, false).clear();
+    }
+
+    /**
+     * Drop all the copies, when the operations are saved or the topology is replaced.
+     */
+    public void clearCheckpoints() {
+        checkpoints.clear();
+    }
+
+    /**
+     * Get the version of the topology, two edition requests that return the same version return the same topology.
+     *
+     * @return The version of the topology.
+     */
+    public String getVersion() {
+        return lastOperationIndex == -1 ? generation : generation + ":" + operations.get(lastOperationIndex).getId();
+    }
+
+    /**
+     * Renew the versions of the topology, when it is saved or replaced without operation.
+     */
+    public void renewVersion() {
+        generation = UUID.randomUUID().toString();
+        dtoSnapshots.clear();
+    }
+
+    /**
+     * Get the fingerprints of the topology DTO sent for a version.
+     *
+     * @param version The version of the topology.
+     * @return The fingerprints or null if they are not known anymore.
+     */
+    public TopologyDTOSnapshot getDTOSnapshot(String version) {
+        return dtoSnapshots.get(version);
+    }
+
+    /**
+     * Keep the fingerprints of a topology DTO sent to a client.
+     *
+     * @param version The version of the topology.
+     * @param snapshot The fingerprints of the DTO.
+     */
+    public void putDTOSnapshot(String version, TopologyDTOSnapshot snapshot) {
+        dtoSnapshots.put(version, snapshot);
+    }
+
+    /**
+     * Get the generation of the catalog to pass to {@link #setDependenciesUpToDate(Set, long)} once the recovery check is done.
+     *
+     * @return The number of archive changes seen by the context.
+     */
+    public synchronized long getCatalogGeneration() {
+        return catalogGeneration;
+    }
+
+    /**
+     * Check if the last recovery check found the given dependencies up to date and no archive they reference changed since.
+     *
+     * @param dependencies The dependencies of the topology.
+     * @return True if the topology does not need to be checked for recovery.
+     */
+    public synchronized boolean isDependenciesUpToDate(Set<CSARDependency> dependencies) {
+        if (upToDateDependencies == null) {
+            return false;
+        }
+        for (CSARDependency dependency : AlienUtils.safe(dependencies)) {
+            String archiveId = Csar.createId(dependency.getName(), dependency.getVersion());
+            if (!upToDateDependencies.containsKey(archiveId) || !Objects.equals(upToDateDependencies.get(archiveId), dependency.getHash())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep the dependencies that the recovery check found up to date.
+     *
+     * @param dependencies The dependencies of the topology.
+     * @param catalogGeneration The generation of the catalog when the check started, the result is dropped if an archive changed since.
+     */
+    public synchronized void setDependenciesUpToDate(Set<CSARDependency> dependencies, long catalogGeneration) {
+        if (catalogGeneration != this.catalogGeneration) {
+            return;
+        }
+        upToDateDependencies = new HashMap<>();
+        for (CSARDependency dependency : AlienUtils.safe(dependencies)) {
+            upToDateDependencies.put(Csar.createId(dependency.getName(), dependency.getVersion()), dependency.getHash());
+        }
+    }
+
+    /**
+     * Notify the context that an archive of the catalog changed, the topology must be checked for recovery again if it depends on it.
+     *
+     * @param archiveId The id of the archive that is indexed or deleted.
+     */
+    public synchronized void archiveChanged(String archiveId) {
+        catalogGeneration++;
+        if (upToDateDependencies != null && upToDateDependencies.containsKey(archiveId)) {
+            upToDateDependencies = null;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class Checkpoint {
+        private final Topology topology;
+        private final TreeNode archiveContentTree;
+    }
 }
\ No newline at end of file
@@ -15,6 +15,8 @@ import alien4cloud.model.common.Usage;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import org.alien4cloud.tosca.catalog.events.ArchiveUsageRequestEvent;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveDeleted;
+import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
 import org.alien4cloud.tosca.catalog.events.BeforeArchiveDeleted;
 import org.alien4cloud.tosca.catalog.events.BeforeArchiveIndexed;
 import org.alien4cloud.tosca.catalog.events.BeforeArchivePromoted;
@@ -92,7 +94,7 @@ public class EditionContextManager {
      * @param topologyId The id of the topology.
      */
     @SneakyThrows
-    public synchronized void init(String topologyId) {
+    public void init(String topologyId) {
         contextThreadLocal.set(contextCache.get(topologyId));
         ToscaContext.set(contextThreadLocal.get().getToscaContext());
     }
@@ -108,6 +110,24 @@ public class EditionContextManager {
         ToscaContext.set(contextThreadLocal.get().getToscaContext());
     }
 
+    /**
+     * Restore the state of the topology context from the closest checkpoint taken at or before the given operation index, or reset it to it's initial state
+     * if there is none.
+     *
+     * @param operationIndex The index of the operation to restore.
+     * @return The index of the last operation applied to the restored topology, -1 if the context has been reset.
+     * @throws IOException In case the parsing of the directory content fails.
+     */
+    public int restore(int operationIndex) throws IOException {
+        int restoredIndex = contextThreadLocal.get().restoreCheckpoint(operationIndex);
+        if (restoredIndex == -1) {
+            reset();
+        } else {
+            ToscaContext.set(contextThreadLocal.get().getToscaContext());
+        }
+        return restoredIndex;
+    }
+
     /**
      * Get the current topology edition context for the thread.
      * 
@@ -144,34 +164,53 @@ public class EditionContextManager {
     }
 
     @EventListener
-    public synchronized void handleArchiveRemoved(BeforeArchiveDeleted event) {
+    public void handleArchiveRemoved(BeforeArchiveDeleted event) {
         contextCache.invalidate(event.getArchiveId());
+        notifyArchiveChanged(event.getArchiveId());
     }
 
     @EventListener
-    public synchronized void handleArchiveUpdated(BeforeArchiveIndexed event) {
+    public void handleArchiveUpdated(BeforeArchiveIndexed event) {
         contextCache.invalidate(event.getArchiveRoot().getArchive().getId());
+        notifyArchiveChanged(event.getArchiveRoot().getArchive().getId());
+    }
+
+    @EventListener
+    public void handleArchiveRemoved(AfterArchiveDeleted event) {
+        // a recovery check may have read the catalog while the archive was deleted
+        notifyArchiveChanged(event.getArchiveId());
     }
 
     @EventListener
-    public synchronized void handleArchivePromoted(BeforeArchivePromoted event) {
+    public void handleArchiveUpdated(AfterArchiveIndexed event) {
+        // a recovery check may have read the catalog while the archive was indexed
+        notifyArchiveChanged(event.getArchiveRoot().getArchive().getId());
+    }
+
+    private void notifyArchiveChanged(String archiveId) {
+        for (EditionContext context : contextCache.asMap().values()) {
+            context.archiveChanged(archiveId);
+        }
+    }
+
+    @EventListener
+    public void handleArchivePromoted(BeforeArchivePromoted event) {
         contextCache.invalidate(event.getArchiveId());
     }
 
-    @SneakyThrows
     @EventListener
-    public synchronized void reportArchiveUsage(ArchiveUsageRequestEvent event) {
-        for (String topologyId : contextCache.asMap().keySet()) {
-            if (isTopologyUsingArchive(event.getArchiveName(), event.getArchiveVersion(), topologyId)) {
-                event.addUsage(new Usage(contextCache.get(topologyId).getCsar().getName(), "Topology editor", topologyId,
-                        contextCache.get(topologyId).getCsar().getWorkspace()));
+    public void reportArchiveUsage(ArchiveUsageRequestEvent event) {
+        // only check the loaded contexts, a context evicted in the meantime is not reloaded
+        for (Map.Entry<String, EditionContext> contextEntry : contextCache.asMap().entrySet()) {
+            EditionContext context = contextEntry.getValue();
+            if (isTopologyUsingArchive(event.getArchiveName(), event.getArchiveVersion(), context)) {
+                event.addUsage(new Usage(context.getCsar().getName(), "Topology editor", contextEntry.getKey(), context.getCsar().getWorkspace()));
             }
         }
     }
 
-    @SneakyThrows
-    private boolean isTopologyUsingArchive(String archiveName, String archiveVersion, String topologyId) {
-        for (CSARDependency dependency : contextCache.get(topologyId).getToscaContext().getDependencies()) {
+    private boolean isTopologyUsingArchive(String archiveName, String archiveVersion, EditionContext context) {
+        for (CSARDependency dependency : context.getToscaContext().getDependencies()) {
             if (archiveName.equals(dependency.getName()) && archiveVersion.equals(dependency.getVersion())) {
                 return true;
             }
@@ -182,7 +221,7 @@ public class EditionContextManager {
     /**
      * Invalidate all cached objects
      */
-    public synchronized void clearCache() {
+    public void clearCache() {
         contextCache.invalidateAll();
     }
 }
\ No newline at end of file
@@ -12,6 +12,8 @@ import java.nio.file.StandardCopyOption;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -40,11 +42,14 @@ import org.springframework.stereotype.Service;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Striped;
 
 import alien4cloud.exception.NotFoundException;
 import alien4cloud.git.SimpleGitHistoryEntry;
+import alien4cloud.paas.wf.WorkflowsBuilderService;
 import alien4cloud.security.AuthorizationUtil;
 import alien4cloud.topology.TopologyDTO;
+import alien4cloud.topology.TopologyDeltaDTO;
 import alien4cloud.topology.TopologyService;
 import alien4cloud.topology.TopologyServiceCore;
 import alien4cloud.topology.TopologyValidationResult;
@@ -82,12 +87,20 @@ public class EditorService {
     private TopologyValidationService topologyValidationService;
     @Inject
     private CsarService csarService;
+    @Inject
+    private WorkflowsBuilderService workflowBuilderService;
 
     @Value("${directories.alien}/${directories.upload_temp}")
     private String tempUploadDir;
+    @Value("${editor.undo.checkpoint_interval:20}")
+    private int checkpointInterval;
+    @Value("${editor.undo.max_checkpoints:10}")
+    private int maxCheckpoints;
 
     /** Processors map by type. */
     private Map<Class<?>, IEditorOperationProcessor<? extends AbstractEditorOperation>> processorMap = Maps.newHashMap();
+    /** Edition locks by topology id, operations on a topology are processed one after the other while different topologies are edited in parallel. */
+    private final Striped<Lock> topologyLocks = Striped.lock(1024);
 
     @PostConstruct
     public void initialize() {
@@ -138,6 +151,8 @@ public class EditorService {
      * @param operation The operation to be processed.
      */
     private void initContext(String topologyId, AbstractEditorOperation operation) {
+        // the lock is released by releaseContext
+        topologyLocks.get(topologyId).lock();
         editionContextManager.init(topologyId);
         // check authorization to update a topology
         topologyService.checkEditionAuthorizations(EditionContextManager.getTopology());
@@ -148,11 +163,27 @@ public class EditorService {
     }
 
     /**
-     * Ensure that the request is synchronized with the current state of the edition.
+     * Release the edition context initialized by {@link #initContext(String, AbstractEditorOperation)} and the edition lock of the topology.
+     *
+     * @param topologyId The id of the topology under edition.
+     */
+    private void releaseContext(String topologyId) {
+        try {
+            if (EditionContextManager.get() != null) {
+                EditionContextManager.get().setCurrentOperation(null);
+            }
+            editionContextManager.destroy();
+        } finally {
+            topologyLocks.get(topologyId).unlock();
+        }
+    }
+
+    /**
+     * Ensure that the request is synchronized with the current state of the edition. Must be called while holding the edition lock of the topology.
      *
      * @param operation, The operation under evaluation.
      */
-    private synchronized void checkSynchronization(AbstractEditorOperation operation) {
+    private void checkSynchronization(AbstractEditorOperation operation) {
         // there is an operation being processed so just fail (nobody could get the notification)
         if (EditionContextManager.get().getCurrentOperation() != null) {
             throw new EditionConcurrencyException();
@@ -173,6 +204,22 @@ public class EditorService {
     // trigger editor operation
     @MessageMapping("/topology-editor/{topologyId}")
     public <T extends AbstractEditorOperation> TopologyDTO execute(@DestinationVariable String topologyId, T operation) {
+        return execute(topologyId, operation, dtoBuilder::buildTopologyDTO);
+    }
+
+    /**
+     * Execute an operation and return only the changes since the version of the topology known by the client.
+     *
+     * @param topologyId The id of the topology under edition.
+     * @param operation The operation to execute.
+     * @param knownVersion The version of the last topology DTO received by the client, null if it has none.
+     * @return The changes of the topology or the full topology if they cannot be computed from the known version.
+     */
+    public <T extends AbstractEditorOperation> TopologyDeltaDTO execute(String topologyId, T operation, String knownVersion) {
+        return execute(topologyId, operation, context -> dtoBuilder.buildTopologyDeltaDTO(context, knownVersion));
+    }
+
+    private <T extends AbstractEditorOperation, D extends TopologyDTO> D execute(String topologyId, T operation, Function<EditionContext, D> dtoFunction) {
         // get the topology context.
         try {
             initContext(topologyId, operation);
@@ -183,10 +230,9 @@ public class EditorService {
             doExecute(operation);
 
             // return the topology context
-            return dtoBuilder.buildTopologyDTO(EditionContextManager.get());
+            return dtoFunction.apply(EditionContextManager.get());
         } finally {
-            EditionContextManager.get().setCurrentOperation(null);
-            editionContextManager.destroy();
+            releaseContext(topologyId);
         }
     }
 
@@ -200,11 +246,24 @@ public class EditorService {
         if (EditionContextManager.get().getLastOperationIndex() != operations.size() - 1) {
             // Clear the operations to 'redo'.
             CollectionUtils.clearFrom(operations, EditionContextManager.get().getLastOperationIndex() + 1);
+            EditionContextManager.get().clearCheckpointsAfter(EditionContextManager.get().getLastOperationIndex());
         }
 
         // update the last operation and index
         EditionContextManager.get().getOperations().add(operation);
         EditionContextManager.get().setLastOperationIndex(EditionContextManager.get().getOperations().size() - 1);
+        checkpoint(EditionContextManager.get().getLastOperationIndex());
+    }
+
+    /**
+     * Keep a copy of the topology every checkpointInterval operations so that undo and redo don't have to replay all operations.
+     *
+     * @param operationIndex The index of the last operation applied to the topology.
+     */
+    private void checkpoint(int operationIndex) {
+        if (checkpointInterval > 0 && (operationIndex + 1) % checkpointInterval == 0) {
+            EditionContextManager.get().addCheckpoint(operationIndex, maxCheckpoints);
+        }
     }
 
     /**
@@ -230,6 +289,23 @@ public class EditorService {
      * @return The topology DTO.
      */
     public TopologyDTO undoRedo(String topologyId, int at, String lastOperationId) {
+        return undoRedo(topologyId, at, lastOperationId, dtoBuilder::buildTopologyDTO);
+    }
+
+    /**
+     * Undo or redo operations until the given index (including) and return only the changes since the version of the topology known by the client.
+     *
+     * @param topologyId The id of the topology for which to undo or redo operations.
+     * @param at The index on which to place the undo/redo cursor (-1 means no operations, then 0 is first operation etc.)
+     * @param lastOperationId The last known operation id for client optimistic locking.
+     * @param knownVersion The version of the last topology DTO received by the client, null if it has none.
+     * @return The changes of the topology or the full topology if they cannot be computed from the known version.
+     */
+    public TopologyDeltaDTO undoRedo(String topologyId, int at, String lastOperationId, String knownVersion) {
+        return undoRedo(topologyId, at, lastOperationId, context -> dtoBuilder.buildTopologyDeltaDTO(context, knownVersion));
+    }
+
+    private <D extends TopologyDTO> D undoRedo(String topologyId, int at, String lastOperationId, Function<EditionContext, D> dtoFunction) {
         try {
             initContext(topologyId, lastOperationId);
 
@@ -241,29 +317,32 @@ public class EditorService {
 
             if (at == EditionContextManager.get().getLastOperationIndex()) {
                 // nothing to change.
-                return dtoBuilder.buildTopologyDTO(EditionContextManager.get());
+                return dtoFunction.apply(EditionContextManager.get());
             }
 
-            // TODO Improve this by avoiding dao query for (deep) cloning topology and keeping cache for TOSCA types that are required.
-            editionContextManager.reset();
+            // replay from the current topology on redo or from the closest checkpoint
+            int appliedIndex = EditionContextManager.get().getLastOperationIndex();
+            if (at < appliedIndex || EditionContextManager.get().getCheckpointIndex(at) > appliedIndex) {
+                appliedIndex = editionContextManager.restore(at);
+            }
 
             Topology topology = EditionContextManager.getTopology();
             Csar csar = EditionContextManager.getCsar();
-            for (int i = 0; i < at + 1; i++) {
+            for (int i = appliedIndex + 1; i < at + 1; i++) {
                 AbstractEditorOperation operation = EditionContextManager.get().getOperations().get(i);
                 IEditorOperationProcessor processor = processorMap.get(operation.getClass());
                 processor.process(csar, topology, operation);
+                checkpoint(i);
             }
 
             EditionContextManager.get().setLastOperationIndex(at);
 
-            return dtoBuilder.buildTopologyDTO(EditionContextManager.get());
+            return dtoFunction.apply(EditionContextManager.get());
         } catch (IOException e) {
             // FIXME undo should be fail-safe...
             return null;
         } finally {
-            EditionContextManager.get().setCurrentOperation(null);
-            editionContextManager.destroy();
+            releaseContext(topologyId);
         }
     }
 
@@ -274,19 +353,34 @@ public class EditorService {
      * @param lastOperationId The id of the last operation.
      */
     public TopologyDTO save(String topologyId, String lastOperationId) {
+        return save(topologyId, lastOperationId, dtoBuilder::buildTopologyDTO);
+    }
+
+    /**
+     * Save a topology under edition and return only the changes since the version of the topology known by the client.
+     *
+     * @param topologyId The id of the topology under edition.
+     * @param lastOperationId The id of the last operation.
+     * @param knownVersion The version of the last topology DTO received by the client, null if it has none.
+     * @return The changes of the topology or the full topology if they cannot be computed from the known version.
+     */
+    public TopologyDeltaDTO save(String topologyId, String lastOperationId, String knownVersion) {
+        return save(topologyId, lastOperationId, context -> dtoBuilder.buildTopologyDeltaDTO(context, knownVersion));
+    }
+
+    private <D extends TopologyDTO> D save(String topologyId, String lastOperationId, Function<EditionContext, D> dtoFunction) {
         try {
             initContext(topologyId, lastOperationId);
 
             doSave();
 
-            return dtoBuilder.buildTopologyDTO(EditionContextManager.get());
+            return dtoFunction.apply(EditionContextManager.get());
         } catch (IOException e) {
             // when there is a failure in file copy to the local repo.
             // FIXME git revert to put back the local files state in the initial state.
             throw new EditorIOException("Error while saving files state in local repository", e);
         } finally {
-            EditionContextManager.get().setCurrentOperation(null);
-            editionContextManager.destroy();
+            releaseContext(topologyId);
         }
     }
 
@@ -308,6 +402,8 @@ public class EditorService {
             commitMessage.append(operation.getAuthor()).append(": ").append(operation.commitMessage()).append("\n");
         }
 
+        // simplify and validate the workflows that node additions only partially post processed
+        workflowBuilderService.finalizeWorkflows(EditionContextManager.getTopology(), EditionContextManager.getCsar());
         saveYamlAndZipFile();
 
         Topology topology = EditionContextManager.getTopology();
@@ -321,6 +417,8 @@ public class EditorService {
         repositoryService.commit(EditionContextManager.get().getCsar(), commitMessage.toString());
 
         // TODO add support for undo even after save, this require ability to rollback files to git state, we need file rollback support for that..
+        context.clearCheckpoints();
+        context.renewVersion();
         context.setOperations(Lists.newArrayList(context.getOperations().subList(context.getLastOperationIndex() + 1, context.getOperations().size())));
         context.setLastOperationIndex(-1);
     }
@@ -342,6 +440,7 @@ public class EditorService {
      */
     public TopologyDTO pull(String topologyId, String username, String password, String remoteBranch) {
         Path tempPath = null;
+        topologyLocks.get(topologyId).lock();
         try {
             editionContextManager.init(topologyId);
             Path topologyPath = EditionContextManager.get().getLocalGitPath();
@@ -362,6 +461,9 @@ public class EditorService {
                 // Ignored
             }
             FileUtil.copy(tempPath, topologyPath);
+            // the topology has been replaced, operations can no longer be replayed from the checkpoints
+            EditionContextManager.get().clearCheckpoints();
+            EditionContextManager.get().renewVersion();
             repositoryService.updateArchiveZip(EditionContextManager.getCsar().getName(), EditionContextManager.getCsar().getVersion());
             // and finally save and commit
 
@@ -381,6 +483,7 @@ public class EditorService {
                 }
             }
             editionContextManager.destroy();
+            topologyLocks.get(topologyId).unlock();
         }
     }
 
@@ -482,6 +585,8 @@ public class EditorService {
             }
 
             // and finally save and commit
+            EditionContextManager.get().clearCheckpoints();
+            EditionContextManager.get().renewVersion();
             Topology topology = EditionContextManager.getTopology();
             String commitMessage = AuthorizationUtil.getCurrentUser().getUserId() + ": Override all content of the topology archive from REST API.";
             topologyServiceCore.save(topology);
@@ -492,22 +597,29 @@ public class EditorService {
             // Local git commit
             repositoryService.commit(EditionContextManager.get().getCsar(), commitMessage);
         } finally {
-            EditionContextManager.get().setCurrentOperation(null);
-            editionContextManager.destroy();
+            releaseContext(topologyId);
         }
     }
 
     /**
      * Checks if the topology needs to be recovered and eventually throws an error.
-     * The {@link RecoverTopologyOperation} is cache for later use in recovering process
+     * The {@link RecoverTopologyOperation} is cache for later use in recovering process. The dependencies are checked against the catalog only when they
+     * changed or when an archive they reference has been indexed or deleted since the last check.
      */
     public void checkTopologyRecovery() {
         Topology topology = EditionContextManager.getTopology();
         EditionContext context = EditionContextManager.get();
+        if (context.isDependenciesUpToDate(topology.getDependencies())) {
+            // no archive used by the topology changed since the last check
+            context.setRecoveryOperation(null);
+            return;
+        }
+        long catalogGeneration = context.getCatalogGeneration();
         context.setRecoveryOperation(recoveryHelperService.buildRecoveryOperation(topology));
         if (context.getRecoveryOperation() != null) {
             throw new RecoverTopologyException("The topology needs to be recovered.", context.getRecoveryOperation());
         }
+        context.setDependenciesUpToDate(topology.getDependencies(), catalogGeneration);
     }
 
     /**
@@ -533,8 +645,7 @@ public class EditorService {
             // FIXME git revert to put back the local files state in the initial state.
             throw new EditorIOException("Error while saving files state in local repository", e);
         } finally {
-            EditionContextManager.get().setCurrentOperation(null);
-            editionContextManager.destroy();
+            releaseContext(topologyId);
         }
 
     }
@@ -0,0 +1,13 @@
+package org.alien4cloud.tosca.editor.operations.workflow;
+
+import org.alien4cloud.tosca.editor.operations.AbstractEditorOperation;
+
+/**
+ * Operation to simplify and validate the workflows that are pending finalization.
+ */
+public class FinalizeWorkflowsOperation extends AbstractEditorOperation {
+    @Override
+    public String commitMessage() {
+        return "finalize workflows";
+    }
+}
@@ -84,7 +84,7 @@ public class AddNodeProcessor implements IEditorOperationProcessor<AddNodeOperat
                 + "> to the topology <" + topology.getId() + "> .");
 
         TopologyContext topologyContext = workflowBuilderService.buildTopologyContext(topology, csar);
-        workflowBuilderService.addNode(topologyContext, operation.getNodeName());
+        workflowBuilderService.addNode(topologyContext, operation.getNodeName(), true);
 
         if (!operation.isSkipAutoCompletion()) {
             danglingRequirementService.addDanglingRequirements(topology, topologyContext, nodeTemplate, operation.getRequirementSkipAutoCompletion());
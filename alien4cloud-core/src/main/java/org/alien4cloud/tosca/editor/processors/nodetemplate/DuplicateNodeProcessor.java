@@ -95,7 +95,7 @@ public class DuplicateNodeProcessor implements IEditorOperationProcessor<Duplica
         TopologyContext topologyContext = workflowBuilderService.buildTopologyContext(topology, csar);
 
         // add the new node to the workflow
-        workflowBuilderService.addNode(topologyContext, newNodeTemplate.getName());
+        workflowBuilderService.addNode(topologyContext, newNodeTemplate.getName(), true);
 
         // copy hosted nodes
         safe(TopologyNavigationUtil.getHostedNodes(topology, nodeTemplateToDuplicate.getName()))
@@ -125,7 +125,7 @@ public class DuplicateNodeProcessor implements IEditorOperationProcessor<Duplica
                     rel.setName(copyName(rel.getName(), relationships.keySet()));
                     rel.setTarget(validTargets.get(rel.getTarget()));
                     relationships.put(rel.getName(), rel);
-                    workflowBuilderService.addRelationship(topologyContext, nodeName, rel.getName());
+                    workflowBuilderService.addRelationship(topologyContext, nodeName, rel.getName(), true);
                 }
             }
             if (relationships.isEmpty()) {
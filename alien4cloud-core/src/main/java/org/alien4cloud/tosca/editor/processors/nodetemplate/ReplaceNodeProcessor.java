@@ -98,17 +98,17 @@ public class ReplaceNodeProcessor implements IEditorOperationProcessor<ReplaceNo
 
         // add the new node to the workflow
         TopologyContext topologyContext = workflowBuilderService.buildTopologyContext(topology, csar);
-        workflowBuilderService.addNode(topologyContext, oldNodeTemplate.getName());
+        workflowBuilderService.addNode(topologyContext, oldNodeTemplate.getName(), true);
 
         // add the relationship previouly swaped
         addTheRelationshipsOnSource(topology, relationshipsSwapped);
 
         // add the relationships from the new node to the workflow
-        safe(newNodeTemplate.getRelationships()).forEach(
-                (relationshipId, relationshipTemplate) -> workflowBuilderService.addRelationship(topologyContext, newNodeTemplate.getName(), relationshipId));
+        safe(newNodeTemplate.getRelationships()).forEach((relationshipId, relationshipTemplate) -> workflowBuilderService
+                .addRelationship(topologyContext, newNodeTemplate.getName(), relationshipId, true));
         // add the relationships to the new node to the workflow
         TopologyUtils.getTargetRelationships(oldNodeTemplate.getName(), nodeTemplates).forEach(relationshipEntry -> workflowBuilderService
-                .addRelationship(topologyContext, relationshipEntry.getSource().getName(), relationshipEntry.getRelationshipId()));
+                .addRelationship(topologyContext, relationshipEntry.getSource().getName(), relationshipEntry.getRelationshipId(), true));
         if(!operation.isSkipAutoCompletion()) {
             danglingRequirementService.addDanglingRequirements(topology, topologyContext, newNodeTemplate, null);
         }
@@ -119,7 +119,7 @@ public class AddRelationshipProcessor extends AbstractNodeProcessor<AddRelations
 
         relationships.put(operation.getRelationshipName(), relationshipTemplate);
         TopologyContext topologyContext = workflowBuilderService.buildTopologyContext(topology, csar);
-        workflowBuilderService.addRelationship(topologyContext, operation.getNodeName(), operation.getRelationshipName());
+        workflowBuilderService.addRelationship(topologyContext, operation.getNodeName(), operation.getRelationshipName(), true);
         log.debug("Added relationship to the topology [" + topology.getId() + "], node name [" + operation.getNodeName() + "], relationship name ["
                 + operation.getRelationshipName() + "]");
     }
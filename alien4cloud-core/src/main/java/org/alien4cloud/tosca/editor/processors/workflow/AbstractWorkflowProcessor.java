@@ -22,6 +22,8 @@ public abstract class AbstractWorkflowProcessor<T extends AbstractWorkflowOperat
 
     @Override
     public void process(Csar csar, Topology topology, T operation) {
+        // Custom modifications are made on the fully simplified workflow
+        workflowBuilderService.finalizeWorkflows(topology, csar);
         Workflow workflow = workflowBuilderService.getWorkflow(operation.getWorkflowName(), topology);
         processWorkflowOperation(csar, topology, operation, workflow);
         if (!operation.getClass().getSimpleName().toString().equals(ReinitializeWorkflowOperation.class.getSimpleName().toString())) {
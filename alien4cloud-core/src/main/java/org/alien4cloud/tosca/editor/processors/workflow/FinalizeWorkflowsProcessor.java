@@ -0,0 +1,29 @@
+package org.alien4cloud.tosca.editor.processors.workflow;
+
+import javax.inject.Inject;
+
+import org.alien4cloud.tosca.editor.operations.workflow.FinalizeWorkflowsOperation;
+import org.alien4cloud.tosca.editor.processors.IEditorOperationProcessor;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.springframework.stereotype.Component;
+
+import alien4cloud.paas.wf.WorkflowsBuilderService;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Process the {@link FinalizeWorkflowsOperation} operation
+ * Simplify and validate the workflows the previous operations left pending finalization.
+ */
+@Slf4j
+@Component
+public class FinalizeWorkflowsProcessor implements IEditorOperationProcessor<FinalizeWorkflowsOperation> {
+    @Inject
+    private WorkflowsBuilderService workflowBuilderService;
+
+    @Override
+    public void process(Csar csar, Topology topology, FinalizeWorkflowsOperation operation) {
+        log.debug("finalizing workflows from topology [ {} ]", topology.getId());
+        workflowBuilderService.finalizeWorkflows(topology, csar);
+    }
+}
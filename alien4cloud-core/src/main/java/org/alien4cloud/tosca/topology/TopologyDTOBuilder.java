@@ -1,5 +1,6 @@
 package org.alien4cloud.tosca.topology;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -7,9 +8,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import org.alien4cloud.tosca.editor.EditionContext;
+import org.alien4cloud.tosca.editor.operations.AbstractEditorOperation;
 import org.alien4cloud.tosca.model.CSARDependency;
 import org.alien4cloud.tosca.model.definitions.CapabilityDefinition;
 import org.alien4cloud.tosca.model.definitions.RequirementDefinition;
@@ -26,11 +29,18 @@ import org.alien4cloud.tosca.utils.DataTypesFetcher;
 import org.apache.commons.collections4.MapUtils;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
+import com.rits.cloning.Cloner;
 
 import alien4cloud.topology.AbstractTopologyDTO;
 import alien4cloud.topology.DependencyConflictDTO;
 import alien4cloud.topology.TopologyDTO;
+import alien4cloud.topology.TopologyDeltaDTO;
 import alien4cloud.tosca.context.ToscaContext;
 import alien4cloud.tosca.context.ToscaContextual;
 
@@ -41,6 +51,8 @@ import static alien4cloud.utils.AlienUtils.safe;
  */
 @Service
 public class TopologyDTOBuilder {
+    private final ObjectMapper fingerprintMapper = new ObjectMapper().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+    private final Cloner cloner = new Cloner();
 
     /**
      * Build a topology dto (topology and all used types) out of a topology.
@@ -49,7 +61,10 @@ public class TopologyDTOBuilder {
      */
     @ToscaContextual
     public TopologyDTO buildTopologyDTO(EditionContext context) {
-        TopologyDTO topologyDTO = new TopologyDTO();
+        return fillTopologyDTO(context, new TopologyDTO());
+    }
+
+    private <T extends TopologyDTO> T fillTopologyDTO(EditionContext context, T topologyDTO) {
         initTopologyDTO(context.getTopology(), topologyDTO);
         topologyDTO.setArchiveContentTree(context.getArchiveContentTree());
         topologyDTO.setLastOperationIndex(context.getLastOperationIndex());
@@ -62,6 +77,120 @@ public class TopologyDTOBuilder {
         return topologyDTO;
     }
 
+    /**
+     * Build a topology dto that contains only the changes since a version of the topology known by the client.
+     *
+     * @param context The edition context from which to build the dto.
+     * @param knownVersion The version of the last topology dto received by the client, null if the client has none.
+     * @return A delta dto or a dto with the full topology if the known version is null or cannot be found anymore.
+     */
+    @ToscaContextual
+    public TopologyDeltaDTO buildTopologyDeltaDTO(EditionContext context, String knownVersion) {
+        TopologyDeltaDTO topologyDTO = fillTopologyDTO(context, new TopologyDeltaDTO());
+        Topology topology = context.getTopology();
+        // the topology without node templates and workflows that are diffed one by one
+        Topology topologyWithoutTemplates = cloner.shallowClone(topology);
+        topologyWithoutTemplates.setNodeTemplates(null);
+        topologyWithoutTemplates.setWorkflows(null);
+
+        TopologyDTOSnapshot snapshot = new TopologyDTOSnapshot(
+                context.getOperations().stream().map(AbstractEditorOperation::getId).collect(Collectors.toList()), fingerprint(topologyWithoutTemplates),
+                fingerprints(topology.getNodeTemplates()), fingerprints(topology.getWorkflows()), getTypeIds(topologyDTO),
+                fingerprint(context.getArchiveContentTree()));
+        String version = context.getVersion();
+        topologyDTO.setVersion(version);
+        TopologyDTOSnapshot knownSnapshot = knownVersion == null ? null : context.getDTOSnapshot(knownVersion);
+        context.putDTOSnapshot(version, snapshot);
+        if (knownSnapshot == null) {
+            // the client must reload the full topology
+            return topologyDTO;
+        }
+
+        topologyDTO.setBaseVersion(knownVersion);
+        int operationsOffset = 0;
+        while (operationsOffset < knownSnapshot.getOperationIds().size() && operationsOffset < snapshot.getOperationIds().size()
+                && knownSnapshot.getOperationIds().get(operationsOffset).equals(snapshot.getOperationIds().get(operationsOffset))) {
+            operationsOffset++;
+        }
+        topologyDTO.setOperationsOffset(operationsOffset);
+        topologyDTO.setOperations(Lists.newArrayList(context.getOperations().subList(operationsOffset, context.getOperations().size())));
+
+        topologyDTO.setTopology(snapshot.getTopologyFingerprint().equals(knownSnapshot.getTopologyFingerprint()) ? null : topologyWithoutTemplates);
+        topologyDTO.setUpdatedNodeTemplates(getUpdated(topology.getNodeTemplates(), knownSnapshot.getNodeTemplateFingerprints(),
+                snapshot.getNodeTemplateFingerprints()));
+        topologyDTO.setRemovedNodeTemplates(getRemoved(knownSnapshot.getNodeTemplateFingerprints(), snapshot.getNodeTemplateFingerprints()));
+        topologyDTO.setUpdatedWorkflows(getUpdated(topology.getWorkflows(), knownSnapshot.getWorkflowFingerprints(), snapshot.getWorkflowFingerprints()));
+        topologyDTO.setRemovedWorkflows(getRemoved(knownSnapshot.getWorkflowFingerprints(), snapshot.getWorkflowFingerprints()));
+
+        topologyDTO.setNodeTypes(getNewTypes(NodeType.class, topologyDTO.getNodeTypes(), knownSnapshot.getTypeIds()));
+        topologyDTO.setRelationshipTypes(getNewTypes(RelationshipType.class, topologyDTO.getRelationshipTypes(), knownSnapshot.getTypeIds()));
+        topologyDTO.setCapabilityTypes(getNewTypes(CapabilityType.class, topologyDTO.getCapabilityTypes(), knownSnapshot.getTypeIds()));
+        topologyDTO.setDataTypes(getNewTypes(DataType.class, topologyDTO.getDataTypes(), knownSnapshot.getTypeIds()));
+        topologyDTO.setPolicyTypes(getNewTypes(PolicyType.class, topologyDTO.getPolicyTypes(), knownSnapshot.getTypeIds()));
+
+        if (snapshot.getArchiveContentTreeFingerprint().equals(knownSnapshot.getArchiveContentTreeFingerprint())) {
+            topologyDTO.setArchiveContentTree(null);
+        }
+        return topologyDTO;
+    }
+
+    private String fingerprint(Object value) {
+        try {
+            return Hashing.sha1().hashBytes(fingerprintMapper.writeValueAsBytes(value)).toString();
+        } catch (IOException e) {
+            // the value cannot be compared, consider it as changed
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private Map<String, String> fingerprints(Map<String, ?> values) {
+        Map<String, String> fingerprints = Maps.newHashMap();
+        for (Map.Entry<String, ?> value : safe(values).entrySet()) {
+            fingerprints.put(value.getKey(), fingerprint(value.getValue()));
+        }
+        return fingerprints;
+    }
+
+    private <T> Map<String, T> getUpdated(Map<String, T> values, Map<String, String> knownFingerprints, Map<String, String> fingerprints) {
+        Map<String, T> updated = Maps.newHashMap();
+        for (Map.Entry<String, String> fingerprint : fingerprints.entrySet()) {
+            if (!fingerprint.getValue().equals(knownFingerprints.get(fingerprint.getKey()))) {
+                updated.put(fingerprint.getKey(), values.get(fingerprint.getKey()));
+            }
+        }
+        return updated;
+    }
+
+    private Set<String> getRemoved(Map<String, String> knownFingerprints, Map<String, String> fingerprints) {
+        return Sets.newHashSet(Sets.difference(knownFingerprints.keySet(), fingerprints.keySet()));
+    }
+
+    private Set<String> getTypeIds(AbstractTopologyDTO<?> topologyDTO) {
+        Set<String> typeIds = Sets.newHashSet();
+        addTypeIds(typeIds, NodeType.class, topologyDTO.getNodeTypes());
+        addTypeIds(typeIds, RelationshipType.class, topologyDTO.getRelationshipTypes());
+        addTypeIds(typeIds, CapabilityType.class, topologyDTO.getCapabilityTypes());
+        addTypeIds(typeIds, DataType.class, topologyDTO.getDataTypes());
+        addTypeIds(typeIds, PolicyType.class, topologyDTO.getPolicyTypes());
+        return typeIds;
+    }
+
+    private void addTypeIds(Set<String> typeIds, Class<?> typeClass, Map<String, ?> types) {
+        for (String typeId : safe(types).keySet()) {
+            typeIds.add(typeClass.getSimpleName() + ":" + typeId);
+        }
+    }
+
+    private <T> Map<String, T> getNewTypes(Class<T> typeClass, Map<String, T> types, Set<String> knownTypeIds) {
+        Map<String, T> newTypes = Maps.newHashMap();
+        for (Map.Entry<String, T> type : safe(types).entrySet()) {
+            if (!knownTypeIds.contains(typeClass.getSimpleName() + ":" + type.getKey())) {
+                newTypes.put(type.getKey(), type.getValue());
+            }
+        }
+        return newTypes;
+    }
+
     /**
      * Compute a list of transitive dependency conflicts from the Context.
      * 
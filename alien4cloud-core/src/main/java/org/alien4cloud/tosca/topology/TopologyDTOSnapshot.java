@@ -0,0 +1,28 @@
+package org.alien4cloud.tosca.topology;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Fingerprints of the content of a topology DTO sent to an editor client, used to send only the changes in the next DTOs.
+ */
+@Getter
+@AllArgsConstructor
+public class TopologyDTOSnapshot {
+    /** Ids of the operations of the edition context. */
+    private final List<String> operationIds;
+    /** Fingerprint of the topology without node templates and workflows. */
+    private final String topologyFingerprint;
+    /** Fingerprints of the node templates by name. */
+    private final Map<String, String> nodeTemplateFingerprints;
+    /** Fingerprints of the workflows by name. */
+    private final Map<String, String> workflowFingerprints;
+    /** Ids of the referenced types, prefixed by their kind. */
+    private final Set<String> typeIds;
+    /** Fingerprint of the archive content tree. */
+    private final String archiveContentTreeFingerprint;
+}
@@ -12,6 +12,7 @@ import org.junit.Before;
 
 import alien4cloud.dao.ElasticSearchDAO;
 import alien4cloud.model.application.Application;
+import alien4cloud.tosca.context.ToscaContext;
 import org.alien4cloud.tosca.model.templates.Topology;
 
 public abstract class AbstractDAOTest {
@@ -47,5 +48,9 @@ public abstract class AbstractDAOTest {
         clearIndex(ElasticSearchDAO.TOSCA_ELEMENT_INDEX);
         clearIndex(Topology.class.getSimpleName().toLowerCase());
         refresh();
+        // types are deleted without going through the archive indexer
+        if (ToscaContext.getToscaTypeCache() != null) {
+            ToscaContext.getToscaTypeCache().invalidateAll();
+        }
     }
 }
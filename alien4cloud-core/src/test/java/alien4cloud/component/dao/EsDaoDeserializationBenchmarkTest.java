@@ -0,0 +1,64 @@
+package alien4cloud.component.dao;
+
+import java.util.concurrent.TimeUnit;
+
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.elasticsearch.search.SearchHit;
+import org.junit.Test;
+import org.springframework.test.annotation.DirtiesContext;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compare the de-serialization of search hits from the source string against the cached readers working on the source bytes, the read documents are
+ * checked by {@link EsDaoDeserializationTest}.
+ */
+@Slf4j
+@DirtiesContext
+public class EsDaoDeserializationBenchmarkTest extends EsDaoDeserializationTest {
+    private static final int DOCUMENT_COUNT = 200;
+    private static final int ITERATIONS = 20;
+
+    private <T> long readFromString(Class<T> clazz, SearchHit[] hits) throws Exception {
+        long start = System.nanoTime();
+        for (SearchHit hit : hits) {
+            dao.getJsonMapper().readValue(hit.getSourceAsString(), clazz);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private <T> long readFromBytes(Class<T> clazz, SearchHit[] hits) throws Exception {
+        long start = System.nanoTime();
+        for (SearchHit hit : hits) {
+            dao.hitToObject(clazz, hit);
+        }
+        return System.nanoTime() - start;
+    }
+
+    private <T> void benchmark(Class<T> clazz) throws Exception {
+        SearchHit[] hits = searchHits(clazz, DOCUMENT_COUNT);
+
+        // warm-up
+        for (int i = 0; i < ITERATIONS; i++) {
+            readFromString(clazz, hits);
+            readFromBytes(clazz, hits);
+        }
+        long fromString = 0;
+        long fromBytes = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            fromString += readFromString(clazz, hits);
+            fromBytes += readFromBytes(clazz, hits);
+        }
+        int reads = ITERATIONS * DOCUMENT_COUNT;
+        log.info("{}: {} reads from source string in {} ms, from source bytes with cached reader in {} ms", clazz.getSimpleName(), reads,
+                TimeUnit.NANOSECONDS.toMillis(fromString), TimeUnit.NANOSECONDS.toMillis(fromBytes));
+    }
+
+    @Test
+    public void compareHitDeserialization() throws Exception {
+        saveDocuments(DOCUMENT_COUNT);
+        benchmark(NodeType.class);
+        benchmark(Topology.class);
+    }
+}
@@ -0,0 +1,136 @@
+package alien4cloud.component.dao;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Resource;
+
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.CapabilityDefinition;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.RequirementDefinition;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import alien4cloud.dao.ElasticSearchDAO;
+import alien4cloud.dao.model.RefreshPolicy;
+import alien4cloud.model.common.Tag;
+
+/**
+ * Check that search hits read from the source bytes with the cached readers are the same as the ones read from the source string.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:application-context-test.xml")
+@DirtiesContext
+public class EsDaoDeserializationTest extends AbstractDAOTest {
+    @Resource(name = "alien-es-dao")
+    protected ElasticSearchDAO dao;
+
+    protected NodeType nodeType(int index) {
+        List<CapabilityDefinition> capabilities = Lists.newArrayList();
+        List<RequirementDefinition> requirements = Lists.newArrayList();
+        for (int i = 0; i < 5; i++) {
+            capabilities.add(new CapabilityDefinition("capability_" + i, "tosca.capabilities.Capability" + i, 10));
+            requirements.add(new RequirementDefinition("requirement_" + i, "tosca.capabilities.Capability" + i));
+        }
+        NodeType nodeType = TestModelUtil.createIndexedNodeType("org.alien4cloud.nodes.Type" + index, "archive", "1.0.0",
+                "A realistic description for the node type " + index, capabilities, requirements,
+                Lists.newArrayList("tosca.nodes.SoftwareComponent", "tosca.nodes.Root"), Lists.newArrayList("capability_0"),
+                Lists.newArrayList(new Tag("icon", "icon.png"), new Tag("tag", "value")), new Date(), new Date());
+        Map<String, PropertyDefinition> properties = Maps.newHashMap();
+        for (int i = 0; i < 30; i++) {
+            PropertyDefinition propertyDefinition = new PropertyDefinition();
+            propertyDefinition.setType("string");
+            propertyDefinition.setDescription("Description of the property " + i);
+            propertyDefinition.setRequired(i % 2 == 0);
+            properties.put("property_" + i, propertyDefinition);
+        }
+        nodeType.setProperties(properties);
+        return nodeType;
+    }
+
+    protected Topology topology(int index) {
+        Topology topology = new Topology();
+        topology.setArchiveName("topology-" + index);
+        topology.setArchiveVersion("1.0.0-SNAPSHOT");
+        topology.setWorkspace("ALIEN_GLOBAL_WORKSPACE");
+        Map<String, NodeTemplate> nodeTemplates = Maps.newHashMap();
+        for (int i = 0; i < 20; i++) {
+            NodeTemplate nodeTemplate = new NodeTemplate();
+            nodeTemplate.setName("Node_" + i);
+            nodeTemplate.setType("org.alien4cloud.nodes.Type" + i);
+            Map<String, AbstractPropertyValue> properties = Maps.newHashMap();
+            for (int j = 0; j < 10; j++) {
+                properties.put("property_" + j, new ScalarPropertyValue("value " + j));
+            }
+            nodeTemplate.setProperties(properties);
+            nodeTemplates.put(nodeTemplate.getName(), nodeTemplate);
+        }
+        topology.setNodeTemplates(nodeTemplates);
+        return topology;
+    }
+
+    /**
+     * Save node types and topologies.
+     *
+     * @param count The number of documents of each type to save.
+     */
+    protected void saveDocuments(int count) {
+        NodeType[] nodeTypes = new NodeType[count];
+        Topology[] topologies = new Topology[count];
+        for (int i = 0; i < count; i++) {
+            nodeTypes[i] = nodeType(i);
+            topologies[i] = topology(i);
+        }
+        dao.save(nodeTypes, RefreshPolicy.IMMEDIATE);
+        dao.save(topologies, RefreshPolicy.IMMEDIATE);
+    }
+
+    protected SearchHit[] searchHits(Class<?> clazz, int count) {
+        SearchResponse response = nodeClient.prepareSearch(dao.getIndexForType(clazz)).setQuery(QueryBuilders.matchAllQuery()).setSize(count).execute()
+                .actionGet();
+        SearchHit[] hits = response.getHits().getHits();
+        Assert.assertEquals(count, hits.length);
+        return hits;
+    }
+
+    private <T> void assertHitsReadAsFromString(Class<T> clazz, int count) throws Exception {
+        for (SearchHit hit : searchHits(clazz, count)) {
+            T fromBytes = dao.hitToObject(clazz, hit);
+            T fromString = dao.getJsonMapper().readValue(hit.getSourceAsString(), clazz);
+            Assert.assertEquals(dao.getJsonMapper().writeValueAsString(fromString), dao.getJsonMapper().writeValueAsString(fromBytes));
+        }
+    }
+
+    @Test
+    public void hitsShouldBeReadAsTheSavedDocuments() throws Exception {
+        int count = 10;
+        saveDocuments(count);
+
+        NodeType read = dao.findById(NodeType.class, nodeType(0).getId());
+        Assert.assertEquals(30, read.getProperties().size());
+        Assert.assertEquals(5, read.getCapabilities().size());
+
+        assertHitsReadAsFromString(NodeType.class, count);
+        assertHitsReadAsFromString(Topology.class, count);
+        // documents are read with the id they are indexed with
+        for (SearchHit hit : searchHits(Topology.class, count)) {
+            Assert.assertEquals(hit.getId(), dao.hitToObject(Topology.class, hit).getId());
+        }
+    }
+}
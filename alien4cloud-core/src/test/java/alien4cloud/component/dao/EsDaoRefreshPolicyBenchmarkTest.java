@@ -0,0 +1,41 @@
+package alien4cloud.component.dao;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.springframework.test.annotation.DirtiesContext;
+
+import com.google.common.collect.Maps;
+
+import alien4cloud.dao.model.RefreshPolicy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compare the save throughput of the different refresh policies against the embedded elasticsearch node, the visibility of the saved documents is checked
+ * by {@link EsDaoRefreshPolicyTest}.
+ */
+@Slf4j
+@DirtiesContext
+public class EsDaoRefreshPolicyBenchmarkTest extends EsDaoRefreshPolicyTest {
+    private static final int SAVES_PER_WRITER = 50;
+
+    @Test
+    public void compareSaveThroughputPerRefreshPolicy() throws Exception {
+        // warm-up
+        runSaves(RefreshPolicy.NONE, SAVES_PER_WRITER);
+        clean();
+
+        int saves = WRITERS * SAVES_PER_WRITER;
+        Map<RefreshPolicy, Long> durations = Maps.newLinkedHashMap();
+        for (RefreshPolicy policy : RefreshPolicy.values()) {
+            durations.put(policy, runSaves(policy, SAVES_PER_WRITER));
+        }
+
+        for (Map.Entry<RefreshPolicy, Long> entry : durations.entrySet()) {
+            double seconds = entry.getValue() / 1000000000d;
+            log.info("Refresh policy {}: {} saves in {} ms ({} saves/s)", entry.getKey(), saves, TimeUnit.NANOSECONDS.toMillis(entry.getValue()),
+                    (long) (saves / seconds));
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package alien4cloud.component.dao;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.dao.model.RefreshPolicy;
+import alien4cloud.model.application.Application;
+
+/**
+ * Check the visibility of the documents saved by concurrent writers with the different refresh policies.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:application-context-test.xml")
+@DirtiesContext
+public class EsDaoRefreshPolicyTest extends AbstractDAOTest {
+    protected static final int WRITERS = 4;
+
+    @Resource(name = "alien-es-dao")
+    protected IGenericSearchDAO dao;
+
+    private Application application(RefreshPolicy policy, int writer, int index) {
+        Application application = new Application();
+        application.setId(policy.name() + "-" + writer + "-" + index);
+        application.setName(application.getId());
+        return application;
+    }
+
+    /**
+     * Save applications from concurrent writers.
+     *
+     * @return The duration of the saves in nanoseconds.
+     */
+    protected long runSaves(RefreshPolicy policy, int savesPerWriter) throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(WRITERS);
+        long start = System.nanoTime();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            final int writerIndex = writer;
+            executorService.submit(() -> {
+                for (int i = 0; i < savesPerWriter; i++) {
+                    dao.save(application(policy, writerIndex, i), policy);
+                }
+            });
+        }
+        executorService.shutdown();
+        Assert.assertTrue(executorService.awaitTermination(5, TimeUnit.MINUTES));
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void strictPoliciesShouldMakeSavedDocumentsSearchable() throws Exception {
+        int savesPerWriter = 10;
+        int saved = 0;
+        for (RefreshPolicy policy : RefreshPolicy.values()) {
+            runSaves(policy, savesPerWriter);
+            saved += WRITERS * savesPerWriter;
+            if (!RefreshPolicy.NONE.equals(policy)) {
+                // strict policies guarantee that all saved documents are searchable as soon as save returns.
+                Assert.assertEquals(saved, dao.count(Application.class, null));
+            }
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package alien4cloud.component.dao;
+
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Resource;
+
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.dao.model.RefreshPolicy;
+import alien4cloud.model.application.Application;
+
+/**
+ * Test scroll based streaming and deletion on the dao.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:application-context-test.xml")
+@DirtiesContext
+public class EsDaoScrollTest extends AbstractDAOTest {
+    /** More than a scroll page and more than a delete bulk. */
+    private static final int APPLICATION_COUNT = 1234;
+
+    @Resource(name = "alien-es-dao")
+    private IGenericSearchDAO dao;
+
+    private void saveApplications() {
+        Application[] applications = new Application[APPLICATION_COUNT];
+        for (int i = 0; i < APPLICATION_COUNT; i++) {
+            applications[i] = new Application();
+            applications[i].setId("application-" + i);
+            applications[i].setName("application-" + i);
+            applications[i].setDescription(i % 2 == 0 ? "even" : "odd");
+        }
+        dao.save(applications, RefreshPolicy.IMMEDIATE);
+    }
+
+    @Test
+    public void streamShouldReturnAllElementsAcrossPages() {
+        saveApplications();
+        try (Stream<Application> applications = dao.stream(Application.class, null, null)) {
+            Set<String> ids = applications.map(Application::getId).collect(Collectors.toSet());
+            Assert.assertEquals(APPLICATION_COUNT, ids.size());
+        }
+        try (Stream<Application> applications = dao.stream(Application.class, QueryBuilders.termQuery("description", "even"), null)) {
+            Assert.assertEquals(APPLICATION_COUNT / 2, applications.count());
+        }
+        try (Stream<Application> applications = dao.buildQuery(Application.class).prepareSearch().stream()) {
+            Assert.assertEquals(APPLICATION_COUNT, applications.count());
+        }
+        Assert.assertEquals(APPLICATION_COUNT, dao.customFindAll(Application.class, null).size());
+    }
+
+    @Test
+    public void partiallyConsumedStreamShouldBeClosable() {
+        saveApplications();
+        try (Stream<Application> applications = dao.stream(Application.class, null, null)) {
+            Assert.assertTrue(applications.findFirst().isPresent());
+        }
+    }
+
+    @Test
+    public void deleteByQueryShouldDeleteAllMatchingElements() {
+        saveApplications();
+        dao.delete(Application.class, QueryBuilders.termQuery("description", "odd"));
+        Assert.assertEquals(APPLICATION_COUNT / 2, dao.count(Application.class, null));
+        dao.delete(Application.class, QueryBuilders.matchAllQuery());
+        Assert.assertEquals(0, dao.count(Application.class, null));
+        Assert.assertNull(dao.customFindAll(Application.class, null));
+    }
+}
@@ -1,10 +1,12 @@
 package alien4cloud.component.dao;
 
 import java.util.Date;
+import java.util.Set;
 
 import javax.annotation.Resource;
 
 import com.google.common.collect.Sets;
+import org.alien4cloud.tosca.catalog.index.ToscaTypeCache;
 import org.alien4cloud.tosca.model.CSARDependency;
 import org.alien4cloud.tosca.model.templates.NodeTemplate;
 import org.alien4cloud.tosca.model.templates.Topology;
@@ -16,10 +18,12 @@ import org.junit.runner.RunWith;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import alien4cloud.component.NodeTypeScoreService;
 import alien4cloud.dao.IGenericSearchDAO;
 import alien4cloud.dao.model.GetMultipleDataResult;
+import alien4cloud.events.BeforeTopologySavedEvent;
 import alien4cloud.utils.AlienConstants;
 import alien4cloud.utils.MapUtil;
 
@@ -33,7 +37,11 @@ public class NodeTypeScoreServiceTest {
     @Resource
     NodeTypeScoreService scoreService;
 
+    @Resource
+    private ToscaTypeCache toscaTypeCache;
+
     @Test
+    @SuppressWarnings("unchecked")
     public void testScoreService() throws InterruptedException {
         // Initialize test data
         NodeType indexedNodeType = new NodeType();
@@ -107,5 +115,34 @@ public class NodeTypeScoreServiceTest {
         Assert.assertEquals(10, ((NodeType) data.getData()[3]).getAlienScore());
         Assert.assertEquals(isengard100Id, ((NodeType) data.getData()[4]).getId());
         Assert.assertEquals(0, ((NodeType) data.getData()[4]).getAlienScore());
+
+        // load the type in the cache before its score changes
+        Set<CSARDependency> dependencies = Sets.newHashSet(new CSARDependency("middleEarth", "1.0.0"));
+        Assert.assertEquals(1000, toscaTypeCache
+                .get(NodeType.class, "osgiliath", dependencies, () -> dao.findById(NodeType.class, osgiliath100Id)).getAlienScore());
+
+        // a new version of a type only changes the scores of the versions of this type
+        indexedNodeType.setArchiveVersion("1.0.1");
+        indexedNodeType.setCreationDate(new Date());
+        indexedNodeType.setLastUpdateDate(new Date());
+        dao.save(indexedNodeType);
+        String osgiliath101Id = indexedNodeType.getId();
+        scoreService.update(Sets.newHashSet("osgiliath"));
+
+        Assert.assertEquals(1000, dao.findById(NodeType.class, osgiliath101Id).getAlienScore());
+        Assert.assertEquals(0, dao.findById(NodeType.class, osgiliath100Id).getAlienScore());
+        Assert.assertEquals(1011, dao.findById(NodeType.class, isengard101Id).getAlienScore());
+        Assert.assertEquals(10, dao.findById(NodeType.class, mordor100Id).getAlienScore());
+        // the type with the updated score is not read from the cache
+        Assert.assertEquals(0, toscaTypeCache
+                .get(NodeType.class, "osgiliath", dependencies, () -> dao.findById(NodeType.class, osgiliath100Id)).getAlienScore());
+
+        // the types of a saved topology are diffed against its stored version
+        Topology savedTopology = dao.findById(Topology.class, "topology");
+        savedTopology.setNodeTemplates(MapUtil.newHashMap(new String[] { "mordor" },
+                new NodeTemplate[] { new NodeTemplate("mordor", null, null, null, null, null, null, null) }));
+        scoreService.handleTopologySaving(new BeforeTopologySavedEvent(this, savedTopology));
+        Set<String> pendingElementIds = (Set<String>) ReflectionTestUtils.getField(scoreService, "pendingElementIds");
+        Assert.assertTrue(pendingElementIds.containsAll(Sets.newHashSet("isengard", "mordor")));
     }
 }
\ No newline at end of file
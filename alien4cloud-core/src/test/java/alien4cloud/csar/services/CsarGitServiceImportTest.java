@@ -0,0 +1,133 @@
+package alien4cloud.csar.services;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.alien4cloud.tosca.catalog.ArchiveUploadService;
+import org.alien4cloud.tosca.model.CSARDependency;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.CsarDependenciesBean;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import alien4cloud.model.components.CSARSource;
+import alien4cloud.model.git.CsarGitCheckoutLocation;
+import alien4cloud.model.git.CsarGitRepository;
+import alien4cloud.tosca.parser.ParsingContext;
+import alien4cloud.tosca.parser.ParsingResult;
+import alien4cloud.utils.AlienConstants;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CsarGitServiceImportTest {
+    private static final String REPOSITORY_ID = "repository";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private CsarFinderService csarFinderService;
+    @Mock
+    private ArchiveUploadService uploadService;
+    @InjectMocks
+    private CsarGitService csarGitService;
+
+    private Path archiveZipRoot;
+    private final List<String> events = Collections.synchronizedList(Lists.newArrayList());
+    // archives of the same dependency level wait for each other, this only succeeds if they are imported concurrently
+    private final CountDownLatch levelOneLatch = new CountDownLatch(2);
+
+    @Before
+    public void setUp() throws Exception {
+        csarGitService.setTempDirPath(temporaryFolder.getRoot().getAbsolutePath());
+        archiveZipRoot = temporaryFolder.getRoot().toPath().resolve("gitzips").resolve(REPOSITORY_ID);
+    }
+
+    @Test
+    public void independentArchivesShouldBeImportedConcurrentlyAfterTheirDependencies() throws Exception {
+        // base <- (left, right) <- top
+        Map<CSARDependency, CsarDependenciesBean> beans = Maps.newLinkedHashMap();
+        addArchive(beans, "top", "left", "right");
+        addArchive(beans, "left", "base");
+        addArchive(beans, "right", "base");
+        addArchive(beans, "base");
+
+        Mockito.when(csarFinderService.prepare(Mockito.any(Path.class), Mockito.any(Path.class))).thenReturn(Sets.newHashSet());
+        Mockito.when(uploadService.preParsing(Mockito.anySetOf(Path.class), Mockito.anyList())).thenReturn(beans);
+        Mockito.when(uploadService.upload(Mockito.any(Path.class), Mockito.eq(CSARSource.GIT), Mockito.eq(AlienConstants.GLOBAL_WORKSPACE_ID)))
+                .thenAnswer(new Answer<ParsingResult<Csar>>() {
+                    @Override
+                    public ParsingResult<Csar> answer(InvocationOnMock invocation) throws Throwable {
+                        String name = ((Path) invocation.getArguments()[0]).getFileName().toString();
+                        events.add("start:" + name);
+                        if ("left".equals(name) || "right".equals(name)) {
+                            levelOneLatch.countDown();
+                            levelOneLatch.await(5, TimeUnit.SECONDS);
+                        }
+                        Thread.sleep(10);
+                        events.add("end:" + name);
+                        ParsingResult<Csar> result = new ParsingResult<>();
+                        result.setResult(new Csar(name, "1.0.0"));
+                        result.setContext(new ParsingContext(name));
+                        return result;
+                    }
+                });
+
+        CsarGitRepository repository = new CsarGitRepository();
+        repository.setId(REPOSITORY_ID);
+        List<ParsingResult<Csar>> results = ReflectionTestUtils.invokeMethod(csarGitService, "processImport", repository, new CsarGitCheckoutLocation(),
+                "hash");
+
+        assertThat(levelOneLatch.getCount()).isEqualTo(0);
+        assertThat(results).hasSize(4);
+        assertThat(results.get(0).getResult().getName()).isEqualTo("base");
+        assertThat(Sets.newHashSet(results.get(1).getResult().getName(), results.get(2).getResult().getName())).containsOnly("left", "right");
+        assertThat(results.get(3).getResult().getName()).isEqualTo("top");
+
+        assertImportedAfter("left", "base");
+        assertImportedAfter("right", "base");
+        assertImportedAfter("top", "left");
+        assertImportedAfter("top", "right");
+
+        for (ParsingResult<Csar> result : results) {
+            assertThat(result.getContext().getImportDuration()).isNotNull().isGreaterThanOrEqualTo(0L);
+            assertThat(result.getContext().getFileName()).isEqualTo(result.getResult().getName() + "/" + result.getResult().getName());
+        }
+    }
+
+    private void addArchive(Map<CSARDependency, CsarDependenciesBean> beans, String name, String... dependencies) {
+        CsarDependenciesBean bean = new CsarDependenciesBean();
+        bean.setSelf(new CSARDependency(name, "1.0.0"));
+        bean.setPath(archiveZipRoot.resolve(name).resolve(name));
+        if (dependencies.length > 0) {
+            bean.setDependencies(Sets.newHashSet());
+            for (String dependency : dependencies) {
+                bean.getDependencies().add(new CSARDependency(dependency, "1.0.0"));
+            }
+        }
+        beans.put(bean.getSelf(), bean);
+    }
+
+    private void assertImportedAfter(String archive, String dependency) {
+        assertThat(events.indexOf("start:" + archive)).isGreaterThan(events.indexOf("end:" + dependency));
+    }
+}
@@ -0,0 +1,92 @@
+package alien4cloud.deployment;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.codahale.metrics.MetricRegistry;
+
+import alien4cloud.deployment.exceptions.DeploymentLockTimeoutException;
+
+public class DeploymentLockServiceTest {
+    private MetricRegistry metricRegistry;
+    private DeploymentLockService deploymentLockService;
+    private ExecutorService executorService;
+
+    @Before
+    public void init() {
+        metricRegistry = new MetricRegistry();
+        deploymentLockService = new DeploymentLockService();
+        ReflectionTestUtils.setField(deploymentLockService, "metricRegistry", metricRegistry);
+        executorService = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void destroy() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void locksShouldBeReleasedWhenNotUsed() {
+        String result = deploymentLockService.doWithDeploymentWriteLock("deployment", () -> {
+            Assert.assertEquals(1, deploymentLockService.getLockCount());
+            // locks are reentrant
+            return deploymentLockService.doWithDeploymentReadLock("deployment", () -> {
+                Assert.assertEquals(1, deploymentLockService.getLockCount());
+                return "done";
+            });
+        });
+        Assert.assertEquals("done", result);
+        Assert.assertEquals(0, deploymentLockService.getLockCount());
+
+        try {
+            deploymentLockService.doWithDeploymentReadLock("deployment", () -> {
+                throw new IllegalStateException();
+            });
+            Assert.fail("The action failure should be propagated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(0, deploymentLockService.getLockCount());
+        Assert.assertEquals(2, metricRegistry.timer(MetricRegistry.name(DeploymentLockService.class, "read", "hold")).getCount());
+        Assert.assertEquals(1, metricRegistry.timer(MetricRegistry.name(DeploymentLockService.class, "write", "wait")).getCount());
+    }
+
+    @Test
+    public void tryLockShouldFailWhenTheDeploymentIsLocked() throws Exception {
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> deploy = executorService.submit(() -> deploymentLockService.doWithDeploymentWriteLock("deployment", () -> {
+            locked.countDown();
+            try {
+                return release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+        Assert.assertTrue(locked.await(10, TimeUnit.SECONDS));
+
+        try {
+            deploymentLockService.tryWithDeploymentReadLock("deployment", 50, TimeUnit.MILLISECONDS, () -> null);
+            Assert.fail("The deployment should be locked");
+        } catch (DeploymentLockTimeoutException e) {
+            // expected
+        }
+        Assert.assertEquals(1, metricRegistry.counter(MetricRegistry.name(DeploymentLockService.class, "read", "timeouts")).getCount());
+        // other deployments are not locked
+        Assert.assertEquals("other", deploymentLockService.tryWithDeploymentWriteLock("other-deployment", 50, TimeUnit.MILLISECONDS, () -> "other"));
+
+        release.countDown();
+        deploy.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("deployment", deploymentLockService.tryWithDeploymentReadLock("deployment", 50, TimeUnit.MILLISECONDS, () -> "deployment"));
+        Assert.assertEquals(0, deploymentLockService.getLockCount());
+    }
+}
@@ -0,0 +1,281 @@
+package alien4cloud.deployment.matching.services.nodes;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.alien4cloud.alm.service.ServiceResourceService;
+import org.alien4cloud.tosca.catalog.index.IToscaTypeSearchService;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.PropertyDefinition;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.instances.NodeInstance;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import alien4cloud.application.ApplicationEnvironmentService;
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.model.application.ApplicationEnvironment;
+import alien4cloud.model.orchestrators.locations.Location;
+import alien4cloud.model.orchestrators.locations.LocationResourceTemplate;
+import alien4cloud.model.orchestrators.locations.LocationResources;
+import alien4cloud.model.service.ServiceResource;
+import alien4cloud.orchestrators.locations.events.OnLocationResourceChangeEvent;
+import alien4cloud.orchestrators.locations.services.ILocationResourceService;
+import alien4cloud.orchestrators.locations.services.LocationMatchingConfigurationService;
+import alien4cloud.orchestrators.locations.services.LocationSecurityService;
+import alien4cloud.security.AbstractSecurityEnabledResource;
+import alien4cloud.security.Permission;
+
+/**
+ * Check the matching of nodes against the indexed resources of a location.
+ */
+public class NodeMatcherServiceTest {
+    private static final String COMPUTE_TYPE = "test.nodes.Compute";
+    private static final String NETWORK_TYPE = "test.nodes.Network";
+    private static final String DATABASE_TYPE = "test.nodes.MySql";
+    private static final String ENVIRONMENT_ID = "environment";
+    private static final String OTHER_ENVIRONMENT_ID = "other-environment";
+
+    private ILocationResourceService locationResourceService;
+    private IToscaTypeSearchService toscaTypeSearchService;
+    private IGenericSearchDAO alienDAO;
+    private NodeMatcherService nodeMatcherService;
+    private Location location;
+    private Map<String, NodeType> nodeTypes = Maps.newHashMap();
+    /** Environments authorized per restricted resource id, as stored in elasticsearch. */
+    private Map<String, Set<String>> authorizedEnvironments = Maps.newHashMap();
+
+    private NodeType nodeType(String elementId, boolean isAbstract, String... derivedFrom) {
+        NodeType nodeType = new NodeType();
+        nodeType.setElementId(elementId);
+        nodeType.setAbstract(isAbstract);
+        nodeType.setDerivedFrom(Lists.newArrayList(derivedFrom));
+        PropertyDefinition propertyDefinition = new PropertyDefinition();
+        propertyDefinition.setType("string");
+        nodeType.setProperties(Maps.newHashMap());
+        nodeType.getProperties().put("size", propertyDefinition);
+        nodeTypes.put(elementId, nodeType);
+        return nodeType;
+    }
+
+    private NodeTemplate nodeTemplate(String type, String size) {
+        NodeTemplate nodeTemplate = new NodeTemplate();
+        nodeTemplate.setType(type);
+        Map<String, AbstractPropertyValue> properties = Maps.newHashMap();
+        properties.put("size", new ScalarPropertyValue(size));
+        nodeTemplate.setProperties(properties);
+        return nodeTemplate;
+    }
+
+    private LocationResourceTemplate resource(String name, String type, String size) {
+        LocationResourceTemplate resourceTemplate = new LocationResourceTemplate();
+        resourceTemplate.setId(name);
+        resourceTemplate.setName(name);
+        resourceTemplate.setEnabled(true);
+        resourceTemplate.setTemplate(nodeTemplate(type, size));
+        setEnvironmentPermissions(resourceTemplate);
+        return resourceTemplate;
+    }
+
+    /**
+     * Location resources are loaded from elasticsearch, every call returns new instances.
+     */
+    private LocationResources loadLocationResources() {
+        LocationResources locationResources = new LocationResources();
+        locationResources.getNodeTypes().put(COMPUTE_TYPE, nodeTypes.get(COMPUTE_TYPE));
+        locationResources.getNodeTypes().put(NETWORK_TYPE, nodeTypes.get(NETWORK_TYPE));
+        locationResources.getNodeTemplates().add(resource("small", COMPUTE_TYPE, "small"));
+        locationResources.getNodeTemplates().add(resource("network", NETWORK_TYPE, "small"));
+        locationResources.getNodeTemplates().add(resource("large", COMPUTE_TYPE, "large"));
+        locationResources.getNodeTemplates().add(resource("restricted", COMPUTE_TYPE, "small"));
+        return locationResources;
+    }
+
+    private ServiceResource service() {
+        NodeInstance nodeInstance = new NodeInstance();
+        nodeInstance.setNodeTemplate(nodeTemplate(DATABASE_TYPE, "small"));
+        nodeInstance.setTypeVersion("1.0.0");
+        ServiceResource serviceResource = new ServiceResource();
+        serviceResource.setId("database");
+        serviceResource.setName("database");
+        serviceResource.setVersion("1.0.0");
+        serviceResource.setNodeInstance(nodeInstance);
+        serviceResource.setEnvironmentId(ENVIRONMENT_ID);
+        setEnvironmentPermissions(serviceResource);
+        return serviceResource;
+    }
+
+    private void setEnvironmentPermissions(AbstractSecurityEnabledResource resource) {
+        Set<String> environmentIds = authorizedEnvironments.get(resource.getId());
+        if (environmentIds != null) {
+            resource.setEnvironmentPermissions(Maps.newHashMap());
+            for (String environmentId : environmentIds) {
+                resource.getEnvironmentPermissions().put(environmentId, Sets.newHashSet(Permission.ADMIN));
+            }
+        }
+    }
+
+    /**
+     * Load resources by ids from elasticsearch, every call returns new instances.
+     */
+    private <T> List<T> findByIds(Class<T> clazz, Object[] ids) {
+        List<T> resources = Lists.newArrayList();
+        for (Object id : ids) {
+            if (ServiceResource.class.equals(clazz) && "database".equals(id)) {
+                resources.add(clazz.cast(service()));
+            } else if (LocationResourceTemplate.class.equals(clazz)) {
+                loadLocationResources().getNodeTemplates().stream().filter(resourceTemplate -> resourceTemplate.getId().equals(id)).map(clazz::cast)
+                        .forEach(resources::add);
+            }
+        }
+        return resources;
+    }
+
+    @Before
+    public void init() {
+        nodeType(COMPUTE_TYPE, false, "tosca.nodes.Compute", "tosca.nodes.Root");
+        nodeType(NETWORK_TYPE, false, "tosca.nodes.Network", "tosca.nodes.Root");
+        nodeType("tosca.nodes.Compute", true, "tosca.nodes.Root");
+        nodeType("tosca.nodes.Database", true, "tosca.nodes.Root");
+        NodeType databaseType = nodeType(DATABASE_TYPE, false, "tosca.nodes.Database", "tosca.nodes.Root");
+        databaseType.setArchiveName("database-types");
+        databaseType.setArchiveVersion("1.0.0");
+
+        location = new Location();
+        location.setId("location");
+        location.setLastUpdateDate(new Date());
+
+        locationResourceService = Mockito.mock(ILocationResourceService.class);
+        Mockito.when(locationResourceService.getLocationResources(Mockito.any(Location.class))).thenAnswer(new Answer<LocationResources>() {
+            @Override
+            public LocationResources answer(InvocationOnMock invocation) throws Throwable {
+                return loadLocationResources();
+            }
+        });
+        ServiceResourceService serviceResourceService = Mockito.mock(ServiceResourceService.class);
+        Mockito.when(serviceResourceService.searchByLocation(location.getId())).thenAnswer(new Answer<List<ServiceResource>>() {
+            @Override
+            public List<ServiceResource> answer(InvocationOnMock invocation) throws Throwable {
+                return Lists.newArrayList(service());
+            }
+        });
+        toscaTypeSearchService = Mockito.mock(IToscaTypeSearchService.class);
+        Mockito.when(toscaTypeSearchService.findOrFail(NodeType.class, DATABASE_TYPE, "1.0.0")).thenReturn(databaseType);
+        Mockito.when(toscaTypeSearchService.getArchive("database-types", "1.0.0")).thenReturn(new Csar("database-types", "1.0.0"));
+        // the restricted resource is authorized only for the other environment, resources without environment permissions are authorized for all
+        authorizedEnvironments.put("restricted", Sets.newHashSet(OTHER_ENVIRONMENT_ID));
+        alienDAO = Mockito.mock(IGenericSearchDAO.class);
+        Mockito.when(alienDAO.findByIds(Mockito.any(Class.class), Mockito.<String> anyVararg())).thenAnswer(new Answer<List<Object>>() {
+            @Override
+            public List<Object> answer(InvocationOnMock invocation) throws Throwable {
+                Object[] arguments = invocation.getArguments();
+                return findByIds((Class<Object>) arguments[0], Arrays.copyOfRange(arguments, 1, arguments.length));
+            }
+        });
+        LocationSecurityService locationSecurityService = Mockito.mock(LocationSecurityService.class);
+        Mockito.when(locationSecurityService.isAuthorised(Mockito.any(AbstractSecurityEnabledResource.class), Mockito.any(ApplicationEnvironment.class)))
+                .thenAnswer(new Answer<Boolean>() {
+                    @Override
+                    public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                        AbstractSecurityEnabledResource resource = (AbstractSecurityEnabledResource) invocation.getArguments()[0];
+                        ApplicationEnvironment environment = (ApplicationEnvironment) invocation.getArguments()[1];
+                        return resource.getEnvironmentPermissions() == null || resource.getEnvironmentPermissions().containsKey(environment.getId());
+                    }
+                });
+        ApplicationEnvironmentService applicationEnvironmentService = Mockito.mock(ApplicationEnvironmentService.class);
+        Mockito.when(applicationEnvironmentService.getOrFail(Mockito.anyString())).thenAnswer(new Answer<ApplicationEnvironment>() {
+            @Override
+            public ApplicationEnvironment answer(InvocationOnMock invocation) throws Throwable {
+                ApplicationEnvironment environment = new ApplicationEnvironment();
+                environment.setId((String) invocation.getArguments()[0]);
+                return environment;
+            }
+        });
+
+        nodeMatcherService = new NodeMatcherService();
+        ReflectionTestUtils.setField(nodeMatcherService, "defaultNodeMatcher", new DefaultNodeMatcher());
+        ReflectionTestUtils.setField(nodeMatcherService, "serviceResourceService", serviceResourceService);
+        ReflectionTestUtils.setField(nodeMatcherService, "locationResourceService", locationResourceService);
+        ReflectionTestUtils.setField(nodeMatcherService, "locationMatchingConfigurationService", Mockito.mock(LocationMatchingConfigurationService.class));
+        ReflectionTestUtils.setField(nodeMatcherService, "locationSecurityService", locationSecurityService);
+        ReflectionTestUtils.setField(nodeMatcherService, "toscaTypeSearchService", toscaTypeSearchService);
+        ReflectionTestUtils.setField(nodeMatcherService, "applicationEnvironmentService", applicationEnvironmentService);
+        ReflectionTestUtils.setField(nodeMatcherService, "alienDAO", alienDAO);
+        ReflectionTestUtils.setField(nodeMatcherService, "indexCacheEnabled", true);
+    }
+
+    private Map<String, List<LocationResourceTemplate>> match(String environmentId) {
+        Map<String, NodeTemplate> nodesToMatch = Maps.newLinkedHashMap();
+        nodesToMatch.put("Compute", nodeTemplate("tosca.nodes.Compute", "small"));
+        nodesToMatch.put("LargeCompute", nodeTemplate("tosca.nodes.Compute", "large"));
+        nodesToMatch.put("Database", nodeTemplate("tosca.nodes.Database", "small"));
+        return nodeMatcherService.match(nodeTypes, nodesToMatch, location, environmentId);
+    }
+
+    private List<String> names(List<LocationResourceTemplate> resourceTemplates) {
+        return resourceTemplates.stream().map(LocationResourceTemplate::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    public void locationResourcesShouldBeIndexedOnceAndFilteredPerEnvironment() {
+        Map<String, List<LocationResourceTemplate>> matches = match(ENVIRONMENT_ID);
+        Assert.assertEquals(Lists.newArrayList("small"), names(matches.get("Compute")));
+        Assert.assertEquals(Lists.newArrayList("large"), names(matches.get("LargeCompute")));
+        // the service is managed by the environment itself
+        Assert.assertFalse(matches.containsKey("Database"));
+
+        // matched templates can be modified without impacting the index
+        matches.get("Compute").get(0).setName("modified");
+
+        matches = match(OTHER_ENVIRONMENT_ID);
+        Assert.assertEquals(Lists.newArrayList("small", "restricted"), names(matches.get("Compute")));
+        Assert.assertEquals(Lists.newArrayList("large"), names(matches.get("LargeCompute")));
+        Assert.assertEquals(Lists.newArrayList("database:1.0.0"), names(matches.get("Database")));
+        Assert.assertTrue(matches.get("Database").get(0).isService());
+        Mockito.verify(locationResourceService, Mockito.times(1)).getLocationResources(location);
+        Mockito.verify(toscaTypeSearchService, Mockito.times(1)).findOrFail(NodeType.class, DATABASE_TYPE, "1.0.0");
+
+        // resources of the location are updated
+        nodeMatcherService.onLocationResourceChange(new OnLocationResourceChangeEvent(this, location.getId()));
+        match(ENVIRONMENT_ID);
+        Mockito.verify(locationResourceService, Mockito.times(2)).getLocationResources(location);
+
+        // the location has been updated by another instance
+        location.setLastUpdateDate(new Date(location.getLastUpdateDate().getTime() + 1));
+        match(ENVIRONMENT_ID);
+        match(ENVIRONMENT_ID);
+        Mockito.verify(locationResourceService, Mockito.times(3)).getLocationResources(location);
+    }
+
+    @Test
+    public void permissionsShouldBeCheckedOnTheCurrentResources() {
+        Assert.assertEquals(Lists.newArrayList("small", "restricted"), names(match(OTHER_ENVIRONMENT_ID).get("Compute")));
+        Assert.assertEquals(Lists.newArrayList("small"), names(match(ENVIRONMENT_ID).get("Compute")));
+
+        // access to the restricted resource is revoked for the other environment and granted to the environment, the location is not updated
+        authorizedEnvironments.put("restricted", Sets.newHashSet(ENVIRONMENT_ID));
+        Assert.assertEquals(Lists.newArrayList("small"), names(match(OTHER_ENVIRONMENT_ID).get("Compute")));
+        Assert.assertEquals(Lists.newArrayList("small", "restricted"), names(match(ENVIRONMENT_ID).get("Compute")));
+
+        // access to the service is revoked for the other environment
+        authorizedEnvironments.put("database", Sets.newHashSet());
+        Assert.assertFalse(match(OTHER_ENVIRONMENT_ID).containsKey("Database"));
+        Mockito.verify(locationResourceService, Mockito.times(1)).getLocationResources(location);
+    }
+}
@@ -0,0 +1,257 @@
+package alien4cloud.paas;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.dao.model.RefreshPolicy;
+import alien4cloud.paas.model.AbstractMonitorEvent;
+import alien4cloud.paas.model.PaaSMessageMonitorEvent;
+
+/**
+ * Test the asynchronous dispatch and bulk persistence of monitor events.
+ */
+@SuppressWarnings({ "unchecked", "rawtypes" })
+public class PaaSEventsIngestionPipelineTest {
+
+    private AbstractMonitorEvent[] events(int count) {
+        AbstractMonitorEvent[] events = new AbstractMonitorEvent[count];
+        for (int i = 0; i < count; i++) {
+            PaaSMessageMonitorEvent event = new PaaSMessageMonitorEvent();
+            event.setDeploymentId("dep-" + (i % 3));
+            event.setMessage("message " + i);
+            events[i] = event;
+        }
+        return events;
+    }
+
+    private Map<String, List<AbstractMonitorEvent>> perDeployment(List<AbstractMonitorEvent> events) {
+        return events.stream().collect(Collectors.groupingBy(AbstractMonitorEvent::getDeploymentId, Maps::newHashMap, Collectors.toList()));
+    }
+
+    @Test
+    public void eventsShouldBeDispatchedInOrderPerDeploymentAndPersistedInBulkWithoutRefresh() {
+        IGenericSearchDAO monitorDAO = Mockito.mock(IGenericSearchDAO.class);
+        IPaasEventListener listener = Mockito.mock(IPaasEventListener.class);
+        Mockito.when(listener.canHandle(Mockito.any(AbstractMonitorEvent.class))).thenReturn(true);
+        List<AbstractMonitorEvent> received = Collections.synchronizedList(Lists.newArrayList());
+        Mockito.doAnswer(invocation -> received.add((AbstractMonitorEvent) invocation.getArguments()[0])).when(listener)
+                .eventHappened(Mockito.any(AbstractMonitorEvent.class));
+
+        MetricRegistry metricRegistry = new MetricRegistry();
+        PaaSEventsIngestionPipeline pipeline = new PaaSEventsIngestionPipeline("orchestrator", monitorDAO, Lists.newArrayList(listener), 100, 10, 50, 4,
+                metricRegistry);
+        AbstractMonitorEvent[] events = events(25);
+        pipeline.submit(events);
+        pipeline.stop();
+
+        Assert.assertEquals(perDeployment(Lists.newArrayList(events)), perDeployment(received));
+        ArgumentCaptor<AbstractMonitorEvent[]> captor = ArgumentCaptor.forClass(AbstractMonitorEvent[].class);
+        Mockito.verify(monitorDAO, Mockito.atLeast(3)).save(captor.capture(), Mockito.eq(RefreshPolicy.NONE));
+        int persisted = 0;
+        for (AbstractMonitorEvent[] bulk : captor.getAllValues()) {
+            Assert.assertTrue(bulk.length <= 10);
+            persisted += bulk.length;
+        }
+        Assert.assertEquals(25, persisted);
+        // metrics are unregistered once the pipeline is stopped
+        Assert.assertTrue(metricRegistry.getNames().isEmpty());
+    }
+
+    @Test
+    public void pipelineShouldReportMissingCapacity() {
+        IGenericSearchDAO monitorDAO = Mockito.mock(IGenericSearchDAO.class);
+        PaaSEventsIngestionPipeline pipeline = new PaaSEventsIngestionPipeline("orchestrator", monitorDAO, Lists.newArrayList(), 10, 10, 50, 4,
+                new MetricRegistry());
+        Assert.assertTrue(pipeline.hasCapacityFor(10));
+        Assert.assertFalse(pipeline.hasCapacityFor(11));
+        Assert.assertEquals(10, pipeline.getRemainingCapacity());
+        pipeline.stop();
+    }
+
+    @Test
+    public void blockedDeploymentShouldNotStallOtherDeployments() throws Exception {
+        IGenericSearchDAO monitorDAO = Mockito.mock(IGenericSearchDAO.class);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch otherDeploymentDispatched = new CountDownLatch(1);
+        IPaasEventListener listener = Mockito.mock(IPaasEventListener.class);
+        Mockito.when(listener.canHandle(Mockito.any(AbstractMonitorEvent.class))).thenReturn(true);
+        Mockito.doAnswer(invocation -> {
+            AbstractMonitorEvent event = (AbstractMonitorEvent) invocation.getArguments()[0];
+            if ("dep-0".equals(event.getDeploymentId())) {
+                release.await();
+            } else {
+                otherDeploymentDispatched.countDown();
+            }
+            return null;
+        }).when(listener).eventHappened(Mockito.any(AbstractMonitorEvent.class));
+
+        // with as many lanes as deployments ids hash to different lanes
+        PaaSEventsIngestionPipeline pipeline = new PaaSEventsIngestionPipeline("orchestrator", monitorDAO, Lists.newArrayList(listener), 100, 10, 50, 64,
+                new MetricRegistry());
+        AbstractMonitorEvent[] events = events(3);
+        pipeline.submit(events);
+        Assert.assertTrue(otherDeploymentDispatched.await(5, TimeUnit.SECONDS));
+        release.countDown();
+        pipeline.stop();
+    }
+
+    @Test
+    public void failedDispatchShouldBeRetriedBeforeNextEventsOfTheDeployment() throws Exception {
+        IGenericSearchDAO monitorDAO = Mockito.mock(IGenericSearchDAO.class);
+        AtomicInteger failures = new AtomicInteger();
+        List<AbstractMonitorEvent> received = Collections.synchronizedList(Lists.newArrayList());
+        CountDownLatch allReceived = new CountDownLatch(4);
+        IPaasEventListener listener = Mockito.mock(IPaasEventListener.class);
+        Mockito.when(listener.canHandle(Mockito.any(AbstractMonitorEvent.class))).thenReturn(true);
+        Mockito.doAnswer(invocation -> {
+            AbstractMonitorEvent event = (AbstractMonitorEvent) invocation.getArguments()[0];
+            if ("message 0".equals(((PaaSMessageMonitorEvent) event).getMessage()) && failures.getAndIncrement() < 2) {
+                throw new RuntimeException("Listener failure");
+            }
+            received.add(event);
+            allReceived.countDown();
+            return null;
+        }).when(listener).eventHappened(Mockito.any(AbstractMonitorEvent.class));
+
+        PaaSEventsIngestionPipeline pipeline = new PaaSEventsIngestionPipeline("orchestrator", monitorDAO, Lists.newArrayList(listener), 100, 10, 50, 4,
+                new MetricRegistry());
+        AbstractMonitorEvent[] events = events(4);
+        // all the events belong to the deployment of the failing event
+        for (AbstractMonitorEvent event : events) {
+            event.setDeploymentId("dep-0");
+        }
+        pipeline.submit(events);
+        Assert.assertTrue(allReceived.await(5, TimeUnit.SECONDS));
+        pipeline.stop();
+
+        // the next events of the deployment are dispatched only once the failed event has been handled
+        Assert.assertEquals(Lists.newArrayList(events), received);
+        Assert.assertEquals(3, failures.get());
+    }
+
+    @Test
+    public void failedDispatchShouldNotDelayOtherDeploymentsOfTheLane() throws Exception {
+        IGenericSearchDAO monitorDAO = Mockito.mock(IGenericSearchDAO.class);
+        AtomicInteger failures = new AtomicInteger();
+        List<AbstractMonitorEvent> received = Collections.synchronizedList(Lists.newArrayList());
+        CountDownLatch allReceived = new CountDownLatch(4);
+        IPaasEventListener listener = Mockito.mock(IPaasEventListener.class);
+        Mockito.when(listener.canHandle(Mockito.any(AbstractMonitorEvent.class))).thenReturn(true);
+        Mockito.doAnswer(invocation -> {
+            AbstractMonitorEvent event = (AbstractMonitorEvent) invocation.getArguments()[0];
+            if ("message 0".equals(((PaaSMessageMonitorEvent) event).getMessage()) && failures.getAndIncrement() < 2) {
+                throw new RuntimeException("Listener failure");
+            }
+            received.add(event);
+            allReceived.countDown();
+            return null;
+        }).when(listener).eventHappened(Mockito.any(AbstractMonitorEvent.class));
+
+        // a single lane for all the deployments
+        PaaSEventsIngestionPipeline pipeline = new PaaSEventsIngestionPipeline("orchestrator", monitorDAO, Lists.newArrayList(listener), 100, 10, 50, 1,
+                new MetricRegistry());
+        AbstractMonitorEvent[] events = events(4);
+        events[3].setDeploymentId("dep-0");
+        pipeline.submit(events);
+        Assert.assertTrue(allReceived.await(5, TimeUnit.SECONDS));
+        pipeline.stop();
+
+        // events of the other deployments are dispatched while the failed event waits for its retry, the next event of its deployment waits
+        Assert.assertEquals(Lists.newArrayList(events[1], events[2], events[0], events[3]), received);
+        Assert.assertEquals(3, failures.get());
+    }
+
+    @Test
+    public void concurrentSubmissionsShouldBeDispatchedInOrderPerDeployment() throws Exception {
+        int submitters = 4;
+        int deploymentsPerSubmitter = 5;
+        int eventsPerDeployment = 200;
+        IGenericSearchDAO monitorDAO = Mockito.mock(IGenericSearchDAO.class);
+        Map<String, List<AbstractMonitorEvent>> received = Maps.newConcurrentMap();
+        ConcurrentMap<String, AtomicInteger> inProgress = Maps.newConcurrentMap();
+        Set<String> failedOnce = Sets.newConcurrentHashSet();
+        AtomicInteger overlaps = new AtomicInteger();
+        IPaasEventListener listener = new IPaasEventListener() {
+            @Override
+            public void eventHappened(AbstractMonitorEvent monitorEvent) {
+                PaaSMessageMonitorEvent event = (PaaSMessageMonitorEvent) monitorEvent;
+                AtomicInteger deploymentInProgress = inProgress.computeIfAbsent(event.getDeploymentId(), id -> new AtomicInteger());
+                if (deploymentInProgress.incrementAndGet() > 1) {
+                    overlaps.incrementAndGet();
+                }
+                try {
+                    // every tenth event fails once
+                    if (event.getMessage().endsWith("0") && failedOnce.add(event.getMessage())) {
+                        throw new RuntimeException("Listener failure");
+                    }
+                    received.computeIfAbsent(event.getDeploymentId(), id -> Collections.synchronizedList(Lists.newArrayList())).add(event);
+                } finally {
+                    deploymentInProgress.decrementAndGet();
+                }
+            }
+
+            @Override
+            public boolean canHandle(AbstractMonitorEvent event) {
+                return true;
+            }
+        };
+
+        PaaSEventsIngestionPipeline pipeline = new PaaSEventsIngestionPipeline("orchestrator", monitorDAO, Lists.newArrayList(listener), 10000, 100, 50, 3,
+                new MetricRegistry());
+        Map<String, List<AbstractMonitorEvent>> submitted = Maps.newConcurrentMap();
+        ExecutorService executor = Executors.newFixedThreadPool(submitters);
+        List<Future<?>> futures = Lists.newArrayList();
+        for (int submitter = 0; submitter < submitters; submitter++) {
+            int submitterIndex = submitter;
+            futures.add(executor.submit(() -> {
+                // every submitter owns its deployments so their events are submitted in a known order
+                for (int i = 0; i < eventsPerDeployment; i++) {
+                    AbstractMonitorEvent[] batch = new AbstractMonitorEvent[deploymentsPerSubmitter];
+                    for (int deployment = 0; deployment < deploymentsPerSubmitter; deployment++) {
+                        PaaSMessageMonitorEvent event = new PaaSMessageMonitorEvent();
+                        event.setDeploymentId("dep-" + submitterIndex + "-" + deployment);
+                        event.setMessage(event.getDeploymentId() + " message " + i);
+                        submitted.computeIfAbsent(event.getDeploymentId(), id -> Lists.newArrayList()).add(event);
+                        batch[deployment] = event;
+                    }
+                    pipeline.submit(batch);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!pipeline.hasCapacityFor(10000) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        pipeline.stop();
+
+        Assert.assertEquals(submitters * deploymentsPerSubmitter, received.size());
+        Assert.assertEquals(submitted, received);
+        Assert.assertEquals(0, overlaps.get());
+        Assert.assertEquals(submitters * deploymentsPerSubmitter * eventsPerDeployment / 10, failedOnce.size());
+    }
+}
@@ -15,12 +15,14 @@ import org.elasticsearch.mapping.ElasticSearchClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.Mockito;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
 import alien4cloud.dao.IGenericSearchDAO;
 import alien4cloud.paas.PaaSProviderPollingMonitor;
+import alien4cloud.paas.model.AbstractMonitorEvent;
 import alien4cloud.paas.model.DeploymentStatus;
 import alien4cloud.paas.model.PaaSDeploymentStatusMonitorEvent;
 import alien4cloud.paas.model.PaaSMessageMonitorEvent;
@@ -124,6 +126,32 @@ public class PaaSProviderPollingMonitorTest {
         assertTrue(lastDate.after(new Date()));
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    public void pollShouldNotExceedTheRemainingCapacityOfThePipeline() throws NoSuchFieldException, IllegalAccessException {
+        IPaaSProvider paaSProvider = Mockito.mock(IPaaSProvider.class);
+        Mockito.doAnswer(invocation -> {
+            ((IPaaSCallback<AbstractMonitorEvent[]>) invocation.getArguments()[2]).onSuccess(new AbstractMonitorEvent[0]);
+            return null;
+        }).when(paaSProvider).getEventsSince(Mockito.any(Date.class), Mockito.anyInt(), Mockito.any(IPaaSCallback.class));
+        PaaSEventsIngestionPipeline eventsPipeline = Mockito.mock(PaaSEventsIngestionPipeline.class);
+        PaaSProviderPollingMonitor paaSProviderPollingMonitor = new PaaSProviderPollingMonitor(alienDao, alienMonitorDao, paaSProvider, eventsPipeline,
+                "CloudID");
+        Field hasDeploymentsField = PaaSProviderPollingMonitor.class.getDeclaredField("hasDeployments");
+        hasDeploymentsField.setAccessible(true);
+        hasDeploymentsField.set(paaSProviderPollingMonitor, true);
+
+        // a pipeline smaller than the maximum number of polled events is still polled
+        Mockito.when(eventsPipeline.getRemainingCapacity()).thenReturn(100);
+        paaSProviderPollingMonitor.run();
+        Mockito.verify(paaSProvider).getEventsSince(Mockito.any(Date.class), Mockito.eq(100), Mockito.any(IPaaSCallback.class));
+
+        // a full pipeline is not polled
+        Mockito.when(eventsPipeline.getRemainingCapacity()).thenReturn(0);
+        paaSProviderPollingMonitor.run();
+        Mockito.verify(paaSProvider, Mockito.times(1)).getEventsSince(Mockito.any(Date.class), Mockito.anyInt(), Mockito.any(IPaaSCallback.class));
+    }
+
     private Date addMinutesToDate(int minutes, Date beforeTime) {
         final long ONE_MINUTE_IN_MILLIS = 60000;// millisecs
         long curTimeInMs = beforeTime.getTime();
@@ -0,0 +1,260 @@
+package alien4cloud.paas.function;
+
+import java.util.Map;
+
+import org.alien4cloud.tosca.model.definitions.AbstractPropertyValue;
+import org.alien4cloud.tosca.model.definitions.AttributeDefinition;
+import org.alien4cloud.tosca.model.definitions.ConcatPropertyValue;
+import org.alien4cloud.tosca.model.definitions.FunctionPropertyValue;
+import org.alien4cloud.tosca.model.definitions.IValue;
+import org.alien4cloud.tosca.model.definitions.Interface;
+import org.alien4cloud.tosca.model.definitions.Operation;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.AbstractInstantiableTemplate;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.alien4cloud.tosca.model.types.RelationshipType;
+import org.alien4cloud.tosca.normative.ToscaNormativeUtil;
+import org.alien4cloud.tosca.normative.constants.ToscaFunctionConstants;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.rits.cloning.Cloner;
+
+import alien4cloud.paas.IPaaSTemplate;
+import alien4cloud.paas.model.InstanceInformation;
+import alien4cloud.paas.model.PaaSNodeTemplate;
+import alien4cloud.paas.model.PaaSRelationshipTemplate;
+import alien4cloud.paas.plan.ToscaNodeLifecycleConstants;
+import alien4cloud.paas.plan.ToscaRelationshipLifecycleConstants;
+
+/**
+ * Check that the evaluations of a compiled plan are the same as the ones of the {@link FunctionEvaluator}.
+ */
+public class FunctionEvaluationPlanTest {
+    private Topology topology;
+    private Map<String, PaaSNodeTemplate> paaSNodeTemplates = Maps.newHashMap();
+    private PaaSNodeTemplate compute;
+    private PaaSNodeTemplate server;
+    private PaaSRelationshipTemplate hostedOn;
+    private Map<String, Map<String, InstanceInformation>> runtimeInformations = Maps.newHashMap();
+
+    private FunctionPropertyValue function(String function, String... parameters) {
+        return new FunctionPropertyValue(function, Lists.newArrayList(parameters));
+    }
+
+    private ConcatPropertyValue concat(AbstractPropertyValue... parameters) {
+        ConcatPropertyValue concat = new ConcatPropertyValue();
+        concat.setParameters(Lists.newArrayList(parameters));
+        return concat;
+    }
+
+    private AttributeDefinition attribute(String defaultValue) {
+        AttributeDefinition attributeDefinition = new AttributeDefinition();
+        attributeDefinition.setDefault(defaultValue);
+        return attributeDefinition;
+    }
+
+    private Interface standardInterface(String operationName, Map<String, IValue> inputs) {
+        Operation operation = new Operation();
+        operation.setInputParameters(inputs);
+        Interface standard = new Interface();
+        standard.getOperations().put(operationName, operation);
+        return standard;
+    }
+
+    private PaaSNodeTemplate node(String name, Map<String, IValue> attributes, Map<String, AbstractPropertyValue> properties) {
+        NodeType nodeType = new NodeType();
+        nodeType.setElementId("test.nodes." + name);
+        nodeType.setAttributes(attributes);
+        nodeType.setProperties(Maps.newHashMap());
+        NodeTemplate nodeTemplate = new NodeTemplate();
+        nodeTemplate.setName(name);
+        nodeTemplate.setType(nodeType.getElementId());
+        nodeTemplate.setProperties(properties);
+        topology.getNodeTemplates().put(name, nodeTemplate);
+        PaaSNodeTemplate paaSNodeTemplate = new PaaSNodeTemplate(name, nodeTemplate);
+        paaSNodeTemplate.setIndexedToscaElement(nodeType);
+        paaSNodeTemplates.put(name, paaSNodeTemplate);
+        return paaSNodeTemplate;
+    }
+
+    private void instance(String nodeName, String instanceId, Map<String, String> attributes, Map<String, String> outputs) {
+        runtimeInformations.computeIfAbsent(nodeName, key -> Maps.newLinkedHashMap())
+                .put(instanceId, new InstanceInformation("started", null, attributes, Maps.newHashMap(), outputs));
+    }
+
+    @Before
+    public void init() {
+        topology = new Topology();
+        topology.setNodeTemplates(Maps.newHashMap());
+
+        Map<String, IValue> computeAttributes = Maps.newHashMap();
+        computeAttributes.put("ip_address", attribute("0.0.0.0"));
+        computeAttributes.put("public_ip_address", attribute(null));
+        compute = node("Compute", computeAttributes, Maps.newHashMap());
+
+        Map<String, IValue> serverAttributes = Maps.newHashMap();
+        serverAttributes.put("url", concat(new ScalarPropertyValue("http://"), function(ToscaFunctionConstants.GET_ATTRIBUTE, "HOST", "ip_address"),
+                new ScalarPropertyValue(":"), function(ToscaFunctionConstants.GET_PROPERTY, "SELF", "port"), new ScalarPropertyValue("/"),
+                function(ToscaFunctionConstants.GET_OPERATION_OUTPUT, "SELF", ToscaNodeLifecycleConstants.STANDARD, ToscaNodeLifecycleConstants.CREATE,
+                        "CONTEXT_PATH")));
+        serverAttributes.put("pid", function(ToscaFunctionConstants.GET_OPERATION_OUTPUT, "SELF", ToscaNodeLifecycleConstants.STANDARD,
+                ToscaNodeLifecycleConstants.CREATE, "PID"));
+        serverAttributes.put("missing_property", concat(function(ToscaFunctionConstants.GET_PROPERTY, "Compute", "port")));
+        serverAttributes.put("bad_keyword", concat(function(ToscaFunctionConstants.GET_ATTRIBUTE, "SOURCE", "ip_address")));
+        serverAttributes.put("state", attribute("unknown"));
+        Map<String, AbstractPropertyValue> serverProperties = Maps.newHashMap();
+        serverProperties.put("port", new ScalarPropertyValue("8080"));
+        server = node("Server", serverAttributes, serverProperties);
+        server.setParent(compute);
+        compute.getChildren().add(server);
+        Map<String, IValue> startInputs = Maps.newHashMap();
+        startInputs.put("PORT", function(ToscaFunctionConstants.GET_PROPERTY, "SELF", "port"));
+        startInputs.put("IP", function(ToscaFunctionConstants.GET_ATTRIBUTE, "HOST", "ip_address"));
+        startInputs.put("NAME", new ScalarPropertyValue("server"));
+        startInputs.put("TARGET_IP", function(ToscaFunctionConstants.GET_ATTRIBUTE, "TARGET", "ip_address"));
+        server.setInterfaces(Maps.newHashMap());
+        server.getInterfaces().put(ToscaNodeLifecycleConstants.STANDARD, standardInterface(ToscaNodeLifecycleConstants.START, startInputs));
+
+        RelationshipType relationshipType = new RelationshipType();
+        relationshipType.setElementId("tosca.relationships.HostedOn");
+        RelationshipTemplate relationshipTemplate = new RelationshipTemplate();
+        relationshipTemplate.setType(relationshipType.getElementId());
+        relationshipTemplate.setTarget("Compute");
+        server.getTemplate().setRelationships(Maps.newHashMap());
+        server.getTemplate().getRelationships().put("hostedOn", relationshipTemplate);
+        hostedOn = new PaaSRelationshipTemplate("hostedOn", relationshipTemplate, "Server");
+        hostedOn.setIndexedToscaElement(relationshipType);
+        Map<String, IValue> configureInputs = Maps.newHashMap();
+        configureInputs.put("TARGET_IP", function(ToscaFunctionConstants.GET_ATTRIBUTE, "TARGET", "ip_address"));
+        configureInputs.put("SOURCE_PORT", function(ToscaFunctionConstants.GET_PROPERTY, "SOURCE", "port"));
+        hostedOn.setInterfaces(Maps.newHashMap());
+        hostedOn.getInterfaces().put(ToscaRelationshipLifecycleConstants.CONFIGURE,
+                standardInterface(ToscaRelationshipLifecycleConstants.PRE_CONFIGURE_SOURCE, configureInputs));
+        server.getRelationshipTemplates().add(hostedOn);
+        compute.getRelationshipTemplates().add(hostedOn);
+
+        for (int i = 0; i < 2; i++) {
+            Map<String, String> computeInstanceAttributes = Maps.newHashMap();
+            computeInstanceAttributes.put("ip_address", "10.0.0." + i);
+            computeInstanceAttributes.put("public_ip_address", "");
+            instance("Compute", String.valueOf(i), computeInstanceAttributes, Maps.newHashMap());
+            Map<String, String> outputs = Maps.newHashMap();
+            outputs.put(ToscaNormativeUtil.formatedOperationOutputName("Server", ToscaNodeLifecycleConstants.STANDARD, ToscaNodeLifecycleConstants.CREATE,
+                    "CONTEXT_PATH"), "app" + i);
+            outputs.put(ToscaNormativeUtil.formatedOperationOutputName("Server", ToscaNodeLifecycleConstants.STANDARD, ToscaNodeLifecycleConstants.CREATE,
+                    "PID"), String.valueOf(1000 + i));
+            instance("Server", String.valueOf(i), Maps.newHashMap(), outputs);
+        }
+    }
+
+    private String parseAttribute(IPaaSTemplate template, String attributeId, String instanceId) {
+        IValue attributeValue = ((NodeType) template.getIndexedToscaElement()).getAttributes().get(attributeId);
+        return FunctionEvaluator.parseAttribute(attributeId, attributeValue, topology, runtimeInformations, instanceId, template, paaSNodeTemplates);
+    }
+
+    @Test
+    public void attributesShouldBeEvaluatedAsByTheFunctionEvaluator() {
+        FunctionEvaluationPlan plan = FunctionEvaluationPlan.compile(paaSNodeTemplates);
+        for (String instanceId : new String[] { "0", "1", "2" }) {
+            for (PaaSNodeTemplate paaSNodeTemplate : new PaaSNodeTemplate[] { compute, server }) {
+                for (String attributeId : ((NodeType) paaSNodeTemplate.getIndexedToscaElement()).getAttributes().keySet()) {
+                    if ("bad_keyword".equals(attributeId)) {
+                        continue;
+                    }
+                    Assert.assertEquals(parseAttribute(paaSNodeTemplate, attributeId, instanceId),
+                            plan.evaluateAttribute(paaSNodeTemplate, attributeId, runtimeInformations, instanceId));
+                }
+            }
+        }
+        Assert.assertEquals("http://10.0.0.1:8080/app1", plan.evaluateAttribute(server, "url", runtimeInformations, "1"));
+        Assert.assertEquals("1000", plan.evaluateAttribute(server, "pid", runtimeInformations, "0"));
+        Assert.assertNull(plan.evaluateAttribute(server, "unknown", runtimeInformations, "0"));
+
+        // runtime information is read on every evaluation
+        runtimeInformations.get("Compute").get("1").getAttributes().put("ip_address", "10.0.1.1");
+        Assert.assertEquals("http://10.0.1.1:8080/app1", plan.evaluateAttribute(server, "url", runtimeInformations, "1"));
+    }
+
+    @Test
+    public void reboundPlanShouldEvaluateTheCopiedTemplates() {
+        FunctionEvaluationPlan plan = FunctionEvaluationPlan.compile(paaSNodeTemplates);
+        Cloner cloner = new Cloner();
+        cloner.dontCloneInstanceOf(AbstractInstantiableTemplate.class);
+        Map<String, PaaSNodeTemplate> copiedTemplates = cloner.deepClone(paaSNodeTemplates);
+        FunctionEvaluationPlan rebound = plan.rebind(copiedTemplates);
+        PaaSNodeTemplate copiedServer = copiedTemplates.get("Server");
+        Assert.assertEquals(plan.evaluateAttribute(server, "url", runtimeInformations, "1"),
+                rebound.evaluateAttribute(copiedServer, "url", runtimeInformations, "1"));
+        Assert.assertEquals(plan.evaluateAttribute(server, "state", runtimeInformations, "0"),
+                rebound.evaluateAttribute(copiedServer, "state", runtimeInformations, "0"));
+        Assert.assertEquals("10.0.0.0", rebound.evaluateOperationInput(copiedServer.getRelationshipTemplates().get(0),
+                ToscaRelationshipLifecycleConstants.CONFIGURE, ToscaRelationshipLifecycleConstants.PRE_CONFIGURE_SOURCE, "TARGET_IP", runtimeInformations, "0"));
+        try {
+            rebound.evaluateAttribute(copiedServer, "bad_keyword", runtimeInformations, "0");
+            Assert.fail();
+        } catch (BadUsageKeywordException e) {
+        }
+        Assert.assertSame(copiedTemplates.get("Compute"), ((Map) ReflectionTestUtils.getField(rebound, "templates")).get("Compute"));
+    }
+
+    @Test
+    public void attributesOfTheInstancesShouldBeResolved() {
+        FunctionEvaluationPlan.compile(paaSNodeTemplates).resolveAttributes(runtimeInformations);
+        Map<String, String> serverAttributes = runtimeInformations.get("Server").get("1").getAttributes();
+        Assert.assertEquals("http://10.0.0.1:8080/app1", serverAttributes.get("url"));
+        Assert.assertEquals("1001", serverAttributes.get("pid"));
+        Assert.assertEquals("unknown", serverAttributes.get("state"));
+        // attributes that cannot be evaluated are not reported
+        Assert.assertFalse(serverAttributes.containsKey("bad_keyword"));
+        // runtime values of the orchestrator are kept
+        Assert.assertEquals("10.0.0.1", runtimeInformations.get("Compute").get("1").getAttributes().get("ip_address"));
+        Assert.assertEquals("", runtimeInformations.get("Compute").get("1").getAttributes().get("public_ip_address"));
+    }
+
+    @Test
+    public void unresolvableFunctionsShouldFailOnEvaluation() {
+        FunctionEvaluationPlan plan = FunctionEvaluationPlan.compile(paaSNodeTemplates);
+        try {
+            parseAttribute(server, "bad_keyword", "0");
+            Assert.fail();
+        } catch (BadUsageKeywordException e) {
+        }
+        try {
+            plan.evaluateAttribute(server, "bad_keyword", runtimeInformations, "0");
+            Assert.fail();
+        } catch (BadUsageKeywordException e) {
+        }
+        try {
+            plan.evaluateOperationInput(server, ToscaNodeLifecycleConstants.STANDARD, ToscaNodeLifecycleConstants.START, "TARGET_IP", runtimeInformations,
+                    "0");
+            Assert.fail();
+        } catch (BadUsageKeywordException e) {
+        }
+    }
+
+    @Test
+    public void operationsInputsShouldBeEvaluated() {
+        FunctionEvaluationPlan plan = FunctionEvaluationPlan.compile(paaSNodeTemplates);
+        Assert.assertEquals(FunctionEvaluator.evaluateGetPropertyFunction(function(ToscaFunctionConstants.GET_PROPERTY, "SELF", "port"), server,
+                paaSNodeTemplates),
+                plan.evaluateOperationInput(server, ToscaNodeLifecycleConstants.STANDARD, ToscaNodeLifecycleConstants.START, "PORT", runtimeInformations,
+                        "0"));
+        Assert.assertEquals("10.0.0.1", plan.evaluateOperationInput(server, ToscaNodeLifecycleConstants.STANDARD, ToscaNodeLifecycleConstants.START, "IP",
+                runtimeInformations, "1"));
+        Assert.assertNull(plan.evaluateOperationInput(server, ToscaNodeLifecycleConstants.STANDARD, ToscaNodeLifecycleConstants.START, "NAME",
+                runtimeInformations, "1"));
+
+        Assert.assertEquals("10.0.0.0", plan.evaluateOperationInput(hostedOn, ToscaRelationshipLifecycleConstants.CONFIGURE,
+                ToscaRelationshipLifecycleConstants.PRE_CONFIGURE_SOURCE, "TARGET_IP", runtimeInformations, "0"));
+        Assert.assertEquals("8080", plan.evaluateOperationInput(hostedOn, ToscaRelationshipLifecycleConstants.CONFIGURE,
+                ToscaRelationshipLifecycleConstants.PRE_CONFIGURE_SOURCE, "SOURCE_PORT", runtimeInformations, "0"));
+    }
+}
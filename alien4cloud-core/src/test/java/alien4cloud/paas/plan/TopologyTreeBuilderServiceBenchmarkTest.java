@@ -0,0 +1,74 @@
+package alien4cloud.paas.plan;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.alien4cloud.tosca.normative.constants.NormativeComputeConstants;
+import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import alien4cloud.model.deployment.DeploymentTopology;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compare the reuse of the PaaSTopology of a deployment with its build, as done by the runtime operations (instances information, operations, scaling).
+ *
+ * Types are resolved from a mock, the build of a PaaSTopology in a running instance also includes the search of the types in elasticsearch. The reused
+ * topology is checked by the tests of {@link TopologyTreeBuilderServiceTest}.
+ */
+@Slf4j
+public class TopologyTreeBuilderServiceBenchmarkTest extends TopologyTreeBuilderServiceTest {
+    private static final int COMPUTES = 100;
+    private static final int SOFTWARES_PER_COMPUTE = 5;
+    private static final int ITERATIONS = 50;
+
+    /**
+     * Generate a runtime topology where every compute hosts softwares that depend on the previous software of the same compute.
+     */
+    private DeploymentTopology runtimeTopology(Date lastUpdateDate) {
+        DeploymentTopology topology = new DeploymentTopology();
+        topology.setId("deployment");
+        topology.setLastUpdateDate(lastUpdateDate);
+        topology.setLastDeploymentTopologyUpdateDate(lastUpdateDate);
+        topology.setNodeTemplates(Maps.newLinkedHashMap());
+        for (int i = 0; i < COMPUTES; i++) {
+            String compute = "Compute_" + i;
+            topology.getNodeTemplates().put(compute, nodeTemplate(NormativeComputeConstants.COMPUTE_TYPE));
+            for (int j = 0; j < SOFTWARES_PER_COMPUTE; j++) {
+                String[] relationships = j == 0 ? new String[] { "hostedOn", NormativeRelationshipConstants.HOSTED_ON, compute }
+                        : new String[] { "hostedOn", NormativeRelationshipConstants.HOSTED_ON, compute, "dependsOn", DEPENDS_ON_TYPE,
+                                "Software_" + i + "_" + (j - 1) };
+                topology.getNodeTemplates().put("Software_" + i + "_" + j, nodeTemplate(SOFTWARE_TYPE, relationships));
+            }
+        }
+        return topology;
+    }
+
+    @Test
+    public void compareReuseWithBuild() {
+        Date lastUpdateDate = new Date();
+        DeploymentTopology topology = runtimeTopology(lastUpdateDate);
+        // warm-up, the first call also fills the cache
+        for (int i = 0; i < ITERATIONS; i++) {
+            treeBuilder.buildPaaSTopology(topology);
+        }
+        treeBuilder.getPaaSTopology(topology.getId(), topology);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            treeBuilder.buildPaaSTopology(topology);
+        }
+        long buildDuration = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            treeBuilder.getPaaSTopology(topology.getId(), topology);
+        }
+        long reuseDuration = System.nanoTime() - start;
+
+        log.info("PaaSTopology of {} nodes: build {} us, reuse {} us", topology.getNodeTemplates().size(),
+                TimeUnit.NANOSECONDS.toMicros(buildDuration / ITERATIONS), TimeUnit.NANOSECONDS.toMicros(reuseDuration / ITERATIONS));
+    }
+}
@@ -0,0 +1,268 @@
+package alien4cloud.paas.plan;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.catalog.repository.CsarFileRepository;
+import org.alien4cloud.tosca.model.definitions.AttributeDefinition;
+import org.alien4cloud.tosca.model.definitions.ConcatPropertyValue;
+import org.alien4cloud.tosca.model.definitions.FunctionPropertyValue;
+import org.alien4cloud.tosca.model.definitions.IValue;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeGroup;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.model.types.AbstractInheritableToscaType;
+import org.alien4cloud.tosca.model.types.AbstractToscaType;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.alien4cloud.tosca.model.types.RelationshipType;
+import org.alien4cloud.tosca.normative.constants.NormativeComputeConstants;
+import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
+import org.alien4cloud.tosca.normative.constants.ToscaFunctionConstants;
+import org.alien4cloud.tosca.topology.TopologyDTOBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import alien4cloud.component.ICSARRepositorySearchService;
+import alien4cloud.model.deployment.DeploymentTopology;
+import alien4cloud.paas.function.FunctionEvaluationPlan;
+import alien4cloud.paas.model.InstanceInformation;
+import alien4cloud.paas.model.PaaSNodeTemplate;
+import alien4cloud.paas.model.PaaSTopology;
+import alien4cloud.topology.TopologyDTO;
+import alien4cloud.tosca.context.IToscaTypeCache;
+import alien4cloud.tosca.context.ToscaContext;
+
+/**
+ * Check the PaaSTopology built from a deployment topology and its reuse.
+ */
+public class TopologyTreeBuilderServiceTest {
+    private static final String ARCHIVE_NAME = "test-types";
+    private static final String ARCHIVE_VERSION = "1.0.0";
+    protected static final String SOFTWARE_TYPE = "test.nodes.Software";
+    protected static final String DEPENDS_ON_TYPE = "test.relationships.DependsOn";
+    private static final String DEPLOYMENT_ID = "deployment";
+
+    protected Map<String, AbstractToscaType> types = Maps.newHashMap();
+    private ICSARRepositorySearchService previousSearchService;
+    private IToscaTypeCache previousTypeCache;
+    protected CsarFileRepository repository;
+    protected TopologyTreeBuilderService treeBuilder;
+
+    private void type(AbstractInheritableToscaType type, String elementId, String... derivedFrom) {
+        type.setElementId(elementId);
+        type.setArchiveName(ARCHIVE_NAME);
+        type.setArchiveVersion(ARCHIVE_VERSION);
+        type.setDerivedFrom(Lists.newArrayList(derivedFrom));
+        types.put(elementId, type);
+    }
+
+    @Before
+    public void init() {
+        type(new NodeType(), NormativeComputeConstants.COMPUTE_TYPE, "tosca.nodes.Root");
+        type(new NodeType(), SOFTWARE_TYPE, "tosca.nodes.SoftwareComponent", "tosca.nodes.Root");
+        type(new RelationshipType(), NormativeRelationshipConstants.HOSTED_ON, NormativeRelationshipConstants.ROOT);
+        type(new RelationshipType(), DEPENDS_ON_TYPE, NormativeRelationshipConstants.DEPENDS_ON, NormativeRelationshipConstants.ROOT);
+        Map<String, IValue> computeAttributes = Maps.newHashMap();
+        computeAttributes.put("ip_address", new AttributeDefinition());
+        ((NodeType) types.get(NormativeComputeConstants.COMPUTE_TYPE)).setAttributes(computeAttributes);
+        ConcatPropertyValue url = new ConcatPropertyValue();
+        url.setParameters(Lists.newArrayList(new ScalarPropertyValue("http://"),
+                new FunctionPropertyValue(ToscaFunctionConstants.GET_ATTRIBUTE, Lists.newArrayList("HOST", "ip_address"))));
+        Map<String, IValue> softwareAttributes = Maps.newHashMap();
+        softwareAttributes.put("url", url);
+        ((NodeType) types.get(SOFTWARE_TYPE)).setAttributes(softwareAttributes);
+
+        Answer<AbstractToscaType> typeAnswer = new Answer<AbstractToscaType>() {
+            @Override
+            public AbstractToscaType answer(InvocationOnMock invocation) throws Throwable {
+                return types.get(invocation.getArguments()[1]);
+            }
+        };
+        ICSARRepositorySearchService searchService = Mockito.mock(ICSARRepositorySearchService.class);
+        Mockito.when(searchService.getRequiredElementInDependencies(Mockito.any(Class.class), Mockito.anyString(), Mockito.any(Set.class)))
+                .thenAnswer(typeAnswer);
+        Mockito.when(searchService.getElementInDependencies(Mockito.any(Class.class), Mockito.anyString(), Mockito.any(Set.class))).thenAnswer(typeAnswer);
+        previousSearchService = ToscaContext.getCsarRepositorySearchService();
+        previousTypeCache = ToscaContext.getToscaTypeCache();
+        ToscaContext.setCsarRepositorySearchService(searchService);
+        ToscaContext.setToscaTypeCache(null);
+        ToscaContext.init(Sets.newHashSet());
+
+        repository = Mockito.mock(CsarFileRepository.class);
+        Mockito.when(repository.getCSAR(ARCHIVE_NAME, ARCHIVE_VERSION)).thenReturn(Paths.get("target/test-types.zip"));
+        TopologyDTOBuilder topologyDTOBuilder = Mockito.mock(TopologyDTOBuilder.class);
+        Mockito.when(topologyDTOBuilder.initTopologyDTO(Mockito.any(Topology.class), Mockito.any(TopologyDTO.class)))
+                .thenAnswer(new Answer<TopologyDTO>() {
+                    @Override
+                    public TopologyDTO answer(InvocationOnMock invocation) throws Throwable {
+                        return (TopologyDTO) invocation.getArguments()[1];
+                    }
+                });
+
+        treeBuilder = new TopologyTreeBuilderService();
+        ReflectionTestUtils.setField(treeBuilder, "repository", repository);
+        ReflectionTestUtils.setField(treeBuilder, "topologyDTOBuilder", topologyDTOBuilder);
+        ReflectionTestUtils.setField(treeBuilder, "cacheEnabled", true);
+        treeBuilder.init();
+    }
+
+    @After
+    public void destroy() {
+        ToscaContext.destroy();
+        ToscaContext.setCsarRepositorySearchService(previousSearchService);
+        ToscaContext.setToscaTypeCache(previousTypeCache);
+    }
+
+    protected NodeTemplate nodeTemplate(String type, String... relationships) {
+        NodeTemplate nodeTemplate = new NodeTemplate();
+        nodeTemplate.setType(type);
+        nodeTemplate.setRelationships(Maps.newLinkedHashMap());
+        for (int i = 0; i < relationships.length; i += 3) {
+            RelationshipTemplate relationshipTemplate = new RelationshipTemplate();
+            relationshipTemplate.setName(relationships[i]);
+            relationshipTemplate.setType(relationships[i + 1]);
+            relationshipTemplate.setTarget(relationships[i + 2]);
+            nodeTemplate.getRelationships().put(relationships[i], relationshipTemplate);
+        }
+        return nodeTemplate;
+    }
+
+    private NodeGroup group(String name, String... members) {
+        NodeGroup group = new NodeGroup();
+        group.setName(name);
+        group.setMembers(Sets.newHashSet(members));
+        return group;
+    }
+
+    /**
+     * Load the deployment topology, every call returns a new instance as when it is read from elasticsearch.
+     */
+    private DeploymentTopology loadTopology(Date lastUpdateDate) {
+        DeploymentTopology topology = new DeploymentTopology();
+        topology.setId("application:1.0.0:environment");
+        topology.setLastUpdateDate(lastUpdateDate);
+        topology.setLastDeploymentTopologyUpdateDate(lastUpdateDate);
+        topology.setNodeTemplates(Maps.newLinkedHashMap());
+        topology.getNodeTemplates().put("Compute", nodeTemplate(NormativeComputeConstants.COMPUTE_TYPE));
+        topology.getNodeTemplates().put("Database", nodeTemplate(SOFTWARE_TYPE, "hostedOn", NormativeRelationshipConstants.HOSTED_ON, "Compute"));
+        topology.getNodeTemplates().put("Application", nodeTemplate(SOFTWARE_TYPE, "hostedOn", NormativeRelationshipConstants.HOSTED_ON, "Compute",
+                "dependsOnDatabase", DEPENDS_ON_TYPE, "Database"));
+        topology.setGroups(Maps.newHashMap());
+        topology.getGroups().put("all", group("all", "Compute", "Database", "Application"));
+        topology.getGroups().put("softwares", group("softwares", "Database", "Application"));
+        return topology;
+    }
+
+    private FunctionEvaluationPlan getCachedFunctionEvaluationPlan() {
+        Object cached = ((Map) ReflectionTestUtils.getField(treeBuilder, "paaSTopologies")).get(DEPLOYMENT_ID);
+        return (FunctionEvaluationPlan) ReflectionTestUtils.getField(ReflectionTestUtils.getField(cached, "paaSTopology"), "functionEvaluationPlan");
+    }
+
+    private void assertPaaSTopology(PaaSTopology paaSTopology, DeploymentTopology topology) {
+        Assert.assertEquals(1, paaSTopology.getComputes().size());
+        Assert.assertEquals(2, paaSTopology.getNonNatives().size());
+        PaaSNodeTemplate compute = paaSTopology.getAllNodes().get("Compute");
+        PaaSNodeTemplate database = paaSTopology.getAllNodes().get("Database");
+        PaaSNodeTemplate application = paaSTopology.getAllNodes().get("Application");
+        Assert.assertSame(compute, paaSTopology.getComputes().get(0));
+        Assert.assertEquals(Sets.newHashSet(database, application), Sets.newHashSet(compute.getChildren()));
+        Assert.assertSame(compute, application.getParent());
+        Assert.assertTrue(application.instanceOf("tosca.nodes.SoftwareComponent"));
+        Assert.assertFalse(compute.instanceOf("tosca.nodes.SoftwareComponent"));
+
+        Assert.assertEquals(Sets.newHashSet("all"), compute.getGroups());
+        Assert.assertEquals(Sets.newHashSet("all", "softwares"), application.getGroups());
+        Assert.assertEquals(2, paaSTopology.getGroups().get("softwares").size());
+        Assert.assertEquals(3, paaSTopology.getGroups().get("all").size());
+
+        // the depends on relationship is injected in its target
+        Assert.assertEquals(2, application.getRelationshipTemplates().size());
+        Assert.assertEquals(2, database.getRelationshipTemplates().size());
+        Assert.assertSame(application.getRelationshipTemplates().get(1), database.getRelationshipTemplates().get(1));
+        Assert.assertTrue(application.getRelationshipTemplates().get(1).instanceOf(NormativeRelationshipConstants.DEPENDS_ON));
+        Assert.assertFalse(application.getRelationshipTemplates().get(1).instanceOf(NormativeRelationshipConstants.HOSTED_ON));
+
+        // templates are the ones of the given deployment topology
+        for (PaaSNodeTemplate paaSNodeTemplate : paaSTopology.getAllNodes().values()) {
+            Assert.assertSame(topology.getNodeTemplates().get(paaSNodeTemplate.getId()), paaSNodeTemplate.getTemplate());
+        }
+        Assert.assertSame(topology.getNodeTemplates().get("Application").getRelationships().get("dependsOnDatabase"),
+                database.getRelationshipTemplates().get(1).getTemplate());
+    }
+
+    @Test
+    public void paaSTopologyShouldBeBuiltOncePerDeploymentTopologyVersion() {
+        Date lastUpdateDate = new Date();
+        DeploymentTopology topology = loadTopology(lastUpdateDate);
+        PaaSTopology paaSTopology = treeBuilder.getPaaSTopology(DEPLOYMENT_ID, topology);
+        assertPaaSTopology(paaSTopology, topology);
+        // the archive path is resolved once for all the types of the archive
+        Mockito.verify(repository, Mockito.times(1)).getCSAR(ARCHIVE_NAME, ARCHIVE_VERSION);
+        Path csarPath = paaSTopology.getAllNodes().get("Compute").getCsarPath();
+        Assert.assertEquals(Paths.get("target/test-types.zip"), csarPath);
+
+        // a modification of the returned topology does not alter the next ones
+        paaSTopology.getAllNodes().get("Compute").getChildren().clear();
+        paaSTopology.getGroups().clear();
+
+        topology = loadTopology(lastUpdateDate);
+        PaaSTopology reused = treeBuilder.getPaaSTopology(DEPLOYMENT_ID, topology);
+        Assert.assertNotSame(paaSTopology, reused);
+        assertPaaSTopology(reused, topology);
+        Assert.assertSame(csarPath, reused.getAllNodes().get("Compute").getCsarPath());
+        // the built topology compiles its functions on first use only
+        Assert.assertNull(ReflectionTestUtils.getField(paaSTopology, "functionEvaluationPlan"));
+        // the functions of the cached topology are compiled once and rebound to the templates of every copy
+        FunctionEvaluationPlan compiled = getCachedFunctionEvaluationPlan();
+        Assert.assertNotNull(compiled);
+        FunctionEvaluationPlan rebound = (FunctionEvaluationPlan) ReflectionTestUtils.getField(reused, "functionEvaluationPlan");
+        Assert.assertNotSame(compiled, rebound);
+        Assert.assertSame(rebound, reused.getFunctionEvaluationPlan());
+        Assert.assertSame(reused.getAllNodes().get("Compute"), ((Map) ReflectionTestUtils.getField(rebound, "templates")).get("Compute"));
+        Mockito.verify(repository, Mockito.times(1)).getCSAR(ARCHIVE_NAME, ARCHIVE_VERSION);
+        // runtime attributes are resolved by the plan
+        Map<String, Map<String, InstanceInformation>> runtimeInformations = Maps.newHashMap();
+        runtimeInformations.put("Compute", Maps.newHashMap());
+        runtimeInformations.get("Compute").put("0", new InstanceInformation("started", null, Maps.newHashMap(), Maps.newHashMap(), Maps.newHashMap()));
+        runtimeInformations.get("Compute").get("0").getAttributes().put("ip_address", "10.0.0.1");
+        runtimeInformations.put("Database", Maps.newHashMap());
+        runtimeInformations.get("Database").put("0", new InstanceInformation("started", null, Maps.newHashMap(), Maps.newHashMap(), Maps.newHashMap()));
+        reused.getFunctionEvaluationPlan().resolveAttributes(runtimeInformations);
+        Assert.assertEquals("http://10.0.0.1", runtimeInformations.get("Database").get("0").getAttributes().get("url"));
+
+        // the runtime topology is saved with the id of the deployment and read back by the runtime operations
+        topology = loadTopology(lastUpdateDate);
+        topology.setId(DEPLOYMENT_ID);
+        assertPaaSTopology(treeBuilder.getPaaSTopology(DEPLOYMENT_ID, topology), topology);
+        Mockito.verify(repository, Mockito.times(1)).getCSAR(ARCHIVE_NAME, ARCHIVE_VERSION);
+        Assert.assertSame(compiled, getCachedFunctionEvaluationPlan());
+
+        // the deployment topology is updated
+        topology = loadTopology(new Date(lastUpdateDate.getTime() + 1));
+        topology.getGroups().remove("softwares");
+        PaaSTopology rebuilt = treeBuilder.getPaaSTopology(DEPLOYMENT_ID, topology);
+        Mockito.verify(repository, Mockito.times(2)).getCSAR(ARCHIVE_NAME, ARCHIVE_VERSION);
+        Assert.assertFalse(rebuilt.getGroups().containsKey("softwares"));
+        Assert.assertEquals(Sets.newHashSet("all"), rebuilt.getAllNodes().get("Application").getGroups());
+
+        // types may have changed in the catalog
+        treeBuilder.clearCache();
+        treeBuilder.getPaaSTopology(DEPLOYMENT_ID, topology);
+        Mockito.verify(repository, Mockito.times(3)).getCSAR(ARCHIVE_NAME, ARCHIVE_VERSION);
+    }
+}
@@ -1,7 +1,6 @@
 package alien4cloud.paas.wf;
 
 import org.alien4cloud.tosca.model.workflow.WorkflowStep;
-import org.junit.Ignore;
 import org.junit.Test;
 
 import alien4cloud.paas.wf.util.WorkflowUtils;
@@ -82,7 +81,6 @@ public class CycleDetectionTest extends AbstractValidationTest<CycleDetection> {
      * </pre>
      */
     @Test
-    @Ignore // FIXME: this cycle is no more detected
     public void testOrphanCycle() {
         WorkflowStep a = wf.addStep(new SimpleStep("a"));
         WorkflowStep b = wf.addStep(new SimpleStep("b"));
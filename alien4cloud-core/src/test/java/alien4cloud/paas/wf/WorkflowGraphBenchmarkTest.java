@@ -0,0 +1,70 @@
+package alien4cloud.paas.wf;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.alien4cloud.tosca.model.workflow.Workflow;
+import org.alien4cloud.tosca.model.workflow.WorkflowStep;
+import org.junit.Test;
+
+import alien4cloud.paas.wf.util.SimpleGraphConsumer;
+import alien4cloud.paas.wf.util.SubGraph;
+import alien4cloud.paas.wf.validation.CycleDetection;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Measure the workflow graph algorithms on generated wide workflows, like the install workflow of a large topology. The results are checked by
+ * {@link WorkflowGraphTest}.
+ */
+@Slf4j
+public class WorkflowGraphBenchmarkTest extends WorkflowGraphTest {
+    private static final int LAYERS = 50;
+    private static final int WIDTH = 20;
+
+    @Test
+    public void cycleDetectionOnLargeWorkflow() {
+        Workflow wf = generate(LAYERS, WIDTH, 3, 0);
+        CycleDetection cycleDetection = new CycleDetection();
+        // warm-up
+        cycleDetection.validate(null, wf);
+
+        long start = System.nanoTime();
+        cycleDetection.validate(null, wf);
+        long duration = System.nanoTime() - start;
+        log.info("Cycle detection on {} steps: {} ms", wf.getSteps().size(), TimeUnit.NANOSECONDS.toMillis(duration));
+    }
+
+    @Test
+    public void removeUselessEdgesOnLargeWorkflow() {
+        Workflow wf = generate(LAYERS, WIDTH, 3, 1);
+
+        long start = System.nanoTime();
+        workflowSimplifyService.removeUselessEdges(wf);
+        long duration = System.nanoTime() - start;
+        log.info("Remove useless edges on {} steps: {} ms", wf.getSteps().size(), TimeUnit.NANOSECONDS.toMillis(duration));
+    }
+
+    @Test
+    public void comparePathEnumeration() {
+        for (int layers = 4; layers <= 8; layers += 2) {
+            Workflow wf = generate(layers, 5, 3, 2);
+            AtomicLong paths = new AtomicLong();
+            long start = System.nanoTime();
+            new SubGraph(wf, stepId -> true).browse(new SimpleGraphConsumer() {
+                @Override
+                public boolean onNewPath(List<WorkflowStep> path) {
+                    paths.incrementAndGet();
+                    return true;
+                }
+            });
+            long enumerationDuration = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            new SubGraph(wf, stepId -> true).getGraph().getWeights();
+            long graphDuration = System.nanoTime() - start;
+            log.info("{} steps: {} paths enumerated in {} ms, weights computed on the indexed graph in {} ms", wf.getSteps().size(), paths.get(),
+                    TimeUnit.NANOSECONDS.toMillis(enumerationDuration), TimeUnit.NANOSECONDS.toMillis(graphDuration));
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package alien4cloud.paas.wf;
+
+import static org.alien4cloud.tosca.normative.constants.NormativeWorkflowNameConstants.INSTALL;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.workflow.Workflow;
+import org.alien4cloud.tosca.model.workflow.WorkflowStep;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import alien4cloud.paas.wf.util.SimpleGraphConsumer;
+import alien4cloud.paas.wf.util.SubGraph;
+import alien4cloud.paas.wf.util.WorkflowUtils;
+import alien4cloud.paas.wf.validation.CycleDetection;
+
+/**
+ * Check the workflow graph algorithms on generated wide workflows against a naive browse of the steps.
+ */
+public class WorkflowGraphTest extends WorkflowTestBase {
+
+    /**
+     * Generate a workflow where every step is linked to some steps of the next layer and to a step two layers ahead, which is a useless edge.
+     */
+    protected Workflow generate(int layers, int width, int fanOut, long seed) {
+        Random random = new Random(seed);
+        Workflow wf = new Workflow();
+        wf.setName(INSTALL);
+        WorkflowStep[][] steps = new WorkflowStep[layers][width];
+        for (int layer = 0; layer < layers; layer++) {
+            for (int i = 0; i < width; i++) {
+                steps[layer][i] = wf.addStep(new SimpleStep("s" + layer + "_" + i));
+            }
+        }
+        for (int layer = 0; layer < layers - 1; layer++) {
+            for (int i = 0; i < width; i++) {
+                for (int j = 0; j < fanOut; j++) {
+                    WorkflowUtils.linkSteps(steps[layer][i], steps[layer + 1][random.nextInt(width)]);
+                }
+                if (layer < layers - 2) {
+                    WorkflowUtils.linkSteps(steps[layer][i], steps[layer + 2][random.nextInt(width)]);
+                }
+            }
+        }
+        return wf;
+    }
+
+    protected Set<String> reachable(Workflow wf, String from, WorkflowStep skippedEdgeSource, String skippedEdgeTarget) {
+        Set<String> reachable = new HashSet<>();
+        Deque<String> toVisit = new ArrayDeque<>();
+        toVisit.push(from);
+        while (!toVisit.isEmpty()) {
+            WorkflowStep step = wf.getSteps().get(toVisit.pop());
+            for (String following : step.getOnSuccess()) {
+                if (step == skippedEdgeSource && following.equals(skippedEdgeTarget)) {
+                    continue;
+                }
+                if (reachable.add(following)) {
+                    toVisit.push(following);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    @Test
+    public void cycleShouldBeDetectedOnLargeWorkflow() {
+        int layers = 20;
+        Workflow wf = generate(layers, 10, 3, 0);
+        CycleDetection cycleDetection = new CycleDetection();
+        Assert.assertTrue(cycleDetection.validate(null, wf).isEmpty());
+
+        // link back a step of the last layer that follows the first step
+        String lastStep = reachable(wf, "s0_0", null, null).stream().filter(name -> name.startsWith("s" + (layers - 1) + "_")).findFirst().get();
+        WorkflowUtils.linkSteps(wf.getSteps().get(lastStep), wf.getSteps().get("s0_0"));
+        Assert.assertEquals(1, cycleDetection.validate(null, wf).size());
+    }
+
+    @Test
+    public void removeUselessEdgesShouldKeepTheTransitiveReduction() {
+        Workflow wf = generate(20, 10, 3, 1);
+        Map<String, Set<String>> initialReachability = Maps.newHashMap();
+        for (String stepName : wf.getSteps().keySet()) {
+            initialReachability.put(stepName, reachable(wf, stepName, null, null));
+        }
+
+        workflowSimplifyService.removeUselessEdges(wf);
+
+        for (WorkflowStep step : wf.getSteps().values()) {
+            // the order of the steps is unchanged
+            Assert.assertEquals(initialReachability.get(step.getName()), reachable(wf, step.getName(), null, null));
+            for (String following : step.getOnSuccess()) {
+                // no edge is implied by the other ones
+                Assert.assertFalse(reachable(wf, step.getName(), step, following).contains(following));
+            }
+        }
+    }
+
+    @Test
+    public void weightsShouldMatchTheLongestEnumeratedPaths() {
+        for (int layers = 4; layers <= 8; layers += 2) {
+            Workflow wf = generate(layers, 5, 3, 2);
+            Map<String, Integer> longestPaths = Maps.newHashMap();
+            new SubGraph(wf, stepId -> true).browse(new SimpleGraphConsumer() {
+                @Override
+                public boolean onNewPath(List<WorkflowStep> path) {
+                    longestPaths.merge(path.get(path.size() - 1).getName(), path.size(), Math::max);
+                    return true;
+                }
+            });
+
+            Assert.assertEquals(longestPaths, new SubGraph(wf, stepId -> true).getGraph().getWeights());
+        }
+    }
+}
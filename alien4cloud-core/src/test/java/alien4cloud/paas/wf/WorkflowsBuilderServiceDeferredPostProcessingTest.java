@@ -0,0 +1,212 @@
+package alien4cloud.paas.wf;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.definitions.ImplementationArtifact;
+import org.alien4cloud.tosca.model.definitions.Interface;
+import org.alien4cloud.tosca.model.definitions.Operation;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.RelationshipTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.model.types.AbstractInheritableToscaType;
+import org.alien4cloud.tosca.model.types.AbstractToscaType;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.alien4cloud.tosca.model.types.RelationshipType;
+import org.alien4cloud.tosca.model.workflow.Workflow;
+import org.alien4cloud.tosca.normative.constants.NormativeComputeConstants;
+import org.alien4cloud.tosca.normative.constants.NormativeRelationshipConstants;
+import org.alien4cloud.tosca.utils.TopologyUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import alien4cloud.component.ICSARRepositorySearchService;
+import alien4cloud.paas.plan.ToscaNodeLifecycleConstants;
+import alien4cloud.paas.wf.model.WorkflowTestUtils;
+import alien4cloud.paas.wf.validation.WorkflowValidator;
+import alien4cloud.topology.task.WorkflowTask;
+import alien4cloud.tosca.parser.ToscaParser;
+
+/**
+ * Check that adding and renaming nodes with a deferred post processing then finalizing the workflows gives the same workflows as a full rebuild.
+ */
+public class WorkflowsBuilderServiceDeferredPostProcessingTest {
+    private static final String SOFTWARE_TYPE = "test.nodes.Software";
+    private static final String PARTIAL_SOFTWARE_TYPE = "test.nodes.PartialSoftware";
+    private static final String EMPTY_SOFTWARE_TYPE = "test.nodes.EmptySoftware";
+
+    private WorkflowsBuilderService workflowsBuilderService;
+    private Csar csar;
+    private Map<String, AbstractToscaType> types = Maps.newHashMap();
+
+    private <T extends AbstractInheritableToscaType> T type(T type, String elementId, String derivedFrom) {
+        type.setElementId(elementId);
+        type.setDerivedFrom(Lists.newArrayList(derivedFrom));
+        types.put(elementId, type);
+        return type;
+    }
+
+    private void softwareType(String elementId, String... implementedOperations) {
+        Interface standard = new Interface(ToscaNodeLifecycleConstants.STANDARD);
+        for (String operation : implementedOperations) {
+            standard.getOperations().put(operation, new Operation(new ImplementationArtifact("scripts/" + operation + ".sh")));
+        }
+        NodeType nodeType = type(new NodeType(), elementId, "tosca.nodes.Root");
+        nodeType.setInterfaces(Maps.newHashMap());
+        nodeType.getInterfaces().put(ToscaNodeLifecycleConstants.STANDARD, standard);
+    }
+
+    @Before
+    public void init() throws Exception {
+        type(new NodeType(), NormativeComputeConstants.COMPUTE_TYPE, "tosca.nodes.Root");
+        softwareType(SOFTWARE_TYPE, ToscaNodeLifecycleConstants.CREATE, ToscaNodeLifecycleConstants.CONFIGURE, ToscaNodeLifecycleConstants.START,
+                ToscaNodeLifecycleConstants.STOP, ToscaNodeLifecycleConstants.DELETE);
+        softwareType(PARTIAL_SOFTWARE_TYPE, ToscaNodeLifecycleConstants.START);
+        softwareType(EMPTY_SOFTWARE_TYPE);
+        type(new RelationshipType(), NormativeRelationshipConstants.HOSTED_ON, "tosca.relationships.Root");
+        type(new RelationshipType(), NormativeRelationshipConstants.DEPENDS_ON, "tosca.relationships.Root");
+
+        csar = new Csar("topology", "1.0.0-SNAPSHOT");
+        csar.setToscaDefinitionsVersion(ToscaParser.ALIEN_DSL_200);
+        ICSARRepositorySearchService csarRepoSearchService = Mockito.mock(ICSARRepositorySearchService.class);
+        Mockito.when(csarRepoSearchService.getArchive(csar.getName(), csar.getVersion())).thenReturn(csar);
+        Mockito.when(csarRepoSearchService.getElementInDependencies(Mockito.any(Class.class), Mockito.anyString(), Mockito.any(Set.class)))
+                .thenAnswer(new Answer<AbstractToscaType>() {
+                    @Override
+                    public AbstractToscaType answer(InvocationOnMock invocation) throws Throwable {
+                        return types.get(invocation.getArguments()[1]);
+                    }
+                });
+
+        workflowsBuilderService = new WorkflowsBuilderService();
+        WorkflowSimplifyService workflowSimplifyService = new WorkflowSimplifyService();
+        ReflectionTestUtils.setField(workflowSimplifyService, "workflowsBuilderService", workflowsBuilderService);
+        ReflectionTestUtils.setField(workflowsBuilderService, "workflowSimplifyService", workflowSimplifyService);
+        ReflectionTestUtils.setField(workflowsBuilderService, "workflowValidator", new WorkflowValidator());
+        ReflectionTestUtils.setField(workflowsBuilderService, "customWorkflowBuilder", new CustomWorkflowBuilder());
+        ReflectionTestUtils.setField(workflowsBuilderService, "csarRepoSearchService", csarRepoSearchService);
+        workflowsBuilderService.loadDefaultDeclarativeWorkflows();
+    }
+
+    private Topology createTopology() {
+        Topology topology = new Topology();
+        topology.setArchiveName(csar.getName());
+        topology.setArchiveVersion(csar.getVersion());
+        topology.setNodeTemplates(Maps.newLinkedHashMap());
+        workflowsBuilderService.initWorkflows(workflowsBuilderService.buildTopologyContext(topology, csar));
+        return topology;
+    }
+
+    private void addNode(Topology topology, String name, String type, boolean deferred) {
+        NodeTemplate nodeTemplate = new NodeTemplate();
+        nodeTemplate.setName(name);
+        nodeTemplate.setType(type);
+        nodeTemplate.setRelationships(Maps.newLinkedHashMap());
+        topology.getNodeTemplates().put(name, nodeTemplate);
+        workflowsBuilderService.addNode(workflowsBuilderService.buildTopologyContext(topology, csar), name, deferred);
+    }
+
+    private void addRelationship(Topology topology, String source, String name, String type, String target, boolean deferred) {
+        RelationshipTemplate relationshipTemplate = new RelationshipTemplate();
+        relationshipTemplate.setName(name);
+        relationshipTemplate.setType(type);
+        relationshipTemplate.setTarget(target);
+        topology.getNodeTemplates().get(source).getRelationships().put(name, relationshipTemplate);
+        workflowsBuilderService.addRelationship(workflowsBuilderService.buildTopologyContext(topology, csar), source, name, deferred);
+    }
+
+    private void renameNode(Topology topology, String name, String newName, boolean deferred) {
+        TopologyUtils.renameNodeTemplate(topology, name, newName);
+        workflowsBuilderService.renameNode(topology, csar, name, newName, deferred);
+    }
+
+    private Set<String> tasks(List<WorkflowTask> tasks) {
+        return tasks.stream().map(task -> task.getWorkflowName() + ":" + task.getErrorCount()).collect(Collectors.toSet());
+    }
+
+    private void assertSameWorkflows(Map<String, Workflow> expected, Map<String, Workflow> actual) {
+        Assert.assertEquals(expected.keySet(), actual.keySet());
+        expected.forEach((name, expectedWorkflow) -> {
+            Workflow actualWorkflow = actual.get(name);
+            WorkflowTestUtils.assertSame(expectedWorkflow, actualWorkflow);
+            Assert.assertEquals(expectedWorkflow.getErrors().size(), actualWorkflow.getErrors().size());
+            Assert.assertFalse(actualWorkflow.isPendingFinalization());
+        });
+    }
+
+    /**
+     * Compare the finalized workflows of the deferred topology with the workflows of the other topology rebuilt from its unprocessed workflows.
+     */
+    private void assertFinalizedAsRebuilt(Topology rebuilt, Topology deferred) {
+        workflowsBuilderService.refreshTopologyWorkflows(workflowsBuilderService.buildTopologyContext(rebuilt, csar));
+        boolean pending = deferred.getWorkflows().values().stream().anyMatch(Workflow::isPendingFinalization);
+        // the validation of a topology with pending workflows does not change it
+        Assert.assertEquals(tasks(workflowsBuilderService.validateWorkflows(rebuilt)), tasks(workflowsBuilderService.validateWorkflows(deferred)));
+        Assert.assertEquals(pending, deferred.getWorkflows().values().stream().anyMatch(Workflow::isPendingFinalization));
+        workflowsBuilderService.finalizeWorkflows(deferred, csar);
+        assertSameWorkflows(rebuilt.getUnprocessedWorkflows(), deferred.getUnprocessedWorkflows());
+        assertSameWorkflows(rebuilt.getWorkflows(), deferred.getWorkflows());
+    }
+
+    @Test
+    public void finalizedWorkflowsShouldBeTheSameAsTheRebuiltOnes() {
+        String[] softwareTypes = { SOFTWARE_TYPE, PARTIAL_SOFTWARE_TYPE, EMPTY_SOFTWARE_TYPE };
+        for (long seed = 0; seed < 5; seed++) {
+            Random random = new Random(seed);
+            Topology rebuilt = createTopology();
+            Topology deferred = createTopology();
+            List<String> computes = Lists.newArrayList();
+            List<String> softwares = Lists.newArrayList();
+            for (int i = 0; i < 40; i++) {
+                int operation = computes.isEmpty() ? 0 : random.nextInt(10);
+                if (operation == 0) {
+                    String name = "Compute_" + i;
+                    addNode(rebuilt, name, NormativeComputeConstants.COMPUTE_TYPE, false);
+                    addNode(deferred, name, NormativeComputeConstants.COMPUTE_TYPE, true);
+                    computes.add(name);
+                } else if (operation < 6 || softwares.size() < 2) {
+                    String name = "Software_" + i;
+                    String type = softwareTypes[random.nextInt(softwareTypes.length)];
+                    String host = computes.get(random.nextInt(computes.size()));
+                    for (Topology topology : new Topology[] { rebuilt, deferred }) {
+                        addNode(topology, name, type, topology == deferred);
+                        addRelationship(topology, name, "hostedOn", NormativeRelationshipConstants.HOSTED_ON, host, topology == deferred);
+                    }
+                    softwares.add(name);
+                } else if (operation < 9) {
+                    // only depend on an older software so the workflows have no cycle
+                    int sourceIndex = 1 + random.nextInt(softwares.size() - 1);
+                    String source = softwares.get(sourceIndex);
+                    String target = softwares.get(random.nextInt(sourceIndex));
+                    String name = "dependency_" + i;
+                    addRelationship(rebuilt, source, name, NormativeRelationshipConstants.DEPENDS_ON, target, false);
+                    addRelationship(deferred, source, name, NormativeRelationshipConstants.DEPENDS_ON, target, true);
+                } else {
+                    int index = random.nextInt(softwares.size());
+                    String name = softwares.get(index);
+                    String newName = "Renamed_" + i;
+                    renameNode(rebuilt, name, newName, false);
+                    renameNode(deferred, name, newName, true);
+                    softwares.set(index, newName);
+                }
+                if (random.nextInt(10) == 0) {
+                    // the topology is saved or the workflows are finalized explicitly
+                    assertFinalizedAsRebuilt(rebuilt, deferred);
+                }
+            }
+            assertFinalizedAsRebuilt(rebuilt, deferred);
+        }
+    }
+}
@@ -2,6 +2,9 @@ package alien4cloud.suggestions.services;
 
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.Set;
 
 import alien4cloud.model.common.AbstractSuggestionEntry;
 import lombok.extern.slf4j.Slf4j;
@@ -59,4 +62,51 @@ public class SuggestionServicesTest {
         log.info("Matches for blank: {}", Arrays.asList(matches));
         Assert.assertEquals(5, matches.length);
     }
+
+    @Test
+    public void testIndexedMatchingIsEquivalentToFullScan() {
+        SuggestionService suggestionService = new SuggestionService();
+        IGenericSearchDAO alienDAO = Mockito.mock(IGenericSearchDAO.class);
+        suggestionService.setAlienDAO(alienDAO);
+        SuggestionEntry suggestionEntry = new SuggestionEntry();
+        Random random = new Random(0);
+        for (int i = 0; i < 500; i++) {
+            suggestionEntry.getSuggestions().add(randomValue(random));
+        }
+        Mockito.when(alienDAO.findById(AbstractSuggestionEntry.class, "")).thenReturn(suggestionEntry);
+        // load the index then add values incrementally
+        suggestionService.getJaroWinklerMatchedSuggestions("", "ubuntu", 1);
+        for (int i = 0; i < 500; i++) {
+            suggestionService.addSuggestionValueToSuggestionEntry("", randomValue(random));
+        }
+        SuggestionIndex suggestionIndex = new SuggestionIndex(suggestionEntry.getSuggestions());
+
+        for (int i = 0; i < 200; i++) {
+            String input = randomValue(random);
+            Set<String> expected = new HashSet<>();
+            PriorityQueue<SuggestionService.MatchedSuggestion> fullScan = suggestionService.getJaroWinklerMatchedSuggestions(suggestionEntry.getSuggestions(),
+                    input, 0.0);
+            while (!fullScan.isEmpty()) {
+                expected.add(fullScan.poll().getValue());
+            }
+            Assert.assertEquals(expected, new HashSet<>(Arrays.asList(suggestionService.getJaroWinklerMatchedSuggestions("", input, Integer.MAX_VALUE))));
+
+            // candidates of an import check must contain every similar value
+            fullScan = suggestionService.getJaroWinklerMatchedSuggestions(suggestionEntry.getSuggestions(), input, 0.8);
+            Set<String> candidates = suggestionIndex.getCandidates(SuggestionIndex.normalize(input), 0.8).keySet();
+            while (!fullScan.isEmpty()) {
+                Assert.assertTrue(candidates.contains(fullScan.poll().getValue()));
+            }
+        }
+    }
+
+    private String randomValue(Random random) {
+        String characters = "abcdefghijklmnopqrstuvwxyz0123456789 .-";
+        StringBuilder value = new StringBuilder();
+        int length = 1 + random.nextInt(15);
+        for (int i = 0; i < length; i++) {
+            value.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return value.toString();
+    }
 }
@@ -0,0 +1,266 @@
+package org.alien4cloud.alm.deployment.configuration.flow;
+
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.alien4cloud.alm.deployment.configuration.model.DeploymentInputs;
+import org.alien4cloud.alm.deployment.configuration.services.DeploymentConfigurationDao;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.variable.service.QuickFileStorageService;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import alien4cloud.dao.IESQueryBuilderHelper;
+import alien4cloud.dao.IESSearchQueryBuilderHelper;
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.model.application.Application;
+import alien4cloud.model.application.ApplicationEnvironment;
+import alien4cloud.model.orchestrators.locations.Location;
+import alien4cloud.tosca.context.ToscaContext;
+
+@SuppressWarnings("unchecked")
+public class FlowExecutionMemoizerTest {
+    private static final Date TOPOLOGY_UPDATE_DATE = new Date();
+
+    private DeploymentConfigurationDao deploymentConfigurationDao;
+    private IGenericSearchDAO alienDAO;
+    private FlowExecutionMemoizer memoizer;
+    private Application application;
+    private ApplicationEnvironment environment;
+    private DeploymentInputs deploymentInputs;
+
+    /** Appends its name to the topology description so the result of the flow tells which modifiers have been applied. */
+    private static class CountingModifier implements ITopologyModifier {
+        private final String name;
+        private final Set<FlowInput> inputs;
+        private int processed;
+
+        private CountingModifier(String name, Set<FlowInput> inputs) {
+            this.name = name;
+            this.inputs = inputs;
+        }
+
+        @Override
+        public Set<FlowInput> getInputs(FlowExecutionContext context) {
+            return inputs;
+        }
+
+        @Override
+        public void process(Topology topology, FlowExecutionContext context) {
+            processed++;
+            if (inputs != null && inputs.contains(FlowInput.DEPLOYMENT_INPUTS)) {
+                context.getConfiguration(DeploymentInputs.class, name);
+            }
+            topology.setDescription(topology.getDescription() + name);
+        }
+    }
+
+    @Before
+    public void init() {
+        deploymentConfigurationDao = Mockito.mock(DeploymentConfigurationDao.class);
+        Mockito.when(deploymentConfigurationDao.findById(Mockito.eq(DeploymentInputs.class), Mockito.anyString())).thenAnswer(invocation -> deploymentInputs);
+        alienDAO = Mockito.mock(IGenericSearchDAO.class);
+        Mockito.when(alienDAO.stream(Mockito.any(Class.class), Mockito.any(), Mockito.any())).thenAnswer(invocation -> Stream.empty());
+
+        memoizer = new FlowExecutionMemoizer();
+        ReflectionTestUtils.setField(memoizer, "enabled", true);
+        ReflectionTestUtils.setField(memoizer, "alienDAO", alienDAO);
+        ReflectionTestUtils.setField(memoizer, "deploymentConfigurationDao", deploymentConfigurationDao);
+        ReflectionTestUtils.setField(memoizer, "quickFileStorageService", Mockito.mock(QuickFileStorageService.class));
+        memoizer.init();
+
+        application = new Application();
+        application.setId("application");
+        environment = new ApplicationEnvironment();
+        environment.setId("environment");
+        environment.setApplicationId("application");
+        environment.setTopologyVersion("0.1.0-SNAPSHOT");
+        deploymentInputs = new DeploymentInputs("0.1.0-SNAPSHOT", "environment");
+        ToscaContext.init(Sets.newHashSet());
+    }
+
+    @After
+    public void destroy() {
+        ToscaContext.destroy();
+    }
+
+    private Topology topology(String description) {
+        Topology topology = new Topology();
+        topology.setArchiveName("topology");
+        topology.setArchiveVersion("0.1.0-SNAPSHOT");
+        topology.setWorkspace("ALIEN_GLOBAL_WORKSPACE");
+        topology.setDescription(description);
+        topology.setLastUpdateDate(TOPOLOGY_UPDATE_DATE);
+        return topology;
+    }
+
+    private FlowExecutionContext execute(List<? extends ITopologyModifier> modifiers, Topology topology) {
+        return execute(modifiers, topology, null);
+    }
+
+    private FlowExecutionContext execute(List<? extends ITopologyModifier> modifiers, Topology topology, FlowExecutionProfile profile) {
+        FlowExecutionContext context = new FlowExecutionContext(deploymentConfigurationDao, topology, new EnvironmentContext(application, environment));
+        FlowExecutionMemoizer.FlowExecution execution = memoizer.start(Lists.newArrayList(modifiers), context);
+        execution.getContext().setProfile(profile);
+        for (int i = execution.getFromIndex(); i < modifiers.size(); i++) {
+            execution.beforeProcess(i, modifiers.get(i));
+            modifiers.get(i).process(execution.getContext().getTopology(), execution.getContext());
+        }
+        execution.complete();
+        return execution.getContext();
+    }
+
+    private void assertProcessed(List<CountingModifier> modifiers, int... expected) {
+        for (int i = 0; i < expected.length; i++) {
+            Assert.assertEquals(modifiers.get(i).name, expected[i], modifiers.get(i).processed);
+        }
+    }
+
+    @Test
+    public void modifiersShouldBeProcessedOnlyWhenTheirInputsChange() {
+        List<CountingModifier> modifiers = Lists.newArrayList(new CountingModifier("a", EnumSet.noneOf(FlowInput.class)),
+                new CountingModifier("b", EnumSet.of(FlowInput.DEPLOYMENT_INPUTS)), new CountingModifier("c", EnumSet.of(FlowInput.DEPLOYMENT_INPUTS)));
+
+        Assert.assertEquals("-abc", execute(modifiers, topology("-")).getTopology().getDescription());
+        assertProcessed(modifiers, 1, 1, 1);
+
+        // nothing has changed, the result of the previous execution is returned
+        Topology topology = topology("-");
+        FlowExecutionContext context = execute(modifiers, topology);
+        Assert.assertEquals("-abc", context.getTopology().getDescription());
+        Assert.assertNotSame(topology, context.getTopology());
+        assertProcessed(modifiers, 1, 1, 1);
+
+        // deployment inputs have changed, the flow is resumed before the first modifier that depends on them
+        deploymentInputs = new DeploymentInputs("0.1.0-SNAPSHOT", "environment");
+        deploymentInputs.getInputs().put("input", new ScalarPropertyValue("value"));
+        Assert.assertEquals("-abc", execute(modifiers, topology("-")).getTopology().getDescription());
+        assertProcessed(modifiers, 1, 2, 2);
+
+        // the topology has been saved, the whole flow is processed
+        topology = topology("+");
+        topology.setLastUpdateDate(new Date(TOPOLOGY_UPDATE_DATE.getTime() + 1));
+        Assert.assertEquals("+abc", execute(modifiers, topology).getTopology().getDescription());
+        assertProcessed(modifiers, 2, 3, 3);
+    }
+
+    @Test
+    public void modifiersWithUnknownInputsShouldAlwaysBeProcessed() {
+        List<CountingModifier> modifiers = Lists.newArrayList(new CountingModifier("a", EnumSet.noneOf(FlowInput.class)), new CountingModifier("b", null),
+                new CountingModifier("c", EnumSet.noneOf(FlowInput.class)));
+
+        Assert.assertEquals("-abc", execute(modifiers, topology("-")).getTopology().getDescription());
+        Assert.assertEquals("-abc", execute(modifiers, topology("-")).getTopology().getDescription());
+        assertProcessed(modifiers, 1, 2, 2);
+
+        memoizer.clear();
+        Assert.assertEquals("-abc", execute(modifiers, topology("-")).getTopology().getDescription());
+        assertProcessed(modifiers, 2, 3, 3);
+    }
+
+    @Test
+    public void locationsShouldBeFingerprintedFromTheirCountAndUpdateDate() {
+        List<CountingModifier> modifiers = Lists.newArrayList(new CountingModifier("a", EnumSet.noneOf(FlowInput.class)),
+                new CountingModifier("b", EnumSet.of(FlowInput.LOCATIONS)));
+        Location location = new Location();
+        location.setLastUpdateDate(new Date());
+        IESQueryBuilderHelper<Location> queryBuilder = Mockito.mock(IESQueryBuilderHelper.class);
+        IESSearchQueryBuilderHelper<Location> searchQueryBuilder = Mockito.mock(IESSearchQueryBuilderHelper.class);
+        Mockito.when(alienDAO.buildQuery(Location.class)).thenReturn(queryBuilder);
+        Mockito.when(queryBuilder.prepareSearch()).thenReturn(searchQueryBuilder);
+        Mockito.when(searchQueryBuilder.setFieldSort("lastUpdateDate", true)).thenReturn(searchQueryBuilder);
+        Mockito.when(searchQueryBuilder.find()).thenAnswer(invocation -> location);
+        Mockito.when(alienDAO.count(Location.class, null)).thenReturn(1L);
+
+        execute(modifiers, topology("-"));
+        execute(modifiers, topology("-"));
+        assertProcessed(modifiers, 1, 1);
+        // locations are not loaded
+        Mockito.verify(alienDAO, Mockito.never()).stream(Mockito.eq(Location.class), Mockito.any(), Mockito.any());
+
+        // a location has been updated by another instance
+        location.setLastUpdateDate(new Date(location.getLastUpdateDate().getTime() + 1));
+        execute(modifiers, topology("-"));
+        assertProcessed(modifiers, 1, 2);
+
+        // a location has been deleted by another instance
+        Mockito.when(alienDAO.count(Location.class, null)).thenReturn(0L);
+        execute(modifiers, topology("-"));
+        assertProcessed(modifiers, 1, 3);
+
+        // resources of a location have been updated on this instance
+        memoizer.onLocationsChanged();
+        execute(modifiers, topology("-"));
+        assertProcessed(modifiers, 2, 4);
+    }
+
+    @Test
+    public void resultsShouldBeReusedUntilTheirDependenciesChange() {
+        ITopologyModifier modifier = new CountingModifier("a", EnumSet.of(FlowInput.LOCATIONS));
+        FlowExecutionContext context = new FlowExecutionContext(deploymentConfigurationDao, topology("-"), new EnvironmentContext(application, environment));
+        AtomicInteger computations = new AtomicInteger();
+        String[] dependency = { "v1" };
+        Supplier<List<String>> computation = () -> Lists.newArrayList("result" + computations.incrementAndGet());
+        Set<FlowInput> inputs = EnumSet.of(FlowInput.LOCATIONS);
+        Function<List<String>, Object> dependencies = previous -> dependency[0];
+
+        List<String> result = memoizer.reuse(modifier, context, inputs, dependencies, computation);
+        List<String> reused = memoizer.reuse(modifier, context, inputs, dependencies, computation);
+        Assert.assertEquals(Lists.newArrayList("result1"), reused);
+        Assert.assertNotSame(result, reused);
+        Assert.assertEquals(1, computations.get());
+
+        dependency[0] = "v2";
+        Assert.assertEquals(Lists.newArrayList("result2"), memoizer.reuse(modifier, context, inputs, dependencies, computation));
+        Assert.assertEquals(Lists.newArrayList("result2"), memoizer.reuse(modifier, context, inputs, dependencies, computation));
+
+        memoizer.onLocationsChanged();
+        Assert.assertEquals(Lists.newArrayList("result3"), memoizer.reuse(modifier, context, inputs, dependencies, computation));
+    }
+
+    @Test
+    public void memoizationCostShouldBeReportedInTheProfile() {
+        ITopologyModifier slowModifier = new ITopologyModifier() {
+            @Override
+            public Set<FlowInput> getInputs(FlowExecutionContext context) {
+                return EnumSet.noneOf(FlowInput.class);
+            }
+
+            @Override
+            public void process(Topology topology, FlowExecutionContext context) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        List<ITopologyModifier> modifiers = Lists.newArrayList(slowModifier, new CountingModifier("b", EnumSet.of(FlowInput.DEPLOYMENT_INPUTS)));
+
+        FlowExecutionProfile recorded = new FlowExecutionProfile(environment.getId(), 0);
+        execute(modifiers, topology("-"), recorded);
+        Assert.assertTrue(recorded.isMemoized());
+        Assert.assertEquals(0, recorded.getReusedMs());
+
+        // the slow modifier is not processed again, its processing time is reused
+        deploymentInputs = new DeploymentInputs("0.1.0-SNAPSHOT", "environment");
+        deploymentInputs.getInputs().put("input", new ScalarPropertyValue("value"));
+        FlowExecutionProfile resumed = new FlowExecutionProfile(environment.getId(), 1);
+        execute(modifiers, topology("-"), resumed);
+        Assert.assertTrue(resumed.getReusedMs() >= 20);
+    }
+}
@@ -0,0 +1,120 @@
+package org.alien4cloud.alm.deployment.configuration.flow;
+
+import java.util.List;
+
+import org.alien4cloud.alm.deployment.configuration.flow.modifiers.matching.AbstractComposedModifier;
+import org.alien4cloud.alm.deployment.configuration.services.DeploymentConfigurationDao;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+
+import alien4cloud.model.application.Application;
+import alien4cloud.model.application.ApplicationEnvironment;
+
+public class FlowExecutionProfilerTest {
+    private MetricRegistry metricRegistry;
+    private FlowExecutionProfiler profiler;
+
+    private static class ValidModifier implements ITopologyModifier {
+        @Override
+        public void process(Topology topology, FlowExecutionContext context) {
+        }
+    }
+
+    private static class InvalidModifier implements ITopologyModifier {
+        @Override
+        public void process(Topology topology, FlowExecutionContext context) {
+            context.log().error("Invalid topology");
+        }
+    }
+
+    private static class ComposedModifier extends AbstractComposedModifier {
+        private ComposedModifier(ITopologyModifier... modifiers) {
+            super(modifiers);
+        }
+    }
+
+    @Before
+    public void init() {
+        metricRegistry = new MetricRegistry();
+        profiler = new FlowExecutionProfiler();
+        ReflectionTestUtils.setField(profiler, "metricRegistry", metricRegistry);
+        ReflectionTestUtils.setField(profiler, "profilesPerEnvironment", 2);
+    }
+
+    private FlowExecutionProfile execute(String environmentId, ITopologyModifier... modifiers) {
+        Application application = new Application();
+        application.setId("application");
+        ApplicationEnvironment environment = new ApplicationEnvironment();
+        environment.setId(environmentId);
+        FlowExecutionContext context = new FlowExecutionContext(Mockito.mock(DeploymentConfigurationDao.class), new Topology(),
+                new EnvironmentContext(application, environment));
+        FlowExecutionProfile profile = profiler.start(context, 0);
+        try {
+            for (ITopologyModifier modifier : modifiers) {
+                FlowExecutionProfile.process(modifier, context.getTopology(), context);
+                if (!context.log().isValid()) {
+                    return profile;
+                }
+            }
+        } finally {
+            profiler.complete(context);
+        }
+        return profile;
+    }
+
+    @Test
+    public void composedModifiersShouldBeProfiledWithTheirSubModifiers() {
+        FlowExecutionProfile profile = execute("environment", new ValidModifier(), new ComposedModifier(new ValidModifier(), new InvalidModifier()),
+                new ValidModifier());
+
+        Assert.assertEquals(2, profile.getModifiers().size());
+        Assert.assertEquals("ValidModifier", profile.getModifiers().get(0).getName());
+        Assert.assertEquals("ComposedModifier", profile.getModifiers().get(1).getName());
+        Assert.assertEquals(2, profile.getModifiers().get(1).getSubModifiers().size());
+        Assert.assertEquals("InvalidModifier", profile.getAbortedBy());
+        Assert.assertNull(profile.getFailedBy());
+
+        Assert.assertEquals(1, metricRegistry.histogram(MetricRegistry.name(FlowExecutor.class, "executions")).getCount());
+        Assert.assertEquals(2, metricRegistry.histogram(MetricRegistry.name(FlowExecutor.class, "modifiers", "ValidModifier")).getCount());
+        Assert.assertEquals(1, metricRegistry.histogram(MetricRegistry.name(FlowExecutor.class, "modifiers", "InvalidModifier")).getCount());
+        Assert.assertEquals(1, metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "aborts")).getCount());
+        Assert.assertEquals(1, metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "aborts", "InvalidModifier")).getCount());
+    }
+
+    @Test
+    public void failedModifierShouldBeRecorded() {
+        ITopologyModifier failing = (topology, context) -> {
+            throw new IllegalStateException("failure");
+        };
+        try {
+            execute("environment", new ValidModifier(), failing);
+            Assert.fail("The modifier failure should be propagated");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        FlowExecutionProfile profile = profiler.getProfiles("environment", 1).get(0);
+        Assert.assertNotNull(profile.getFailedBy());
+        Assert.assertEquals(1, metricRegistry.counter(MetricRegistry.name(FlowExecutor.class, "failures")).getCount());
+    }
+
+    @Test
+    public void onlyTheLastProfilesShouldBeKept() {
+        FlowExecutionProfile first = execute("environment", new ValidModifier());
+        FlowExecutionProfile second = execute("environment", new ValidModifier());
+        FlowExecutionProfile third = execute("environment", new ValidModifier());
+        execute("other-environment", new ValidModifier());
+
+        List<FlowExecutionProfile> profiles = profiler.getProfiles("environment", 10);
+        Assert.assertEquals(Lists.newArrayList(third, second), profiles);
+        Assert.assertFalse(profiles.contains(first));
+        Assert.assertEquals(Lists.newArrayList(third), profiler.getProfiles("environment", 1));
+        Assert.assertTrue(profiler.getProfiles("unknown", 10).isEmpty());
+    }
+}
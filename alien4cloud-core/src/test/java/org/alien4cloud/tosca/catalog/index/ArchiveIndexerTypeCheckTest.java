@@ -0,0 +1,139 @@
+package org.alien4cloud.tosca.catalog.index;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Resource;
+import javax.inject.Inject;
+
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.types.AbstractToscaType;
+import org.alien4cloud.tosca.model.types.DataType;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.alien4cloud.tosca.model.types.RelationshipType;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import alien4cloud.component.dao.AbstractDAOTest;
+import alien4cloud.component.repository.exception.ToscaTypeAlreadyDefinedInOtherCSAR;
+import alien4cloud.dao.FilterUtil;
+import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.dao.model.RefreshPolicy;
+import alien4cloud.tosca.model.ArchiveRoot;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Check that the types of an imported archive cannot be defined by an archive with another name, and compare the batched check with one query per type.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration("classpath:application-context-test.xml")
+@Slf4j
+@DirtiesContext
+public class ArchiveIndexerTypeCheckTest extends AbstractDAOTest {
+    private static final String ARCHIVE_NAME = "normative-types";
+    private static final String ARCHIVE_VERSION = "1.0.0";
+    private static final int TYPE_COUNT = 300;
+
+    @Resource(name = "alien-es-dao")
+    private IGenericSearchDAO dao;
+    @Inject
+    private ArchiveIndexer archiveIndexer;
+
+    private <T extends AbstractToscaType> T type(T type, String elementId, String archiveName) {
+        type.setElementId(elementId);
+        type.setArchiveName(archiveName);
+        type.setArchiveVersion(ARCHIVE_VERSION);
+        return type;
+    }
+
+    private Set<String> indexTypes() {
+        Set<String> elementIds = Sets.newHashSet();
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            NodeType nodeType = type(new NodeType(), "org.alien4cloud.nodes.Type" + i, ARCHIVE_NAME);
+            dao.save(nodeType, RefreshPolicy.NONE);
+            elementIds.add(nodeType.getElementId());
+        }
+        refresh();
+        return elementIds;
+    }
+
+    private int checkPerType(String archiveName, Set<String> elementIds) {
+        int conflicts = 0;
+        for (String elementId : elementIds) {
+            AbstractToscaType indexedType = dao.buildQuery(AbstractToscaType.class).setFilters(FilterUtil.singleKeyFilter("elementId", elementId))
+                    .prepareSearch().find();
+            if (indexedType != null && !archiveName.equals(indexedType.getArchiveName())) {
+                conflicts++;
+            }
+        }
+        return conflicts;
+    }
+
+    @Test
+    public void importShouldReportAllTheTypesDefinedInOtherArchives() throws Exception {
+        dao.save(type(new NodeType(), "org.alien4cloud.nodes.Compute", ARCHIVE_NAME), RefreshPolicy.NONE);
+        dao.save(type(new NodeType(), "org.alien4cloud.nodes.Network", ARCHIVE_NAME), RefreshPolicy.NONE);
+        dao.save(type(new RelationshipType(), "org.alien4cloud.relationships.HostedOn", ARCHIVE_NAME), RefreshPolicy.NONE);
+        dao.save(type(new DataType(), "org.alien4cloud.datatypes.Credential", ARCHIVE_NAME), RefreshPolicy.IMMEDIATE);
+
+        ArchiveRoot archiveRoot = new ArchiveRoot();
+        archiveRoot.setArchive(new Csar("other-types", ARCHIVE_VERSION));
+        for (String elementId : new String[] { "org.alien4cloud.nodes.Network", "org.alien4cloud.nodes.Compute", "org.alien4cloud.nodes.NewType" }) {
+            archiveRoot.getNodeTypes().put(elementId, type(new NodeType(), elementId, "other-types"));
+        }
+        archiveRoot.getRelationshipTypes().put("org.alien4cloud.relationships.HostedOn",
+                type(new RelationshipType(), "org.alien4cloud.relationships.HostedOn", "other-types"));
+        archiveRoot.getDataTypes().put("org.alien4cloud.datatypes.Credential",
+                type(new DataType(), "org.alien4cloud.datatypes.Credential", "other-types"));
+        try {
+            archiveIndexer.importArchive(archiveRoot, null, null, Lists.newArrayList());
+            Assert.fail("The archive defines types of an other archive");
+        } catch (ToscaTypeAlreadyDefinedInOtherCSAR e) {
+            // every conflict is reported at once, sorted by element id
+            Assert.assertEquals(Lists.newArrayList(
+                    "Tosca type: org.alien4cloud.datatypes.Credential, version: 1.0.0 is already defined in archive normative-types:1.0.0",
+                    "Tosca type: org.alien4cloud.nodes.Compute, version: 1.0.0 is already defined in archive normative-types:1.0.0",
+                    "Tosca type: org.alien4cloud.nodes.Network, version: 1.0.0 is already defined in archive normative-types:1.0.0",
+                    "Tosca type: org.alien4cloud.relationships.HostedOn, version: 1.0.0 is already defined in archive normative-types:1.0.0"), e.getConflicts());
+        }
+        // nothing is indexed
+        Assert.assertNull(dao.findById(NodeType.class, "org.alien4cloud.nodes.NewType:" + ARCHIVE_VERSION));
+        Assert.assertNull(dao.findById(Csar.class, "other-types:" + ARCHIVE_VERSION));
+
+        // a new version of the archive can define the types
+        Set<String> elementIds = Sets.newHashSet(archiveRoot.getNodeTypes().keySet());
+        elementIds.add("org.alien4cloud.relationships.HostedOn");
+        Assert.assertTrue(archiveIndexer.findToscaTypesDefinedInOtherArchive(ARCHIVE_NAME, "1.1.0", elementIds).isEmpty());
+    }
+
+    @Test
+    public void compareTypeUniquenessCheck() {
+        Set<String> elementIds = indexTypes();
+        // an archive with another name cannot define the types
+        elementIds.add("org.alien4cloud.nodes.NewType");
+        // warm-up
+        checkPerType("other-types", elementIds);
+        archiveIndexer.findToscaTypesDefinedInOtherArchive("other-types", ARCHIVE_VERSION, elementIds);
+
+        long start = System.nanoTime();
+        int perTypeConflicts = checkPerType("other-types", elementIds);
+        long perTypeDuration = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        List<String> conflicts = archiveIndexer.findToscaTypesDefinedInOtherArchive("other-types", ARCHIVE_VERSION, elementIds);
+        long batchedDuration = System.nanoTime() - start;
+        Assert.assertEquals(TYPE_COUNT, perTypeConflicts);
+        Assert.assertEquals(TYPE_COUNT, conflicts.size());
+
+        log.info("Type uniqueness check of {} types: {} ms with one query per type, {} ms batched", elementIds.size(),
+                TimeUnit.NANOSECONDS.toMillis(perTypeDuration), TimeUnit.NANOSECONDS.toMillis(batchedDuration));
+    }
+}
@@ -0,0 +1,124 @@
+package org.alien4cloud.tosca.catalog.index;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alien4cloud.tosca.catalog.events.AfterArchiveDeleted;
+import org.alien4cloud.tosca.model.CSARDependency;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Sets;
+
+public class ToscaTypeCacheTest {
+    private MetricRegistry metricRegistry;
+    private ToscaTypeCache toscaTypeCache;
+    private AtomicInteger loads;
+
+    @Before
+    public void init() {
+        metricRegistry = new MetricRegistry();
+        toscaTypeCache = new ToscaTypeCache();
+        ReflectionTestUtils.setField(toscaTypeCache, "metricRegistry", metricRegistry);
+        ReflectionTestUtils.setField(toscaTypeCache, "maxSize", 2);
+        toscaTypeCache.init();
+        loads = new AtomicInteger();
+    }
+
+    @After
+    public void destroy() {
+        toscaTypeCache.destroy();
+    }
+
+    private NodeType nodeType(String elementId, String archiveName, String archiveVersion) {
+        NodeType nodeType = new NodeType();
+        nodeType.setElementId(elementId);
+        nodeType.setArchiveName(archiveName);
+        nodeType.setArchiveVersion(archiveVersion);
+        return nodeType;
+    }
+
+    private NodeType get(String elementId, Set<CSARDependency> dependencies, NodeType loaded) {
+        return toscaTypeCache.get(NodeType.class, elementId, dependencies, () -> {
+            loads.incrementAndGet();
+            return loaded;
+        });
+    }
+
+    private long count(String name) {
+        return metricRegistry.counter(MetricRegistry.name(ToscaTypeCache.class, name)).getCount();
+    }
+
+    @Test
+    public void typesShouldBeSharedByVersion() {
+        Set<CSARDependency> dependencies = Sets.newHashSet(new CSARDependency("normative", "1.0.0"), new CSARDependency("other", "1.0.0"));
+        NodeType loaded = nodeType("tosca.nodes.Compute", "normative", "1.0.0");
+        Assert.assertSame(loaded, get("tosca.nodes.Compute", dependencies, loaded));
+
+        NodeType cached = get("tosca.nodes.Compute", dependencies, null);
+        Assert.assertEquals("tosca.nodes.Compute", cached.getElementId());
+        // callers get their own copy of the cached type
+        Assert.assertNotSame(loaded, cached);
+        Assert.assertNotSame(cached, get("tosca.nodes.Compute", dependencies, null));
+        Assert.assertEquals(1, loads.get());
+
+        // an other version of the archive is not cached
+        NodeType otherVersion = nodeType("tosca.nodes.Compute", "normative", "1.1.0");
+        Assert.assertSame(otherVersion, get("tosca.nodes.Compute", Sets.newHashSet(new CSARDependency("normative", "1.1.0")), otherVersion));
+        Assert.assertEquals(2, loads.get());
+
+        // elements that are not found are not cached
+        Assert.assertNull(get("tosca.nodes.Unknown", dependencies, null));
+        Assert.assertNull(get("tosca.nodes.Unknown", dependencies, null));
+        Assert.assertEquals(4, loads.get());
+
+        Assert.assertEquals(2, count("hits"));
+        Assert.assertEquals(4, count("misses"));
+    }
+
+    @Test
+    public void typesShouldBeEvicted() {
+        Set<CSARDependency> dependencies = Sets.newHashSet(new CSARDependency("normative", "1.0.0"));
+        get("tosca.nodes.Compute", dependencies, nodeType("tosca.nodes.Compute", "normative", "1.0.0"));
+        get("tosca.nodes.Root", dependencies, nodeType("tosca.nodes.Root", "normative", "1.0.0"));
+        Assert.assertNotNull(get("tosca.nodes.Compute", dependencies, null));
+        Assert.assertEquals(2, loads.get());
+
+        // the archive has been deleted
+        toscaTypeCache.handleArchiveDeleted(new AfterArchiveDeleted(this, "normative:1.0.0"));
+        Assert.assertNull(get("tosca.nodes.Compute", dependencies, null));
+        Assert.assertEquals(3, loads.get());
+
+        // a single type is evicted when it is updated
+        get("tosca.nodes.Compute", dependencies, nodeType("tosca.nodes.Compute", "normative", "1.0.0"));
+        get("tosca.nodes.Root", dependencies, nodeType("tosca.nodes.Root", "normative", "1.0.0"));
+        toscaTypeCache.invalidate(NodeType.class, "tosca.nodes.Compute", "normative:1.0.0");
+        Assert.assertNull(get("tosca.nodes.Compute", dependencies, null));
+        Assert.assertNotNull(get("tosca.nodes.Root", dependencies, null));
+        toscaTypeCache.invalidateAll();
+
+        // least recently used types are evicted when the cache is full
+        get("tosca.nodes.Compute", dependencies, nodeType("tosca.nodes.Compute", "normative", "1.0.0"));
+        get("tosca.nodes.Root", dependencies, nodeType("tosca.nodes.Root", "normative", "1.0.0"));
+        get("tosca.nodes.BlockStorage", dependencies, nodeType("tosca.nodes.BlockStorage", "normative", "1.0.0"));
+        Assert.assertEquals(1, count("evictions"));
+        Assert.assertNotNull(get("tosca.nodes.BlockStorage", dependencies, null));
+    }
+
+    @Test
+    public void typesLoadedBeforeAnInvalidationShouldNotBeCached() {
+        Set<CSARDependency> dependencies = Sets.newHashSet(new CSARDependency("normative", "1.0.0"));
+        NodeType loaded = toscaTypeCache.get(NodeType.class, "tosca.nodes.Compute", dependencies, () -> {
+            // the archive is re-indexed while the type is loaded
+            toscaTypeCache.invalidate("normative:1.0.0");
+            return nodeType("tosca.nodes.Compute", "normative", "1.0.0");
+        });
+        Assert.assertNotNull(loaded);
+        Assert.assertNull(get("tosca.nodes.Compute", dependencies, null));
+    }
+}
@@ -3,12 +3,15 @@ package org.alien4cloud.tosca.catalog.index;
 import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.List;
 
 import javax.annotation.Resource;
 import javax.inject.Inject;
 
 import alien4cloud.dao.IESMetaPropertiesSearchContextBuilder;
 import alien4cloud.dao.IGenericSearchDAO;
+import alien4cloud.exception.IndexingServiceException;
 import alien4cloud.metaproperty.MPSearchContextBuilderMock;
 import alien4cloud.model.common.Tag;
 import com.google.common.collect.Lists;
@@ -67,6 +70,11 @@ public class ToscaTypeIndexerServiceTest {
             return new ToscaTypeIndexerService();
         }
 
+        @Bean
+        public static ToscaTypeCache toscaTypeCache() {
+            return new ToscaTypeCache();
+        }
+
         @Bean
         public static ImageDAO getImageDao() {
             return new ImageDAO();
@@ -112,4 +120,78 @@ public class ToscaTypeIndexerServiceTest {
         hasElementWithTag = (boolean) method.invoke(toscaTypeIndexerService, NodeType.class, "icon", "my_icon");
         Assert.assertTrue(hasElementWithTag);
     }
-}
\ No newline at end of file
+
+    private List<NodeType> nodeTypes(int count) {
+        return nodeTypes(0, count, null);
+    }
+
+    private List<NodeType> nodeTypes(int from, int to, String description) {
+        List<NodeType> nodeTypes = Lists.newArrayList();
+        for (int i = from; i < to; i++) {
+            NodeType nodeType = new NodeType();
+            nodeType.setElementId("element" + i);
+            nodeType.setArchiveName("archive");
+            nodeType.setArchiveVersion("1.0.0-SNAPSHOT");
+            nodeType.setDescription(description);
+            nodeTypes.add(nodeType);
+        }
+        return nodeTypes;
+    }
+
+    @Test
+    public void archiveElementsShouldBeIndexedInBulk() {
+        alienDao.delete(NodeType.class, QueryBuilders.matchAllQuery());
+        toscaTypeIndexerService.indexArchiveElements(nodeTypes(450), Collections.emptyList());
+        // elements are searchable once indexed
+        Assert.assertEquals(450, alienDao.count(NodeType.class, QueryBuilders.matchAllQuery()));
+    }
+
+    @Test
+    public void archiveElementsShouldBeRolledBackOnFailure() {
+        alienDao.delete(NodeType.class, QueryBuilders.matchAllQuery());
+        List<NodeType> nodeTypes = nodeTypes(450);
+        // the element is invalid, it is indexed after the first chunk
+        nodeTypes.get(300).setArchiveVersion(null);
+        try {
+            toscaTypeIndexerService.indexArchiveElements(nodeTypes, Collections.emptyList());
+            Assert.fail("Indexing should fail");
+        } catch (IndexingServiceException e) {
+            // expected
+        }
+        Assert.assertEquals(0, alienDao.count(NodeType.class, QueryBuilders.matchAllQuery()));
+    }
+
+    @Test
+    public void previousElementsShouldBeReplaced() {
+        alienDao.delete(NodeType.class, QueryBuilders.matchAllQuery());
+        List<NodeType> previousNodeTypes = nodeTypes(0, 300, "previous");
+        toscaTypeIndexerService.indexArchiveElements(previousNodeTypes, Collections.emptyList());
+
+        toscaTypeIndexerService.indexArchiveElements(nodeTypes(100, 450, "new"), previousNodeTypes);
+        // previous elements that are not defined anymore are deleted, the other ones are overwritten
+        Assert.assertEquals(350, alienDao.count(NodeType.class, QueryBuilders.matchAllQuery()));
+        Assert.assertNull(alienDao.findById(NodeType.class, previousNodeTypes.get(0).getId()));
+        Assert.assertEquals("new", alienDao.findById(NodeType.class, previousNodeTypes.get(200).getId()).getDescription());
+    }
+
+    @Test
+    public void previousElementsShouldBeRestoredOnFailure() {
+        alienDao.delete(NodeType.class, QueryBuilders.matchAllQuery());
+        List<NodeType> previousNodeTypes = nodeTypes(0, 300, "previous");
+        toscaTypeIndexerService.indexArchiveElements(previousNodeTypes, Collections.emptyList());
+
+        List<NodeType> nodeTypes = nodeTypes(100, 450, "new");
+        // the element is invalid, it is indexed after the first chunk
+        nodeTypes.get(300).setArchiveVersion(null);
+        try {
+            toscaTypeIndexerService.indexArchiveElements(nodeTypes, previousNodeTypes);
+            Assert.fail("Indexing should fail");
+        } catch (IndexingServiceException e) {
+            // expected
+        }
+        // the elements of the previous version are still indexed, including the ones that were overwritten
+        Assert.assertEquals(300, alienDao.count(NodeType.class, QueryBuilders.matchAllQuery()));
+        Assert.assertNotNull(alienDao.findById(NodeType.class, previousNodeTypes.get(0).getId()));
+        Assert.assertEquals("previous", alienDao.findById(NodeType.class, previousNodeTypes.get(200).getId()).getDescription());
+    }
+}
@@ -0,0 +1,188 @@
+package org.alien4cloud.tosca.editor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.alien4cloud.tosca.catalog.index.CsarService;
+import org.alien4cloud.tosca.editor.exception.EditionConcurrencyException;
+import org.alien4cloud.tosca.editor.operations.AbstractEditorOperation;
+import org.alien4cloud.tosca.editor.processors.IEditorOperationProcessor;
+import org.alien4cloud.tosca.editor.services.EditorTopologyRecoveryHelperService;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.topology.TopologyDTOBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Lists;
+
+import alien4cloud.component.repository.IFileRepository;
+import alien4cloud.security.model.User;
+import alien4cloud.topology.TopologyService;
+import alien4cloud.topology.TopologyServiceCore;
+import alien4cloud.utils.FileUtil;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Check that the operations of users editing topologies concurrently are all applied.
+ */
+@Slf4j
+public class EditorServiceConcurrencyTest {
+    /** Simulated processing time of an operation. */
+    private static final long OPERATION_MILLIS = 2;
+
+    private Path gitPath;
+    private EditionContextManager editionContextManager;
+    private EditorService editorService;
+
+    public static class SleepOperation extends AbstractEditorOperation {
+        @Override
+        public String commitMessage() {
+            return "sleep";
+        }
+    }
+
+    @Before
+    public void init() throws Exception {
+        gitPath = Files.createTempDirectory("editor-concurrency");
+        CsarService csarService = Mockito.mock(CsarService.class);
+        Mockito.when(csarService.getOrFail(Mockito.anyString())).thenAnswer(new Answer<Csar>() {
+            @Override
+            public Csar answer(InvocationOnMock invocation) throws Throwable {
+                return new Csar((String) invocation.getArguments()[0], "1.0.0-SNAPSHOT");
+            }
+        });
+        TopologyServiceCore topologyServiceCore = Mockito.mock(TopologyServiceCore.class);
+        Mockito.when(topologyServiceCore.getOrFail(Mockito.anyString())).thenAnswer(new Answer<Topology>() {
+            @Override
+            public Topology answer(InvocationOnMock invocation) throws Throwable {
+                Topology topology = new Topology();
+                topology.setId((String) invocation.getArguments()[0]);
+                return topology;
+            }
+        });
+        EditorRepositoryService repositoryService = Mockito.mock(EditorRepositoryService.class);
+        Mockito.when(repositoryService.createGitDirectory(Mockito.any(Csar.class))).thenReturn(gitPath);
+
+        editionContextManager = new EditionContextManager();
+        ReflectionTestUtils.setField(editionContextManager, "csarService", csarService);
+        ReflectionTestUtils.setField(editionContextManager, "topologyServiceCore", topologyServiceCore);
+        ReflectionTestUtils.setField(editionContextManager, "repositoryService", repositoryService);
+        ReflectionTestUtils.setField(editionContextManager, "artifactRepository", Mockito.mock(IFileRepository.class));
+        editionContextManager.setup();
+
+        editorService = new EditorService();
+        ReflectionTestUtils.setField(editorService, "editionContextManager", editionContextManager);
+        ReflectionTestUtils.setField(editorService, "topologyService", Mockito.mock(TopologyService.class));
+        ReflectionTestUtils.setField(editorService, "recoveryHelperService", Mockito.mock(EditorTopologyRecoveryHelperService.class));
+        ReflectionTestUtils.setField(editorService, "dtoBuilder", Mockito.mock(TopologyDTOBuilder.class));
+        Map<Class<?>, IEditorOperationProcessor<?>> processorMap = (Map<Class<?>, IEditorOperationProcessor<?>>) ReflectionTestUtils.getField(editorService,
+                "processorMap");
+        processorMap.put(SleepOperation.class, new IEditorOperationProcessor<SleepOperation>() {
+            @Override
+            public void process(Csar csar, Topology topology, SleepOperation operation) {
+                try {
+                    Thread.sleep(OPERATION_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+    }
+
+    @After
+    public void destroy() throws Exception {
+        editionContextManager.clearCache();
+        FileUtil.delete(gitPath);
+    }
+
+    /**
+     * Every user performs operations on one topology, retrying when an other user edited the topology in the meantime.
+     *
+     * @return The number of operations per second.
+     */
+    protected double run(String prefix, int topologyCount, int users, int operationsPerUser) throws Exception {
+        Map<String, String> lastOperationIds = new ConcurrentHashMap<>();
+        AtomicInteger conflicts = new AtomicInteger();
+        ExecutorService executorService = Executors.newFixedThreadPool(users);
+        try {
+            List<Future<?>> futures = Lists.newArrayList();
+            long start = System.nanoTime();
+            for (int i = 0; i < users; i++) {
+                String topologyId = prefix + (i % topologyCount);
+                futures.add(executorService.submit(() -> {
+                    User user = new User();
+                    user.setUsername("architect");
+                    SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user, "", "ADMIN"));
+                    try {
+                        int done = 0;
+                        while (done < operationsPerUser) {
+                            SleepOperation operation = new SleepOperation();
+                            operation.setPreviousOperationId(lastOperationIds.get(topologyId));
+                            try {
+                                editorService.execute(topologyId, operation);
+                                lastOperationIds.put(topologyId, operation.getId());
+                                done++;
+                            } catch (EditionConcurrencyException e) {
+                                // an other user edited the topology, refresh and retry
+                                conflicts.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        SecurityContextHolder.clearContext();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long duration = System.nanoTime() - start;
+            double throughput = users * operationsPerUser * 1e9 / duration;
+            log.info("{} users on {} topologies: {} operations/s, {} conflicts", users, topologyCount, (int) throughput, conflicts.get());
+            return throughput;
+        } finally {
+            executorService.shutdownNow();
+            executorService.awaitTermination(1, TimeUnit.MINUTES);
+        }
+    }
+
+    /**
+     * Get the number of operations recorded for a topology.
+     */
+    protected int getOperationCount(String topologyId) throws Exception {
+        editionContextManager.init(topologyId);
+        try {
+            return EditionContextManager.get().getOperations().size();
+        } finally {
+            editionContextManager.destroy();
+        }
+    }
+
+    @Test
+    public void concurrentOperationsShouldAllBeApplied() throws Exception {
+        int users = 4;
+        int operationsPerUser = 10;
+        run("single-", 1, users, operationsPerUser);
+        Assert.assertEquals(users * operationsPerUser, getOperationCount("single-0"));
+
+        run("topologies-", 2, users, operationsPerUser);
+        Assert.assertEquals(users * operationsPerUser / 2, getOperationCount("topologies-0"));
+        Assert.assertEquals(users * operationsPerUser / 2, getOperationCount("topologies-1"));
+    }
+}
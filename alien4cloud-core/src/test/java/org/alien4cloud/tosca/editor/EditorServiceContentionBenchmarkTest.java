@@ -0,0 +1,26 @@
+package org.alien4cloud.tosca.editor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Measure the editor throughput when a fixed number of users edit a growing number of topologies concurrently, the applied operations are checked by
+ * {@link EditorServiceConcurrencyTest}.
+ */
+public class EditorServiceContentionBenchmarkTest extends EditorServiceConcurrencyTest {
+    private static final int USERS = 16;
+    private static final int OPERATIONS_PER_USER = 50;
+
+    @Test
+    public void throughputShouldScaleWithEditedTopologies() throws Exception {
+        // warm-up
+        run("warmup-", USERS, USERS, OPERATIONS_PER_USER);
+
+        double singleTopologyThroughput = run("single-", 1, USERS, OPERATIONS_PER_USER);
+        double throughput = 0;
+        for (int topologyCount = 2; topologyCount <= USERS; topologyCount *= 2) {
+            throughput = run("topologies-" + topologyCount + "-", topologyCount, USERS, OPERATIONS_PER_USER);
+        }
+        Assert.assertTrue(throughput > 2 * singleTopologyThroughput);
+    }
+}
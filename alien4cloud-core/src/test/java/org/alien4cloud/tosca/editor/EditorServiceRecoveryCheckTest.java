@@ -0,0 +1,147 @@
+package org.alien4cloud.tosca.editor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.alien4cloud.tosca.catalog.events.AfterArchiveIndexed;
+import org.alien4cloud.tosca.catalog.events.BeforeArchiveDeleted;
+import org.alien4cloud.tosca.catalog.events.BeforeArchiveIndexed;
+import org.alien4cloud.tosca.catalog.index.CsarService;
+import org.alien4cloud.tosca.editor.operations.AbstractEditorOperation;
+import org.alien4cloud.tosca.editor.processors.IEditorOperationProcessor;
+import org.alien4cloud.tosca.editor.services.EditorTopologyRecoveryHelperService;
+import org.alien4cloud.tosca.model.CSARDependency;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.topology.TopologyDTOBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.google.common.collect.Sets;
+
+import alien4cloud.component.repository.IFileRepository;
+import alien4cloud.security.model.User;
+import alien4cloud.topology.TopologyService;
+import alien4cloud.topology.TopologyServiceCore;
+import alien4cloud.tosca.model.ArchiveRoot;
+import alien4cloud.utils.FileUtil;
+
+/**
+ * Check that the topology recovery is checked against the catalog only when an archive used by the topology changed.
+ */
+public class EditorServiceRecoveryCheckTest {
+    private static final String TOPOLOGY_ID = "topology:1.0.0-SNAPSHOT";
+
+    private Path gitPath;
+    private EditionContextManager editionContextManager;
+    private EditorTopologyRecoveryHelperService recoveryHelperService;
+    private EditorService editorService;
+    private String lastOperationId;
+
+    public static class NoopOperation extends AbstractEditorOperation {
+        @Override
+        public String commitMessage() {
+            return "noop";
+        }
+    }
+
+    @Before
+    public void init() throws Exception {
+        gitPath = Files.createTempDirectory("editor-recovery");
+        CsarService csarService = Mockito.mock(CsarService.class);
+        Mockito.when(csarService.getOrFail(TOPOLOGY_ID)).thenReturn(new Csar("topology", "1.0.0-SNAPSHOT"));
+        TopologyServiceCore topologyServiceCore = Mockito.mock(TopologyServiceCore.class);
+        Mockito.when(topologyServiceCore.getOrFail(TOPOLOGY_ID)).thenAnswer(new Answer<Topology>() {
+            @Override
+            public Topology answer(InvocationOnMock invocation) throws Throwable {
+                Topology topology = new Topology();
+                topology.setId(TOPOLOGY_ID);
+                topology.setDependencies(Sets.newHashSet(new CSARDependency("tosca-normative-types", "1.0.0", "hash")));
+                return topology;
+            }
+        });
+        EditorRepositoryService repositoryService = Mockito.mock(EditorRepositoryService.class);
+        Mockito.when(repositoryService.createGitDirectory(Mockito.any(Csar.class))).thenReturn(gitPath);
+
+        editionContextManager = new EditionContextManager();
+        ReflectionTestUtils.setField(editionContextManager, "csarService", csarService);
+        ReflectionTestUtils.setField(editionContextManager, "topologyServiceCore", topologyServiceCore);
+        ReflectionTestUtils.setField(editionContextManager, "repositoryService", repositoryService);
+        ReflectionTestUtils.setField(editionContextManager, "artifactRepository", Mockito.mock(IFileRepository.class));
+        editionContextManager.setup();
+
+        recoveryHelperService = Mockito.mock(EditorTopologyRecoveryHelperService.class);
+        editorService = new EditorService();
+        ReflectionTestUtils.setField(editorService, "editionContextManager", editionContextManager);
+        ReflectionTestUtils.setField(editorService, "topologyService", Mockito.mock(TopologyService.class));
+        ReflectionTestUtils.setField(editorService, "recoveryHelperService", recoveryHelperService);
+        ReflectionTestUtils.setField(editorService, "dtoBuilder", Mockito.mock(TopologyDTOBuilder.class));
+        Map<Class<?>, IEditorOperationProcessor<?>> processorMap = (Map<Class<?>, IEditorOperationProcessor<?>>) ReflectionTestUtils.getField(editorService,
+                "processorMap");
+        processorMap.put(NoopOperation.class, new IEditorOperationProcessor<NoopOperation>() {
+            @Override
+            public void process(Csar csar, Topology topology, NoopOperation operation) {
+            }
+        });
+
+        User user = new User();
+        user.setUsername("architect");
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user, "", "ADMIN"));
+    }
+
+    @After
+    public void destroy() throws Exception {
+        SecurityContextHolder.clearContext();
+        editionContextManager.clearCache();
+        FileUtil.delete(gitPath);
+    }
+
+    private void execute() {
+        NoopOperation operation = new NoopOperation();
+        operation.setPreviousOperationId(lastOperationId);
+        editorService.execute(TOPOLOGY_ID, operation);
+        lastOperationId = operation.getId();
+    }
+
+    private ArchiveRoot archiveRoot(String name, String version) {
+        ArchiveRoot archiveRoot = new ArchiveRoot();
+        archiveRoot.setArchive(new Csar(name, version));
+        return archiveRoot;
+    }
+
+    @Test
+    public void recoveryShouldBeCheckedOnlyWhenADependencyChanged() {
+        execute();
+        execute();
+        execute();
+        Mockito.verify(recoveryHelperService, Mockito.times(1)).buildRecoveryOperation(Mockito.any(Topology.class));
+
+        // an archive that the topology does not use
+        editionContextManager.handleArchiveUpdated(new BeforeArchiveIndexed(this, archiveRoot("other-types", "1.0.0")));
+        execute();
+        Mockito.verify(recoveryHelperService, Mockito.times(1)).buildRecoveryOperation(Mockito.any(Topology.class));
+
+        // a dependency of the topology is indexed again
+        editionContextManager.handleArchiveUpdated(new BeforeArchiveIndexed(this, archiveRoot("tosca-normative-types", "1.0.0")));
+        execute();
+        execute();
+        Mockito.verify(recoveryHelperService, Mockito.times(2)).buildRecoveryOperation(Mockito.any(Topology.class));
+
+        editionContextManager.handleArchiveUpdated(new AfterArchiveIndexed(this, archiveRoot("tosca-normative-types", "1.0.0")));
+        execute();
+        Mockito.verify(recoveryHelperService, Mockito.times(3)).buildRecoveryOperation(Mockito.any(Topology.class));
+
+        editionContextManager.handleArchiveRemoved(new BeforeArchiveDeleted(this, "tosca-normative-types:1.0.0"));
+        execute();
+        execute();
+        Mockito.verify(recoveryHelperService, Mockito.times(4)).buildRecoveryOperation(Mockito.any(Topology.class));
+    }
+}
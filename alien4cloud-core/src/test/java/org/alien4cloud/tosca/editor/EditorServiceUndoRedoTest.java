@@ -0,0 +1,161 @@
+package org.alien4cloud.tosca.editor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+
+import org.alien4cloud.tosca.catalog.index.CsarService;
+import org.alien4cloud.tosca.editor.operations.AbstractEditorOperation;
+import org.alien4cloud.tosca.editor.processors.IEditorOperationProcessor;
+import org.alien4cloud.tosca.editor.services.EditorTopologyRecoveryHelperService;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.topology.TopologyDTOBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import alien4cloud.component.repository.IFileRepository;
+import alien4cloud.security.model.User;
+import alien4cloud.topology.TopologyService;
+import alien4cloud.topology.TopologyServiceCore;
+import alien4cloud.utils.FileUtil;
+
+/**
+ * Check that undo and redo from checkpoints give the same topology as replaying all operations.
+ */
+public class EditorServiceUndoRedoTest {
+    private static final String TOPOLOGY_ID = "topology:1.0.0-SNAPSHOT";
+    private static final int OPERATIONS = 50;
+
+    private Path gitPath;
+    private TopologyServiceCore topologyServiceCore;
+    private EditionContextManager editionContextManager;
+    private EditorService editorService;
+
+    /** Append a value to the description of the topology. */
+    public static class AppendOperation extends AbstractEditorOperation {
+        private String value;
+
+        @Override
+        public String commitMessage() {
+            return "append " + value;
+        }
+    }
+
+    @Before
+    public void init() throws Exception {
+        gitPath = Files.createTempDirectory("editor-undo");
+        CsarService csarService = Mockito.mock(CsarService.class);
+        Mockito.when(csarService.getOrFail(TOPOLOGY_ID)).thenReturn(new Csar("topology", "1.0.0-SNAPSHOT"));
+        topologyServiceCore = Mockito.mock(TopologyServiceCore.class);
+        Mockito.when(topologyServiceCore.getOrFail(TOPOLOGY_ID)).thenAnswer(new Answer<Topology>() {
+            @Override
+            public Topology answer(InvocationOnMock invocation) throws Throwable {
+                Topology topology = new Topology();
+                topology.setId(TOPOLOGY_ID);
+                topology.setDescription("");
+                return topology;
+            }
+        });
+        EditorRepositoryService repositoryService = Mockito.mock(EditorRepositoryService.class);
+        Mockito.when(repositoryService.createGitDirectory(Mockito.any(Csar.class))).thenReturn(gitPath);
+
+        editionContextManager = new EditionContextManager();
+        ReflectionTestUtils.setField(editionContextManager, "csarService", csarService);
+        ReflectionTestUtils.setField(editionContextManager, "topologyServiceCore", topologyServiceCore);
+        ReflectionTestUtils.setField(editionContextManager, "repositoryService", repositoryService);
+        ReflectionTestUtils.setField(editionContextManager, "artifactRepository", Mockito.mock(IFileRepository.class));
+        editionContextManager.setup();
+
+        editorService = new EditorService();
+        ReflectionTestUtils.setField(editorService, "editionContextManager", editionContextManager);
+        ReflectionTestUtils.setField(editorService, "topologyService", Mockito.mock(TopologyService.class));
+        ReflectionTestUtils.setField(editorService, "recoveryHelperService", Mockito.mock(EditorTopologyRecoveryHelperService.class));
+        ReflectionTestUtils.setField(editorService, "dtoBuilder", Mockito.mock(TopologyDTOBuilder.class));
+        ReflectionTestUtils.setField(editorService, "checkpointInterval", 7);
+        ReflectionTestUtils.setField(editorService, "maxCheckpoints", 3);
+        Map<Class<?>, IEditorOperationProcessor<?>> processorMap = (Map<Class<?>, IEditorOperationProcessor<?>>) ReflectionTestUtils.getField(editorService,
+                "processorMap");
+        processorMap.put(AppendOperation.class, new IEditorOperationProcessor<AppendOperation>() {
+            @Override
+            public void process(Csar csar, Topology topology, AppendOperation operation) {
+                topology.setDescription(topology.getDescription() + operation.value);
+            }
+        });
+
+        User user = new User();
+        user.setUsername("architect");
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken(user, "", "ADMIN"));
+    }
+
+    @After
+    public void destroy() throws Exception {
+        SecurityContextHolder.clearContext();
+        editionContextManager.clearCache();
+        FileUtil.delete(gitPath);
+    }
+
+    private String lastOperationId() {
+        editionContextManager.init(TOPOLOGY_ID);
+        try {
+            EditionContext context = EditionContextManager.get();
+            return context.getLastOperationIndex() == -1 ? null : context.getOperations().get(context.getLastOperationIndex()).getId();
+        } finally {
+            editionContextManager.destroy();
+        }
+    }
+
+    private String description() {
+        editionContextManager.init(TOPOLOGY_ID);
+        try {
+            return EditionContextManager.getTopology().getDescription();
+        } finally {
+            editionContextManager.destroy();
+        }
+    }
+
+    private String expectedDescription(int at) {
+        StringBuilder description = new StringBuilder();
+        for (int i = 0; i <= at; i++) {
+            description.append(i).append(',');
+        }
+        return description.toString();
+    }
+
+    @Test
+    public void undoRedoShouldRestoreTheTopologyOfTheOperation() {
+        for (int i = 0; i < OPERATIONS; i++) {
+            AppendOperation operation = new AppendOperation();
+            operation.value = i + ",";
+            operation.setPreviousOperationId(lastOperationId());
+            editorService.execute(TOPOLOGY_ID, operation);
+        }
+        Assert.assertEquals(expectedDescription(OPERATIONS - 1), description());
+
+        Random random = new Random(0);
+        for (int i = 0; i < 100; i++) {
+            int at = random.nextInt(OPERATIONS + 1) - 1;
+            editorService.undoRedo(TOPOLOGY_ID, at, lastOperationId());
+            Assert.assertEquals(expectedDescription(at), description());
+        }
+
+        // a new operation drops the operations to redo and their checkpoints
+        editorService.undoRedo(TOPOLOGY_ID, 9, lastOperationId());
+        AppendOperation operation = new AppendOperation();
+        operation.value = "new,";
+        operation.setPreviousOperationId(lastOperationId());
+        editorService.execute(TOPOLOGY_ID, operation);
+        editorService.undoRedo(TOPOLOGY_ID, 9, lastOperationId());
+        editorService.undoRedo(TOPOLOGY_ID, 10, lastOperationId());
+        Assert.assertEquals(expectedDescription(9) + "new,", description());
+    }
+}
@@ -61,6 +61,7 @@ import alien4cloud.model.components.CSARSource;
 import alien4cloud.rest.utils.JsonUtil;
 import alien4cloud.security.model.User;
 import alien4cloud.topology.TopologyDTO;
+import alien4cloud.tosca.context.ToscaContext;
 import alien4cloud.tosca.parser.ParserTestUtil;
 import alien4cloud.tosca.parser.ParsingErrorLevel;
 import alien4cloud.tosca.parser.ParsingResult;
@@ -240,6 +241,10 @@ public class EditorStepDefs {
         for (Class<?> type : typesToClean) {
             alienDAO.delete(type, QueryBuilders.matchAllQuery());
         }
+        // types are deleted without going through the archive indexer
+        if (ToscaContext.getToscaTypeCache() != null) {
+            ToscaContext.getToscaTypeCache().invalidateAll();
+        }
     }
 
     @When("^I get the edited topology$")
@@ -0,0 +1,162 @@
+package org.alien4cloud.tosca.topology;
+
+import java.util.Map;
+
+import org.alien4cloud.tosca.editor.EditionContext;
+import org.alien4cloud.tosca.editor.operations.nodetemplate.RenameNodeOperation;
+import org.alien4cloud.tosca.model.Csar;
+import org.alien4cloud.tosca.model.definitions.ScalarPropertyValue;
+import org.alien4cloud.tosca.model.templates.NodeTemplate;
+import org.alien4cloud.tosca.model.templates.Topology;
+import org.alien4cloud.tosca.model.types.NodeType;
+import org.alien4cloud.tosca.model.workflow.Workflow;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import alien4cloud.topology.TopologyDeltaDTO;
+import alien4cloud.tosca.context.ToscaContext;
+import alien4cloud.tosca.model.ArchiveRoot;
+
+/**
+ * Check the changes returned to the editor clients in delta mode.
+ */
+public class TopologyDTOBuilderTest {
+    private static final String COMPUTE_TYPE = "test.nodes.Compute";
+
+    private TopologyDTOBuilder topologyDTOBuilder = new TopologyDTOBuilder();
+    private EditionContext context;
+
+    private NodeTemplate nodeTemplate(String name, String size) {
+        NodeTemplate nodeTemplate = new NodeTemplate();
+        nodeTemplate.setName(name);
+        nodeTemplate.setType(COMPUTE_TYPE);
+        nodeTemplate.setProperties(Maps.newHashMap());
+        nodeTemplate.getProperties().put("size", new ScalarPropertyValue(size));
+        return nodeTemplate;
+    }
+
+    private Workflow workflow(String name) {
+        Workflow workflow = new Workflow();
+        workflow.setName(name);
+        workflow.setStandard(true);
+        return workflow;
+    }
+
+    @Before
+    public void init() {
+        NodeType computeType = new NodeType();
+        computeType.setElementId(COMPUTE_TYPE);
+        computeType.setArchiveName("types");
+        computeType.setArchiveVersion("1.0.0");
+        ArchiveRoot types = new ArchiveRoot();
+        types.setArchive(new Csar("types", "1.0.0"));
+        types.getNodeTypes().put(COMPUTE_TYPE, computeType);
+
+        Topology topology = new Topology();
+        topology.setArchiveName("topology");
+        topology.setArchiveVersion("1.0.0-SNAPSHOT");
+        topology.setDependencies(Sets.newHashSet());
+        Map<String, NodeTemplate> nodeTemplates = Maps.newLinkedHashMap();
+        nodeTemplates.put("Updated", nodeTemplate("Updated", "small"));
+        nodeTemplates.put("Removed", nodeTemplate("Removed", "small"));
+        nodeTemplates.put("Unchanged", nodeTemplate("Unchanged", "small"));
+        topology.setNodeTemplates(nodeTemplates);
+        Map<String, Workflow> workflows = Maps.newLinkedHashMap();
+        workflows.put("install", workflow("install"));
+        workflows.put("uninstall", workflow("uninstall"));
+        workflows.put("start", workflow("start"));
+        topology.setWorkflows(workflows);
+
+        context = new EditionContext();
+        context.setCsar(new Csar("topology", "1.0.0-SNAPSHOT"));
+        context.setTopology(topology);
+        context.setToscaContext(new ToscaContext.Context(topology.getDependencies()));
+        context.getToscaContext().register(types);
+        ToscaContext.set(context.getToscaContext());
+    }
+
+    @After
+    public void destroy() {
+        ToscaContext.destroy();
+    }
+
+    private void executeOperation() {
+        RenameNodeOperation operation = new RenameNodeOperation();
+        operation.setId("operation-" + context.getOperations().size());
+        context.getOperations().add(operation);
+        context.setLastOperationIndex(context.getOperations().size() - 1);
+    }
+
+    @Test
+    public void deltaShouldContainOnlyTheChangesSinceTheKnownVersion() {
+        TopologyDeltaDTO fullDTO = topologyDTOBuilder.buildTopologyDeltaDTO(context, null);
+        // no known version, the client gets the full topology
+        Assert.assertNull(fullDTO.getBaseVersion());
+        Assert.assertNotNull(fullDTO.getTopology());
+        Assert.assertEquals(3, fullDTO.getTopology().getNodeTemplates().size());
+        Assert.assertTrue(fullDTO.getNodeTypes().containsKey(COMPUTE_TYPE));
+
+        Topology topology = context.getTopology();
+        topology.getNodeTemplates().get("Updated").getProperties().put("size", new ScalarPropertyValue("large"));
+        topology.getNodeTemplates().remove("Removed");
+        topology.getNodeTemplates().put("Added", nodeTemplate("Added", "small"));
+        topology.getWorkflows().get("install").setDescription("updated");
+        topology.getWorkflows().remove("uninstall");
+        topology.getWorkflows().put("custom", workflow("custom"));
+        executeOperation();
+
+        TopologyDeltaDTO deltaDTO = topologyDTOBuilder.buildTopologyDeltaDTO(context, fullDTO.getVersion());
+        Assert.assertEquals(fullDTO.getVersion(), deltaDTO.getBaseVersion());
+        Assert.assertNotEquals(fullDTO.getVersion(), deltaDTO.getVersion());
+        Assert.assertEquals(Sets.newHashSet("Updated", "Added"), deltaDTO.getUpdatedNodeTemplates().keySet());
+        Assert.assertEquals("large",
+                ((ScalarPropertyValue) deltaDTO.getUpdatedNodeTemplates().get("Updated").getProperties().get("size")).getValue());
+        Assert.assertEquals(Sets.newHashSet("Removed"), deltaDTO.getRemovedNodeTemplates());
+        Assert.assertEquals(Sets.newHashSet("install", "custom"), deltaDTO.getUpdatedWorkflows().keySet());
+        Assert.assertEquals(Sets.newHashSet("uninstall"), deltaDTO.getRemovedWorkflows());
+        // the other fields of the topology and the types are unchanged
+        Assert.assertNull(deltaDTO.getTopology());
+        Assert.assertTrue(deltaDTO.getNodeTypes().isEmpty());
+        Assert.assertEquals(0, deltaDTO.getOperationsOffset());
+        Assert.assertEquals(1, deltaDTO.getOperations().size());
+
+        // the same version has no changes
+        TopologyDeltaDTO emptyDeltaDTO = topologyDTOBuilder.buildTopologyDeltaDTO(context, deltaDTO.getVersion());
+        Assert.assertTrue(emptyDeltaDTO.getUpdatedNodeTemplates().isEmpty());
+        Assert.assertTrue(emptyDeltaDTO.getRemovedNodeTemplates().isEmpty());
+        Assert.assertTrue(emptyDeltaDTO.getUpdatedWorkflows().isEmpty());
+        Assert.assertTrue(emptyDeltaDTO.getRemovedWorkflows().isEmpty());
+        Assert.assertEquals(1, emptyDeltaDTO.getOperationsOffset());
+        Assert.assertTrue(emptyDeltaDTO.getOperations().isEmpty());
+
+        // unknown versions get the full topology
+        TopologyDeltaDTO unknownVersionDTO = topologyDTOBuilder.buildTopologyDeltaDTO(context, "unknown");
+        Assert.assertNull(unknownVersionDTO.getBaseVersion());
+        Assert.assertEquals(3, unknownVersionDTO.getTopology().getNodeTemplates().size());
+    }
+
+    @Test
+    public void pendingWorkflowsShouldBeSentWithoutBeingFinalized() {
+        Workflow install = context.getTopology().getWorkflows().get("install");
+        install.setPendingFinalization(true);
+        executeOperation();
+
+        TopologyDeltaDTO fullDTO = topologyDTOBuilder.buildTopologyDeltaDTO(context, null);
+        // the client gets the scoped workflow with the flag, building the DTO does not change the edited topology
+        Assert.assertTrue(fullDTO.getTopology().getWorkflows().get("install").isPendingFinalization());
+        Assert.assertTrue(install.isPendingFinalization());
+        Assert.assertSame(install, context.getTopology().getWorkflows().get("install"));
+
+        // once finalized (save or explicit operation) the workflow is sent again
+        install.setPendingFinalization(false);
+        executeOperation();
+        TopologyDeltaDTO deltaDTO = topologyDTOBuilder.buildTopologyDeltaDTO(context, fullDTO.getVersion());
+        Assert.assertEquals(Sets.newHashSet("install"), deltaDTO.getUpdatedWorkflows().keySet());
+        Assert.assertFalse(deltaDTO.getUpdatedWorkflows().get("install").isPendingFinalization());
+    }
+}
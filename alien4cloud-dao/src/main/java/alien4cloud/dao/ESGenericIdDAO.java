@@ -6,14 +6,22 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.get.MultiGetItemResponse;
 import org.elasticsearch.action.get.MultiGetResponse;
 import org.elasticsearch.common.collect.Lists;
 import org.elasticsearch.mapping.MappingBuilder;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import alien4cloud.dao.model.EsRefreshPolicy;
+import alien4cloud.dao.model.RefreshPolicy;
 import alien4cloud.exception.IndexingServiceException;
 import alien4cloud.model.common.IDatableResource;
 import lombok.SneakyThrows;
@@ -24,6 +32,9 @@ import lombok.SneakyThrows;
  * @author luc boutier
  */
 public abstract class ESGenericIdDAO extends ESIndexMapper implements IGenericIdDAO {
+    /** Cache of the refresh policy resolved for each saved class. */
+    private final Map<Class<?>, RefreshPolicy> refreshPolicies = Maps.newConcurrentMap();
+    private final IndexRefresher indexRefresher = new IndexRefresher();
 
     @Override
     public <T> boolean exist(Class<T> clazz, String id) {
@@ -47,33 +58,86 @@ public abstract class ESGenericIdDAO extends ESIndexMapper implements IGenericId
         }
     }
 
+    /**
+     * Get the refresh policy to apply when writing instances of the given class.
+     *
+     * @param clazz The class of the data to write.
+     * @return The policy defined by the {@link EsRefreshPolicy} annotation of the class or {@link RefreshPolicy#IMMEDIATE} if none is defined.
+     */
+    protected RefreshPolicy getRefreshPolicy(Class<?> clazz) {
+        return refreshPolicies.computeIfAbsent(clazz, key -> {
+            EsRefreshPolicy annotation = key.getAnnotation(EsRefreshPolicy.class);
+            return annotation == null ? RefreshPolicy.IMMEDIATE : annotation.value();
+        });
+    }
+
+    /**
+     * Wait for the given indices to be refreshed if required by the policy. IMMEDIATE is handled directly on the write request.
+     *
+     * @param refreshPolicy The refresh policy of the write operation.
+     * @param indices The indices that have been written.
+     */
+    protected void applyRefreshPolicy(RefreshPolicy refreshPolicy, String... indices) {
+        if (RefreshPolicy.WAIT_FOR.equals(refreshPolicy)) {
+            for (String index : indices) {
+                indexRefresher.waitForRefresh(getClient(), index);
+            }
+        }
+    }
+
     @Override
-    @SneakyThrows({ IOException.class })
     public <T> void save(T data) {
+        save(data, getRefreshPolicy(data.getClass()));
+    }
+
+    @Override
+    @SneakyThrows({ IOException.class })
+    public <T> void save(T data, RefreshPolicy refreshPolicy) {
         String indexName = getIndexForType(data.getClass());
         String typeName = MappingBuilder.indexTypeFromClass(data.getClass());
 
         updateDate(data);
         String json = getJsonMapper().writeValueAsString(data);
-        getClient().prepareIndex(indexName, typeName).setOperationThreaded(false).setSource(json).setRefresh(true).execute().actionGet();
+        getClient().prepareIndex(indexName, typeName).setOperationThreaded(false).setSource(json).setRefresh(RefreshPolicy.IMMEDIATE.equals(refreshPolicy))
+                .execute().actionGet();
+        applyRefreshPolicy(refreshPolicy, indexName);
     }
 
     @Override
-    @SneakyThrows({ IOException.class })
     public <T> void save(T[] entities) {
         if (entities == null || entities.length == 0) {
             return;
         }
-        BulkRequestBuilder bulkRequestBuilder = getClient().prepareBulk().setRefresh(true);
+        // entities may be of different types, use the strictest policy.
+        RefreshPolicy refreshPolicy = RefreshPolicy.NONE;
+        for (T data : entities) {
+            refreshPolicy = refreshPolicy.strictest(getRefreshPolicy(data.getClass()));
+        }
+        save(entities, refreshPolicy);
+    }
+
+    @Override
+    @SneakyThrows({ IOException.class })
+    public <T> void save(T[] entities, RefreshPolicy refreshPolicy) {
+        if (entities == null || entities.length == 0) {
+            return;
+        }
+        BulkRequestBuilder bulkRequestBuilder = getClient().prepareBulk().setRefresh(RefreshPolicy.IMMEDIATE.equals(refreshPolicy));
+        Set<String> indices = Sets.newHashSet();
         for (T data : entities) {
             String indexName = getIndexForType(data.getClass());
             String typeName = MappingBuilder.indexTypeFromClass(data.getClass());
+            indices.add(indexName);
 
             updateDate(data);
             String json = getJsonMapper().writeValueAsString(data);
             bulkRequestBuilder.add(getClient().prepareIndex(indexName, typeName).setSource(json));
         }
-        bulkRequestBuilder.execute().actionGet();
+        BulkResponse bulkResponse = bulkRequestBuilder.execute().actionGet();
+        if (bulkResponse.hasFailures()) {
+            throw new IndexingServiceException("Failed to save entities: " + bulkResponse.buildFailureMessage());
+        }
+        applyRefreshPolicy(refreshPolicy, indices.toArray(new String[indices.size()]));
     }
 
     @SuppressWarnings("unchecked")
@@ -94,10 +158,10 @@ public abstract class ESGenericIdDAO extends ESIndexMapper implements IGenericId
         ESIndexMapper.getLog().debug("Found one in index [ {} ], type [ {} ], for Id [ {} ].", indexName, typeName, id);
 
         if (abstractType) {
-            return (T) getJsonMapper().readValue(response.getSourceAsString(), getTypesToClasses().get(response.getType()));
+            return (T) readSource(getTypesToClasses().get(response.getType()), response.getSourceAsBytesRef());
         }
 
-        return getJsonMapper().readValue(response.getSourceAsString(), clazz);
+        return readSource(clazz, response.getSourceAsBytesRef());
     }
 
     @Override
@@ -115,7 +179,7 @@ public abstract class ESGenericIdDAO extends ESIndexMapper implements IGenericId
         List<T> result = new ArrayList<>();
         for (MultiGetItemResponse getItemResponse : response.getResponses()) {
             if (getItemResponse.getResponse().isExists()) {
-                result.add(getJsonMapper().readValue(getItemResponse.getResponse().getSourceAsString(), clazz));
+                result.add(readSource(clazz, getItemResponse.getResponse().getSourceAsBytesRef()));
             }
         }
 
@@ -127,7 +191,9 @@ public abstract class ESGenericIdDAO extends ESIndexMapper implements IGenericId
         assertIdNotNullFor(id, "delete");
         String indexName = getIndexForType(clazz);
         String typeName = MappingBuilder.indexTypeFromClass(clazz);
-        getClient().prepareDelete(indexName, typeName, id).setRefresh(true).execute().actionGet();
+        RefreshPolicy refreshPolicy = getRefreshPolicy(clazz);
+        getClient().prepareDelete(indexName, typeName, id).setRefresh(RefreshPolicy.IMMEDIATE.equals(refreshPolicy)).execute().actionGet();
+        applyRefreshPolicy(refreshPolicy, indexName);
     }
 
     private void assertIdNotNullFor(String id, String operation) {
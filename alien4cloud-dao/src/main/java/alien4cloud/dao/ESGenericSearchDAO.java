@@ -1,13 +1,15 @@
 package alien4cloud.dao;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Array;
-import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.annotation.Resource;
@@ -19,6 +21,7 @@ import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.common.lucene.search.function.CombineFunction;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
@@ -34,12 +37,14 @@ import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortBuilders;
 import org.elasticsearch.search.sort.SortOrder;
 
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
 import alien4cloud.dao.model.FacetedSearchFacet;
 import alien4cloud.dao.model.FacetedSearchResult;
 import alien4cloud.dao.model.GetMultipleDataResult;
+import alien4cloud.dao.model.RefreshPolicy;
 import alien4cloud.rest.utils.JsonUtil;
 import alien4cloud.utils.ElasticSearchUtil;
 import alien4cloud.utils.MapUtil;
@@ -53,6 +58,12 @@ import lombok.extern.slf4j.Slf4j;
  */
 @Slf4j
 public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGenericSearchDAO {
+    /** Number of hits fetched per page (per shard for scan requests) when scrolling over results. */
+    private static final int SCROLL_PAGE_SIZE = 500;
+    /** Time to keep a scroll context alive between two pages. */
+    private static final TimeValue SCROLL_KEEP_ALIVE = TimeValue.timeValueMinutes(1);
+    private static final int DELETE_BULK_SIZE = 1000;
+
     @Resource
     private ElasticSearchClient esClient;
     @Resource
@@ -82,34 +93,37 @@ public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGene
         String indexName = getIndexForType(clazz);
         String typeName = MappingBuilder.indexTypeFromClass(clazz);
 
-        // get all elements and then use a bulk delete to remove data.
-        SearchRequestBuilder searchRequestBuilder = getClient().prepareSearch(indexName).setTypes(getTypesFromClass(clazz)).setQuery(query).setNoFields()
-                .setFetchSource(false);
-        searchRequestBuilder.setFrom(0).setSize(1000);
-        SearchResponse response = searchRequestBuilder.execute().actionGet();
-
-        while (somethingFound(response)) {
-            BulkRequestBuilder bulkRequestBuilder = getClient().prepareBulk().setRefresh(true);
-
-            for (int i = 0; i < response.getHits().hits().length; i++) {
-                String id = response.getHits().hits()[i].getId();
-                bulkRequestBuilder.add(getClient().prepareDelete(indexName, typeName, id));
+        // scan all elements ids and then use bulk deletes to remove data.
+        SearchResponse response = getClient().prepareSearch(indexName).setTypes(getTypesFromClass(clazz)).setQuery(query).setNoFields().setFetchSource(false)
+                .setSearchType(SearchType.SCAN).setScroll(SCROLL_KEEP_ALIVE).setSize(SCROLL_PAGE_SIZE).execute().actionGet();
+
+        boolean deleted = false;
+        try (ScrollIterator<String> ids = new ScrollIterator<>(getClient(), response, SCROLL_KEEP_ALIVE, SearchHit::getId)) {
+            Iterator<List<String>> bulks = Iterators.partition(ids, DELETE_BULK_SIZE);
+            while (bulks.hasNext()) {
+                BulkRequestBuilder bulkRequestBuilder = getClient().prepareBulk();
+                for (String id : bulks.next()) {
+                    bulkRequestBuilder.add(getClient().prepareDelete(indexName, typeName, id));
+                }
+                bulkRequestBuilder.execute().actionGet();
+                deleted = true;
             }
+        }
 
-            bulkRequestBuilder.execute().actionGet();
-
-            if (response.getHits().totalHits() == response.getHits().hits().length) {
-                response = null;
+        if (deleted) {
+            // single refresh once all documents are deleted
+            RefreshPolicy refreshPolicy = getRefreshPolicy(clazz);
+            if (RefreshPolicy.IMMEDIATE.equals(refreshPolicy)) {
+                getClient().admin().indices().prepareRefresh(indexName).execute().actionGet();
             } else {
-                response = searchRequestBuilder.execute().actionGet();
+                applyRefreshPolicy(refreshPolicy, indexName);
             }
         }
     }
 
-    @SneakyThrows({ IOException.class })
-    private <T> List<T> doCustomFind(Class<T> clazz, QueryBuilder query, FilterBuilder filter, SortBuilder sortBuilder, int size) {
+    private SearchRequestBuilder prepareCustomSearch(Class<?> clazz, QueryBuilder query, FilterBuilder filter, SortBuilder sortBuilder) {
         String indexName = getIndexForType(clazz);
-        SearchRequestBuilder searchRequestBuilder = getClient().prepareSearch(indexName).setTypes(getTypesFromClass(clazz)).setSize(size);
+        SearchRequestBuilder searchRequestBuilder = getClient().prepareSearch(indexName).setTypes(getTypesFromClass(clazz));
         if (query != null) {
             searchRequestBuilder.setQuery(query);
         }
@@ -119,7 +133,12 @@ public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGene
         if (sortBuilder != null) {
             searchRequestBuilder.addSort(sortBuilder);
         }
-        SearchResponse response = searchRequestBuilder.execute().actionGet();
+        return searchRequestBuilder;
+    }
+
+    @SneakyThrows({ IOException.class })
+    private <T> List<T> doCustomFind(Class<T> clazz, QueryBuilder query, FilterBuilder filter, SortBuilder sortBuilder, int size) {
+        SearchResponse response = prepareCustomSearch(clazz, query, filter, sortBuilder).setSize(size).execute().actionGet();
         if (!somethingFound(response)) {
             return null;
         } else {
@@ -131,6 +150,34 @@ public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGene
         }
     }
 
+    private <T> List<T> doCustomFindAll(Class<T> clazz, QueryBuilder query, FilterBuilder filter, SortBuilder sortBuilder) {
+        try (Stream<T> stream = scroll(prepareCustomSearch(clazz, query, filter, sortBuilder))) {
+            List<T> hits = stream.collect(Collectors.toList());
+            return hits.isEmpty() ? null : hits;
+        }
+    }
+
+    /**
+     * Execute the given search request as a scroll and return a lazy stream over the results.
+     *
+     * @param searchRequestBuilder The search request to execute.
+     * @return A stream over the results, pages are fetched and de-serialized when consumed.
+     */
+    private <T> Stream<T> scroll(SearchRequestBuilder searchRequestBuilder) {
+        SearchResponse response = searchRequestBuilder.setScroll(SCROLL_KEEP_ALIVE).setSize(SCROLL_PAGE_SIZE).execute().actionGet();
+        return new ScrollIterator<T>(getClient(), response, SCROLL_KEEP_ALIVE, this::hitToObject).stream();
+    }
+
+    @Override
+    public <T> Stream<T> stream(Class<T> clazz, QueryBuilder query, FilterBuilder filter) {
+        return scroll(prepareCustomSearch(clazz, query, filter, null));
+    }
+
+    @Override
+    public <T> Stream<T> stream(Class<T> clazz, Map<String, String[]> filters) {
+        return buildQuery(clazz).setFilters(filters).prepareSearch().stream();
+    }
+
     @Override
     public <T> T customFind(Class<T> clazz, QueryBuilder query) {
         return customFind(clazz, query, null);
@@ -148,7 +195,7 @@ public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGene
 
     @Override
     public <T> List<T> customFilterAll(Class<T> clazz, FilterBuilder filter) {
-        return doCustomFind(clazz, null, filter, null, Integer.MAX_VALUE);
+        return doCustomFindAll(clazz, null, filter, null);
     }
 
     @Override
@@ -158,7 +205,7 @@ public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGene
 
     @Override
     public <T> List<T> customFindAll(Class<T> clazz, QueryBuilder query, SortBuilder sortBuilder) {
-        return doCustomFind(clazz, query, null, sortBuilder, Integer.MAX_VALUE);
+        return doCustomFindAll(clazz, query, null, sortBuilder);
     }
 
     @Override
@@ -333,12 +380,15 @@ public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGene
     }
 
     public <T> T hitToObject(Class<T> clazz, SearchHit hit) throws IOException {
-        T obj = (T) getJsonMapper().readValue(hit.getSourceAsString(), clazz);
-        Field generatedId = getClassTogeneratedIdFields().get(clazz);
-        if (generatedId != null) {
+        T obj = readSource(clazz, hit.sourceRef());
+        MethodHandle generatedIdSetter = getGeneratedIdSetter(clazz);
+        if (generatedIdSetter != null) {
             try {
-                generatedId.set(obj, hit.getId());
-            } catch (IllegalAccessException e) {
+                generatedIdSetter.invoke(obj, hit.getId());
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                // invoke declares Throwable: unchecked failures go through, checked ones are only logged
                 log.error("Failed to set id from elastic to declared generated id field.", e);
             }
         }
@@ -579,6 +629,13 @@ public abstract class ESGenericSearchDAO extends ESGenericIdDAO implements IGene
             return toGetMultipleDataResult(clazz, super.execute(from, size), from);
         }
 
+        @Override
+        public Stream<T> stream() {
+            super.alterSearchRequest(searchRequestBuilder -> searchRequestBuilder.setScroll(SCROLL_KEEP_ALIVE));
+            SearchResponse response = super.execute(0, SCROLL_PAGE_SIZE);
+            return new ScrollIterator<T>(getClient(), response, SCROLL_KEEP_ALIVE, ESGenericSearchDAO.this::hitToObject).stream();
+        }
+
         @Override
         public FacetedSearchResult facetedSearch(int from, int size) {
             List<IFacetBuilderHelper> facetBuilderHelpers = mpContext.getFacetBuilderHelpers();
@@ -2,6 +2,8 @@ package alien4cloud.dao;
 
 import java.beans.IntrospectionException;
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Collection;
@@ -20,11 +22,13 @@ import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsRequest;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.mapping.ElasticSearchClient;
 import org.elasticsearch.mapping.MappingBuilder;
 import org.elasticsearch.util.MapUtil;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 
@@ -32,7 +36,6 @@ import alien4cloud.exception.IndexingServiceException;
 import alien4cloud.rest.utils.JsonUtil;
 import alien4cloud.utils.ReflectionUtil;
 import lombok.Getter;
-import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 
@@ -60,13 +63,62 @@ public abstract class ESIndexMapper {
     /** If a class has an id field generated by elasticsearch then the field is specified here. */
     @Getter
     private final Map<Class<?>, Field> classTogeneratedIdFields = Maps.newHashMap();
+    /** Setters of the generated id fields, resolved once when the class is mapped. */
+    private final Map<Class<?>, MethodHandle> classToGeneratedIdSetters = Maps.newHashMap();
+    /** Readers are immutable and thread-safe, building them once per class avoids resolving the root deserializer on every read. */
+    private final Map<Class<?>, ObjectReader> readers = Maps.newConcurrentMap();
 
     @Getter
     private String[] allIndexes;
     @Getter
-    @Setter
     private ObjectMapper jsonMapper = new ObjectMapper();
 
+    /**
+     * Set the json mapper used to serialize and de-serialize the objects of this index mapper.
+     *
+     * @param jsonMapper The json mapper.
+     */
+    public void setJsonMapper(ObjectMapper jsonMapper) {
+        this.jsonMapper = jsonMapper;
+        this.readers.clear();
+    }
+
+    /**
+     * Get the reader to de-serialize json documents into instances of the given class.
+     *
+     * @param clazz The class of the object to read.
+     * @return A reader for the given class.
+     */
+    public ObjectReader getReader(Class<?> clazz) {
+        return readers.computeIfAbsent(clazz, jsonMapper::readerFor);
+    }
+
+    /**
+     * De-serialize an elasticsearch document source without copying it into a string.
+     *
+     * @param clazz The class of the object to read.
+     * @param source The source of the document.
+     * @return The de-serialized object.
+     * @throws IOException In case the source cannot be parsed.
+     */
+    public <T> T readSource(Class<T> clazz, BytesReference source) throws IOException {
+        ObjectReader reader = getReader(clazz);
+        if (source.hasArray()) {
+            return reader.readValue(source.array(), source.arrayOffset(), source.length());
+        }
+        return reader.readValue(source.streamInput());
+    }
+
+    /**
+     * Get the setter of the field annotated with {@link EsGeneratedId} for the given class.
+     *
+     * @param clazz The class for which to get the setter.
+     * @return The setter of the generated id field or null if the class has no generated id.
+     */
+    public MethodHandle getGeneratedIdSetter(Class<?> clazz) {
+        return classToGeneratedIdSetters.get(clazz);
+    }
+
     /**
      * Initialize the array of all indices managed by this dao.
      */
@@ -102,11 +154,7 @@ public abstract class ESIndexMapper {
                 addAlienScore(typesMap);
                 addTTL(typesMap, ttl);
 
-                Field generatedIdField = ReflectionUtil.getDeclaredField(clazz, EsGeneratedId.class);
-                if (generatedIdField != null) {
-                    generatedIdField.setAccessible(true);
-                    classTogeneratedIdFields.put(clazz, generatedIdField);
-                }
+                registerGeneratedId(clazz);
 
                 String mapping = jsonMapper.writeValueAsString(typesMap);
                 createIndexRequestBuilder.addMapping(typeName, mapping);
@@ -175,11 +223,17 @@ public abstract class ESIndexMapper {
     private void addToMappedClasses(String indexName, Class<?>[] classes) {
         for (Class<?> clazz : classes) {
             addToMappedClasses(indexName, clazz);
-            Field generatedIdField = ReflectionUtil.getDeclaredField(clazz, EsGeneratedId.class);
-            if (generatedIdField != null) {
-                generatedIdField.setAccessible(true);
-                classTogeneratedIdFields.put(clazz, generatedIdField);
-            }
+            registerGeneratedId(clazz);
+        }
+    }
+
+    @SneakyThrows(IllegalAccessException.class)
+    private void registerGeneratedId(Class<?> clazz) {
+        Field generatedIdField = ReflectionUtil.getDeclaredField(clazz, EsGeneratedId.class);
+        if (generatedIdField != null) {
+            generatedIdField.setAccessible(true);
+            classTogeneratedIdFields.put(clazz, generatedIdField);
+            classToGeneratedIdSetters.put(clazz, MethodHandles.lookup().unreflectSetter(generatedIdField));
         }
     }
 
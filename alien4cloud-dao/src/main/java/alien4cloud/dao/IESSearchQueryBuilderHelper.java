@@ -1,6 +1,7 @@
 package alien4cloud.dao;
 
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.FilterBuilder;
@@ -34,6 +35,14 @@ public interface IESSearchQueryBuilderHelper<T> extends IESQueryBuilderHelper<T>
      */
     GetMultipleDataResult<T> search(int from, int size);
 
+    /**
+     * Execute the search query as a scroll and get a stream over all matching elements. Pages are fetched and de-serialized while the stream is consumed.
+     * Note that the stream should be closed if not fully consumed in order to release the scroll context.
+     *
+     * @return A stream over all the elements matching the query.
+     */
+    Stream<T> stream();
+
     /**
      * Execute a search query using the defined query with facets (aggregations).
      *
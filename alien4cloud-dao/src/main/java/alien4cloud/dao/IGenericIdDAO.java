@@ -2,6 +2,9 @@ package alien4cloud.dao;
 
 import java.util.List;
 
+import alien4cloud.dao.model.EsRefreshPolicy;
+import alien4cloud.dao.model.RefreshPolicy;
+
 /**
  * A DAO that allows accessing data by Id or / and multiple Ids.
  * 
@@ -9,19 +12,36 @@ import java.util.List;
  */
 public interface IGenericIdDAO {
     /**
-     * Saves an entity into the repository
+     * Saves an entity into the repository using the refresh policy defined on its type (see {@link EsRefreshPolicy}).
      * 
      * @param entity the entity to save
      */
     <T> void save(T entity);
 
     /**
-     * Bulk save multiple entities into the repository
+     * Saves an entity into the repository.
+     * 
+     * @param entity the entity to save
+     * @param refreshPolicy The refresh policy to apply to the save operation.
+     */
+    <T> void save(T entity, RefreshPolicy refreshPolicy);
+
+    /**
+     * Bulk save multiple entities into the repository using the strictest refresh policy defined on their types (see {@link EsRefreshPolicy}).
      * 
      * @param entities The entities to save.
      */
     <T> void save(T[] entities);
 
+    /**
+     * Bulk save multiple entities into the repository.
+     * 
+     * @param entities The entities to save.
+     * @param refreshPolicy The refresh policy to apply to the bulk operation.
+     * @throws alien4cloud.exception.IndexingServiceException if any of the entities failed to be saved, other entities may have been saved.
+     */
+    <T> void save(T[] entities, RefreshPolicy refreshPolicy);
+
     /**
      * Find an instance from the given class.
      * 
@@ -51,7 +71,7 @@ public interface IGenericIdDAO {
     <T> List<T> findByIds(Class<T> clazz, String... ids);
 
     /**
-     * Delete an instance from the given class.
+     * Delete an instance from the given class using the refresh policy defined on the class (see {@link EsRefreshPolicy}).
      * 
      * @param clazz The class of the object to delete.
      * @param id The id of the object to delete.
@@ -2,6 +2,7 @@ package alien4cloud.dao;
 
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 import org.elasticsearch.client.Client;
 import org.elasticsearch.index.query.FilterBuilder;
@@ -62,7 +63,8 @@ public interface IGenericSearchDAO extends IGenericIdDAO {
     <T> long count(Class<T> clazz, String searchText, Map<String, String[]> filters);
 
     /**
-     * Delete a data by query
+     * Delete a data by query. Matching documents are scrolled and deleted by bulks, the index is refreshed once all documents are deleted according to the
+     * refresh policy of the class.
      *
      * @param clazz
      * @param query
@@ -80,6 +82,28 @@ public interface IGenericSearchDAO extends IGenericIdDAO {
 
     <T> List<T> customFilterAll(Class<T> clazz, FilterBuilder query);
 
+    /**
+     * Get a stream over all the elements of the given class matching a query and / or a filter. Elements are fetched from elasticsearch using a scroll and
+     * de-serialized page by page while the stream is consumed so the whole result set is never loaded in memory.
+     *
+     * Note that the stream should be closed if not fully consumed in order to release the scroll context.
+     *
+     * @param clazz The type of data to query.
+     * @param query The query to execute, null to match all.
+     * @param filter The filter to apply, null for no filter.
+     * @return A stream over all the matching elements.
+     */
+    <T> Stream<T> stream(Class<T> clazz, QueryBuilder query, FilterBuilder filter);
+
+    /**
+     * Get a stream over all the elements of the given class matching the given filters, see {@link #stream(Class, QueryBuilder, FilterBuilder)}.
+     *
+     * @param clazz The type of data to query.
+     * @param filters The filters for the search or null if no filters.
+     * @return A stream over all the matching elements.
+     */
+    <T> Stream<T> stream(Class<T> clazz, Map<String, String[]> filters);
+
     /**
      * Run a custom query on elastic search for the given class.
      *
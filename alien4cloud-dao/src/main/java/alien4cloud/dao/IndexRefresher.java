@@ -0,0 +1,76 @@
+package alien4cloud.dao;
+
+import java.util.Map;
+
+import org.elasticsearch.client.Client;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Group refresh requests on an index so that concurrent writers using {@link alien4cloud.dao.model.RefreshPolicy#WAIT_FOR} share a single refresh.
+ *
+ * A single refresh runs at a time for a given index, writers arriving while a refresh is running wait for the next one which covers all of them.
+ */
+public class IndexRefresher {
+    private final Map<String, RefreshGroup> groups = Maps.newConcurrentMap();
+
+    /**
+     * Block until a refresh started after the call has completed on the given index.
+     *
+     * @param client The elasticsearch client.
+     * @param indexName The name of the index to refresh.
+     */
+    public void waitForRefresh(Client client, String indexName) {
+        groups.computeIfAbsent(indexName, name -> new RefreshGroup()).waitForRefresh(client, indexName);
+    }
+
+    private static class RefreshGroup {
+        /** Number of refresh requests received. */
+        private long requested = 0;
+        /** All requests up to this number are covered by a completed refresh. */
+        private long covered = 0;
+        private boolean refreshing = false;
+
+        private void waitForRefresh(Client client, String indexName) {
+            long ticket;
+            synchronized (this) {
+                ticket = ++requested;
+            }
+            boolean interrupted = false;
+            while (true) {
+                long covering;
+                synchronized (this) {
+                    while (refreshing && covered < ticket) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                    if (covered >= ticket) {
+                        break;
+                    }
+                    // lead the next refresh on behalf of all requests received so far
+                    refreshing = true;
+                    covering = requested;
+                }
+                boolean success = false;
+                try {
+                    client.admin().indices().prepareRefresh(indexName).execute().actionGet();
+                    success = true;
+                } finally {
+                    synchronized (this) {
+                        refreshing = false;
+                        if (success) {
+                            covered = covering;
+                        }
+                        notifyAll();
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
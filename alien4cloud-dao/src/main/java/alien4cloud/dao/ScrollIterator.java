@@ -0,0 +1,99 @@
+package alien4cloud.dao;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import lombok.SneakyThrows;
+
+/**
+ * Iterate over all the hits of an elasticsearch scroll request, fetching the next page only once the current one has been consumed. Hits are converted lazily
+ * so only a single page of results is kept in memory.
+ *
+ * @param <T> The type of elements returned by the iterator.
+ */
+public class ScrollIterator<T> implements Iterator<T>, AutoCloseable {
+    private final Client client;
+    private final TimeValue keepAlive;
+    private final IHitConverter<T> converter;
+    private SearchHit[] hits;
+    private int index = 0;
+    private String scrollId;
+
+    /**
+     * Create a new iterator from the response of the initial scroll request.
+     *
+     * @param client The elasticsearch client used to fetch the next pages.
+     * @param response The response of the search request executed with a scroll.
+     * @param keepAlive The time to keep the scroll context alive between two pages.
+     * @param converter The converter from a search hit to the actual object.
+     */
+    public ScrollIterator(Client client, SearchResponse response, TimeValue keepAlive, IHitConverter<T> converter) {
+        this.client = client;
+        this.keepAlive = keepAlive;
+        this.converter = converter;
+        this.hits = response.getHits().getHits();
+        this.scrollId = response.getScrollId();
+    }
+
+    @Override
+    public boolean hasNext() {
+        // scan requests do not return hits in the first response so we may have to fetch pages until we find one.
+        while (scrollId != null && index >= hits.length) {
+            SearchResponse response = client.prepareSearchScroll(scrollId).setScroll(keepAlive).execute().actionGet();
+            scrollId = response.getScrollId();
+            hits = response.getHits().getHits();
+            index = 0;
+            if (hits.length == 0) {
+                close();
+            }
+        }
+        return index < hits.length;
+    }
+
+    @Override
+    @SneakyThrows(IOException.class)
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return converter.convert(hits[index++]);
+    }
+
+    /**
+     * Release the scroll context on the elasticsearch cluster.
+     */
+    @Override
+    public void close() {
+        if (scrollId != null) {
+            client.prepareClearScroll().addScrollId(scrollId).execute().actionGet();
+            scrollId = null;
+        }
+    }
+
+    /**
+     * Get a sequential stream over the iterator elements. Closing the stream releases the scroll context, this is done automatically when all elements are
+     * consumed.
+     *
+     * @return A stream over the iterator elements.
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false).onClose(this::close);
+    }
+
+    /**
+     * Convert a search hit to an object.
+     */
+    public interface IHitConverter<T> {
+        T convert(SearchHit hit) throws IOException;
+    }
+}
@@ -95,7 +95,22 @@ public abstract class AbstractPaaSProvider implements IOrchestratorPlugin<Provid
     @Override
     public void getInstancesInformation(PaaSTopologyDeploymentContext deploymentContext,
             IPaaSCallback<Map<String, Map<String, InstanceInformation>>> callback) {
-        callback.onSuccess(getInstancesInformation(deploymentContext.getDeploymentPaaSId(), deploymentContext.getDeploymentTopology()));
+        Map<String, Map<String, InstanceInformation>> instanceInformations = getInstancesInformation(deploymentContext.getDeploymentPaaSId(),
+                deploymentContext.getDeploymentTopology());
+        parseAttributes(instanceInformations, deploymentContext);
+        callback.onSuccess(instanceInformations);
+    }
+
+    /**
+     * Evaluate the attributes defined by the types of the deployed nodes from the runtime information of their instances.
+     *
+     * @param instanceInformations The runtime information of the instances per node template id, updated with the evaluated attributes.
+     * @param deploymentContext The context of the deployment, its PaaS topology holds the compiled functions.
+     */
+    protected void parseAttributes(Map<String, Map<String, InstanceInformation>> instanceInformations, PaaSTopologyDeploymentContext deploymentContext) {
+        if (deploymentContext.getPaaSTopology() != null) {
+            deploymentContext.getPaaSTopology().getFunctionEvaluationPlan().resolveAttributes(instanceInformations);
+        }
     }
 
     public Map<String, Map<String, InstanceInformation>> getInstancesInformation(String deploymentId, Topology topology) {
@@ -106,8 +121,6 @@ public abstract class AbstractPaaSProvider implements IOrchestratorPlugin<Provid
             // fillInstanceStates(deploymentId, instanceInformations, restEventEndpoint);
 
             // fillRuntimeInformations(deploymentId, instanceInformations);
-
-            // parseAttributes(instanceInformations, statusByDeployments.get(deploymentId));
             log.debug("------------------------------", instanceInformations);
             return instanceInformations;
         } catch (RestClientException e) {
@@ -9,6 +9,8 @@ import javax.annotation.Resource;
 
 import org.alien4cloud.tosca.catalog.CatalogVersionResult;
 import org.alien4cloud.tosca.catalog.index.IToscaTypeSearchService;
+import org.alien4cloud.tosca.catalog.index.ToscaTypeCache;
+import org.alien4cloud.tosca.model.Csar;
 import org.alien4cloud.tosca.model.types.AbstractToscaType;
 import org.alien4cloud.tosca.model.types.NodeType;
 import org.springframework.http.MediaType;
@@ -52,6 +54,8 @@ public class ComponentController {
 
     @Resource
     private TagService tagService;
+    @Resource
+    private ToscaTypeCache toscaTypeCache;
 
     /**
      * Get details for a component.
@@ -189,7 +193,7 @@ public class ComponentController {
             }
             component.getDefaultCapabilities().add(recommendationRequest.getCapability());
             log.info("Defining the component <" + component.getId() + "> as default for the capability <" + recommendationRequest.getCapability() + ">.");
-            dao.save(component);
+            saveComponent(component);
         }
         return RestResponseBuilder.<NodeType> builder().data(component).build();
     }
@@ -209,7 +213,7 @@ public class ComponentController {
         if (component != null && component.getDefaultCapabilities() != null) {
             component.getDefaultCapabilities().remove(recommendationRequest.getCapability());
             log.info("Undefining the component <" + component.getId() + "> as default for the capability <" + recommendationRequest.getCapability() + ">.");
-            dao.save(component);
+            saveComponent(component);
         }
         return RestResponseBuilder.<NodeType> builder().data(component).build();
     }
@@ -230,6 +234,7 @@ public class ComponentController {
         NodeType component = dao.findById(NodeType.class, componentId);
         if (component != null) {
             tagService.upsertTag(component, updateTagRequest.getTagKey(), updateTagRequest.getTagValue());
+            toscaTypeCache.invalidate(Csar.createId(component.getArchiveName(), component.getArchiveVersion()));
         } else {
             updateComponantTagError = RestErrorBuilder.builder(RestErrorCode.COMPONENT_MISSING_ERROR)
                     .message("Tag update operation failed. Could not find component with id <" + componentId + ">.").build();
@@ -247,6 +252,7 @@ public class ComponentController {
         NodeType component = dao.findById(NodeType.class, componentId);
         if (component != null) {
             tagService.removeTag(component, tagId);
+            toscaTypeCache.invalidate(Csar.createId(component.getArchiveName(), component.getArchiveVersion()));
         } else {
             deleteComponentTagError = RestErrorBuilder.builder(RestErrorCode.COMPONENT_MISSING_ERROR)
                     .message("Tag delete operation failed. Could not find component with id <" + componentId + ">.").build();
@@ -258,10 +264,15 @@ public class ComponentController {
         NodeType component = getDefaultNodeForCapability(capability);
         if (component != null) {
             component.getDefaultCapabilities().remove(capability);
-            dao.save(component);
+            saveComponent(component);
         }
     }
 
+    private void saveComponent(NodeType component) {
+        dao.save(component);
+        toscaTypeCache.invalidate(Csar.createId(component.getArchiveName(), component.getArchiveVersion()));
+    }
+
     private NodeType getDefaultNodeForCapability(String capability) {
         Map<String, String[]> filters = new HashMap<>();
         filters.put(AlienConstants.DEFAULT_CAPABILITY_FIELD_NAME, new String[] { capability.toLowerCase() });
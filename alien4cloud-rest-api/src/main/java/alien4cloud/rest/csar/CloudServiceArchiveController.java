@@ -35,7 +35,6 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
 
-import com.google.common.collect.Lists;
 
 import alien4cloud.audit.annotation.Audit;
 import alien4cloud.component.repository.exception.CSARUsedInActiveDeployment;
@@ -118,7 +117,7 @@ public class CloudServiceArchiveController {
                     .build();
         } catch (AlreadyExistException | CSARUsedInActiveDeployment | ToscaTypeAlreadyDefinedInOtherCSAR e) {
             CsarUploadResult uploadResult = new CsarUploadResult();
-            uploadResult.getErrors().put(csar.getOriginalFilename(), Lists.newArrayList(UploadExceptionUtil.parsingErrorFromException(e)));
+            uploadResult.getErrors().put(csar.getOriginalFilename(), UploadExceptionUtil.parsingErrorsFromException(e));
             return RestResponseBuilder.<CsarUploadResult> builder().error(RestErrorBuilder.builder(RestErrorCode.ALREADY_EXIST_ERROR).build())
                     .data(uploadResult).build();
         } finally {
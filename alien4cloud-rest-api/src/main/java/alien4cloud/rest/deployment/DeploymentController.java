@@ -234,7 +234,7 @@ public class DeploymentController {
         Deployment deployment = alienDAO.findById(Deployment.class, deploymentId);
         if (deployment != null) {
             try {
-                return deploymentLockService.doWithDeploymentReadLock(deployment.getOrchestratorDeploymentId(), () -> {
+                return deploymentLockService.tryWithDeploymentReadLock(deployment.getOrchestratorDeploymentId(), () -> {
                     final SettableFuture<DeploymentStatus> statusSettableFuture = SettableFuture.create();
                     deploymentRuntimeStateService.getDeploymentStatus(deployment, new IPaaSCallback<DeploymentStatus>() {
                         @Override
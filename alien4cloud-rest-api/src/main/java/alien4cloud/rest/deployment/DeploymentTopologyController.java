@@ -1,10 +1,13 @@
 package alien4cloud.rest.deployment;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Optional;
 
 import javax.inject.Inject;
 
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionProfile;
+import org.alien4cloud.alm.deployment.configuration.flow.FlowExecutionProfiler;
 import org.alien4cloud.alm.deployment.configuration.services.InputArtifactService;
 import org.alien4cloud.alm.deployment.configuration.services.InputService;
 import org.alien4cloud.alm.deployment.configuration.services.LocationMatchService;
@@ -85,6 +88,8 @@ public class DeploymentTopologyController {
     private InputService inputService;
     @Inject
     private OrchestratorPropertiesService orchestratorPropertiesService;
+    @Inject
+    private FlowExecutionProfiler flowExecutionProfiler;
 
     /**
      * Get the deployment topology of an application given an environment
@@ -119,6 +124,25 @@ public class DeploymentTopologyController {
         return RestResponseBuilder.<DeploymentTopologyDTO> builder().data(dto).build();
     }
 
+    /**
+     * Get the breakdown of the time spent in the topology modifiers of the last deployment flow executions of an environment.
+     *
+     * @param appId application Id
+     * @param environmentId environment Id
+     * @param count maximum number of executions to return
+     * @return the profiles of the last flow executions, most recent first
+     */
+    @ApiOperation(value = "Get the profiles of the last deployment flow executions of an environment.", notes = "Application role required [ APPLICATION_MANAGER | APPLICATION_DEVOPS ] and Application environment role required [ DEPLOYMENT_MANAGER ]")
+    @RequestMapping(value = "/flow-executions", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize("isAuthenticated()")
+    public RestResponse<List<FlowExecutionProfile>> getFlowExecutions(@PathVariable String appId, @PathVariable String environmentId,
+            @ApiParam(value = "Maximum number of executions to return.") @RequestParam(required = false, defaultValue = "10") int count) {
+        Application application = applicationService.getOrFail(appId);
+        ApplicationEnvironment environment = appEnvironmentService.getOrFail(environmentId);
+        AuthorizationUtil.checkAuthorizationForEnvironment(application, environment);
+        return RestResponseBuilder.<List<FlowExecutionProfile>> builder().data(flowExecutionProfiler.getProfiles(environmentId, count)).build();
+    }
+
     /**
      * Upload an artifact to set it as input artifact.
      *
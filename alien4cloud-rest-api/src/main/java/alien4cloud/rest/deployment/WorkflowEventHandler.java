@@ -4,12 +4,17 @@ import java.security.Principal;
 import java.util.Date;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 
 import alien4cloud.dao.model.GetMultipleDataResult;
+import alien4cloud.dao.model.RefreshPolicy;
 import alien4cloud.model.runtime.*;
 import alien4cloud.paas.model.*;
 import lombok.extern.slf4j.Slf4j;
@@ -18,10 +23,14 @@ import org.elasticsearch.common.collect.Maps;
 import org.elasticsearch.common.lang3.StringUtils;
 import org.elasticsearch.mapping.MappingBuilder;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rits.cloning.Cloner;
+
 import alien4cloud.dao.IGenericSearchDAO;
 import alien4cloud.exception.NotFoundException;
 import alien4cloud.model.application.ApplicationEnvironment;
@@ -52,6 +61,28 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
     @Resource
     private SimpMessagingTemplate template;
 
+    /** Maximum number of tasks and step instances waiting to be written before they are written in bulk. */
+    @Value("${paas_monitor.workflow_events_bulk_size:500}")
+    private int bulkSize = 500;
+    /** Maximum delay in milliseconds before tasks and step instances are written. */
+    @Value("${paas_monitor.workflow_events_flush_interval_ms:1000}")
+    private long flushIntervalMs = 1000;
+    /** Maximum number of executions for which step instances and tasks are kept in memory. */
+    @Value("${paas_monitor.workflow_events_indexed_executions:100}")
+    private int maxIndexedExecutions = 100;
+
+    /** Step instances and tasks of the running executions, used to correlate task events with their step without searching elasticsearch. */
+    private WorkflowExecutionsIndex executionsIndex;
+    /**
+     * Copies of the tasks and step instances waiting to be written, by type and id so only the latest version of a document is written. The executions of
+     * pending documents are pinned in the executions index.
+     */
+    private final Map<String, PendingWrite> pendingWrites = Maps.newLinkedHashMap();
+    private final Cloner cloner = new Cloner();
+    /** Serialize flushes so an older version of a document never overrides a newer one. */
+    private final Object flushLock = new Object();
+    private ScheduledExecutorService flushExecutor;
+
     protected void send(AbstractMonitorEvent event) {
         String eventType = "paasworkflowmonitorevent";
         String topicName = TOPIC_PREFIX + '/' + event.getDeploymentId() + '/' + eventType;
@@ -78,10 +109,13 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
             createExecution((PaaSWorkflowStartedEvent)event);
         } else if (event instanceof PaaSWorkflowSucceededEvent) {
             updateExecution((PaaSWorkflowSucceededEvent)event, ExecutionStatus.SUCCEEDED);
+            evictExecution((PaaSWorkflowFinishedEvent) event);
         } else if (event instanceof PaaSWorkflowFailedEvent) {
             updateExecution((PaaSWorkflowFailedEvent)event, ExecutionStatus.FAILED);
+            evictExecution((PaaSWorkflowFinishedEvent) event);
         } else if (event instanceof PaaSWorkflowCancelledEvent) {
             updateExecution((PaaSWorkflowCancelledEvent)event, ExecutionStatus.CANCELLED);
+            evictExecution((PaaSWorkflowFinishedEvent) event);
         } else if (event instanceof TaskSentEvent) {
             if (log.isDebugEnabled()) {
                 log.debug("TaskSentEvent recceived for #" + ((TaskSentEvent) event).getTaskId());
@@ -139,11 +173,17 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
         t.setWorkflowStepInstanceId(stepInstanceId);
         t.setScheduleDate(new Date(e.getDate()));
         t.setStatus(TaskStatus.SCHEDULED);
-        alienDAO.save(t);
+        executionsIndex.addTask(t);
+        write(t.getExecutionId(), t.getId(), t);
     }
 
     private String getWorkflowStepInstanceIdForTask(AbstractTaskEvent taskEvent) {
-        // find the WorkflowStepInstance that has the same executionId, operationName, nodeId, instanceId
+        WorkflowStepInstance indexedStepInstance = executionsIndex.getStepInstance(taskEvent);
+        if (indexedStepInstance != null) {
+            return indexedStepInstance.getId();
+        }
+        // not in memory (execution started before a restart for example), find the WorkflowStepInstance that has the same executionId, operationName,
+        // nodeId, instanceId
         String stepInstanceId = null;
         Map<String, String[]> filter = Maps.newHashMap();
         filter.put("executionId", new String[] { taskEvent.getExecutionId() });
@@ -158,7 +198,8 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
             filter.put("instanceId", new String[] { taskEvent.getInstanceId() });
             filter.put("targetInstanceId", new String[] { taskEvent.getTargetInstanceId() });
         }
-        GetMultipleDataResult<WorkflowStepInstance> result = alienDAO.find(WorkflowStepInstance.class, filter, Integer.MAX_VALUE);
+        // only the first matching step instance is used
+        GetMultipleDataResult<WorkflowStepInstance> result = alienDAO.find(WorkflowStepInstance.class, filter, 1);
         if (result.getTotalResults() > 0) {
             stepInstanceId = result.getData()[0].getId();
         }
@@ -177,10 +218,17 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
         i.setTargetNodeId(e.getTargetNodeId());
         i.setTargetInstanceId(e.getTargetInstanceId());
         i.setStatus(WorkflowStepInstanceStatus.STARTED);
-        alienDAO.save(i);
+        executionsIndex.addStepInstance(i);
+        write(i.getExecutionId(), i.getId(), i);
     }
 
     private void updateWorkflowStepInstance(WorkflowStepCompletedEvent e) {
+        WorkflowStepInstance indexedStepInstance = executionsIndex.getStepInstance(e);
+        if (indexedStepInstance != null) {
+            indexedStepInstance.setStatus(WorkflowStepInstanceStatus.COMPLETED);
+            write(indexedStepInstance.getExecutionId(), indexedStepInstance.getId(), indexedStepInstance);
+            return;
+        }
         Map<String, String[]> filter = Maps.newHashMap();
         filter.put("executionId", new String[] { e.getExecutionId() });
         filter.put("deploymentId", new String[] { e.getDeploymentId() });
@@ -194,13 +242,16 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
         if (result.getTotalResults() > 0) {
             WorkflowStepInstance i = result.getData()[0];
             i.setStatus(WorkflowStepInstanceStatus.COMPLETED);
-            alienDAO.save(i);
+            write(i.getExecutionId(), i.getId(), i);
         }
     }
 
     // TODO: move elsewhere since this has nothing to do in REST module
     private void updateTask(String id, TaskStatus status, AbstractTaskEvent taskEvent, String details) {
-        Task t = alienDAO.findById(Task.class, id);
+        Task t = executionsIndex.getTask(taskEvent.getExecutionId(), id);
+        if (t == null) {
+            t = alienDAO.findById(Task.class, id);
+        }
         if (t != null) {
             t.setStatus(status);
 
@@ -212,7 +263,7 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
             if (org.springframework.util.StringUtils.hasText(details)) {
                 t.setDetails(details);
             }
-            alienDAO.save(t);
+            write(t.getExecutionId(), t.getId(), t);
 
             if (TaskStatus.FAILED == status) {
                 // we must update the related execution
@@ -225,16 +276,72 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
                 }
                 // we must update the related step instance
                 if (t.getWorkflowStepInstanceId() != null) {
-                    WorkflowStepInstance i = alienDAO.findById(WorkflowStepInstance.class, t.getWorkflowStepInstanceId());
+                    WorkflowStepInstance i = executionsIndex.getStepInstance(t.getExecutionId(), t.getWorkflowStepInstanceId());
+                    if (i == null) {
+                        i = alienDAO.findById(WorkflowStepInstance.class, t.getWorkflowStepInstanceId());
+                    }
                     if (i != null && !i.isHasFailedTasks()) {
                         i.setHasFailedTasks(true);
-                        alienDAO.save(i);
+                        write(i.getExecutionId(), i.getId(), i);
                     }
                 }
             }
         }
     }
 
+    private void evictExecution(PaaSWorkflowFinishedEvent e) {
+        // make sure all the tasks and step instances of the execution are written before forgetting them
+        flush();
+        executionsIndex.evict(e.getExecutionId());
+    }
+
+    /**
+     * Queue a copy of a task or step instance for writing. Documents are written in bulk, without refresh, once enough documents are queued or the flush
+     * interval expires. Pending documents of running executions are also in the executions index so they don't have to be read back from elasticsearch, the
+     * execution is pinned in the index until the document is written.
+     *
+     * The copy is taken while the event is handled so the flush never serializes a document that is being updated by the handling of a later event.
+     */
+    private void write(String executionId, String id, Object document) {
+        PendingWrite pendingWrite = new PendingWrite(executionId, cloner.shallowClone(document));
+        boolean bulkReady;
+        synchronized (pendingWrites) {
+            if (pendingWrites.put(document.getClass().getSimpleName() + ":" + id, pendingWrite) == null) {
+                executionsIndex.pin(executionId);
+            }
+            bulkReady = pendingWrites.size() >= bulkSize;
+        }
+        if (bulkReady) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        synchronized (flushLock) {
+            PendingWrite[] writes;
+            synchronized (pendingWrites) {
+                if (pendingWrites.isEmpty()) {
+                    return;
+                }
+                writes = pendingWrites.values().toArray(new PendingWrite[pendingWrites.size()]);
+                pendingWrites.clear();
+            }
+            Object[] documents = new Object[writes.length];
+            for (int i = 0; i < writes.length; i++) {
+                documents[i] = writes[i].document;
+            }
+            try {
+                alienDAO.save(documents, RefreshPolicy.NONE);
+            } catch (Exception e) {
+                log.error("Failed to write {} workflow tasks and step instances", documents.length, e);
+            } finally {
+                for (PendingWrite write : writes) {
+                    executionsIndex.unpin(write.executionId);
+                }
+            }
+        }
+    }
+
     // TODO: move elsewhere since this has nothing to do in REST module
     private void updateExecution(PaaSWorkflowFinishedEvent e, ExecutionStatus s) {
         Execution execution = alienDAO.findById(Execution.class, e.getExecutionId());
@@ -345,6 +452,29 @@ public class WorkflowEventHandler implements IPaasEventListener<AbstractMonitorE
 
     @Override
     public void afterPropertiesSet() throws Exception {
+        executionsIndex = new WorkflowExecutionsIndex(maxIndexedExecutions);
+        flushExecutor = Executors
+                .newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("workflow-events-flush-%d").setDaemon(true).build());
+        flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
         paasEventService.addListener(this);
     }
+
+    @PreDestroy
+    public void destroy() {
+        if (flushExecutor != null) {
+            flushExecutor.shutdownNow();
+        }
+        flush();
+    }
+
+    /** A copy of a document waiting to be written. */
+    private static class PendingWrite {
+        private final String executionId;
+        private final Object document;
+
+        private PendingWrite(String executionId, Object document) {
+            this.executionId = executionId;
+            this.document = document;
+        }
+    }
 }
@@ -1,7 +1,6 @@
 package alien4cloud.rest.deployment;
 
 import alien4cloud.dao.IGenericSearchDAO;
-import alien4cloud.dao.model.FacetedSearchResult;
 import alien4cloud.deployment.ExecutionService;
 import alien4cloud.deployment.TaskService;
 import alien4cloud.deployment.WorkflowStepInstanceService;
@@ -28,6 +27,8 @@ import javax.annotation.Resource;
 import javax.validation.Valid;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping({ "/rest/workflow_execution", "/rest/v1/workflow_execution", "/rest/latest/workflow_execution" })
@@ -56,8 +57,14 @@ public class WorkflowExecutionController {
             return RestResponseBuilder.<WorkflowExecutionDTO> builder().data(result).build();
         }
 
-        FacetedSearchResult<Task> tasksResult = taskService.searchTasks("", execution.getId(), 0, Integer.MAX_VALUE);
-        FacetedSearchResult<WorkflowStepInstance> stepsResult = workflowStepInstanceService.searchInstances("", execution.getId(), 0, Integer.MAX_VALUE);
+        List<Task> executionTasks;
+        try (Stream<Task> tasksStream = taskService.streamTasks(execution.getId())) {
+            executionTasks = tasksStream.collect(Collectors.toList());
+        }
+        List<WorkflowStepInstance> executionStepInstances;
+        try (Stream<WorkflowStepInstance> stepsStream = workflowStepInstanceService.streamInstances(execution.getId())) {
+            executionStepInstances = stepsStream.collect(Collectors.toList());
+        }
 
         result.setExecution(execution);
         Map<String, List<WorkflowStepInstance>> stepInstances = Maps.newHashMap();
@@ -71,10 +78,10 @@ public class WorkflowExecutionController {
         Map<String, WorkflowStepInstance> _stepsInstanceIds = Maps.newHashMap();
 
         // the number of step instances is used to display progress information
-        result.setActualKnownStepInstanceCount(stepsResult.getData().length);
+        result.setActualKnownStepInstanceCount(executionStepInstances.size());
 
         // populate step instances
-        for (WorkflowStepInstance stepInstance : stepsResult.getData()) {
+        for (WorkflowStepInstance stepInstance : executionStepInstances) {
             if (StringUtils.isEmpty(stepInstance.getStepId())) {
                 // FIXME: understand in which circumstances this id can be null
                 continue;
@@ -88,7 +95,7 @@ public class WorkflowExecutionController {
             workflowStepInstances.add(stepInstance);
         }
         // populate step tasks
-        for (Task task : tasksResult.getData()) {
+        for (Task task : executionTasks) {
             // we want the last executing task to be emphased
             if (task.getStatus() == TaskStatus.STARTED || task.getStatus() == TaskStatus.SCHEDULED) {
                 Task lastKnownTask = result.getLastKnownExecutingTask();
@@ -0,0 +1,188 @@
+package alien4cloud.rest.deployment;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import com.google.common.collect.Maps;
+
+import alien4cloud.model.runtime.Task;
+import alien4cloud.model.runtime.WorkflowStepInstance;
+import alien4cloud.paas.model.AbstractTaskEvent;
+import alien4cloud.paas.model.WorkflowStepCompletedEvent;
+
+/**
+ * In memory index of the step instances and tasks of the running workflow executions. It allows to correlate task events with their step instance without
+ * searching elasticsearch for every event.
+ *
+ * Executions are evicted once their terminal event is received, the least recently used executions are evicted when too many executions are tracked (in case
+ * a terminal event is never received). Executions that are pinned (because some of their elements are still waiting to be written) are never evicted on
+ * overflow. Callers must fall back to elasticsearch when an element is not found.
+ */
+public class WorkflowExecutionsIndex {
+    private final Map<String, ExecutionEntry> executions;
+    /** Number of pins per execution id. */
+    private final Map<String, Integer> pins = Maps.newHashMap();
+
+    /**
+     * Create a new index.
+     *
+     * @param maxExecutions The maximum number of executions to keep in memory.
+     */
+    public WorkflowExecutionsIndex(int maxExecutions) {
+        this.executions = new LinkedHashMap<String, ExecutionEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ExecutionEntry> eldest) {
+                if (size() > maxExecutions) {
+                    // remove the least recently used execution that is not pinned (other than the one just added), the index may grow over the limit if
+                    // all executions are pinned
+                    Iterator<String> executionIds = keySet().iterator();
+                    for (int i = size() - 1; i > 0; i--) {
+                        if (!pins.containsKey(executionIds.next())) {
+                            executionIds.remove();
+                            break;
+                        }
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Register a step instance that has just started.
+     *
+     * @param stepInstance The step instance.
+     */
+    public synchronized void addStepInstance(WorkflowStepInstance stepInstance) {
+        ExecutionEntry entry = executions.computeIfAbsent(stepInstance.getExecutionId(), executionId -> new ExecutionEntry());
+        entry.stepInstances.put(stepInstance.getId(), stepInstance);
+        // the latest started step instance wins when a key is reused
+        entry.stepInstancesByStep.put(stepKey(stepInstance.getStepId(), stepInstance.getInstanceId(), stepInstance.getTargetInstanceId()), stepInstance);
+        entry.stepInstancesByOperation.put(operationKey(stepInstance.getNodeId(), stepInstance.getInstanceId(), stepInstance.getTargetNodeId(),
+                stepInstance.getTargetInstanceId(), stepInstance.getOperationName()), stepInstance);
+    }
+
+    /**
+     * Get a step instance from its id.
+     *
+     * @param executionId The id of the execution of the step instance.
+     * @param stepInstanceId The id of the step instance.
+     * @return The step instance or null if not indexed.
+     */
+    public synchronized WorkflowStepInstance getStepInstance(String executionId, String stepInstanceId) {
+        ExecutionEntry entry = executions.get(executionId);
+        return entry == null ? null : entry.stepInstances.get(stepInstanceId);
+    }
+
+    /**
+     * Find the step instance in which a task has been sent.
+     *
+     * @param taskEvent The task event.
+     * @return The step instance of the task or null if not indexed.
+     */
+    public synchronized WorkflowStepInstance getStepInstance(AbstractTaskEvent taskEvent) {
+        ExecutionEntry entry = executions.get(taskEvent.getExecutionId());
+        if (entry == null) {
+            return null;
+        }
+        if (taskEvent.getWorkflowStepId() == null) {
+            return entry.stepInstancesByOperation.get(operationKey(taskEvent.getNodeId(), taskEvent.getInstanceId(), taskEvent.getTargetNodeId(),
+                    taskEvent.getTargetInstanceId(), taskEvent.getOperationName()));
+        }
+        return entry.stepInstancesByStep.get(stepKey(taskEvent.getWorkflowStepId(), taskEvent.getInstanceId(), taskEvent.getTargetInstanceId()));
+    }
+
+    /**
+     * Find the step instance that a step completed event refers to.
+     *
+     * @param event The step completed event.
+     * @return The completed step instance or null if not indexed.
+     */
+    public synchronized WorkflowStepInstance getStepInstance(WorkflowStepCompletedEvent event) {
+        ExecutionEntry entry = executions.get(event.getExecutionId());
+        if (entry == null) {
+            return null;
+        }
+        WorkflowStepInstance stepInstance = entry.stepInstancesByStep.get(stepKey(event.getStepId(), event.getInstanceId(), event.getTargetInstanceId()));
+        if (stepInstance != null && Objects.equals(stepInstance.getDeploymentId(), event.getDeploymentId())
+                && Objects.equals(stepInstance.getNodeId(), event.getNodeId()) && Objects.equals(stepInstance.getTargetNodeId(), event.getTargetNodeId())) {
+            return stepInstance;
+        }
+        return null;
+    }
+
+    /**
+     * Register a task.
+     *
+     * @param task The task.
+     */
+    public synchronized void addTask(Task task) {
+        executions.computeIfAbsent(task.getExecutionId(), executionId -> new ExecutionEntry()).tasks.put(task.getId(), task);
+    }
+
+    /**
+     * Get a task from its id.
+     *
+     * @param executionId The id of the execution of the task.
+     * @param taskId The id of the task.
+     * @return The task or null if not indexed.
+     */
+    public synchronized Task getTask(String executionId, String taskId) {
+        ExecutionEntry entry = executions.get(executionId);
+        return entry == null ? null : entry.tasks.get(taskId);
+    }
+
+    /**
+     * Remove all the step instances and tasks of an execution from the index.
+     *
+     * @param executionId The id of the execution.
+     */
+    public synchronized void evict(String executionId) {
+        executions.remove(executionId);
+    }
+
+    /**
+     * Prevent an execution from being evicted when the index is full, the execution can still be evicted explicitly. Pins are counted, the execution can be
+     * evicted once every pin has been released.
+     *
+     * @param executionId The id of the execution.
+     */
+    public synchronized void pin(String executionId) {
+        pins.merge(executionId, 1, Integer::sum);
+    }
+
+    /**
+     * Release a pin on an execution.
+     *
+     * @param executionId The id of the execution.
+     */
+    public synchronized void unpin(String executionId) {
+        pins.computeIfPresent(executionId, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * @return The number of executions in the index.
+     */
+    public synchronized int size() {
+        return executions.size();
+    }
+
+    private static List<String> stepKey(String stepId, String instanceId, String targetInstanceId) {
+        return Arrays.asList(stepId, instanceId, targetInstanceId);
+    }
+
+    private static List<String> operationKey(String nodeId, String instanceId, String targetNodeId, String targetInstanceId, String operationName) {
+        return Arrays.asList(nodeId, instanceId, targetNodeId, targetInstanceId, operationName);
+    }
+
+    private static class ExecutionEntry {
+        private final Map<String, WorkflowStepInstance> stepInstances = Maps.newHashMap();
+        private final Map<List<String>, WorkflowStepInstance> stepInstancesByStep = Maps.newHashMap();
+        private final Map<List<String>, WorkflowStepInstance> stepInstancesByOperation = Maps.newHashMap();
+        private final Map<String, Task> tasks = Maps.newHashMap();
+    }
+}
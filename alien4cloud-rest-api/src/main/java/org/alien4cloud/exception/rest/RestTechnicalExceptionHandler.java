@@ -34,6 +34,7 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import com.google.common.collect.Lists;
 
 import alien4cloud.component.repository.exception.RepositoryTechnicalException;
+import alien4cloud.deployment.exceptions.DeploymentLockTimeoutException;
 import alien4cloud.deployment.exceptions.InvalidDeploymentSetupException;
 import alien4cloud.images.exception.ImageUploadException;
 import alien4cloud.model.common.Usage;
@@ -391,6 +392,15 @@ public class RestTechnicalExceptionHandler {
                 .message("Application environment delete error : " + e.getMessage()).build()).build();
     }
 
+    @ExceptionHandler(value = DeploymentLockTimeoutException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    @ResponseBody
+    public RestResponse<Void> deploymentLockTimeoutErrorHandler(DeploymentLockTimeoutException e) {
+        logRestException("Deployment lock timeout", e);
+        return RestResponseBuilder.<Void> builder().error(RestErrorBuilder.builder(RestErrorCode.DEPLOYMENT_LOCKED_ERROR).message(e.getMessage()).build())
+                .build();
+    }
+
     @ExceptionHandler(value = RenameDeployedException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     @ResponseBody
@@ -53,12 +53,16 @@ public class EditorController {
      *
      * @param topologyId The id of the topology/archive under edition.
      * @param operation The operation to execute
+     * @param delta True to get only the changes since the known version of the topology.
+     * @param version The version of the last topology received by the editor client when delta is true.
      */
     @ApiIgnore
     @RequestMapping(value = "/{topologyId:.+}/execute", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
     @PreAuthorize("isAuthenticated()")
-    public RestResponse<TopologyDTO> execute(@PathVariable String topologyId, @RequestBody @Valid AbstractEditorOperation operation) {
-        TopologyDTO topologyDTO = editorService.execute(topologyId, operation);
+    public RestResponse<TopologyDTO> execute(@PathVariable String topologyId, @RequestBody @Valid AbstractEditorOperation operation,
+            @RequestParam(value = "delta", required = false, defaultValue = "false") boolean delta,
+            @RequestParam(value = "version", required = false) String version) {
+        TopologyDTO topologyDTO = delta ? editorService.execute(topologyId, operation, version) : editorService.execute(topologyId, operation);
         return RestResponseBuilder.<TopologyDTO> builder().data(topologyDTO).build();
     }
 
@@ -68,18 +72,23 @@ public class EditorController {
      * @param topologyId The id of the topology under edition on which to undo operations.
      * @param at The index in the operations array to reach (0 means no operations, 1 means first operation etc.).
      * @param lastOperationId The id of the last operation from editor client point of view (for optimistic locking).
+     * @param delta True to get only the changes since the known version of the topology.
+     * @param version The version of the last topology received by the editor client when delta is true.
      * @return A topology DTO with the updated topology.
      */
     @ApiIgnore
     @PreAuthorize("isAuthenticated()")
     @RequestMapping(value = "/{topologyId:.+}/undo", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
     public RestResponse<TopologyDTO> undoRedo(@PathVariable String topologyId, @RequestParam("at") int at,
-            @RequestParam("lastOperationId") String lastOperationId) {
+            @RequestParam("lastOperationId") String lastOperationId,
+            @RequestParam(value = "delta", required = false, defaultValue = "false") boolean delta,
+            @RequestParam(value = "version", required = false) String version) {
         if (lastOperationId != null && "null".equals(lastOperationId)) {
             lastOperationId = null;
         }
         // Call the service that will save and commit
-        TopologyDTO topologyDTO = editorService.undoRedo(topologyId, at, lastOperationId);
+        TopologyDTO topologyDTO = delta ? editorService.undoRedo(topologyId, at, lastOperationId, version)
+                : editorService.undoRedo(topologyId, at, lastOperationId);
         return RestResponseBuilder.<TopologyDTO> builder().data(topologyDTO).build();
     }
 
@@ -137,17 +146,21 @@ public class EditorController {
      *
      * @param topologyId The id of the topology/archive under edition to save.
      * @param lastOperationId The id of the last operation from editor client point of view (for optimistic locking).
+     * @param delta True to get only the changes since the known version of the topology.
+     * @param version The version of the last topology received by the editor client when delta is true.
      * @return A topology DTO with the updated topology.
      */
     @ApiIgnore
     @PreAuthorize("isAuthenticated()")
     @RequestMapping(value = "/{topologyId:.+}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
-    public RestResponse<TopologyDTO> save(@PathVariable String topologyId, @RequestParam("lastOperationId") String lastOperationId) {
+    public RestResponse<TopologyDTO> save(@PathVariable String topologyId, @RequestParam("lastOperationId") String lastOperationId,
+            @RequestParam(value = "delta", required = false, defaultValue = "false") boolean delta,
+            @RequestParam(value = "version", required = false) String version) {
         if (lastOperationId != null && "null".equals(lastOperationId)) {
             lastOperationId = null;
         }
         // Call the service that will save and commit
-        TopologyDTO topologyDTO = editorService.save(topologyId, lastOperationId);
+        TopologyDTO topologyDTO = delta ? editorService.save(topologyId, lastOperationId, version) : editorService.save(topologyId, lastOperationId);
         return RestResponseBuilder.<TopologyDTO> builder().data(topologyDTO).build();
     }
 
@@ -0,0 +1,110 @@
+package alien4cloud.rest.deployment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import alien4cloud.model.runtime.Task;
+import alien4cloud.model.runtime.WorkflowStepInstance;
+import alien4cloud.paas.model.TaskSentEvent;
+import alien4cloud.paas.model.WorkflowStepCompletedEvent;
+
+public class WorkflowExecutionsIndexTest {
+
+    private WorkflowStepInstance stepInstance(String executionId, String id, String stepId, String instanceId) {
+        WorkflowStepInstance stepInstance = new WorkflowStepInstance();
+        stepInstance.setId(id);
+        stepInstance.setExecutionId(executionId);
+        stepInstance.setDeploymentId("deployment");
+        stepInstance.setStepId(stepId);
+        stepInstance.setNodeId("Compute");
+        stepInstance.setInstanceId(instanceId);
+        stepInstance.setOperationName("tosca.interfaces.node.lifecycle.Standard.create");
+        return stepInstance;
+    }
+
+    private TaskSentEvent taskEvent(String executionId, String stepId, String instanceId) {
+        TaskSentEvent event = new TaskSentEvent();
+        event.setExecutionId(executionId);
+        event.setTaskId("task");
+        event.setWorkflowStepId(stepId);
+        event.setNodeId("Compute");
+        event.setInstanceId(instanceId);
+        event.setOperationName("tosca.interfaces.node.lifecycle.Standard.create");
+        return event;
+    }
+
+    @Test
+    public void taskEventsShouldBeCorrelatedWithTheirStepInstance() {
+        WorkflowExecutionsIndex index = new WorkflowExecutionsIndex(10);
+        index.addStepInstance(stepInstance("execution", "step-instance-0", "create_Compute", "0"));
+        index.addStepInstance(stepInstance("execution", "step-instance-1", "create_Compute", "1"));
+
+        Assert.assertEquals("step-instance-1", index.getStepInstance(taskEvent("execution", "create_Compute", "1")).getId());
+        // legacy orchestrators do not provide the step id, correlation is done on the operation
+        Assert.assertEquals("step-instance-0", index.getStepInstance(taskEvent("execution", null, "0")).getId());
+        Assert.assertNull(index.getStepInstance(taskEvent("execution", "create_Compute", "2")));
+        Assert.assertNull(index.getStepInstance(taskEvent("other-execution", "create_Compute", "0")));
+
+        WorkflowStepCompletedEvent completedEvent = new WorkflowStepCompletedEvent();
+        completedEvent.setExecutionId("execution");
+        completedEvent.setDeploymentId("deployment");
+        completedEvent.setStepId("create_Compute");
+        completedEvent.setNodeId("Compute");
+        completedEvent.setInstanceId("0");
+        Assert.assertEquals("step-instance-0", index.getStepInstance(completedEvent).getId());
+        completedEvent.setNodeId("OtherNode");
+        Assert.assertNull(index.getStepInstance(completedEvent));
+    }
+
+    @Test
+    public void executionsShouldBeEvicted() {
+        WorkflowExecutionsIndex index = new WorkflowExecutionsIndex(2);
+        Task task = new Task();
+        task.setId("task");
+        task.setExecutionId("execution-0");
+        index.addTask(task);
+        index.addStepInstance(stepInstance("execution-0", "step-instance", "create_Compute", "0"));
+        Assert.assertSame(task, index.getTask("execution-0", "task"));
+        Assert.assertNotNull(index.getStepInstance("execution-0", "step-instance"));
+
+        index.evict("execution-0");
+        Assert.assertNull(index.getTask("execution-0", "task"));
+        Assert.assertNull(index.getStepInstance("execution-0", "step-instance"));
+
+        // least recently used executions are evicted when the index is full
+        index.addStepInstance(stepInstance("execution-1", "step-instance", "create_Compute", "0"));
+        index.addStepInstance(stepInstance("execution-2", "step-instance", "create_Compute", "0"));
+        index.getStepInstance("execution-1", "step-instance");
+        index.addStepInstance(stepInstance("execution-3", "step-instance", "create_Compute", "0"));
+        Assert.assertEquals(2, index.size());
+        Assert.assertNotNull(index.getStepInstance("execution-1", "step-instance"));
+        Assert.assertNull(index.getStepInstance("execution-2", "step-instance"));
+    }
+
+    @Test
+    public void pinnedExecutionsShouldNotBeEvictedWhenTheIndexIsFull() {
+        WorkflowExecutionsIndex index = new WorkflowExecutionsIndex(2);
+        index.addStepInstance(stepInstance("execution-0", "step-instance", "create_Compute", "0"));
+        index.pin("execution-0");
+        index.pin("execution-0");
+        index.addStepInstance(stepInstance("execution-1", "step-instance", "create_Compute", "0"));
+        index.addStepInstance(stepInstance("execution-2", "step-instance", "create_Compute", "0"));
+        // the least recently used execution is pinned, the next one is evicted
+        Assert.assertNotNull(index.getStepInstance("execution-0", "step-instance"));
+        Assert.assertNull(index.getStepInstance("execution-1", "step-instance"));
+
+        index.pin("execution-2");
+        index.addStepInstance(stepInstance("execution-3", "step-instance", "create_Compute", "0"));
+        // all the other executions are pinned
+        Assert.assertEquals(3, index.size());
+
+        index.unpin("execution-0");
+        index.addStepInstance(stepInstance("execution-4", "step-instance", "create_Compute", "0"));
+        Assert.assertNotNull(index.getStepInstance("execution-0", "step-instance"));
+        index.unpin("execution-0");
+        index.getStepInstance("execution-4", "step-instance");
+        index.addStepInstance(stepInstance("execution-5", "step-instance", "create_Compute", "0"));
+        Assert.assertNull(index.getStepInstance("execution-0", "step-instance"));
+        Assert.assertNotNull(index.getStepInstance("execution-2", "step-instance"));
+    }
+}
@@ -11,6 +11,7 @@ import org.junit.Assert;
 
 import com.google.common.collect.Lists;
 
+import alien4cloud.audit.AuditESDAO;
 import alien4cloud.audit.model.AuditTrace;
 import alien4cloud.audit.model.AuditedMethod;
 import alien4cloud.audit.rest.AuditConfigurationDTO;
@@ -27,8 +28,14 @@ public class AuditLogStepsDefinitions {
 
     private AuditConfigurationDTO currentAuditConfiguration = null;
 
+    /** Audit traces are saved without refresh, make sure the latest traces are searchable. */
+    private void refreshAuditIndex() {
+        Context.getEsClientInstance().admin().indices().prepareRefresh(AuditESDAO.ALIEN_AUDIT_INDEX).execute().actionGet();
+    }
+
     @Then("^I should have no audit trace in Alien$")
     public void I_should_have_no_audit_trace_in_Alien() throws Throwable {
+        refreshAuditIndex();
         FilteredSearchRequest req = new FilteredSearchRequest("", 0, 1, null);
         String jSon = JsonUtil.toString(req);
         String restResponse = Context.getRestClientInstance().postJSon("/rest/v1/audit/search", jSon);
@@ -159,6 +166,7 @@ public class AuditLogStepsDefinitions {
 
     private List<AuditTrace> searchAuditLogs(String query, Integer from, int numberOfResult, Map<String, String[]> filters, boolean checkResultSize)
             throws IOException {
+        refreshAuditIndex();
         FilteredSearchRequest req = new FilteredSearchRequest(query, from, 10, filters);
         String jSon = JsonUtil.toString(req);
         String restResponse = Context.getRestClientInstance().postJSon("/rest/v1/audit/search", jSon);
@@ -4,32 +4,47 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Map;
+import java.util.Set;
 
 import org.alien4cloud.tosca.editor.operations.AbstractEditorOperation;
 import org.apache.commons.lang.StringUtils;
+import org.junit.Assert;
 import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.spel.SpelParserConfiguration;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 
+import com.google.common.base.Splitter;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 
 import alien4cloud.it.Context;
 import alien4cloud.it.common.CommonStepDefinitions;
 import alien4cloud.rest.utils.JsonUtil;
 import alien4cloud.topology.TopologyDTO;
+import alien4cloud.topology.TopologyDeltaDTO;
 import cucumber.api.DataTable;
 import cucumber.api.java.en.Given;
+import cucumber.api.java.en.Then;
 import cucumber.api.java.en.When;
 import gherkin.formatter.model.DataTableRow;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Steps to manage the editor.
  */
+@Slf4j
 public class EditorStepDefinitions {
     // Keep a local context for topology dto
     public static TopologyDTO TOPOLOGY_DTO = null;
+    // Version and last operation of the topology known when executing operations in delta mode
+    private static String TOPOLOGY_VERSION = null;
+    private static String DELTA_LAST_OPERATION_ID = null;
+    private static TopologyDeltaDTO DELTA_DTO = null;
+    // Sizes of the delta responses and of the full topology responses for the same operations
+    private static long DELTA_RESPONSES_SIZE = 0;
+    private static long FULL_RESPONSES_SIZE = 0;
 
     @Given("^I get the current topology$")
     public void i_get_the_current_topology() throws Throwable {
@@ -78,6 +93,81 @@ public class EditorStepDefinitions {
         trySetTopologyDto();
     }
 
+    @Given("^I execute the operation in delta mode$")
+    public void i_execute_the_operation_in_delta_mode(DataTable operationDT) throws Throwable {
+        Map<String, String> operationMap = Maps.newLinkedHashMap();
+        for (DataTableRow row : operationDT.getGherkinRows()) {
+            operationMap.put(row.getCells().get(0), row.getCells().get(1));
+        }
+        Class operationClass = Class.forName(operationMap.get("type"));
+        AbstractEditorOperation operation = (AbstractEditorOperation) operationClass.newInstance();
+        EvaluationContext operationContext = new StandardEvaluationContext(operation);
+        SpelExpressionParser parser = new SpelExpressionParser(new SpelParserConfiguration(true, true));
+        for (Map.Entry<String, String> operationEntry : operationMap.entrySet()) {
+            if (!"type".equals(operationEntry.getKey())) {
+                parser.parseRaw(operationEntry.getKey()).setValue(operationContext, operationEntry.getValue());
+            }
+        }
+
+        String topologyId = Context.getInstance().getTopologyId();
+        if (TOPOLOGY_VERSION == null) {
+            // first operation in delta mode, start from the current full topology
+            do_i_get_the_current_topology();
+            DELTA_LAST_OPERATION_ID = getLastOperationId();
+        }
+        operation.setPreviousOperationId(DELTA_LAST_OPERATION_ID);
+        String url = "/rest/v2/editor/" + topologyId + "/execute?delta=true" + (TOPOLOGY_VERSION == null ? "" : "&version=" + TOPOLOGY_VERSION);
+        String deltaResponse = Context.getRestClientInstance().postJSon(url, JsonUtil.toString(operation));
+        Context.getInstance().registerRestResponse(deltaResponse);
+        TopologyDeltaDTO deltaDTO = JsonUtil.read(deltaResponse, TopologyDeltaDTO.class, Context.getJsonMapper()).getData();
+        DELTA_DTO = deltaDTO;
+        if (deltaDTO == null) {
+            // the operation failed, the known version is unchanged
+            return;
+        }
+        TOPOLOGY_VERSION = deltaDTO.getVersion();
+        DELTA_LAST_OPERATION_ID = deltaDTO.getOperations().get(deltaDTO.getLastOperationIndex() - deltaDTO.getOperationsOffset()).getId();
+
+        // the response that the editor would have sent without delta mode
+        String fullResponse = Context.getRestClientInstance().get("/rest/v1/topologies/" + topologyId);
+        DELTA_RESPONSES_SIZE += deltaResponse.length();
+        FULL_RESPONSES_SIZE += fullResponse.length();
+        log.info("Editor response size for {}: {} chars in delta mode, {} chars for the full topology", operationClass.getSimpleName(), deltaResponse.length(),
+                fullResponse.length());
+    }
+
+    @Then("^The delta should contain the updated node templates \"([^\"]*)\" and the removed node templates \"([^\"]*)\"$")
+    public void the_delta_should_contain_the_updated_node_templates_and_the_removed_node_templates(String updatedNodeTemplates, String removedNodeTemplates)
+            throws Throwable {
+        Assert.assertNotNull(DELTA_DTO);
+        // the delta applies on the version of the previous response
+        Assert.assertNotNull(DELTA_DTO.getBaseVersion());
+        Assert.assertEquals(toSet(updatedNodeTemplates), DELTA_DTO.getUpdatedNodeTemplates().keySet());
+        Assert.assertEquals(toSet(removedNodeTemplates), DELTA_DTO.getRemovedNodeTemplates());
+    }
+
+    @Then("^The delta should contain the updated workflows \"([^\"]*)\"$")
+    public void the_delta_should_contain_the_updated_workflows(String updatedWorkflows) throws Throwable {
+        Assert.assertNotNull(DELTA_DTO);
+        Assert.assertTrue(DELTA_DTO.getUpdatedWorkflows().keySet().containsAll(toSet(updatedWorkflows)));
+        Assert.assertTrue(DELTA_DTO.getRemovedWorkflows().isEmpty());
+    }
+
+    private static Set<String> toSet(String commaSeparatedValues) {
+        return Sets.newHashSet(Splitter.on(',').trimResults().omitEmptyStrings().split(commaSeparatedValues));
+    }
+
+    @Then("^The delta responses should be smaller than the full topology responses$")
+    public void the_delta_responses_should_be_smaller_than_the_full_topology_responses() throws Throwable {
+        log.info("Editor responses size: {} chars in delta mode, {} chars for the full topology", DELTA_RESPONSES_SIZE, FULL_RESPONSES_SIZE);
+        Assert.assertTrue(DELTA_RESPONSES_SIZE < FULL_RESPONSES_SIZE);
+        TOPOLOGY_VERSION = null;
+        DELTA_LAST_OPERATION_ID = null;
+        DELTA_DTO = null;
+        DELTA_RESPONSES_SIZE = 0;
+        FULL_RESPONSES_SIZE = 0;
+    }
+
     public static String getLastOperationId() {
 
         if (TOPOLOGY_DTO == null || TOPOLOGY_DTO.getLastOperationIndex() == -1) {
@@ -141,3 +141,30 @@ Feature: Manage Nodetemplates of a topology
     When I try to retrieve the created topology
     Then I should receive a RestResponse with no error
     And The topology should contain a nodetemplate named "Template1" with property "num_cpus" set to null
+
+  @reset
+  Scenario: Editor operations in delta mode return smaller responses than the full topology
+    Given I execute the operation in delta mode
+      | type              | org.alien4cloud.tosca.editor.operations.nodetemplate.AddNodeOperation |
+      | nodeName          | Compute                                                               |
+      | indexedNodeTypeId | tosca.nodes.Compute:1.0                                               |
+    And I should receive a RestResponse with no error
+    And I execute the operation in delta mode
+      | type              | org.alien4cloud.tosca.editor.operations.nodetemplate.AddNodeOperation |
+      | nodeName          | Java                                                                  |
+      | indexedNodeTypeId | fastconnect.nodes.Java:1.0                                            |
+    And I should receive a RestResponse with no error
+    And The delta should contain the updated node templates "Java" and the removed node templates ""
+    And I execute the operation in delta mode
+      | type              | org.alien4cloud.tosca.editor.operations.nodetemplate.AddNodeOperation |
+      | nodeName          | War                                                                   |
+      | indexedNodeTypeId | fastconnect.nodes.War:1.0                                             |
+    And I should receive a RestResponse with no error
+    When I execute the operation in delta mode
+      | type     | org.alien4cloud.tosca.editor.operations.nodetemplate.RenameNodeOperation |
+      | nodeName | War                                                                      |
+      | newName  | Application                                                              |
+    Then I should receive a RestResponse with no error
+    And The delta should contain the updated node templates "Application" and the removed node templates "War"
+    And The delta should contain the updated workflows "install,uninstall"
+    And The delta responses should be smaller than the full topology responses
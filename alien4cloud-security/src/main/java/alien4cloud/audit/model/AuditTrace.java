@@ -13,10 +13,14 @@ import org.elasticsearch.annotation.query.TermFilter;
 import org.elasticsearch.annotation.query.TermsFacet;
 import org.elasticsearch.mapping.IndexType;
 
+import alien4cloud.dao.model.EsRefreshPolicy;
+import alien4cloud.dao.model.RefreshPolicy;
+
 @Getter
 @Setter
 @ToString
 @ESObject
+@EsRefreshPolicy(RefreshPolicy.NONE)
 public class AuditTrace {
 
     @DateField
@@ -23,15 +23,14 @@ import org.springframework.stereotype.Component;
 
 import alien4cloud.paas.plan.ToscaNodeLifecycleConstants;
 import alien4cloud.paas.wf.util.NodeSubGraphFilter;
-import alien4cloud.paas.wf.util.SimpleGraphConsumer;
 import alien4cloud.paas.wf.util.SubGraph;
 import alien4cloud.paas.wf.util.SubGraphFilter;
+import alien4cloud.paas.wf.util.WorkflowGraph;
 import alien4cloud.paas.wf.util.WorkflowGraphUtils;
 import alien4cloud.paas.wf.util.WorkflowStepWeightComparator;
 import alien4cloud.paas.wf.util.WorkflowUtils;
 import alien4cloud.tosca.parser.ToscaParser;
 import alien4cloud.utils.AlienUtils;
-import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
@@ -45,39 +44,6 @@ public class WorkflowSimplifyService {
         void doWithNode(SubGraph subGraph, Workflow workflow);
     }
 
-    @Getter
-    private static class ComputeNodesWeightsGraphConsumer extends SimpleGraphConsumer {
-
-        private Map<String, Integer> allNodeWeights = new HashMap<>();
-
-        @Override
-        public boolean onNewPath(List<WorkflowStep> path) {
-            WorkflowStep currentNode = path.get(path.size() - 1);
-            int parentWeight;
-            if (path.size() > 1) {
-                parentWeight = allNodeWeights.get(path.get(path.size() - 2).getName());
-            } else {
-                parentWeight = 0;
-            }
-            Integer currentWeight = allNodeWeights.computeIfAbsent(currentNode.getName(), k -> 0);
-            Integer newComputedWeight = Math.max(parentWeight + 1, currentWeight);
-            allNodeWeights.put(currentNode.getName(), newComputedWeight);
-            return true;
-        }
-    }
-
-    @Getter
-    private static class LastPathGraphConsumer extends SimpleGraphConsumer {
-
-        private List<WorkflowStep> lastPath;
-
-        @Override
-        public boolean onNewPath(List<WorkflowStep> path) {
-            lastPath = path;
-            return true;
-        }
-    }
-
     /**
      * Simplify all the workflows which have no custom modifications
      * @param tc Topology Context
@@ -105,6 +71,26 @@ public class WorkflowSimplifyService {
         }
     }
 
+    /**
+     * Flatten and remove the unnecessary steps of the sub graphs of the given nodes only, the other nodes of the workflow are left as they are. The
+     * simplifications that concern the whole workflow are not performed, use {@link #simplifyWorkflow(TopologyContext, Set)} for them.
+     *
+     * @param tc Topology Context
+     * @param workflow the workflow to simplify, nothing is done if it has custom modifications
+     * @param nodeIds names of the node templates which steps must be simplified
+     */
+    public void simplifyNodes(TopologyContext tc, Workflow workflow, Set<String> nodeIds) {
+        if (workflow.isHasCustomModifications()) {
+            return;
+        }
+        for (String nodeId : nodeIds) {
+            flattenWorkflow(tc, new SubGraph(workflow, new NodeSubGraphFilter(workflow, nodeId, tc.getTopology())));
+        }
+        for (String nodeId : nodeIds) {
+            removeUnnecessarySteps(tc, workflow, new SubGraph(workflow, new NodeSubGraphFilter(workflow, nodeId, tc.getTopology())));
+        }
+    }
+
     /**
      * These simplifiers can be run on any workflow, even if modified.
      *
@@ -123,44 +109,36 @@ public class WorkflowSimplifyService {
     }
 
     protected void removeUselessEdges(Workflow wf) {
-		List<WorkflowStep[]> blacklists = new ArrayList<>();
-        Collection<WorkflowStep> steps = wf.getSteps().values();
-        steps.forEach(step -> {
+        List<WorkflowStep[]> blacklists = new ArrayList<>();
+        WorkflowGraph graph = WorkflowGraph.of(wf.getSteps());
+        wf.getSteps().values().forEach(step -> {
             // 1. If the current node has more than one preceding node, kick off the work
             if (step.getPrecedingSteps().size() > 1) {
-                // 2. For each preceding node, get all the precedences of this node
-                Map<String, Set<String>> precedencesMap = new HashMap<>();
-                step.getPrecedingSteps().forEach(preName -> {
-                    Set<String> precedences = WorkflowUtils.findAllPrecedences(steps, preName);
-                    precedencesMap.put(preName, precedences);
-                });
-
-                // 3. For each preceding node,
-                // if the precedent node is contained in any other precedences ancestor set,
+                // 2. For each preceding node,
+                // if the precedent node is an ancestor of any other preceding node,
                 // remove the connection (between precedent and current)
                 step.getPrecedingSteps().forEach(preName -> {
-					Set<String> otherStepNames = new HashSet<>(step.getPrecedingSteps());
-					otherStepNames.remove(preName);
-					if (containedInOtherPaths(precedencesMap, preName, otherStepNames)) {
-						// Add the edge between precedent and current to blacklist
-						blacklists.add(new WorkflowStep[] { WorkflowUtils.findStep(steps, preName), step });
-					}
+                    Set<String> otherStepNames = new HashSet<>(step.getPrecedingSteps());
+                    otherStepNames.remove(preName);
+                    if (containedInOtherPaths(graph, preName, otherStepNames)) {
+                        // Add the edge between precedent and current to blacklist
+                        blacklists.add(new WorkflowStep[] { wf.getSteps().get(preName), step });
+                    }
                 });
             }
         });
-        // 4. Remove the edges in blacklist
-		blacklists.forEach(pair -> WorkflowUtils.removeEdge(pair[0], pair[1]));
+        // 3. Remove the edges in blacklist
+        blacklists.forEach(pair -> WorkflowUtils.removeEdge(pair[0], pair[1]));
     }
 
-    private boolean containedInOtherPaths(Map<String, Set<String>> precedencesMap, String step, Set<String> otherSteps) {
-		for (String otherPreStep : otherSteps) {
-			Set<String> otherPaths = precedencesMap.get(otherPreStep);
-			if (otherPaths.contains(step)) {
-				return true;
-			}
-		}
-		return false;
-	}
+    private boolean containedInOtherPaths(WorkflowGraph graph, String step, Set<String> otherSteps) {
+        for (String otherPreStep : otherSteps) {
+            if (graph.isPredecessor(step, otherPreStep)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
     protected void removeOrphanSetStateSteps(DefaultDeclarativeWorkflows dwf, Workflow workflow) {
         // 1. Find all the set state operation pairs
@@ -182,8 +160,9 @@ public class WorkflowSimplifyService {
                 })
                 .forEach(step -> {
                     if (step.getPrecedingSteps().size() <= 1 && step.getOnSuccess().size() == 1) {
-                        WorkflowStep nextStep = WorkflowUtils.findSteps(steps, step.getOnSuccess()).get(0);
-                        WorkflowStep preStep = step.getPrecedingSteps().size() == 0 ? null : WorkflowUtils.findSteps(steps, step.getPrecedingSteps()).get(0);
+                        WorkflowStep nextStep = workflow.getSteps().get(step.getOnSuccess().iterator().next());
+                        WorkflowStep preStep = step.getPrecedingSteps().size() == 0 ? null
+                                : workflow.getSteps().get(step.getPrecedingSteps().iterator().next());
                         if (isPairStep(step, nextStep, pairs)) {
                             blackListSteps.add(step.getName());
                             blackListSteps.add(nextStep.getName());
@@ -193,7 +172,7 @@ public class WorkflowSimplifyService {
                                 step.removePreceding(preStep.getName());
                             }
                             nextStep.getOnSuccess().forEach(name -> {
-                                WorkflowStep nextNextStep = WorkflowUtils.findStep(steps, name);
+                                WorkflowStep nextNextStep = workflow.getSteps().get(name);
                                 if (nextNextStep != null) {
                                     nextNextStep.removePreceding(nextStep.getName());
                                     WorkflowUtils.linkSteps(preStep, nextNextStep);
@@ -219,14 +198,15 @@ public class WorkflowSimplifyService {
     }
 
     private void removeUnnecessarySteps(TopologyContext topologyContext, Workflow workflow, SubGraph subGraph) {
-        LastPathGraphConsumer consumer = new LastPathGraphConsumer();
-        subGraph.browse(consumer);
-        if (consumer.getAllNodes().isEmpty()) {
+        WorkflowGraph graph = subGraph.getGraph();
+        Map<String, WorkflowStep> allNodes = graph.getReachableSteps();
+        if (allNodes.isEmpty()) {
             // This is really strange as we have a node template without any workflow step
             return;
         }
-        Set<String> allStepIds = consumer.getAllNodes().keySet();
-        List<WorkflowStep> sortedByWeightsSteps = consumer.getLastPath();
+        Set<String> allStepIds = allNodes.keySet();
+        // the sub graph has been flattened so the last path contains all its steps
+        List<WorkflowStep> sortedByWeightsSteps = graph.getLastPath();
         List<Integer> nonEmptyIndexes = new ArrayList<>();
         LinkedHashSet<Integer> emptyIndexes = new LinkedHashSet<>();
         int lastIndexWithOutgoingLinks = -1;
@@ -326,15 +306,14 @@ public class WorkflowSimplifyService {
     }
 
     private void flattenWorkflow(TopologyContext topologyContext, SubGraph subGraph) {
-        ComputeNodesWeightsGraphConsumer consumer = new ComputeNodesWeightsGraphConsumer();
-        subGraph.browse(consumer);
-        if (consumer.getAllNodes().isEmpty()) {
+        WorkflowGraph graph = subGraph.getGraph();
+        Map<String, WorkflowStep> allNodes = graph.getReachableSteps();
+        if (allNodes.isEmpty()) {
             // This is really strange as we have a node template without any workflow step
             return;
         }
-        Map<String, WorkflowStep> allNodes = consumer.getAllNodes();
         LinkedList<WorkflowStep> sortedByWeightsSteps = new LinkedList<>(allNodes.values());
-        sortedByWeightsSteps.sort(new WorkflowStepWeightComparator(consumer.getAllNodeWeights(), topologyContext.getTopology()));
+        sortedByWeightsSteps.sort(new WorkflowStepWeightComparator(graph.getWeights(), topologyContext.getTopology()));
         Set<String> allSubGraphNodeIds = allNodes.keySet();
         sortedByWeightsSteps.forEach(workflowStep -> {
             // Remove all old links between the steps in the graph
@@ -34,6 +34,7 @@ import alien4cloud.topology.task.TaskCode;
 import alien4cloud.topology.task.WorkflowTask;
 import alien4cloud.tosca.parser.ToscaParser;
 import alien4cloud.utils.AlienUtils;
+import alien4cloud.utils.CloneUtil;
 import alien4cloud.utils.YamlParserUtil;
 import lombok.extern.slf4j.Slf4j;
 
@@ -175,7 +176,23 @@ public class WorkflowsBuilderService {
     }
 
     public void addNode(TopologyContext topologyContext, String nodeName) {
+        addNode(topologyContext, nodeName, false);
+    }
+
+    /**
+     * Add the steps of a node template to the workflows of the topology.
+     *
+     * @param topologyContext The topology context.
+     * @param nodeName The name of the node template to add.
+     * @param deferPostProcessing When true only the steps of the node are simplified and the workflows must be finalized later with
+     *            {@link #finalizeWorkflows(TopologyContext)}, else every workflow is simplified and validated.
+     */
+    public void addNode(TopologyContext topologyContext, String nodeName, boolean deferPostProcessing) {
         boolean forceOperation = WorkflowUtils.isComputeOrNetwork(nodeName, topologyContext);
+        if (deferPostProcessing) {
+            applyDeferred(topologyContext, Sets.newHashSet(nodeName), (builder, wf) -> builder.addNode(wf, nodeName, topologyContext, forceOperation));
+            return;
+        }
         // Use the unprocessed workflow to perform add node as we know that every steps / links will be present as it's defined in declarative workflow
         topologyContext.getTopology().getWorkflows().putAll(topologyContext.getTopology().getUnprocessedWorkflows());
         for (Workflow wf : topologyContext.getTopology().getWorkflows().values()) {
@@ -186,6 +203,67 @@ public class WorkflowsBuilderService {
         postProcessTopologyWorkflows(topologyContext);
     }
 
+    private interface WorkflowChange {
+        void apply(AbstractWorkflowBuilder builder, Workflow workflow);
+    }
+
+    /**
+     * Apply a change to the unprocessed workflows, which remain exact, and to the workflows of the topology where only the steps of the impacted nodes are
+     * simplified. The steps of the other nodes are neither simplified again nor validated until the workflows are finalized.
+     */
+    private void applyDeferred(TopologyContext topologyContext, Set<String> impactedNodes, WorkflowChange change) {
+        Topology topology = topologyContext.getTopology();
+        for (Workflow wf : topology.getWorkflows().values()) {
+            Workflow unprocessedWorkflow = topology.getUnprocessedWorkflows().get(wf.getName());
+            if (unprocessedWorkflow == null && NormativeWorkflowNameConstants.STANDARD_WORKFLOWS.contains(wf.getName())) {
+                // The workflow has never been post processed so it is its own unprocessed version
+                unprocessedWorkflow = WorkflowUtils.cloneWorkflow(wf);
+                topology.getUnprocessedWorkflows().put(wf.getName(), unprocessedWorkflow);
+            }
+            if (unprocessedWorkflow != null) {
+                change.apply(getWorkflowBuilder(topologyContext.getDSLVersion(), unprocessedWorkflow), unprocessedWorkflow);
+                WorkflowUtils.fillHostId(unprocessedWorkflow, topologyContext);
+            }
+            // Steps of other nodes may have been removed by the simplification so the links to them are missing until the workflow is finalized
+            change.apply(getWorkflowBuilder(topologyContext.getDSLVersion(), wf), wf);
+            WorkflowUtils.fillHostId(wf, topologyContext);
+            if (unprocessedWorkflow != null) {
+                workflowSimplifyService.simplifyNodes(topologyContext, wf, impactedNodes);
+            }
+            wf.setPendingFinalization(true);
+        }
+    }
+
+    public void finalizeWorkflows(Topology topology, Csar csar) {
+        finalizeWorkflows(buildTopologyContext(topology, csar));
+    }
+
+    /**
+     * Simplify and validate the workflows changed with a deferred post processing, they are then the same as if every change had been post processed.
+     *
+     * @param topologyContext The topology context.
+     */
+    public void finalizeWorkflows(TopologyContext topologyContext) {
+        Topology topology = topologyContext.getTopology();
+        Set<String> pendingWorkflows = AlienUtils.safe(topology.getWorkflows()).values().stream().filter(Workflow::isPendingFinalization)
+                .map(Workflow::getName).collect(Collectors.toSet());
+        if (pendingWorkflows.isEmpty()) {
+            return;
+        }
+        Set<String> unprocessedWorkflows = pendingWorkflows.stream().filter(name -> topology.getUnprocessedWorkflows().containsKey(name))
+                .collect(Collectors.toSet());
+        // Simplify again from the unprocessed workflows as the steps of every node may be impacted by the links of the new steps
+        unprocessedWorkflows.forEach(name -> {
+            Workflow wf = topology.getUnprocessedWorkflows().get(name);
+            WorkflowUtils.fillHostId(wf, topologyContext);
+            topology.getWorkflows().put(name, wf);
+        });
+        postProcessTopologyWorkflows(topologyContext, unprocessedWorkflows);
+        pendingWorkflows.stream().filter(name -> !unprocessedWorkflows.contains(name))
+                .forEach(name -> workflowValidator.validate(topologyContext, topology.getWorkflow(name)));
+        topology.getWorkflows().values().forEach(wf -> wf.setPendingFinalization(false));
+    }
+
     public void removeNode(Topology topology, Csar csar, String nodeName) {
         TopologyContext topologyContext = buildTopologyContext(topology, csar);
         topologyContext.getTopology().getWorkflows().putAll(topologyContext.getTopology().getUnprocessedWorkflows());
@@ -199,9 +277,27 @@ public class WorkflowsBuilderService {
     }
 
     public void addRelationship(TopologyContext topologyContext, String nodeTemplateName, String relationshipName) {
-        topologyContext.getTopology().getWorkflows().putAll(topologyContext.getTopology().getUnprocessedWorkflows());
+        addRelationship(topologyContext, nodeTemplateName, relationshipName, false);
+    }
+
+    /**
+     * Add the steps of a relationship to the workflows of the topology and link them to the steps of its source and target.
+     *
+     * @param topologyContext The topology context.
+     * @param nodeTemplateName The name of the source node template.
+     * @param relationshipName The name of the relationship template in the source node template.
+     * @param deferPostProcessing When true only the steps of the source and the target are simplified and the workflows must be finalized later with
+     *            {@link #finalizeWorkflows(TopologyContext)}, else every workflow is simplified and validated.
+     */
+    public void addRelationship(TopologyContext topologyContext, String nodeTemplateName, String relationshipName, boolean deferPostProcessing) {
         NodeTemplate nodeTemplate = topologyContext.getTopology().getNodeTemplates().get(nodeTemplateName);
         RelationshipTemplate relationshipTemplate = nodeTemplate.getRelationships().get(relationshipName);
+        if (deferPostProcessing) {
+            applyDeferred(topologyContext, Sets.newHashSet(nodeTemplateName, relationshipTemplate.getTarget()), (builder, wf) -> builder.addRelationship(wf,
+                    nodeTemplateName, nodeTemplate, relationshipName, relationshipTemplate, topologyContext));
+            return;
+        }
+        topologyContext.getTopology().getWorkflows().putAll(topologyContext.getTopology().getUnprocessedWorkflows());
         for (Workflow wf : topologyContext.getTopology().getWorkflows().values()) {
             AbstractWorkflowBuilder builder = getWorkflowBuilder(topologyContext.getDSLVersion(), wf);
             builder.addRelationship(wf, nodeTemplateName, nodeTemplate, relationshipName, relationshipTemplate, topologyContext);
@@ -345,6 +441,19 @@ public class WorkflowsBuilderService {
     }
 
     public void renameNode(Topology topology, Csar csar, String nodeTemplateName, String newNodeTemplateName) {
+        renameNode(topology, csar, nodeTemplateName, newNodeTemplateName, false);
+    }
+
+    /**
+     * Rename the steps of a node template in the workflows of the topology.
+     *
+     * @param topology The topology.
+     * @param csar The archive of the topology.
+     * @param nodeTemplateName The current name of the node template.
+     * @param newNodeTemplateName The new name of the node template.
+     * @param deferPostProcessing When true the workflows are not validated and must be finalized later with {@link #finalizeWorkflows(TopologyContext)}.
+     */
+    public void renameNode(Topology topology, Csar csar, String nodeTemplateName, String newNodeTemplateName, boolean deferPostProcessing) {
         if (topology.getWorkflows() == null) {
             return;
         }
@@ -356,7 +465,11 @@ public class WorkflowsBuilderService {
                 builder.renameNode(topology.getUnprocessedWorkflows().get(wf.getName()), nodeTemplateName, newNodeTemplateName);
             }
             WorkflowUtils.fillHostId(wf, topologyContext);
-            workflowValidator.validate(topologyContext, wf);
+            if (deferPostProcessing) {
+                wf.setPendingFinalization(true);
+            } else {
+                workflowValidator.validate(topologyContext, wf);
+            }
         }
     }
 
@@ -485,8 +598,14 @@ public class WorkflowsBuilderService {
     public List<WorkflowTask> validateWorkflows(Topology topology) {
         List<WorkflowTask> tasks = Lists.newArrayList();
         if (topology.getWorkflows() != null) {
-            TopologyContext topologyContext = buildTopologyContext(topology);
-            for (Workflow workflow : topology.getWorkflows().values()) {
+            Topology validatedTopology = topology;
+            if (topology.getWorkflows().values().stream().anyMatch(Workflow::isPendingFinalization)) {
+                // Validate the workflows as they will be once finalized without changing the given topology
+                validatedTopology = CloneUtil.clone(topology);
+            }
+            TopologyContext topologyContext = buildTopologyContext(validatedTopology);
+            finalizeWorkflows(topologyContext);
+            for (Workflow workflow : validatedTopology.getWorkflows().values()) {
                 int errorCount = validateWorkflow(topologyContext, workflow);
                 if (errorCount > 0) {
                     WorkflowTask workflowTask = new WorkflowTask();
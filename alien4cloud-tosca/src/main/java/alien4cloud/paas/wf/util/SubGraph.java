@@ -27,6 +27,21 @@ public class SubGraph {
         this.filter = subGraphFilter;
     }
 
+    /**
+     * Index the steps of the sub graph as they are linked now, later changes of the workflow are not reflected in the returned graph.
+     *
+     * @return The graph of the steps of the sub graph.
+     */
+    public WorkflowGraph getGraph() {
+        return WorkflowGraph.of(WorkflowGraphUtils.getAllStepsInSubGraph(workflow, filter));
+    }
+
+    /**
+     * Call the consumer with every path from the entry steps of the sub graph.
+     *
+     * @deprecated The number of paths grows exponentially with the width of the workflow, use {@link #getGraph()} instead.
+     */
+    @Deprecated
     public void browse(GraphConsumer graphConsumer) {
         Map<String, WorkflowStep> subGraphSteps = WorkflowGraphUtils.getAllStepsInSubGraph(workflow, filter);
         Set<String> allSubGraphNodeIds = subGraphSteps.keySet();
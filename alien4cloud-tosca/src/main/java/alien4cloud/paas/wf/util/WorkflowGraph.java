@@ -0,0 +1,397 @@
+package alien4cloud.paas.wf.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.alien4cloud.tosca.model.workflow.WorkflowStep;
+
+import alien4cloud.utils.AlienUtils;
+
+/**
+ * Immutable indexed view of the links between a set of workflow steps.
+ * <p>
+ * Steps are identified by their index in the iteration order of the given steps and links are kept in adjacency arrays so that the graph algorithms do not
+ * have to enumerate the paths or to look up the steps by name. Links to steps that are not part of the graph are ignored. The successors are read from the
+ * onSuccess links and the predecessors from the preceding links of the steps.
+ * </p>
+ */
+public class WorkflowGraph {
+    private final WorkflowStep[] steps;
+    private final Map<String, Integer> ids;
+    private final int[][] successors;
+    private final int[][] predecessors;
+    /** Transitive predecessors of every step, computed on first use. */
+    private BitSet[] allPredecessors;
+
+    public WorkflowGraph(Collection<WorkflowStep> steps) {
+        this.steps = steps.toArray(new WorkflowStep[steps.size()]);
+        this.ids = new HashMap<>();
+        for (int id = 0; id < this.steps.length; id++) {
+            ids.put(this.steps[id].getName(), id);
+        }
+        this.successors = new int[this.steps.length][];
+        this.predecessors = new int[this.steps.length][];
+        for (int id = 0; id < this.steps.length; id++) {
+            successors[id] = toIds(this.steps[id].getOnSuccess());
+            predecessors[id] = toIds(this.steps[id].getPrecedingSteps());
+        }
+    }
+
+    private int[] toIds(Set<String> names) {
+        int[] result = new int[AlienUtils.safe(names).size()];
+        int size = 0;
+        for (String name : AlienUtils.safe(names)) {
+            Integer id = ids.get(name);
+            if (id != null) {
+                result[size++] = id;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    public int size() {
+        return steps.length;
+    }
+
+    public WorkflowStep getStep(int id) {
+        return steps[id];
+    }
+
+    /**
+     * @param name The name of a step.
+     * @return The id of the step or -1 if it is not in the graph.
+     */
+    public int getId(String name) {
+        Integer id = ids.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public int[] getSuccessors(int id) {
+        return successors[id].clone();
+    }
+
+    public int[] getPredecessors(int id) {
+        return predecessors[id].clone();
+    }
+
+    /**
+     * Get the entry steps of the graph, the steps without any predecessor in the graph. When every step has a predecessor (the graph is a cycle) the first step
+     * is considered as the entry step.
+     *
+     * @return The ids of the entry steps in the graph order.
+     */
+    public int[] getRoots() {
+        int[] roots = new int[steps.length];
+        int size = 0;
+        for (int id = 0; id < steps.length; id++) {
+            if (predecessors[id].length == 0) {
+                roots[size++] = id;
+            }
+        }
+        if (size == 0 && steps.length > 0) {
+            return new int[] { 0 };
+        }
+        return Arrays.copyOf(roots, size);
+    }
+
+    /**
+     * @return The steps that can be reached from the entry steps, by name.
+     */
+    public Map<String, WorkflowStep> getReachableSteps() {
+        Map<String, WorkflowStep> reachableSteps = new HashMap<>();
+        BitSet reachable = getReachable();
+        for (int id = reachable.nextSetBit(0); id >= 0; id = reachable.nextSetBit(id + 1)) {
+            reachableSteps.put(steps[id].getName(), steps[id]);
+        }
+        return reachableSteps;
+    }
+
+    private BitSet getReachable() {
+        BitSet reachable = new BitSet(steps.length);
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        for (int root : getRoots()) {
+            reachable.set(root);
+            toVisit.push(root);
+        }
+        while (!toVisit.isEmpty()) {
+            for (int successor : successors[toVisit.pop()]) {
+                if (!reachable.get(successor)) {
+                    reachable.set(successor);
+                    toVisit.push(successor);
+                }
+            }
+        }
+        return reachable;
+    }
+
+    /**
+     * Compute the weight of the steps that can be reached from the entry steps: the number of steps of the longest path from an entry step to the step. Links
+     * that close a cycle are not taken into account.
+     *
+     * @return The weight of the reachable steps by name.
+     */
+    public Map<String, Integer> getWeights() {
+        BitSet reachable = getReachable();
+        int[] inDegrees = new int[steps.length];
+        for (int id = reachable.nextSetBit(0); id >= 0; id = reachable.nextSetBit(id + 1)) {
+            for (int successor : successors[id]) {
+                inDegrees[successor]++;
+            }
+        }
+        int[] weights = new int[steps.length];
+        BitSet done = new BitSet(steps.length);
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int id = reachable.nextSetBit(0); id >= 0; id = reachable.nextSetBit(id + 1)) {
+            weights[id] = 1;
+            if (inDegrees[id] == 0) {
+                ready.add(id);
+            }
+        }
+        while (done.cardinality() < reachable.cardinality()) {
+            if (ready.isEmpty()) {
+                // only cycles remain, break them at their first step
+                BitSet remaining = (BitSet) reachable.clone();
+                remaining.andNot(done);
+                ready.add(remaining.nextSetBit(0));
+            }
+            int id = ready.poll();
+            if (done.get(id)) {
+                continue;
+            }
+            done.set(id);
+            for (int successor : successors[id]) {
+                if (!done.get(successor)) {
+                    weights[successor] = Math.max(weights[successor], weights[id] + 1);
+                    if (--inDegrees[successor] == 0) {
+                        ready.add(successor);
+                    }
+                }
+            }
+        }
+        Map<String, Integer> result = new HashMap<>();
+        for (int id = reachable.nextSetBit(0); id >= 0; id = reachable.nextSetBit(id + 1)) {
+            result.put(steps[id].getName(), weights[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Get the path that goes from the last entry step through the last successor of every step, the last path of a depth first browse of the graph.
+     *
+     * @return The steps of the path.
+     */
+    public List<WorkflowStep> getLastPath() {
+        List<WorkflowStep> path = new ArrayList<>();
+        int[] roots = getRoots();
+        if (roots.length == 0) {
+            return path;
+        }
+        BitSet visited = new BitSet(steps.length);
+        int id = roots[roots.length - 1];
+        while (!visited.get(id)) {
+            visited.set(id);
+            path.add(steps[id]);
+            if (successors[id].length == 0) {
+                break;
+            }
+            id = successors[id][successors[id].length - 1];
+        }
+        return path;
+    }
+
+    /**
+     * Find the cycles of the graph, one for every set of steps that are reachable from each other.
+     *
+     * @return For every cycle, the steps of the cycle in the order of their links starting from the step with the lowest id.
+     */
+    public List<List<WorkflowStep>> getCycles() {
+        List<List<WorkflowStep>> cycles = new ArrayList<>();
+        for (int[] component : getStronglyConnectedComponents(successors)) {
+            int first = Arrays.stream(component).min().getAsInt();
+            if (component.length > 1 || Arrays.stream(successors[first]).anyMatch(successor -> successor == first)) {
+                cycles.add(getCycle(first, component));
+            }
+        }
+        cycles.sort((left, right) -> Integer.compare(getId(left.get(0).getName()), getId(right.get(0).getName())));
+        return cycles;
+    }
+
+    /** Shortest cycle from the given step to itself inside its component. */
+    private List<WorkflowStep> getCycle(int first, int[] component) {
+        BitSet inComponent = new BitSet(steps.length);
+        for (int id : component) {
+            inComponent.set(id);
+        }
+        int[] previous = new int[steps.length];
+        Arrays.fill(previous, -1);
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        toVisit.add(first);
+        int last = -1;
+        while (last == -1) {
+            int id = toVisit.poll();
+            for (int successor : successors[id]) {
+                if (successor == first) {
+                    last = id;
+                    break;
+                }
+                if (inComponent.get(successor) && previous[successor] == -1) {
+                    previous[successor] = id;
+                    toVisit.add(successor);
+                }
+            }
+        }
+        List<WorkflowStep> cycle = new ArrayList<>();
+        for (int id = last; id != first; id = previous[id]) {
+            cycle.add(0, steps[id]);
+        }
+        cycle.add(0, steps[first]);
+        return cycle;
+    }
+
+    /**
+     * Check if a step precedes an other one, directly or through other steps.
+     *
+     * @param predecessor The name of the step that may precede.
+     * @param step The name of the step.
+     * @return True if the predecessor is a transitive predecessor of the step.
+     */
+    public boolean isPredecessor(String predecessor, String step) {
+        int predecessorId = getId(predecessor);
+        int stepId = getId(step);
+        return predecessorId != -1 && stepId != -1 && getAllPredecessors(stepId).get(predecessorId);
+    }
+
+    /**
+     * Get the transitive predecessors of a step. The step is one of its predecessors only if it is part of a cycle.
+     *
+     * @param id The id of the step.
+     * @return The ids of all the steps that precede the step. The returned bit set must not be modified.
+     */
+    public synchronized BitSet getAllPredecessors(int id) {
+        if (allPredecessors == null) {
+            allPredecessors = computeAllPredecessors();
+        }
+        return allPredecessors[id];
+    }
+
+    /**
+     * Get the names of a step and of all the steps that precede it.
+     *
+     * @param name The name of the step.
+     * @return The names of the step and its transitive predecessors or an empty set if the step is not in the graph.
+     */
+    public Set<String> getAllPrecedences(String name) {
+        Set<String> precedences = new HashSet<>();
+        int id = getId(name);
+        if (id == -1) {
+            return precedences;
+        }
+        precedences.add(name);
+        BitSet predecessorIds = getAllPredecessors(id);
+        for (int predecessorId = predecessorIds.nextSetBit(0); predecessorId >= 0; predecessorId = predecessorIds.nextSetBit(predecessorId + 1)) {
+            precedences.add(steps[predecessorId].getName());
+        }
+        return precedences;
+    }
+
+    private BitSet[] computeAllPredecessors() {
+        BitSet[] result = new BitSet[steps.length];
+        // components of the predecessor graph come after the components that precede them, steps of a component share their predecessors
+        for (int[] component : getStronglyConnectedComponents(predecessors)) {
+            BitSet componentPredecessors = new BitSet(steps.length);
+            for (int id : component) {
+                for (int predecessor : predecessors[id]) {
+                    componentPredecessors.set(predecessor);
+                    if (result[predecessor] != null) {
+                        componentPredecessors.or(result[predecessor]);
+                    }
+                }
+            }
+            for (int id : component) {
+                result[id] = componentPredecessors;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Tarjan's strongly connected components algorithm, iterative so that long workflows do not overflow the stack.
+     *
+     * @param adjacency The links of the graph.
+     * @return The components, every component comes after all the components it links to.
+     */
+    private List<int[]> getStronglyConnectedComponents(int[][] adjacency) {
+        int count = adjacency.length;
+        List<int[]> components = new ArrayList<>();
+        int[] indexes = new int[count];
+        int[] lowLinks = new int[count];
+        Arrays.fill(indexes, -1);
+        boolean[] onStack = new boolean[count];
+        int[] stack = new int[count];
+        int stackSize = 0;
+        int[] callStack = new int[count];
+        int[] nextChild = new int[count];
+        int index = 0;
+        for (int start = 0; start < count; start++) {
+            if (indexes[start] != -1) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth] = start;
+            nextChild[start] = 0;
+            indexes[start] = lowLinks[start] = index++;
+            stack[stackSize++] = start;
+            onStack[start] = true;
+            while (depth >= 0) {
+                int id = callStack[depth];
+                if (nextChild[id] < adjacency[id].length) {
+                    int child = adjacency[id][nextChild[id]++];
+                    if (indexes[child] == -1) {
+                        indexes[child] = lowLinks[child] = index++;
+                        nextChild[child] = 0;
+                        stack[stackSize++] = child;
+                        onStack[child] = true;
+                        callStack[++depth] = child;
+                    } else if (onStack[child]) {
+                        lowLinks[id] = Math.min(lowLinks[id], indexes[child]);
+                    }
+                    continue;
+                }
+                if (lowLinks[id] == indexes[id]) {
+                    int componentStart = stackSize;
+                    do {
+                        componentStart--;
+                        onStack[stack[componentStart]] = false;
+                    } while (stack[componentStart] != id);
+                    components.add(Arrays.copyOfRange(stack, componentStart, stackSize));
+                    stackSize = componentStart;
+                }
+                depth--;
+                if (depth >= 0) {
+                    int parent = callStack[depth];
+                    lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[id]);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Index the steps of a sub graph.
+     *
+     * @param steps The steps by name, in the order in which the graph should consider them.
+     * @return The graph of the steps.
+     */
+    public static WorkflowGraph of(Map<String, WorkflowStep> steps) {
+        return new WorkflowGraph(steps.values());
+    }
+}
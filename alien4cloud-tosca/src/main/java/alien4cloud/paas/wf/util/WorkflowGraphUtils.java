@@ -35,31 +35,20 @@ import alien4cloud.utils.AlienUtils;
 public class WorkflowGraphUtils {
 
     /**
-     * Build the paths of the graph starting from the entry points (steps without predecessors, so connected to 'start').
+     * Find a cycle of the graph if any. Only the first cycle is returned, the next one is found once it is fixed.
      * <p>
      * Will also detect orphans brothers in the entire graph (cycles not connected to start).
      */
     public static List<Path> getWorkflowGraphCycles(Workflow workflow) {
-        SubGraph subGraph = new SubGraph(workflow, stepId -> true);
         List<Path> cycles = new ArrayList<>();
-        subGraph.browse(new SimpleGraphConsumer() {
-            @Override
-            public boolean onNewPath(List<WorkflowStep> path) {
-                if (path.size() > 1) {
-                    Path parentPath = new Path(path.subList(0, path.size() - 1));
-                    WorkflowStep currentStep = path.get(path.size() - 1);
-                    if (parentPath.contains(currentStep)) {
-                        Path cycle = new Path(path);
-                        cycle.setCycle(true);
-                        cycle.setLoopingStep(currentStep);
-                        cycles.add(cycle);
-                        // abort so that do not run into loop
-                        return false;
-                    }
-                }
-                return true;
-            }
-        });
+        List<List<WorkflowStep>> graphCycles = WorkflowGraph.of(workflow.getSteps()).getCycles();
+        if (!graphCycles.isEmpty()) {
+            List<WorkflowStep> cycleSteps = graphCycles.get(0);
+            Path cycle = new Path(cycleSteps);
+            cycle.setCycle(true);
+            cycle.setLoopingStep(cycleSteps.get(0));
+            cycles.add(cycle);
+        }
         return cycles;
     }
 
@@ -463,18 +463,7 @@ public class WorkflowUtils {
      * @return A set of preceding node names
      */
     public static Set<String> findAllPrecedences(Collection<WorkflowStep> steps, String stepName) {
-        Set<String> result = new HashSet<>();
-        rFindAllPrecedences(result, steps, findStep(steps, stepName));
-        return result;
-    }
-
-    private static void rFindAllPrecedences(Set<String> result, Collection<WorkflowStep> steps, WorkflowStep step) {
-        if (step == null) {
-            return;
-        }
-        result.add(step.getName());
-        List<WorkflowStep> preSteps = findSteps(steps, step.getPrecedingSteps());
-        preSteps.forEach(pre -> rFindAllPrecedences(result, steps, pre));
+        return new WorkflowGraph(steps).getAllPrecedences(stepName);
     }
 
     /**
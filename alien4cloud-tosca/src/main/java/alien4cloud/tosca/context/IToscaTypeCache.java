@@ -0,0 +1,31 @@
+package alien4cloud.tosca.context;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.alien4cloud.tosca.model.CSARDependency;
+import org.alien4cloud.tosca.model.types.AbstractToscaType;
+
+/**
+ * Process-wide cache of TOSCA types shared by all the {@link ToscaContext}s. It is looked up before loading a type from the
+ * {@link alien4cloud.component.ICSARRepositorySearchService} when the type is not in the context yet.
+ */
+public interface IToscaTypeCache {
+
+    /**
+     * Get an element defined in one of the given dependencies.
+     *
+     * @param elementClass The class of the element to look for.
+     * @param elementId The TOSCA element id of the element (without archive version).
+     * @param dependencies The dependencies in which the element may be defined.
+     * @param loader Loads the element from the repository when it is not cached.
+     * @param <T> The type of element.
+     * @return An instance of the element that the caller is free to modify or null if the element is not defined in the dependencies.
+     */
+    <T extends AbstractToscaType> T get(Class<T> elementClass, String elementId, Set<CSARDependency> dependencies, Supplier<T> loader);
+
+    /**
+     * Evict all the types from the cache, for example after types have been written or deleted directly in the repository.
+     */
+    void invalidateAll();
+}
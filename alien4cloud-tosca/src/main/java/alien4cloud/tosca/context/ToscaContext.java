@@ -9,6 +9,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 import org.alien4cloud.tosca.model.CSARDependency;
 import org.alien4cloud.tosca.model.Csar;
@@ -37,6 +38,10 @@ public class ToscaContext {
     @Setter
     @Getter
     private static ICSARRepositorySearchService csarRepositorySearchService;
+    /** Process-wide cache looked up before the repository search service, null if types are not shared between contexts. */
+    @Setter
+    @Getter
+    private static IToscaTypeCache toscaTypeCache;
     private final static ThreadLocal<Context> contextThreadLocal = new ThreadLocal<>();
 
     /**
@@ -290,8 +295,10 @@ public class ToscaContext {
                 }
             }
 
-            T element = required ? csarRepositorySearchService.getRequiredElementInDependencies(elementClass, elementId, dependencies)
+            Supplier<T> loader = () -> required ? csarRepositorySearchService.getRequiredElementInDependencies(elementClass, elementId, dependencies)
                     : csarRepositorySearchService.getElementInDependencies(elementClass, elementId, dependencies);
+            IToscaTypeCache sharedCache = toscaTypeCache;
+            T element = sharedCache == null ? loader.get() : sharedCache.get(elementClass, elementId, dependencies, loader);
             if (element != null) {
                 typeElements.put(elementId, element);
             }
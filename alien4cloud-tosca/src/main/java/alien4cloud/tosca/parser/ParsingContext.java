@@ -14,6 +14,8 @@ import org.yaml.snakeyaml.nodes.Node;
 public class ParsingContext {
     private String fileName;
     private List<ParsingError> parsingErrors = Lists.newArrayList();
+    /** Time spent to import the archive in milliseconds, null if not measured. */
+    private Long importDuration;
 
     public ParsingContext() {
     }
@@ -46,6 +46,11 @@ public class Workflow {
     private boolean isStandard;
     private Set<String> hosts = new HashSet<>();
     private List<AbstractWorkflowError> errors = new ArrayList<>();
+    /**
+     * True when the workflow has been changed without being fully simplified and validated, see WorkflowsBuilderService#finalizeWorkflows. It is sent to the
+     * editor so the client knows the workflow is only scoped until the topology is saved or the workflows are finalized.
+     */
+    private boolean pendingFinalization;
 
     public WorkflowStep addStep(WorkflowStep step) {
         steps.put(step.getName(), step);
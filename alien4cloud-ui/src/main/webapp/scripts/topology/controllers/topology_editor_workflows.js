@@ -324,6 +324,23 @@ define(function (require) {
             }
           );
         },
+        finalizeWorkflows: function () {
+          var instance = this;
+          this.scope.execute({
+              type: 'org.alien4cloud.tosca.editor.operations.workflow.FinalizeWorkflowsOperation'
+            },
+            function (successResult) {
+              if (!successResult.error) {
+                instance.refreshGraph(true, true);
+              } else {
+                console.debug(successResult.error);
+              }
+            },
+            function (errorResult) {
+              console.debug(errorResult);
+            }
+          );
+        },
         reinitWorkflow: function () {
           var scope = this.scope;
           var instance = this;